@@ -5,15 +5,25 @@ package org.usfirst.frc.team4915.stronghold;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.can.CANJNI;
 
 public class CANProbe {
 
+    private volatile double lastProbeSeconds;
+
     private ByteBuffer targetID = ByteBuffer.allocateDirect(4);
     private ByteBuffer timeStamp = ByteBuffer.allocateDirect(4);
 
+    // Reused by every probe so re-probing doesn't allocate.
+    private final long[][] timeStamp0 = new long[3][CanDeviceRegistry.NUM_IDS];
+    private final long[][] timeStamp1 = new long[3][CanDeviceRegistry.NUM_IDS];
+
+    private static final CanDeviceRegistry.DeviceClass[] CLASSES =
+            CanDeviceRegistry.DeviceClass.values();
+
     /** helper routine to get last received message for a given ID */
     private long checkMessage(int fullId, int deviceID) {
         try {
@@ -34,24 +44,30 @@ public class CANProbe {
             return -1;
         }
     }
+
+    // only look for PDP at '0'
+    private static int numIds(CanDeviceRegistry.DeviceClass c) {
+        return c == CanDeviceRegistry.DeviceClass.PDP ? 1 : CanDeviceRegistry.NUM_IDS;
+    }
+
+    private void sample(long[][] out) {
+        for (int c = 0; c < CLASSES.length; c++) {
+            for (int i = 0; i < numIds(CLASSES[c]); ++i) {
+                out[c][i] = checkMessage(CLASSES[c].getArbId(), i);
+            }
+        }
+    }
+
     /** polls for received framing to determine if a device is present.
-     *   This is meant to be used once initially (and not periodically) since 
-     *   this steals cached messages from the robot API.
-     * @return ArrayList of strings holding the names of devices we've found.
+     *   This steals cached messages from the robot API, so only call it
+     *   during init or while disabled.
+     * @param registry updated in place with the devices we've found.
      */
-    public ArrayList<String> Find() {
-        ArrayList<String> retval = new ArrayList<String>();
+    public synchronized void probe(CanDeviceRegistry registry) {
+        double start = Timer.getFPGATimestamp();
 
         /* get timestamp0 for each device */
-        long pdp0_timeStamp0; // only look for PDP at '0'
-        long []pcm_timeStamp0 = new long[63];
-        long []srx_timeStamp0 = new long[63];
-        
-        pdp0_timeStamp0 = checkMessage(0x08041400,0);
-        for(int i=0;i<63;++i) {
-            pcm_timeStamp0[i] = checkMessage(0x09041400, i);
-            srx_timeStamp0[i] = checkMessage(0x02041400, i);
-        }
+        sample(timeStamp0);
 
         /* wait 200ms */
         try {
@@ -61,31 +77,48 @@ public class CANProbe {
         }
 
         /* get timestamp1 for each device */
-        long pdp0_timeStamp1; // only look for PDP at '0'
-        long []pcm_timeStamp1 = new long[63];
-        long []srx_timeStamp1 = new long[63];
-        
-        pdp0_timeStamp1 = checkMessage(0x08041400,0);
-        for(int i=0;i<63;++i) {
-            pcm_timeStamp1[i] = checkMessage(0x09041400, i);
-            srx_timeStamp1[i] = checkMessage(0x02041400, i);
-        }
+        sample(timeStamp1);
 
-        /* compare, if timestamp0 is good and timestamp1 is good, 
-         * and they are different, device is healthy 
+        /* compare, if timestamp0 is good and timestamp1 is good,
+         * and they are different, device is healthy
          */
-        if( pdp0_timeStamp0>=0 && pdp0_timeStamp1>=0 && 
-            pdp0_timeStamp0!=pdp0_timeStamp1)
-            retval.add("PDP 0");
-
-        for(int i=0;i<63;++i) {
-            if( pcm_timeStamp0[i]>=0 && pcm_timeStamp1[i]>=0 && 
-                pcm_timeStamp0[i]!=pcm_timeStamp1[i])
-                retval.add("PCM " + i);
-            if( srx_timeStamp0[i]>=0 && srx_timeStamp1[i]>=0 &&
-                srx_timeStamp0[i]!=srx_timeStamp1[i])
-                retval.add("SRX " + i);
+        for (int c = 0; c < CLASSES.length; c++) {
+            for (int i = 0; i < numIds(CLASSES[c]); ++i) {
+                long t0 = timeStamp0[c][i];
+                long t1 = timeStamp1[c][i];
+                registry.update(CLASSES[c], i, t0 >= 0 && t1 >= 0 && t0 != t1, t1);
+            }
         }
-        return retval;
+        registry.probeComplete();
+        lastProbeSeconds = Timer.getFPGATimestamp() - start;
+    }
+
+    /** Runs probe() on a background thread so callers can overlap the
+     *  ~200ms probe with setup that doesn't depend on its result.
+     * @param registry updated in place with the devices we've found.
+     * @return a future that completes with registry once the probe is done.
+     */
+    public CompletableFuture<CanDeviceRegistry> probeAsync(final CanDeviceRegistry registry) {
+        final CompletableFuture<CanDeviceRegistry> result =
+                new CompletableFuture<CanDeviceRegistry>();
+        Thread t = new Thread(new Runnable() {
+
+            public void run() {
+                try {
+                    probe(registry);
+                    result.complete(registry);
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        }, "CANProbe");
+        t.setDaemon(true);
+        t.start();
+        return result;
+    }
+
+    /** @return how long the most recent probe took, in seconds */
+    public double getLastProbeSeconds() {
+        return lastProbeSeconds;
     }
 }
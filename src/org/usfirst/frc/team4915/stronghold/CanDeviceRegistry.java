@@ -0,0 +1,118 @@
+package org.usfirst.frc.team4915.stronghold;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * CanDeviceRegistry records which CAN devices CANProbe has heard from. Each
+ * device class keeps one 64 bit presence mask indexed by device ID, so
+ * isPresent() is a single bit test. It also keeps the CAN frame timestamps
+ * (ms) at which each device was first and most recently seen.
+ *
+ * The registry is filled in place by CANProbe and can be re-probed as often
+ * as we like without allocating. Readers on other threads see each device's
+ * state atomically, though a probe in progress may be only partly applied.
+ */
+public class CanDeviceRegistry {
+
+    public static final int NUM_IDS = 63;
+
+    public enum DeviceClass {
+        PDP(0x08041400),
+        PCM(0x09041400),
+        SRX(0x02041400);
+
+        private final int arbId; // status frame id, OR'd with device id
+
+        DeviceClass(int arbId) {
+            this.arbId = arbId;
+        }
+
+        public int getArbId() {
+            return arbId;
+        }
+    }
+
+    private static final int NUM_CLASSES = DeviceClass.values().length;
+
+    private final AtomicLongArray m_present = new AtomicLongArray(NUM_CLASSES);
+    private final AtomicLongArray m_firstSeen = new AtomicLongArray(NUM_CLASSES * 64);
+    private final AtomicLongArray m_lastSeen = new AtomicLongArray(NUM_CLASSES * 64);
+    private volatile int m_probeCount;
+
+    public boolean isPresent(DeviceClass c, int id) {
+        return (m_present.get(c.ordinal()) & (1L << id)) != 0;
+    }
+
+    public boolean isAnyPresent(DeviceClass c, int... ids) {
+        long mask = 0;
+        for (int id : ids) {
+            mask |= 1L << id;
+        }
+        return (m_present.get(c.ordinal()) & mask) != 0;
+    }
+
+    public boolean areAllPresent(DeviceClass c, int... ids) {
+        long mask = 0;
+        for (int id : ids) {
+            mask |= 1L << id;
+        }
+        return (m_present.get(c.ordinal()) & mask) == mask;
+    }
+
+    /** @return frame timestamp (ms) when the device was first seen, or -1 */
+    public long getFirstSeen(DeviceClass c, int id) {
+        return isKnown(c, id) ? m_firstSeen.get(c.ordinal() * 64 + id) : -1;
+    }
+
+    /** @return frame timestamp (ms) of the device's latest frame, or -1 */
+    public long getLastSeen(DeviceClass c, int id) {
+        return isKnown(c, id) ? m_lastSeen.get(c.ordinal() * 64 + id) : -1;
+    }
+
+    /** @return the number of completed probes */
+    public int getProbeCount() {
+        return m_probeCount;
+    }
+
+    private boolean isKnown(DeviceClass c, int id) {
+        return m_firstSeen.get(c.ordinal() * 64 + id) != 0;
+    }
+
+    /** Called by CANProbe with the result for one device. */
+    void update(DeviceClass c, int id, boolean present, long frameTimestamp) {
+        int slot = c.ordinal() * 64 + id;
+        if (present) {
+            m_firstSeen.compareAndSet(slot, 0, frameTimestamp == 0 ? 1 : frameTimestamp);
+            m_lastSeen.set(slot, frameTimestamp);
+            long mask;
+            do {
+                mask = m_present.get(c.ordinal());
+            } while (!m_present.compareAndSet(c.ordinal(), mask, mask | (1L << id)));
+        } else {
+            long mask;
+            do {
+                mask = m_present.get(c.ordinal());
+            } while (!m_present.compareAndSet(c.ordinal(), mask, mask & ~(1L << id)));
+        }
+    }
+
+    void probeComplete() {
+        m_probeCount++;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (DeviceClass c : DeviceClass.values()) {
+            for (int id = 0; id < NUM_IDS; id++) {
+                if (isPresent(c, id)) {
+                    if (sb.length() > 1) {
+                        sb.append(", ");
+                    }
+                    sb.append(c).append(' ').append(id);
+                }
+            }
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -7,6 +7,8 @@ import java.util.jar.Manifest;
 
 import org.usfirst.frc.team4915.stronghold.commands.PortcullisMoveDown;
 import org.usfirst.frc.team4915.stronghold.commands.PortcullisMoveUp;
+import org.usfirst.frc.team4915.stronghold.commands.DriveTrain.AutoTuneTurn;
+import org.usfirst.frc.team4915.stronghold.commands.DriveTrain.CharacterizeDrive;
 import org.usfirst.frc.team4915.stronghold.commands.DriveTrain.GearShiftCommand;
 import org.usfirst.frc.team4915.stronghold.commands.DriveTrain.ToggleSpeed;
 import org.usfirst.frc.team4915.stronghold.commands.IntakeLauncher.IntakeBallCommandGroup;
@@ -20,8 +22,10 @@ import org.usfirst.frc.team4915.stronghold.commands.IntakeLauncher.StopWheelsCom
 import org.usfirst.frc.team4915.stronghold.commands.vision.AutoAimControlCommand;
 import org.usfirst.frc.team4915.stronghold.subsystems.Autonomous;
 import org.usfirst.frc.team4915.stronghold.subsystems.Portcullis;
+import org.usfirst.frc.team4915.stronghold.utils.DriveCharacterization;
 import org.usfirst.frc.team4915.stronghold.vision.robot.VisionState;
 
+import edu.wpi.first.wpilibj.CANTalon;
 import edu.wpi.first.wpilibj.Joystick;
 import edu.wpi.first.wpilibj.buttons.JoystickButton;
 import edu.wpi.first.wpilibj.command.Command;
@@ -145,6 +149,15 @@ public class OI {
         
         if (ModuleManager.DRIVE_MODULE_ON) {
         	initializeButton(this.speedToggle, driveStick, TURN_SCALER, new ToggleSpeed());
+            if (ModuleManager.IMU_MODULE_ON) {
+                // pit use only: the robot rocks in place, then turns 45 degrees
+                SmartDashboard.putData("Auto-tune turn", new AutoTuneTurn());
+            }
+            // pit use only: each drives up to 15 feet
+            for (DriveCharacterization.Test test : DriveCharacterization.Test.values()) {
+                SmartDashboard.putData("Characterize " + test + " forward", new CharacterizeDrive(test, true));
+                SmartDashboard.putData("Characterize " + test + " backward", new CharacterizeDrive(test, false));
+            }
         }
 
         if (ModuleManager.GEARSHIFT_MODULE_ON) {
@@ -172,8 +185,10 @@ public class OI {
         }
 
         if (ModuleManager.SCALING_MODULE_ON) {
-            SmartDashboard.putData("Scaler Winch", RobotMap.scalingWinch);
-            SmartDashboard.putData("Scaler Tape Measure Motor", RobotMap.scalingMotor);
+            if (!RobotMap.SIMULATION) {
+                SmartDashboard.putData("Scaler Winch", (CANTalon) RobotMap.scalingWinch);
+                SmartDashboard.putData("Scaler Tape Measure Motor", (CANTalon) RobotMap.scalingMotor);
+            }
             // initializeButton(this.scalerReachUpButton, aimStick,
             // SCALER_REACH_UP_BUTTON_NUMBER, new
             // ScalerCommand(State.REACHING_UP));
@@ -1,13 +1,28 @@
 
 package org.usfirst.frc.team4915.stronghold;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import org.usfirst.frc.team4915.stronghold.commands.AutoCommand1;
 import org.usfirst.frc.team4915.stronghold.subsystems.Autonomous;
 import org.usfirst.frc.team4915.stronghold.subsystems.DriveTrain;
 import org.usfirst.frc.team4915.stronghold.subsystems.GearShift;
 import org.usfirst.frc.team4915.stronghold.subsystems.IntakeLauncher;
+import org.usfirst.frc.team4915.stronghold.subsystems.Odometry;
 import org.usfirst.frc.team4915.stronghold.subsystems.Portcullis;
 import org.usfirst.frc.team4915.stronghold.subsystems.Scaler;
 import org.usfirst.frc.team4915.stronghold.utils.BNO055;
+import org.usfirst.frc.team4915.stronghold.utils.BNO055ReadPlan;
+import org.usfirst.frc.team4915.stronghold.utils.CachingCANTalon;
+import org.usfirst.frc.team4915.stronghold.utils.ControlLoopStats;
+import org.usfirst.frc.team4915.stronghold.utils.FlightRecorder;
+import org.usfirst.frc.team4915.stronghold.utils.IMUSample;
+import org.usfirst.frc.team4915.stronghold.utils.LoopProfiler;
+import org.usfirst.frc.team4915.stronghold.utils.PeriodHistogram;
+import org.usfirst.frc.team4915.stronghold.utils.Pose;
+import org.usfirst.frc.team4915.stronghold.utils.Telemetry;
+import org.usfirst.frc.team4915.stronghold.vision.robot.VisionState;
 
 import edu.wpi.first.wpilibj.IterativeRobot;
 import edu.wpi.first.wpilibj.Timer;
@@ -31,11 +46,23 @@ public class Robot extends IterativeRobot {
     public static OI oi;
     public static GearShift gearShift;
     public static Scaler scaler;
+    public static Odometry odometry;
 
     Command autonomousCommand;
     SendableChooser autonomousProgramChooser;
 
-    private volatile double lastTime;
+    private static final long IMU_READY_TIMEOUT_MS = 2000;
+    // how long to stay disabled before reprobing CAN; the FMS gap between
+    // autonomous and teleop is shorter, so a match doesn't reprobe mid-way
+    private static final double CAN_REPROBE_SETTLE_SECONDS = 5.0;
+
+    private double disabledSince;
+    private boolean canReprobed;
+
+    private final LoopProfiler loopProfiler = LoopProfiler.getInstance();
+    private FlightRecorder flightRecorder;
+    private final FlightRecorder.Record flightRecord = new FlightRecorder.Record();
+    private int flightCommandNames; // profiles whose names are in the file
 
     /**
      * This function is run when the robot is first started up and should be
@@ -44,6 +71,7 @@ public class Robot extends IterativeRobot {
     @Override
     public void robotInit() {
         RobotMap.init(); // 1. Initialize RobotMap prior to initializing modules
+        flightRecorder = FlightRecorder.open();
 
         // 2. conditionally create the modules
         if (ModuleManager.PORTCULLIS_MODULE_ON){
@@ -52,6 +80,7 @@ public class Robot extends IterativeRobot {
         }
         if (ModuleManager.DRIVE_MODULE_ON) {
             driveTrain = new DriveTrain();
+            odometry = new Odometry();
             SmartDashboard.putString("Drivetrain Module", "initialized");
         }
         else
@@ -99,17 +128,42 @@ public class Robot extends IterativeRobot {
             SmartDashboard.putString("IMU Module", "disabled");
 
         oi = new OI(); // 3. Construct OI after subsystems created
+
+        // 4. the IMU has been initializing in the background; give it a
+        // bounded amount of time to finish before we report ready.
+        if (ModuleManager.IMU_MODULE_ON) {
+            try {
+                RobotMap.imu.awaitReady().get(IMU_READY_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                System.out.println("IMU ready (calibration restored: "
+                        + RobotMap.imu.isCalibrationRestored() + ")");
+            } catch (TimeoutException e) {
+                System.out.println("IMU not ready after " + IMU_READY_TIMEOUT_MS + "ms, continuing");
+            } catch (InterruptedException | ExecutionException e) {
+                System.out.println("IMU ready wait failed: " + e);
+            }
+            SmartDashboard.putBoolean("IMU present", RobotMap.imu.isSensorPresent());
+        }
     }
 
     @Override
     public void disabledPeriodic() {
+        sampleSensors();
         Scheduler.getInstance().run();
+        // pick up anything that was (un)plugged since the last probe
+        if (!canReprobed && Timer.getFPGATimestamp() - disabledSince >= CAN_REPROBE_SETTLE_SECONDS) {
+            RobotMap.reprobeCanDevices();
+            canReprobed = true;
+        }
     }
 
     @Override
     public void autonomousInit() {
+        RobotMap.finishCanProbe();
         // schedule the autonomous command
         System.out.println("Autonomous selection Angle: " + oi.startingFieldPosition.getSelected() + "Field Position " + oi.startingFieldPosition.getSelected() + "strategy " + oi.strategy.getSelected() + "Obstacle " + oi.barrierType.getSelected());
+        if (ModuleManager.DRIVE_MODULE_ON) {
+            odometry.reset();
+        }
        autonomousCommand = new AutoCommand1((Autonomous.Type) oi.barrierType.getSelected(), (Autonomous.Strat) oi.strategy.getSelected(),
                 (Autonomous.Position) oi.startingFieldPosition.getSelected());
        
@@ -123,8 +177,12 @@ public class Robot extends IterativeRobot {
      */
     @Override
     public void autonomousPeriodic() {
+        loopProfiler.beginLoop();
+        sampleSensors();
         Scheduler.getInstance().run();
         periodicStatusUpdate();
+        loopProfiler.endLoop();
+        recordFlight();
     }
 
     @Override
@@ -138,6 +196,7 @@ public class Robot extends IterativeRobot {
        // RobotMap.rightBackMotor.changeControlMode(CANTalon.TalonControlMode.Speed);
        // RobotMap.leftBackMotor.changeControlMode(CANTalon.TalonControlMode.Speed);
     	System.out.println("entering teleop");
+        RobotMap.finishCanProbe();
     	if (ModuleManager.INTAKELAUNCHER_MODULE_ON){
     	Robot.intakeLauncher.aimMotor.enableControl();
     	}
@@ -152,7 +211,11 @@ public class Robot extends IterativeRobot {
      */
     @Override
     public void disabledInit() {
-
+        // end of a match (or of a practice enable): report loop timing
+        loopProfiler.dump();
+        // disabledPeriodic reprobes CAN once we've settled
+        disabledSince = Timer.getFPGATimestamp();
+        canReprobed = false;
     }
 
     /**
@@ -160,8 +223,12 @@ public class Robot extends IterativeRobot {
      */
     @Override
     public void teleopPeriodic() {
+        loopProfiler.beginLoop();
+        sampleSensors();
         Scheduler.getInstance().run();
         periodicStatusUpdate();
+        loopProfiler.endLoop();
+        recordFlight();
     }
 
     /**
@@ -169,40 +236,155 @@ public class Robot extends IterativeRobot {
      */
     @Override
     public void testPeriodic() {
+        sampleSensors();
         LiveWindow.run();
         periodicStatusUpdate();
      }
 
-    public void periodicStatusUpdate() {
-        double currentTime = Timer.getFPGATimestamp(); // seconds
-        // only update the smart dashboard twice per second to prevent
-        // network congestion.
-        if(currentTime - this.lastTime > .5) {
-        	updateIMUStatus();
-        	updateLauncherStatus();
-        	updateDrivetrainStatus();
-        	this.lastTime = currentTime;
+    /**
+     * Appends this cycle to the flight recorder. Runs after endLoop, so
+     * loopMillis covers everything but the recording itself.
+     */
+    public void recordFlight() {
+        if (flightRecorder == null) {
+            return;
+        }
+        while (flightCommandNames < loopProfiler.getProfileCount()) {
+            flightRecorder.setCommandName(flightCommandNames,
+                    loopProfiler.getProfile(flightCommandNames).getName());
+            flightCommandNames++;
+        }
+        FlightRecorder.Record r = flightRecord;
+        r.clear();
+        r.time = Timer.getFPGATimestamp();
+        if (ModuleManager.DRIVE_MODULE_ON) {
+            DriveTrain.Sensors ds = driveTrain.getSensors();
+            r.leftTicks = ds.leftTicks;
+            r.rightTicks = ds.rightTicks;
+            r.leftSpeed = ds.leftSpeed;
+            r.rightSpeed = ds.rightSpeed;
+            if (driveTrain.isAutoTurning()) {
+                r.flags |= FlightRecorder.FLAG_AUTO_TURNING;
+                r.turnSetpoint = driveTrain.getTurnSetpoint();
+                r.turnError = driveTrain.getTurnError();
+                r.turnOutput = driveTrain.getTurnOutput();
+            }
+        }
+        VisionState vs = VisionState.getInstance();
+        if (vs.wantsControl()) {
+            r.flags |= FlightRecorder.FLAG_VISION_CONTROL;
+        }
+        if (vs.LauncherLockedOnTarget) {
+            r.flags |= FlightRecorder.FLAG_LAUNCHER_LOCKED;
+        }
+        if (vs.DriveLockedOnTarget) {
+            r.flags |= FlightRecorder.FLAG_DRIVE_LOCKED;
+        }
+        r.targetX = vs.getTargetX();
+        r.targetY = vs.getTargetY();
+        r.targetTime = vs.getTargetTimestamp();
+        if (ModuleManager.IMU_MODULE_ON) {
+            r.heading = RobotMap.imu.getNormalizedHeading();
+        }
+        if (ModuleManager.INTAKELAUNCHER_MODULE_ON) {
+            IntakeLauncher.Sensors ls = intakeLauncher.getSensors();
+            r.aimPosition = ls.position;
+            r.aimSetPoint = intakeLauncher.getSetPoint();
+            r.aimStickY = intakeLauncher.getLastJoystickY();
+            if (intakeLauncher.getIsPotentiometerScrewed()) {
+                r.flags |= FlightRecorder.FLAG_POT_SCREWED;
+            }
+            if (ls.atTop) {
+                r.flags |= FlightRecorder.FLAG_AT_TOP;
+            }
+            if (ls.atBottom) {
+                r.flags |= FlightRecorder.FLAG_AT_BOTTOM;
+            }
+            if (ls.boulderLoaded) {
+                r.flags |= FlightRecorder.FLAG_BOULDER_LOADED;
+            }
+        }
+        r.commandMask = loopProfiler.getLastLoopCommandMask();
+        r.loopMillis = loopProfiler.getLastLoopNanos() / 1e6;
+        flightRecorder.append(r);
+    }
+
+    /**
+     * Reads every subsystem's sensors once, before the scheduler runs, so
+     * that all commands in this cycle decide from the same values.
+     */
+    public void sampleSensors() {
+        if (ModuleManager.DRIVE_MODULE_ON) {
+            driveTrain.readSensors();
+        }
+        if (ModuleManager.INTAKELAUNCHER_MODULE_ON) {
+            intakeLauncher.readSensors();
         }
     }
 
+    /**
+     * Hands the latest status values to Telemetry. This runs every cycle:
+     * the setters only store primitives, and the Telemetry thread decides
+     * what actually goes out over NetworkTables and how often.
+     */
+    public void periodicStatusUpdate() {
+        updateIMUStatus();
+        updateLauncherStatus();
+        updateDrivetrainStatus();
+        updateCANStatus();
+    }
+
+    private final Telemetry.NumberChannel imuHeadingChannel =
+            Telemetry.getInstance().number("IMU heading", Telemetry.Priority.HIGH);
+    private final Telemetry.NumberChannel imuCalibrationChannel =
+            Telemetry.getInstance().number("IMU calibration", Telemetry.Priority.NORMAL);
+    private final Telemetry.NumberChannel imuPeriodChannel =
+            Telemetry.getInstance().number("IMU period ms", Telemetry.Priority.LOW);
+    private final Telemetry.NumberChannel imuJitterChannel =
+            Telemetry.getInstance().number("IMU max jitter ms", Telemetry.Priority.LOW);
+    private final Telemetry.NumberChannel imuSkippedChannel =
+            Telemetry.getInstance().number("IMU skipped ticks", Telemetry.Priority.LOW);
+    private final IMUSample imuStatusSample = new IMUSample();
+
 	public void updateIMUStatus() {
  	   if (ModuleManager.IMU_MODULE_ON) {
-            BNO055.CalData calData = RobotMap.imu.getCalibration();
-            SmartDashboard.putNumber("IMU heading", RobotMap.imu.getNormalizedHeading());
-            // SmartDashboard.putNumber("IMU dist to origin", RobotMap.imu.getDistFromOrigin());
-            SmartDashboard.putNumber("IMU calibration",
-                                 (1000 + (calData.accel * 100) + calData.gyro *10 + calData.mag));
-                                 //Calibration values range from 0-3, Right to left: mag, gyro, accel
+            imuHeadingChannel.set(RobotMap.imu.getNormalizedHeading());
+            if (RobotMap.imu instanceof BNO055) { // not simulated
+                BNO055 bno055 = (BNO055) RobotMap.imu;
+                // the sensor thread reads the status with every sample, so
+                // this costs no I2C and doesn't allocate
+                if (bno055.getReadPlan().contains(BNO055ReadPlan.Vector.CALIB_STAT)) {
+                    bno055.getSnapshot(imuStatusSample);
+                    int raw = imuStatusSample.calibStatus;
+                    imuCalibrationChannel.set(1000 + ((raw >> 2) & 0x03) * 100 + ((raw >> 4) & 0x03) * 10 + (raw & 0x03));
+                                     //Calibration values range from 0-3, Right to left: mag, gyro, accel
+                }
+                PeriodHistogram imuPeriod = bno055.getSampleScheduler().getHistogram();
+                imuPeriodChannel.set(imuPeriod.getMeanMillis());
+                imuJitterChannel.set(imuPeriod.getMaxJitterMillis());
+                imuSkippedChannel.set(imuPeriod.getSkippedCount());
+            }
  	   }
 	}
 
+    private final Telemetry.NumberChannel potentiometerChannel =
+            Telemetry.getInstance().number("aimMotor Potentiometer: ", Telemetry.Priority.HIGH);
+    private final Telemetry.BooleanChannel topSwitchChannel =
+            Telemetry.getInstance().bool("Top Limit Switch: ", Telemetry.Priority.NORMAL);
+    private final Telemetry.BooleanChannel bottomSwitchChannel =
+            Telemetry.getInstance().bool("Bottom Limit Switch: ", Telemetry.Priority.NORMAL);
+    private final Telemetry.BooleanChannel boulderSwitchChannel =
+            Telemetry.getInstance().bool("Boulder Limit Switch: ", Telemetry.Priority.HIGH);
+    private final Telemetry.BooleanChannel potentiometerBrokenChannel =
+            Telemetry.getInstance().bool("Potentiometer might be broken", Telemetry.Priority.NORMAL);
+
 	public void updateLauncherStatus() {
         if (ModuleManager.INTAKELAUNCHER_MODULE_ON) {
-            SmartDashboard.putNumber("aimMotor Potentiometer: ", intakeLauncher.getPosition());
-	        SmartDashboard.putBoolean("Top Limit Switch: ", intakeLauncher.isLauncherAtTop());
-	        SmartDashboard.putBoolean("Bottom Limit Switch: ", intakeLauncher.isLauncherAtBottom());
-	        SmartDashboard.putBoolean("Boulder Limit Switch: ", intakeLauncher.boulderSwitch.get());
-	        SmartDashboard.putBoolean("Potentiometer might be broken", intakeLauncher.getIsPotentiometerScrewed());
+            potentiometerChannel.set(intakeLauncher.getPosition());
+            topSwitchChannel.set(intakeLauncher.isLauncherAtTop());
+            bottomSwitchChannel.set(intakeLauncher.isLauncherAtBottom());
+            boulderSwitchChannel.set(intakeLauncher.isBoulderLoaded());
+            potentiometerBrokenChannel.set(intakeLauncher.getIsPotentiometerScrewed());
         }
 	}
 	
@@ -210,9 +392,61 @@ public class Robot extends IterativeRobot {
 		
 	}
 
+    // one pair per Talon, registered on first use (Talons are all created
+    // in RobotMap.init, before the first status update)
+    private CachingCANTalon[] canTalons = new CachingCANTalon[0];
+    private Telemetry.NumberChannel[] canSentChannels;
+    private Telemetry.NumberChannel[] canSuppressedChannels;
+
+	public void updateCANStatus() {
+        if (canTalons.length != CachingCANTalon.getAll().size()) {
+            canTalons = CachingCANTalon.getAll().toArray(new CachingCANTalon[0]);
+            canSentChannels = new Telemetry.NumberChannel[canTalons.length];
+            canSuppressedChannels = new Telemetry.NumberChannel[canTalons.length];
+            for (int i = 0; i < canTalons.length; i++) {
+                int id = canTalons[i].getDeviceID();
+                canSentChannels[i] = Telemetry.getInstance().number("CAN " + id + " sent", Telemetry.Priority.LOW);
+                canSuppressedChannels[i] = Telemetry.getInstance().number("CAN " + id + " suppressed", Telemetry.Priority.LOW);
+            }
+        }
+        for (int i = 0; i < canTalons.length; i++) {
+            canSentChannels[i].set(canTalons[i].getIssuedCount());
+            canSuppressedChannels[i].set(canTalons[i].getSuppressedCount());
+        }
+	}
+
+	private final Pose statusPose = new Pose();
+    private final Telemetry.NumberChannel odometryXChannel =
+            Telemetry.getInstance().number("Odometry x", Telemetry.Priority.NORMAL);
+    private final Telemetry.NumberChannel odometryYChannel =
+            Telemetry.getInstance().number("Odometry y", Telemetry.Priority.NORMAL);
+    private final Telemetry.NumberChannel odometryThetaChannel =
+            Telemetry.getInstance().number("Odometry theta", Telemetry.Priority.NORMAL);
+    private final Telemetry.NumberChannel trackWidthChannel =
+            Telemetry.getInstance().number("Odometry track width", Telemetry.Priority.LOW);
+
+    private final Telemetry.NumberChannel turnPeriodChannel =
+            Telemetry.getInstance().number("AutoTurn period ms", Telemetry.Priority.LOW);
+    private final Telemetry.NumberChannel turnComputeChannel =
+            Telemetry.getInstance().number("AutoTurn max compute ms", Telemetry.Priority.LOW);
+    private final Telemetry.NumberChannel turnSettleChannel =
+            Telemetry.getInstance().number("AutoTurn settle ms", Telemetry.Priority.NORMAL);
+    private final Telemetry.NumberChannel turnSettleStepsChannel =
+            Telemetry.getInstance().number("AutoTurn settle steps", Telemetry.Priority.NORMAL);
+
 	public void updateDrivetrainStatus() {
         if (ModuleManager.DRIVE_MODULE_ON) {
+            odometry.getPose(statusPose);
+            odometryXChannel.set(statusPose.x);
+            odometryYChannel.set(statusPose.y);
+            odometryThetaChannel.set(statusPose.theta);
+            trackWidthChannel.set(odometry.getTrackWidth());
 
+            ControlLoopStats turnStats = driveTrain.getTurnStats();
+            turnPeriodChannel.set(turnStats.getPeriodHistogram().getMeanMillis());
+            turnComputeChannel.set(turnStats.getComputeHistogram().getMaxMillis());
+            turnSettleChannel.set(turnStats.getLastSettleMillis());
+            turnSettleStepsChannel.set(turnStats.getLastSettleSteps());
         }
 	}
 }
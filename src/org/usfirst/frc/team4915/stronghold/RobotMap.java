@@ -1,20 +1,50 @@
 package org.usfirst.frc.team4915.stronghold;
 
-import java.util.ArrayList;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.usfirst.frc.team4915.stronghold.CanDeviceRegistry.DeviceClass;
+import org.usfirst.frc.team4915.stronghold.hal.DigitalInputSwitch;
+import org.usfirst.frc.team4915.stronghold.hal.DigitalOutputLight;
+import org.usfirst.frc.team4915.stronghold.hal.Encoder;
+import org.usfirst.frc.team4915.stronghold.hal.Imu;
+import org.usfirst.frc.team4915.stronghold.hal.Light;
+import org.usfirst.frc.team4915.stronghold.hal.MotorController;
+import org.usfirst.frc.team4915.stronghold.hal.PneumaticSolenoid;
+import org.usfirst.frc.team4915.stronghold.hal.Potentiometer;
+import org.usfirst.frc.team4915.stronghold.hal.PwmServo;
+import org.usfirst.frc.team4915.stronghold.hal.Servo;
+import org.usfirst.frc.team4915.stronghold.hal.SimEncoder;
+import org.usfirst.frc.team4915.stronghold.hal.SimImu;
+import org.usfirst.frc.team4915.stronghold.hal.SimLight;
+import org.usfirst.frc.team4915.stronghold.hal.SimMotorController;
+import org.usfirst.frc.team4915.stronghold.hal.SimPotentiometer;
+import org.usfirst.frc.team4915.stronghold.hal.SimServo;
+import org.usfirst.frc.team4915.stronghold.hal.SimSolenoid;
+import org.usfirst.frc.team4915.stronghold.hal.SimSwitch;
+import org.usfirst.frc.team4915.stronghold.hal.Solenoid;
+import org.usfirst.frc.team4915.stronghold.hal.Switch;
+import org.usfirst.frc.team4915.stronghold.hal.TalonEncoder;
+import org.usfirst.frc.team4915.stronghold.hal.TalonLimitSwitch;
+import org.usfirst.frc.team4915.stronghold.hal.TalonPotentiometer;
 import org.usfirst.frc.team4915.stronghold.utils.BNO055;
+import org.usfirst.frc.team4915.stronghold.utils.CachingCANTalon;
+import org.usfirst.frc.team4915.stronghold.utils.StartupTimer;
+import org.usfirst.frc.team4915.stronghold.utils.TalonProfileStreamer;
 
 import edu.wpi.first.wpilibj.CANTalon;
 import edu.wpi.first.wpilibj.CANTalon.FeedbackDevice;
 import edu.wpi.first.wpilibj.CANTalon.TalonControlMode;
-import edu.wpi.first.wpilibj.DigitalInput;
-import edu.wpi.first.wpilibj.DigitalOutput;
-import edu.wpi.first.wpilibj.DoubleSolenoid;
-import edu.wpi.first.wpilibj.Servo;
 import edu.wpi.first.wpilibj.livewindow.LiveWindow;
 
 public class RobotMap {
 
+    /**
+     * Run with -Dstronghold.simulation=true to get simulated devices (see
+     * the hal package) instead of roboRIO hardware, e.g. on a desktop.
+     */
+    public static final boolean SIMULATION = Boolean.getBoolean("stronghold.simulation");
+
     // Define channels for the drive train motors
     private static final int DRIVE_TRAIN_RIGHT_FOLLOWER = 13;
     private static final int DRIVE_TRAIN_RIGHT_MASTER = 12;
@@ -30,6 +60,9 @@ public class RobotMap {
     private static final int INTAKE_RIGHT_MOTOR_ID = 14;
     private static final int AIM_MOTOR_ID = 16;
 
+    // The IntakeLauncher is enabled if any of these Talons answer on CAN.
+    private static final int[] INTAKELAUNCHER_SRX_IDS = {AIM_MOTOR_ID, INTAKE_RIGHT_MOTOR_ID};
+
     // Define port for the boulder switch
     private static final int BOULDER_SWITCH_PORT = 0;
 
@@ -48,14 +81,20 @@ public class RobotMap {
     // private static final int AIMER_D = 0; //TODO uncomment
 
     // Create motor controllers for the driveTrain
-    public static CANTalon leftMasterMotor;
-    public static CANTalon rightMasterMotor;
-    public static CANTalon leftFollowerMotor;
-    public static CANTalon rightFollowerMotor;
+    // On the robot all Talons are CachingCANTalons, which drop writes that
+    // repeat the last value sent (see CachingCANTalon).
+    public static MotorController leftMasterMotor;
+    public static MotorController rightMasterMotor;
+    public static MotorController leftFollowerMotor;
+    public static MotorController rightFollowerMotor;
+
+    // drive master encoders, wired into the master Talons
+    public static Encoder leftMasterEncoder;
+    public static Encoder rightMasterEncoder;
 
     //motors for portcullis
-    public static CANTalon portcullisLeftMasterMotor;
-    public static CANTalon portcullisRightFollowerMotor;
+    public static MotorController portcullisLeftMasterMotor;
+    public static MotorController portcullisRightFollowerMotor;
 
     public static final int PORTCULLIS_MASTER_MOTOR = 0;
     public static final int PORTCULLIS_FOLLOWER_MOTOR = 1;
@@ -64,32 +103,42 @@ public class RobotMap {
     public static int PORTCULLIS_BOT = 5;
 
     //portcullis limit switch
-    public static DigitalInput portcullisSwitchTop;
-    public static DigitalInput portcullisSwitchBottom;
+    public static Switch portcullisSwitchTop;
+    public static Switch portcullisSwitchBottom;
 
     // Create solenoid for the drivetrain
-    public static DoubleSolenoid doubleSolenoid;
+    public static Solenoid doubleSolenoid;
+
+    // CAN devices seen by the last probe
+    public static final CanDeviceRegistry canDevices = new CanDeviceRegistry();
+    private static final CANProbe canProbe = new CANProbe();
+    private static CompletableFuture<CanDeviceRegistry> pendingProbe;
 
     // Create IMU
-    public static BNO055 imu;
+    public static Imu imu;
 
     // Create the motor controllers for the IntakeLauncher
-    public static CANTalon intakeLeftMotor;
-    public static CANTalon intakeRightMotor;
-    public static CANTalon aimMotor;
+    public static MotorController intakeLeftMotor;
+    public static MotorController intakeRightMotor;
+    public static MotorController aimMotor;
+
+    // aimMotor's pot and limit switches: reverse is top, forward is bottom
+    public static Potentiometer aimPotentiometer;
+    public static Switch aimTopSwitch;
+    public static Switch aimBottomSwitch;
 
     // Create the boulder switch
-    public static DigitalInput boulderSwitch;
+    public static Switch boulderSwitch;
 
     // Create the launcher solenoid
     public static Servo launcherServoLeft;
     public static Servo launcherServoRight;
 
     // Create the motor controllers for the Scaler
-    public static CANTalon scalingMotor;
-    public static CANTalon scalingWinch;
+    public static MotorController scalingMotor;
+    public static MotorController scalingWinch;
 
-    public static final DigitalOutput PHOTONIC_CANNON = new DigitalOutput(PHOTONIC_CANNON_ID);
+    public static Light PHOTONIC_CANNON;
 
     // Drive train QuadEncoder calibration
     /**
@@ -109,140 +158,303 @@ public class RobotMap {
     public static final double wheelCircumferenceInInches = wheelDiameterInInches * Math.PI;
     public static final double quadTicksPerInch = quadTicksPerWheelRev / wheelCircumferenceInInches;
 
+    // The Talons count 4 ticks per configured encoder code, and the drive
+    // masters are configured with codes = quadTicksPerWheelRev, which is
+    // already 4x. So a Talon "rotation", in Speed mode rpm and in motion
+    // profile points, is four wheel revolutions.
+    public static final double quadTicksPerTalonRotation = 4.0 * quadTicksPerWheelRev;
+
+    // Drive master Talon speed loop. The drivetrain simulator models the
+    // same values (see sim.DrivetrainModel).
+    public static final double DRIVE_SPEED_KP = 0.22;
+    public static final double DRIVE_VOLTAGE_RAMP_RATE = 48.0; // volts/sec
+
+    // Drive master motion profile gains, in TalonProfileStreamer.PROFILE_SLOT.
+    // F carries the point's velocity (~5.4V at 100 in/sec), P the position
+    // error (~1.5V per inch behind). Both are in native units: quad ticks
+    // per 100ms, and ticks, with 1023 full output. sim.DrivetrainModel runs
+    // them, and MotionProfileCheck follows profiles with them.
+    public static final double DRIVE_PROFILE_KP = 0.57;
+    public static final double DRIVE_PROFILE_KF = 0.21;
+
+    // Effective distance between left and right wheel contact patches, used
+    // to derive heading from the encoders when the IMU is unavailable. This
+    // is the starting value: Odometry measures the width against the IMU
+    // whenever it's up ("Odometry track width" on the dashboard) and uses
+    // that once it has seen a full turn. Copy the measured value here.
+    public static final double driveTrackWidthInInches = 24.0;
+
     // Initialize the various robot modules
+    // upper bound on how long module setup will wait for the CAN probe
+    private static final long CAN_PROBE_TIMEOUT_MS = 1000;
+
     public static void init() {
-        CANProbe cp = new CANProbe();
-        ArrayList<String> canDevices = cp.Find();
-        System.out.println("RobotMap.init() CAN devices:" + canDevices);
+        if (SIMULATION) {
+            initSimulation();
+            return;
+        }
+        StartupTimer timer = new StartupTimer();
+
+        PHOTONIC_CANNON = new DigitalOutputLight(PHOTONIC_CANNON_ID);
 
+        // Discover CAN devices in the background; only modules whose
+        // presence is in doubt need to wait for the answer.
+        CompletableFuture<CanDeviceRegistry> probe = canProbe.probeAsync(canDevices);
+
+        // The IMU takes a few seconds to come up and does so on its own
+        // thread, so start it first. Robot.robotInit waits on
+        // imu.awaitReady() once everything else is set up.
+        timer.begin("imu");
+        if (ModuleManager.IMU_MODULE_ON) {
+            BNO055 bno055 = BNO055.getInstance(BNO055.opmode_t.OPERATION_MODE_IMUPLUS,
+                    BNO055.vector_type_t.VECTOR_EULER);
+            // imuLinAcc =
+            // BNO055.getInstance(BNO055.opmode_t.OPERATION_MODE_IMUPLUS,
+            // BNO055.vector_type_t.VECTOR_LINEARACCEL);
+            System.out.println("IMU read plan: " + bno055.getReadPlan());
+            imu = bno055;
+            System.out.println("ModuleManager RobotMap Initialized: IMU");
+        }
+
+        timer.begin("portcullis");
         if (ModuleManager.PORTCULLIS_MODULE_ON){
             //instantiate the motor controllers
-            portcullisLeftMasterMotor = new CANTalon (PORTCULLIS_MASTER_MOTOR);
-            portcullisRightFollowerMotor = new CANTalon (PORTCULLIS_FOLLOWER_MOTOR);
+            CachingCANTalon master = new CachingCANTalon(PORTCULLIS_MASTER_MOTOR);
+            CachingCANTalon follower = new CachingCANTalon(PORTCULLIS_FOLLOWER_MOTOR);
 
             //master and follower
             //left is master motor - right is follower motor
-            portcullisRightFollowerMotor.changeControlMode(CANTalon.TalonControlMode.Follower);
-            portcullisRightFollowerMotor.set(portcullisLeftMasterMotor.getDeviceID());
+            follower.changeControlMode(CANTalon.TalonControlMode.Follower);
+            follower.set(master.getDeviceID());
 
             //set up speed control mode
-            portcullisRightFollowerMotor.changeControlMode(CANTalon.TalonControlMode.PercentVbus);
-            portcullisLeftMasterMotor.changeControlMode(CANTalon.TalonControlMode.PercentVbus);
+            follower.changeControlMode(CANTalon.TalonControlMode.PercentVbus);
+            master.changeControlMode(CANTalon.TalonControlMode.PercentVbus);
 
-            portcullisLeftMasterMotor.setForwardSoftLimit(PORTCULLIS_TOP);
-            portcullisLeftMasterMotor.setReverseSoftLimit(PORTCULLIS_BOT);
-            portcullisLeftMasterMotor.enableForwardSoftLimit(true);
-            portcullisLeftMasterMotor.enableReverseSoftLimit(true);
+            master.setForwardSoftLimit(PORTCULLIS_TOP);
+            master.setReverseSoftLimit(PORTCULLIS_BOT);
+            master.enableForwardSoftLimit(true);
+            master.enableReverseSoftLimit(true);
 
+            portcullisLeftMasterMotor = master;
+            portcullisRightFollowerMotor = follower;
         }
         // conditionally initialize the modules
+        timer.begin("drivetrain");
         if (ModuleManager.DRIVE_MODULE_ON) {
 
             // STEP 1: instantiate the motor controllers
-            leftMasterMotor = new CANTalon(DRIVE_TRAIN_LEFT_MASTER);
-            rightMasterMotor = new CANTalon(DRIVE_TRAIN_RIGHT_MASTER);
-            leftFollowerMotor = new CANTalon(DRIVE_TRAIN_LEFT_FOLLOWER);
-            rightFollowerMotor = new CANTalon(DRIVE_TRAIN_RIGHT_FOLLOWER);
+            CachingCANTalon leftMaster = new CachingCANTalon(DRIVE_TRAIN_LEFT_MASTER);
+            CachingCANTalon rightMaster = new CachingCANTalon(DRIVE_TRAIN_RIGHT_MASTER);
+            CachingCANTalon leftFollower = new CachingCANTalon(DRIVE_TRAIN_LEFT_FOLLOWER);
+            CachingCANTalon rightFollower = new CachingCANTalon(DRIVE_TRAIN_RIGHT_FOLLOWER);
 
 
             // Step 2: Configure the follower Talons: left & right back motors
-            leftFollowerMotor.changeControlMode(CANTalon.TalonControlMode.Follower);
-            leftFollowerMotor.set(leftMasterMotor.getDeviceID());
+            leftFollower.changeControlMode(CANTalon.TalonControlMode.Follower);
+            leftFollower.set(leftMaster.getDeviceID());
 
-            rightFollowerMotor.changeControlMode(CANTalon.TalonControlMode.Follower);
-            rightFollowerMotor.set(rightMasterMotor.getDeviceID());
+            rightFollower.changeControlMode(CANTalon.TalonControlMode.Follower);
+            rightFollower.set(rightMaster.getDeviceID());
 
             // STEP 3: Setup speed control mode for the master Talons
-            leftMasterMotor.changeControlMode(CANTalon.TalonControlMode.Speed);
-            rightMasterMotor.changeControlMode(CANTalon.TalonControlMode.Speed);
+            leftMaster.changeControlMode(CANTalon.TalonControlMode.Speed);
+            rightMaster.changeControlMode(CANTalon.TalonControlMode.Speed);
 
             // STEP 4: Indicate the feedback device used for closed-loop
             // For speed mode, indicate the ticks per revolution
-            leftMasterMotor.setFeedbackDevice(FeedbackDevice.QuadEncoder);
-            rightMasterMotor.setFeedbackDevice(FeedbackDevice.QuadEncoder);
-            leftMasterMotor.configEncoderCodesPerRev(quadTicksPerWheelRev);
-            rightMasterMotor.configEncoderCodesPerRev(quadTicksPerWheelRev);
+            leftMaster.setFeedbackDevice(FeedbackDevice.QuadEncoder);
+            rightMaster.setFeedbackDevice(FeedbackDevice.QuadEncoder);
+            leftMaster.configEncoderCodesPerRev(quadTicksPerWheelRev);
+            rightMaster.configEncoderCodesPerRev(quadTicksPerWheelRev);
 
             // STEP 5: Set PID values & closed loop error
-            leftMasterMotor.setPID(0.22, 0, 0);
-            rightMasterMotor.setPID(0.22, 0, 0);
+            leftMaster.setPID(DRIVE_SPEED_KP, 0, 0);
+            rightMaster.setPID(DRIVE_SPEED_KP, 0, 0);
+
+            // Motion profile gains go in their own slot; setting them
+            // selects that slot, so select the speed slot again after.
+            leftMaster.setPID(DRIVE_PROFILE_KP, 0, 0, DRIVE_PROFILE_KF, 0, 0,
+                    TalonProfileStreamer.PROFILE_SLOT);
+            rightMaster.setPID(DRIVE_PROFILE_KP, 0, 0, DRIVE_PROFILE_KF, 0, 0,
+                    TalonProfileStreamer.PROFILE_SLOT);
+            leftMaster.setProfile(0);
+            rightMaster.setProfile(0);
 
 
             // Add ramp up rate
-            leftMasterMotor.setVoltageRampRate(48.0); // max allowable voltage
-                                                      // change /sec: reach to
-                                                      // 12V after 1sec
-            rightMasterMotor.setVoltageRampRate(48.0);
+            leftMaster.setVoltageRampRate(DRIVE_VOLTAGE_RAMP_RATE); // max allowable voltage
+                                                                    // change /sec: reach to
+                                                                    // 12V after 1sec
+            rightMaster.setVoltageRampRate(DRIVE_VOLTAGE_RAMP_RATE);
 
             // Add SmartDashboard controls for testing
             // Add SmartDashboard live window
-            LiveWindow.addActuator("Drive Train", "Left Master 10", leftMasterMotor);
-            LiveWindow.addActuator("Drive Train", "Right Master 12", rightMasterMotor);
+            LiveWindow.addActuator("Drive Train", "Left Master 10", leftMaster);
+            LiveWindow.addActuator("Drive Train", "Right Master 12", rightMaster);
+
+            leftMasterMotor = leftMaster;
+            rightMasterMotor = rightMaster;
+            leftFollowerMotor = leftFollower;
+            rightFollowerMotor = rightFollower;
+            leftMasterEncoder = new TalonEncoder(leftMaster);
+            rightMasterEncoder = new TalonEncoder(rightMaster);
 
             System.out.println("ModuleManager RobotMap Initialized: DriveTrain!");
 
         }
 
+        timer.begin("gearshift");
         if (ModuleManager.GEARSHIFT_MODULE_ON) {
-            doubleSolenoid = new DoubleSolenoid(SOLENOID_CHANNEL_PRIMARY, SOLENOID_CHANNEL_SECONDARY);
+            doubleSolenoid = new PneumaticSolenoid(SOLENOID_CHANNEL_PRIMARY, SOLENOID_CHANNEL_SECONDARY);
         }
 
+        timer.begin("scaling");
+        if (ModuleManager.SCALING_MODULE_ON) {
+            scalingMotor = new CachingCANTalon(SCALING_MOTOR_ID);
+            scalingWinch = new CachingCANTalon(SCALING_WINCH_ID);
+            System.out.println("ModuleManager RobotMap Initialized: Scaling");
+        }
+
+        // Everything above this point is independent of the probe result.
+        timer.begin("probe wait");
+        try {
+            probe.get(CAN_PROBE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            System.out.println("RobotMap.init() CAN probe failed: " + e);
+        }
+        System.out.println("RobotMap.init() CAN devices:" + canDevices);
+        timer.addBackground("can probe", canProbe.getLastProbeSeconds());
+
+        timer.begin("intakelauncher");
         if (ModuleManager.INTAKELAUNCHER_MODULE_ON) {
             /*
              * here we look for signs that the launcher is present and disable
              * it if signs aren't there.
              */
-            boolean intakeFound = false;
-            for (int i = 0; i < canDevices.size(); i++) {
-                String dev = canDevices.get(i);
-                if (dev.equals("SRX 16") || dev.equals("SRX 14")) {
-                    intakeFound = true;
-                    break;
-                }
-            }
-            if (intakeFound) {
-                intakeLeftMotor = new CANTalon(INTAKE_LEFT_MOTOR_ID);
-                intakeRightMotor = new CANTalon(INTAKE_RIGHT_MOTOR_ID);
-                intakeLeftMotor.changeControlMode(TalonControlMode.PercentVbus);
-                intakeRightMotor.changeControlMode(TalonControlMode.PercentVbus);
-                intakeLeftMotor.reverseSensor(true);
-                aimMotor = new CANTalon(AIM_MOTOR_ID);
-                aimMotor.changeControlMode(TalonControlMode.Position);
-                boulderSwitch = new DigitalInput(BOULDER_SWITCH_PORT);
-                launcherServoLeft = new Servo(LAUNCHER_SERVO_LEFT_PORT);
-                launcherServoRight = new Servo(LAUNCHER_SERVO_RIGHT_PORT);
+            if (canDevices.isAnyPresent(DeviceClass.SRX, INTAKELAUNCHER_SRX_IDS)) {
+                CachingCANTalon intakeLeft = new CachingCANTalon(INTAKE_LEFT_MOTOR_ID);
+                CachingCANTalon intakeRight = new CachingCANTalon(INTAKE_RIGHT_MOTOR_ID);
+                intakeLeft.changeControlMode(TalonControlMode.PercentVbus);
+                intakeRight.changeControlMode(TalonControlMode.PercentVbus);
+                intakeLeft.reverseSensor(true);
+                CachingCANTalon aim = new CachingCANTalon(AIM_MOTOR_ID);
+                aim.changeControlMode(TalonControlMode.Position);
+                boulderSwitch = new DigitalInputSwitch(BOULDER_SWITCH_PORT);
+                launcherServoLeft = new PwmServo(LAUNCHER_SERVO_LEFT_PORT);
+                launcherServoRight = new PwmServo(LAUNCHER_SERVO_RIGHT_PORT);
 
                 // setup the motor
-                if (aimMotor.isSensorPresent(FeedbackDevice.AnalogPot) != null) {
-                    aimMotor.setFeedbackDevice(FeedbackDevice.AnalogPot);
-                    aimMotor.enableLimitSwitch(true, true);
-                    aimMotor.enableBrakeMode(true);
-                    aimMotor.reverseSensor(true);
-                    aimMotor.setAllowableClosedLoopErr(15);
+                if (aim.isSensorPresent(FeedbackDevice.AnalogPot) != null) {
+                    aim.setFeedbackDevice(FeedbackDevice.AnalogPot);
+                    aim.enableLimitSwitch(true, true);
+                    aim.enableBrakeMode(true);
+                    aim.reverseSensor(true);
+                    aim.setAllowableClosedLoopErr(15);
                     // aimMotor.setPID(AIMER_P, AIMER_I, AIMER_D); //TODO
                     // uncomment
                 }
-                LiveWindow.addActuator("IntakeLauncher", "AimMotor", aimMotor);
+                LiveWindow.addActuator("IntakeLauncher", "AimMotor", aim);
+                intakeLeftMotor = intakeLeft;
+                intakeRightMotor = intakeRight;
+                aimMotor = aim;
+                aimPotentiometer = new TalonPotentiometer(aim);
+                aimTopSwitch = new TalonLimitSwitch(aim, false);
+                aimBottomSwitch = new TalonLimitSwitch(aim, true);
                 System.out.println("ModuleManager RobotMap initialized: IntakeLauncher");
             } else {
                 ModuleManager.INTAKELAUNCHER_MODULE_ON = false;
-                System.out.println("RobotMap disabled IntakeLauncher (SRX 14 not found)");
+                System.out.println("RobotMap disabled IntakeLauncher (SRX 14/16 not found)");
             }
 
         }
 
+        timer.report("RobotMap");
+    }
+
+    // the sim launcher starts at its neutral height, in pot ticks
+    private static final double SIM_AIM_POTENTIOMETER_START = 719.0;
+
+    /**
+     * Hands out simulated devices for every module that is on. Nothing here
+     * touches the roboRIO HAL, so subsystems can be built and driven on a
+     * desktop; a simulation reaches the devices by casting, e.g.
+     * (SimMotorController) leftMasterMotor.
+     */
+    private static void initSimulation() {
+        PHOTONIC_CANNON = new SimLight();
+        if (ModuleManager.IMU_MODULE_ON) {
+            imu = new SimImu();
+        }
+        if (ModuleManager.PORTCULLIS_MODULE_ON) {
+            portcullisLeftMasterMotor = new SimMotorController(PORTCULLIS_MASTER_MOTOR);
+            portcullisRightFollowerMotor = new SimMotorController(PORTCULLIS_FOLLOWER_MOTOR);
+            portcullisSwitchTop = new SimSwitch();
+            portcullisSwitchBottom = new SimSwitch();
+        }
+        if (ModuleManager.DRIVE_MODULE_ON) {
+            leftMasterMotor = new SimMotorController(DRIVE_TRAIN_LEFT_MASTER);
+            rightMasterMotor = new SimMotorController(DRIVE_TRAIN_RIGHT_MASTER);
+            leftFollowerMotor = new SimMotorController(DRIVE_TRAIN_LEFT_FOLLOWER);
+            rightFollowerMotor = new SimMotorController(DRIVE_TRAIN_RIGHT_FOLLOWER);
+            leftMasterMotor.changeControlMode(CANTalon.TalonControlMode.Speed);
+            rightMasterMotor.changeControlMode(CANTalon.TalonControlMode.Speed);
+            leftFollowerMotor.changeControlMode(CANTalon.TalonControlMode.Follower);
+            rightFollowerMotor.changeControlMode(CANTalon.TalonControlMode.Follower);
+            leftMasterEncoder = new SimEncoder();
+            rightMasterEncoder = new SimEncoder();
+        }
+        if (ModuleManager.GEARSHIFT_MODULE_ON) {
+            doubleSolenoid = new SimSolenoid();
+        }
         if (ModuleManager.SCALING_MODULE_ON) {
-            scalingMotor = new CANTalon(SCALING_MOTOR_ID);
-            scalingWinch = new CANTalon(SCALING_WINCH_ID);
-            System.out.println("ModuleManager RobotMap Initialized: Scaling");
+            scalingMotor = new SimMotorController(SCALING_MOTOR_ID);
+            scalingWinch = new SimMotorController(SCALING_WINCH_ID);
         }
-        if (ModuleManager.IMU_MODULE_ON) {
-            imu = BNO055.getInstance(BNO055.opmode_t.OPERATION_MODE_IMUPLUS,
-                    BNO055.vector_type_t.VECTOR_EULER);
-            // imuLinAcc =
-            // BNO055.getInstance(BNO055.opmode_t.OPERATION_MODE_IMUPLUS,
-            // BNO055.vector_type_t.VECTOR_LINEARACCEL);
-            System.out.println("ModuleManager RobotMap Initialized: IMU");
+        if (ModuleManager.INTAKELAUNCHER_MODULE_ON) {
+            intakeLeftMotor = new SimMotorController(INTAKE_LEFT_MOTOR_ID);
+            intakeRightMotor = new SimMotorController(INTAKE_RIGHT_MOTOR_ID);
+            aimMotor = new SimMotorController(AIM_MOTOR_ID);
+            aimMotor.changeControlMode(TalonControlMode.Position);
+            aimPotentiometer = new SimPotentiometer(SIM_AIM_POTENTIOMETER_START);
+            aimTopSwitch = new SimSwitch();
+            aimBottomSwitch = new SimSwitch();
+            boulderSwitch = new SimSwitch();
+            launcherServoLeft = new SimServo();
+            launcherServoRight = new SimServo();
+        }
+        System.out.println("RobotMap initialized with simulated devices");
+    }
+
+    /**
+     * Refreshes canDevices in the background. Only call while disabled: the
+     * probe steals status frames from the Talon API while it runs.
+     */
+    public static synchronized void reprobeCanDevices() {
+        if (SIMULATION) {
+            return;
+        }
+        if (pendingProbe == null || pendingProbe.isDone()) {
+            pendingProbe = canProbe.probeAsync(canDevices);
+        }
+    }
+
+    /**
+     * Waits out a reprobe still in flight, so it isn't stealing status
+     * frames once we're enabled. Call when leaving disabled.
+     */
+    public static void finishCanProbe() {
+        CompletableFuture<CanDeviceRegistry> probe;
+        synchronized (RobotMap.class) {
+            probe = pendingProbe;
+        }
+        if (probe == null || probe.isDone()) {
+            return;
+        }
+        try {
+            probe.get(CAN_PROBE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            System.out.println("RobotMap CAN reprobe failed: " + e);
         }
     }
 }
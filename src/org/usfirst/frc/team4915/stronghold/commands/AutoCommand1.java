@@ -11,12 +11,18 @@ import org.usfirst.frc.team4915.stronghold.commands.IntakeLauncher.LauncherGoToT
 import org.usfirst.frc.team4915.stronghold.commands.vision.AutoAimControlCommand;
 import org.usfirst.frc.team4915.stronghold.commands.vision.AutoVisionDriveAndAim;
 import org.usfirst.frc.team4915.stronghold.subsystems.Autonomous;
+import org.usfirst.frc.team4915.stronghold.utils.DefenseCrossing;
 
+import edu.wpi.first.wpilibj.command.Command;
 import edu.wpi.first.wpilibj.command.CommandGroup;
 import edu.wpi.first.wpilibj.command.WaitCommand;
 
 public class AutoCommand1 extends CommandGroup {
 
+    // true: the drive master Talons execute the crossing from their motion
+    // profile buffers (AutoDriveStreamed) instead of the roboRIO
+    public static final boolean DRIVE_ON_TALON_PROFILE = false;
+
     private final Autonomous.Type type;
     private final Autonomous.Strat strat;
     private final Autonomous.Position position;
@@ -50,8 +56,12 @@ public class AutoCommand1 extends CommandGroup {
             addSequential(new PortcullisMoveUp());
         }
         }
-        //adding distances for total distance
-        double totalDistance = (getDistance(type) + getDistancePastDefense(position));
+        //adding distances for total distance; with a crossing signature
+        //this is only the fallback, and the drive stops
+        //getDistancePastDefense beyond where the IMU says we got across
+        double pastDefense = getDistancePastDefense(position);
+        double totalDistance = (getDistance(type) + pastDefense);
+        DefenseCrossing.Signature crossing = getCrossingSignature(type);
 
     	switch (strat) {
         case NONE:
@@ -59,11 +69,11 @@ public class AutoCommand1 extends CommandGroup {
 
         case DRIVE_ACROSS:
             System.out.println("Starting Move Straight");
-            addSequential(new AutoDriveStraight(totalDistance, getSpeed(type)));
+            addSequential(createDrive(totalDistance, getSpeed(type), crossing, pastDefense));
             break;
 
 		case DRIVE_SHOOT_VISION: // sets us up to use vision to shoot a high goal
-            addSequential(new AutoDriveStraight(totalDistance, getSpeed(type)));
+            addSequential(createDrive(totalDistance, getSpeed(type), crossing, pastDefense));
             addSequential(new AutoRotateDegrees( getTurnAngle(position)));
             addSequential(new AutoAimControlCommand(true, true));
             addSequential(new AutoVisionDriveAndAim());
@@ -71,7 +81,7 @@ public class AutoCommand1 extends CommandGroup {
             break;
 
 		case DRIVE_SHOOT_NO_VISION:
-		    addSequential(new AutoDriveStraight(totalDistance, getSpeed(type)));
+		    addSequential(createDrive(totalDistance, getSpeed(type), crossing, pastDefense));
 		    addSequential(new AutoRotateDegrees(getTurnAngle(position)));
 			if (ModuleManager.INTAKELAUNCHER_MODULE_ON) {
 				addParallel(new AimLauncherCommand());
@@ -82,6 +92,33 @@ public class AutoCommand1 extends CommandGroup {
     	}
 	}
     
+    // the Talons run their whole profile, so a streamed drive can't be cut
+    // short and ignores the crossing
+    private static Command createDrive(double distance, double speed,
+            DefenseCrossing.Signature crossing, double pastDefense) {
+        if (DRIVE_ON_TALON_PROFILE) {
+            return new AutoDriveStreamed(distance, speed);
+        }
+        return new AutoDriveStraight(distance, speed, crossing, pastDefense);
+    }
+
+    // what crossing each defense looks like to the IMU's pitch and roll;
+    // null where the robot stays level (under the low bar and portcullis)
+    // and only the distance table can tell
+    public static DefenseCrossing.Signature getCrossingSignature(Autonomous.Type type) {
+        switch (type) {
+            case MOAT:
+                return new DefenseCrossing.Signature(8, 3, 12);
+            case ROCK_WALL:
+                return new DefenseCrossing.Signature(8, 4, 12);
+            case ROUGH_TERRAIN:
+                // many small bumps; level has to outlast the gaps between them
+                return new DefenseCrossing.Signature(4, 3, 18);
+            default:
+                return null;
+        }
+    }
+
     public static boolean getPortcullisBeginPosition(Autonomous.Type type){
         boolean liftdown; //tells if portcullis needs to be down
         System.out.print(type);
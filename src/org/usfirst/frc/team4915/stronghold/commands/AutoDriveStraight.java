@@ -2,27 +2,109 @@ package org.usfirst.frc.team4915.stronghold.commands;
 
 import org.usfirst.frc.team4915.stronghold.Robot;
 import org.usfirst.frc.team4915.stronghold.RobotMap;
+import org.usfirst.frc.team4915.stronghold.subsystems.DriveTrain;
+import org.usfirst.frc.team4915.stronghold.utils.DefenseCrossing;
+import org.usfirst.frc.team4915.stronghold.utils.IMUSample;
+import org.usfirst.frc.team4915.stronghold.utils.MotionProfile;
+import org.usfirst.frc.team4915.stronghold.utils.Pose;
+import org.usfirst.frc.team4915.stronghold.utils.ProfileFollower;
+import org.usfirst.frc.team4915.stronghold.utils.Telemetry;
+import org.usfirst.frc.team4915.stronghold.utils.TractionMonitor;
+
+import edu.wpi.first.wpilibj.Timer;
+
+public class AutoDriveStraight extends ProfiledCommand {
+
+    // shared by every instance so the keys are only registered once
+    private static final Telemetry.StringChannel statusChannel =
+            Telemetry.getInstance().string("AutoDriveStraight: ", Telemetry.Priority.NORMAL);
+    private static final Telemetry.NumberChannel leftTicksChannel =
+            Telemetry.getInstance().number("AutoDriveStraight left ticks", Telemetry.Priority.LOW);
+    private static final Telemetry.NumberChannel rightTicksChannel =
+            Telemetry.getInstance().number("AutoDriveStraight right ticks", Telemetry.Priority.LOW);
+    private static final Telemetry.NumberChannel leftSpeedChannel =
+            Telemetry.getInstance().number("AutoDriveStraight left speed", Telemetry.Priority.LOW);
+    private static final Telemetry.NumberChannel rightSpeedChannel =
+            Telemetry.getInstance().number("AutoDriveStraight right speed", Telemetry.Priority.LOW);
+    private static final Telemetry.StringChannel controlModeChannel =
+            Telemetry.getInstance().string("AutoDriveStraight control mode", Telemetry.Priority.LOW);
+    private static final Telemetry.NumberChannel retryChannel =
+            Telemetry.getInstance().number("AutoDriveStraight retry count", Telemetry.Priority.LOW);
+    private static final Telemetry.NumberChannel distanceToGoChannel =
+            Telemetry.getInstance().number("AutoDriveStraight distance to go", Telemetry.Priority.LOW);
+    private static final Telemetry.NumberChannel profileErrorChannel =
+            Telemetry.getInstance().number("AutoDriveStraight profile error", Telemetry.Priority.LOW);
+    private static final Telemetry.StringChannel tractionChannel =
+            Telemetry.getInstance().string("AutoDriveStraight traction", Telemetry.Priority.NORMAL);
+    private static final Telemetry.NumberChannel yawRateErrorChannel =
+            Telemetry.getInstance().number("AutoDriveStraight yaw rate error", Telemetry.Priority.LOW);
+    private static final Telemetry.StringChannel crossingChannel =
+            Telemetry.getInstance().string("AutoDriveStraight crossing", Telemetry.Priority.NORMAL);
+
+    private static final double INCHES_PER_METER = 39.37;
 
-import edu.wpi.first.wpilibj.command.Command;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+    public double AUTOSPEED;      // ~3-4 ft/sec
 
-public class AutoDriveStraight extends Command {
+    private double desiredDistanceTicks;
+    private double desiredDistanceInches;
 
-    private StringBuilder _sb = new StringBuilder();
+    // AUTOSPEED caps the profile's velocity; built once, here, not in execute
+    private final MotionProfile profile;
+    private final ProfileFollower follower;
 
-    public double AUTOSPEED;      // ~3-4 ft/sec
+    // profile following, slip and stall reactions and the defense
+    // crossing; shared with AutoRoutineSim
+    private final AutoDriveStraightLogic logic;
+    private final AutoDriveStraightLogic.Sensors logicSensors = new AutoDriveStraightLogic.Sensors();
 
-    private double desiredDistanceTicks;
+    // distance travelled is measured by odometry relative to this pose
+    private final Pose startPose = new Pose();
+    private final Pose currentPose = new Pose();
 
     private boolean isInitialized;
 
     private int initializeRetryCount;
     private final static int MAX_RETRIES = 50;
 
+    private final IMUSample imuSample = new IMUSample();
+
+    // watches pitch and roll to stop distancePastDefense beyond the far
+    // side; null to just drive the distance
+    private final DefenseCrossing crossing;
+    private DefenseCrossing.State crossingState;
+
     public AutoDriveStraight(double desiredDistanceInches, double speed) {
+        this(desiredDistanceInches, speed, null, 0);
+    }
+
+    /**
+     * Drives over a defense and on to distancePastDefense beyond it.
+     * desiredDistanceInches should cover the same, padded: it's how far we
+     * go if the crossing is never seen.
+     *
+     * @param signature the defense's; null to drive desiredDistanceInches
+     */
+    public AutoDriveStraight(double desiredDistanceInches, double speed,
+            DefenseCrossing.Signature signature, double distancePastDefense) {
         this.AUTOSPEED = speed;
         requires(Robot.driveTrain);
+        this.desiredDistanceInches = desiredDistanceInches;
         desiredDistanceTicks = inchesToTicks(desiredDistanceInches);
+        profile = new MotionProfile(Math.abs(desiredDistanceInches),
+                Math.max(Math.abs(speed), 1) * DriveTrain.INCHES_PER_SEC_PER_SPEED,
+                DriveTrain.PROFILE_MAX_ACCELERATION, DriveTrain.PROFILE_MAX_JERK,
+                DriveTrain.PROFILE_PERIOD_SECONDS);
+        logic = new AutoDriveStraightLogic(profile, speed, RobotMap.driveTrackWidthInInches,
+                signature, distancePastDefense);
+        follower = logic.getFollower();
+        crossing = logic.getCrossing();
+        logic.getTraction().addListener(new TractionMonitor.Listener() {
+
+            public void tractionChanged(TractionMonitor.Event event) {
+                System.out.println("AutoDriveStraight: " + event);
+                tractionChannel.set(event.condition.name());
+            }
+        });
     }
 
     private int inchesToTicks(double inches) {
@@ -30,73 +112,129 @@ public class AutoDriveStraight extends Command {
     }
 
     // Called just before this Command runs the first time
-    protected void initialize() {
+    protected void profiledInitialize() {
+        logic.reset();
+        tractionChannel.set(logic.getTraction().getCondition().name());
+        if (crossing != null) {
+            crossingState = crossing.getState();
+            crossingChannel.set(crossingState.name());
+        }
         Robot.driveTrain.init();
         Robot.intakeLauncher.aimMotor.disableControl();
+        Robot.odometry.getPose(startPose);
     }
 
     // Called repeatedly when this Command is scheduled to run
-    protected void execute() {
-    	updateSB();
+    protected void profiledExecute() {
+    	updateTelemetry();
 
+    	DriveTrain.Sensors sensors = Robot.driveTrain.getSensors();
     	if (!isInitialized){
-    		isInitialized = (RobotMap.leftMasterMotor.getEncPosition() == 0 &&
-                             RobotMap.rightMasterMotor.getEncPosition() == 0);
+    		isInitialized = (sensors.leftTicks == 0 && sensors.rightTicks == 0);
     		initializeRetryCount++;
-    		
+    		if (isInitialized) {
+    		    logic.start();
+    		    Robot.driveTrain.startHeadingHold();
+    		}
+    		statusChannel.set("waiting for encoder reset");
     	} else if (desiredDistanceTicks != 0) {
-            Robot.driveTrain.driveStraight(AUTOSPEED); //speed can be positive or negative
+            double travelled = getDistanceTravelled();
+            readLogicSensors(sensors, travelled);
+            // the logic's speed is signed like AUTOSPEED
+            Robot.driveTrain.driveStraight(logic.step(logicSensors));
+            yawRateErrorChannel.set(logic.getTraction().getYawRateError());
+            reportCrossing(travelled);
+            if (logic.isBackingOff(logicSensors.time)) {
+                // stalled: the motors rest; the profile waits for us
+                statusChannel.set("stalled, backing off");
+                return;
+            }
+            statusChannel.set(follower.isProfileDone() ? "settling" : "driving");
+            distanceToGoChannel.set(follower.getDistanceToGo(travelled));
+            profileErrorChannel.set(follower.getExpectedDistance() - Math.abs(travelled));
         } else {
-            SmartDashboard.putString("AutoDriveStraight: ", "No Ticks");
+            statusChannel.set("No Ticks");
         }
     }
 
-    private void updateSB() {
-    	_sb.setLength(0);
-        _sb.append("Left motor ticks: ");
-        _sb.append(RobotMap.leftMasterMotor.getEncPosition());
-        _sb.append(", control mode: ");
-        _sb.append(RobotMap.leftMasterMotor.getControlMode());
-        _sb.append(", speed: ");
-        _sb.append(RobotMap.leftMasterMotor.getSpeed());
-
-        _sb.append(", Right motor ticks: ");
-        _sb.append(RobotMap.rightMasterMotor.getEncPosition());
-        _sb.append(", control mode: ");
-        _sb.append(RobotMap.rightMasterMotor.getControlMode());
-        _sb.append(", speed: ");
-        _sb.append(RobotMap.rightMasterMotor.getSpeed());
-
-        _sb.append(", initialized? " + isInitialized);
-        _sb.append(", retry count " + initializeRetryCount);
-
-        SmartDashboard.putString("AutoDriveStraight: ", _sb.toString());
+    private void readLogicSensors(DriveTrain.Sensors sensors, double travelled) {
+        RobotMap.imu.getSnapshot(imuSample);
+        AutoDriveStraightLogic.Sensors in = logicSensors;
+        in.time = Timer.getFPGATimestamp();
+        in.travelled = travelled;
+        // the right master is reversed
+        in.leftVelocity = sensors.leftSpeed * DriveTrain.INCHES_PER_SEC_PER_RPM;
+        in.rightVelocity = -sensors.rightSpeed * DriveTrain.INCHES_PER_SEC_PER_RPM;
+        in.leftCurrent = RobotMap.leftMasterMotor.getOutputCurrent();
+        in.rightCurrent = RobotMap.rightMasterMotor.getOutputCurrent();
+        in.heading = imuSample.heading[0];
+        in.accel = Math.hypot(imuSample.accel[0], imuSample.accel[1]) * INCHES_PER_METER;
+        // euler angles are heading, roll, pitch
+        in.pitch = imuSample.heading[2];
+        in.roll = imuSample.heading[1];
     }
 
+    private void reportCrossing(double travelled) {
+        if (crossing == null || crossing.getState() == crossingState) {
+            return;
+        }
+        crossingState = crossing.getState();
+        crossingChannel.set(crossingState.name());
+        System.out.println(String.format("AutoDriveStraight: %s at %.1f in", crossingState, Math.abs(travelled)));
+        if (crossing.isCrossed()) {
+            System.out.println(String.format("AutoDriveStraight: stopping at %.1f in instead of %.1f",
+                    logic.getStopDistance(), Math.abs(desiredDistanceInches)));
+        }
+    }
+
+    private void updateTelemetry() {
+    	DriveTrain.Sensors sensors = Robot.driveTrain.getSensors();
+        leftTicksChannel.set(sensors.leftTicks);
+        rightTicksChannel.set(sensors.rightTicks);
+        leftSpeedChannel.set(sensors.leftSpeed);
+        rightSpeedChannel.set(sensors.rightSpeed);
+        controlModeChannel.set(RobotMap.leftMasterMotor.getControlMode().name());
+        retryChannel.set(initializeRetryCount);
+    }
 
     // Make this return true when this Command no longer needs to run execute()
-    // We are finished when either encoder has moved the requested autonomous distance (in ticks)
-    // TODO: It may be wise to set a timer to time out in case our encoders are broken or our drivetrain is stuck?
-    //       Maybe look for a few seconds of time in which no encoder changes happen? Then return true to stop us...
-    protected boolean isFinished() {
+    // We are finished once the profile has come to rest within tolerance of
+    // the requested distance (or has given up closing the last gap), or
+    // when we've stalled too often. Broken encoders look like a stall too:
+    // current without speed.
+    protected boolean profiledIsFinished() {
     	if(!isInitialized) {
     		if(initializeRetryCount >= MAX_RETRIES) {
-    			SmartDashboard.putString("AutoDriveStraight: ", "INITIALIZE FAILED, MAXED OUT RETRIES");
+    			statusChannel.set("INITIALIZE FAILED, MAXED OUT RETRIES");
     			System.out.println("AutoDriveStraight: INITIALIZE FAILED, MAXED OUT RETRIES");
     			return true;
     		}
     		return false;
-    	} else if ((Math.abs(RobotMap.leftMasterMotor.getEncPosition()) >= desiredDistanceTicks) ||
-                (Math.abs(RobotMap.rightMasterMotor.getEncPosition()) >= desiredDistanceTicks)) {
-            return true;
-        }
-        else {
-            return false;
-        }
+    	} else if (desiredDistanceTicks == 0) {
+    	    return true;
+    	} else if (logic.isStalledOut()) {
+    	    statusChannel.set("STALLED, GAVE UP");
+    	    System.out.println("AutoDriveStraight: stalled " + logic.getStallCount() + " times, giving up");
+    	    return true;
+    	} else {
+    	    return logic.isFinished(getDistanceTravelled());
+    	}
+    }
+
+    // path length since initialize, from odometry (which tolerates the
+    // encoder reset in driveTrain.init() and averages both sides)
+    private double getDistanceTravelled() {
+        Robot.odometry.getPose(currentPose);
+        return currentPose.distance - startPose.distance;
     }
 
     // Called once after isFinished returns true
-    protected void end() {
+    protected void profiledEnd() {
+        System.out.println(logic.getTraction());
+        if (crossing != null) {
+            System.out.println(crossing);
+        }
+        Robot.driveTrain.stopHeadingHold();
         Robot.driveTrain.stop();
     }
 
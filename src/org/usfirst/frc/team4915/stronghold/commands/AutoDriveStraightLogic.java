@@ -0,0 +1,184 @@
+package org.usfirst.frc.team4915.stronghold.commands;
+
+import org.usfirst.frc.team4915.stronghold.subsystems.DriveTrain;
+import org.usfirst.frc.team4915.stronghold.utils.DefenseCrossing;
+import org.usfirst.frc.team4915.stronghold.utils.MotionProfile;
+import org.usfirst.frc.team4915.stronghold.utils.ProfileFollower;
+import org.usfirst.frc.team4915.stronghold.utils.TractionMonitor;
+
+/**
+ * AutoDriveStraightLogic holds AutoDriveStraight's per-cycle decisions:
+ * following the profile, easing off or backing off when TractionMonitor
+ * reports a slip or stall, and cutting the move short once DefenseCrossing
+ * sees the far side. It reads only the Sensors it is handed, so
+ * AutoRoutineSim drives a DrivetrainModel with the same code the robot
+ * runs. AutoDriveStraight owns one and turns its speeds into driveStraight
+ * calls.
+ */
+public class AutoDriveStraightLogic {
+
+    // reactions to TractionMonitor events
+    public static final double SLIP_POWER_SCALE = 0.6;     // while slipping
+    public static final double STALL_BACKOFF_SECONDS = 0.5; // power off, then retry
+    public static final int MAX_STALL_RETRIES = 2;          // then give up
+
+    /** One cycle's readings; distances in inches, forward positive. */
+    public static class Sensors {
+
+        public double time;
+        public double travelled;     // since the move started
+        public double leftVelocity;  // inches/sec
+        public double rightVelocity;
+        public double leftCurrent;   // amps
+        public double rightCurrent;
+        public double heading;       // degrees, as the IMU reports it
+        public double accel;         // horizontal, inches/sec^2
+        public double pitch;         // degrees
+        public double roll;
+    }
+
+    private final ProfileFollower m_follower;
+    private final TractionMonitor m_traction;
+    private final TractionMonitor.Inputs m_tractionInputs = new TractionMonitor.Inputs();
+    private final DefenseCrossing m_crossing; // null to just drive the distance
+    private final double m_distancePastDefense;
+
+    private double m_powerScale = 1;
+    private double m_backoffUntil;
+    private int m_stallCount;
+    private boolean m_stalledOut;
+
+    /**
+     * @param speed signed like AutoDriveStraight's AUTOSPEED
+     * @param signature the defense's; null to drive the whole profile
+     * @param distancePastDefense how far to go once the crossing is seen
+     */
+    public AutoDriveStraightLogic(MotionProfile profile, double speed, double trackWidth,
+            DefenseCrossing.Signature signature, double distancePastDefense) {
+        m_follower = new ProfileFollower(profile, speed);
+        m_traction = new TractionMonitor(trackWidth);
+        m_crossing = signature != null ? new DefenseCrossing(signature) : null;
+        m_distancePastDefense = distancePastDefense;
+        m_traction.addListener(new TractionMonitor.Listener() {
+
+            public void tractionChanged(TractionMonitor.Event event) {
+                onTraction(event);
+            }
+        });
+    }
+
+    /** Clears the traction reactions and crossing for a new move. */
+    public void reset() {
+        m_traction.reset();
+        m_powerScale = 1;
+        m_backoffUntil = 0;
+        m_stallCount = 0;
+        m_stalledOut = false;
+        if (m_crossing != null) {
+            m_crossing.reset();
+        }
+    }
+
+    /** Starts the profile; call once the encoders read zero. */
+    public void start() {
+        m_follower.start();
+    }
+
+    /**
+     * @return the speed to driveStraight at, signed like AUTOSPEED; 0
+     *         while backing off a stall
+     */
+    public double step(Sensors in) {
+        stepTraction(in);
+        stepCrossing(in);
+        if (isBackingOff(in.time)) {
+            // rest the motors; the profile waits for us
+            return 0;
+        }
+        return m_powerScale * m_follower.step(in.travelled) / DriveTrain.INCHES_PER_SEC_PER_SPEED;
+    }
+
+    private void stepTraction(Sensors in) {
+        TractionMonitor.Inputs t = m_tractionInputs;
+        t.time = in.time;
+        t.leftVelocity = in.leftVelocity;
+        t.rightVelocity = in.rightVelocity;
+        t.leftCurrent = in.leftCurrent;
+        t.rightCurrent = in.rightCurrent;
+        t.heading = in.heading;
+        t.accel = in.accel;
+        m_traction.step(t);
+    }
+
+    // Once we're level on the far side we know where the defense ended,
+    // so stop distancePastDefense from there instead of at the padded
+    // distance.
+    private void stepCrossing(Sensors in) {
+        if (m_crossing == null || m_crossing.isCrossed()) {
+            return;
+        }
+        if (m_crossing.step(Math.abs(in.travelled), in.pitch, in.roll) == DefenseCrossing.State.CROSSED) {
+            m_follower.setDistance(getStopDistance());
+        }
+    }
+
+    // Slipping: ease off so the wheels can bite. Stalled: rest, then try
+    // again, and give up rather than push into a defense all autonomous.
+    private void onTraction(TractionMonitor.Event event) {
+        switch (event.condition) {
+            case SLIP:
+                m_powerScale = SLIP_POWER_SCALE;
+                break;
+            case STALL:
+                m_stallCount++;
+                if (m_stallCount > MAX_STALL_RETRIES) {
+                    m_stalledOut = true;
+                } else {
+                    m_backoffUntil = event.time + STALL_BACKOFF_SECONDS;
+                }
+                break;
+            default:
+                m_powerScale = 1;
+                break;
+        }
+    }
+
+    public boolean isBackingOff(double time) {
+        return time < m_backoffUntil;
+    }
+
+    /** @return true once the profile has settled at its distance, or we gave up */
+    public boolean isFinished(double travelled) {
+        return m_stalledOut || m_follower.isFinished(travelled);
+    }
+
+    public boolean isStalledOut() {
+        return m_stalledOut;
+    }
+
+    public int getStallCount() {
+        return m_stallCount;
+    }
+
+    /** @return distancePastDefense beyond the crossing; NaN until it's seen */
+    public double getStopDistance() {
+        if (m_crossing == null || !m_crossing.isCrossed()) {
+            return Double.NaN;
+        }
+        return m_crossing.getCrossedAt() + m_distancePastDefense;
+    }
+
+    public ProfileFollower getFollower() {
+        return m_follower;
+    }
+
+    /** For listeners that report events; the reactions are already wired. */
+    public TractionMonitor getTraction() {
+        return m_traction;
+    }
+
+    /** @return the crossing detector, or null without a signature */
+    public DefenseCrossing getCrossing() {
+        return m_crossing;
+    }
+}
@@ -0,0 +1,118 @@
+package org.usfirst.frc.team4915.stronghold.commands;
+
+import org.usfirst.frc.team4915.stronghold.Robot;
+import org.usfirst.frc.team4915.stronghold.subsystems.DriveTrain;
+import org.usfirst.frc.team4915.stronghold.utils.MotionProfile;
+import org.usfirst.frc.team4915.stronghold.utils.Pose;
+import org.usfirst.frc.team4915.stronghold.utils.TalonProfileStreamer;
+import org.usfirst.frc.team4915.stronghold.utils.Telemetry;
+
+import edu.wpi.first.wpilibj.CANTalon.TrajectoryPoint;
+
+/**
+ * AutoDriveStreamed drives the same profile as AutoDriveStraight, but the
+ * master Talons execute it from their motion profile buffers at 10ms per
+ * point, fed by DriveTrain's TalonProfileStreamer. The roboRIO only starts
+ * it and watches; a slow main loop no longer delays the drive loop.
+ *
+ * There's no heading hold: the Talons can't see the IMU.
+ */
+public class AutoDriveStreamed extends ProfiledCommand {
+
+    private static final Telemetry.StringChannel statusChannel =
+            Telemetry.getInstance().string("AutoDriveStreamed: ", Telemetry.Priority.NORMAL);
+    private static final Telemetry.NumberChannel underrunChannel =
+            Telemetry.getInstance().number("Drive profile underruns", Telemetry.Priority.NORMAL);
+    private static final Telemetry.NumberChannel overrunChannel =
+            Telemetry.getInstance().number("Drive profile overruns", Telemetry.Priority.NORMAL);
+    private static final Telemetry.NumberChannel distanceToGoChannel =
+            Telemetry.getInstance().number("AutoDriveStreamed distance to go", Telemetry.Priority.LOW);
+
+    // time allowed past the end of the profile
+    private static final double SETTLE_SECONDS = 1.0;
+    private final static int MAX_RETRIES = 50;
+
+    private final double desiredDistanceInches;
+    private final double direction;
+    // built once, here; right master is reversed
+    private final TrajectoryPoint[] leftPoints;
+    private final TrajectoryPoint[] rightPoints;
+
+    private final Pose startPose = new Pose();
+    private final Pose currentPose = new Pose();
+
+    private boolean isInitialized;
+    private int initializeRetryCount;
+
+    public AutoDriveStreamed(double desiredDistanceInches, double speed) {
+        requires(Robot.driveTrain);
+        this.desiredDistanceInches = Math.abs(desiredDistanceInches);
+        this.direction = speed < 0 ? -1 : 1;
+        MotionProfile profile = new MotionProfile(this.desiredDistanceInches,
+                Math.max(Math.abs(speed), 1) * DriveTrain.INCHES_PER_SEC_PER_SPEED,
+                DriveTrain.PROFILE_MAX_ACCELERATION, DriveTrain.PROFILE_MAX_JERK,
+                TalonProfileStreamer.POINT_DURATION_MS / 1000.0);
+        leftPoints = TalonProfileStreamer.toTrajectory(profile, direction);
+        rightPoints = TalonProfileStreamer.toTrajectory(profile, -direction);
+        setTimeout(profile.getDurationSeconds() + SETTLE_SECONDS);
+    }
+
+    protected void profiledInitialize() {
+        isInitialized = false;
+        initializeRetryCount = 0;
+        Robot.driveTrain.init();
+        Robot.intakeLauncher.aimMotor.disableControl();
+        Robot.odometry.getPose(startPose);
+    }
+
+    protected void profiledExecute() {
+        DriveTrain.Sensors sensors = Robot.driveTrain.getSensors();
+        if (!isInitialized) {
+            // the trajectory starts from zero, so wait for the encoder reset
+            isInitialized = (sensors.leftTicks == 0 && sensors.rightTicks == 0);
+            initializeRetryCount++;
+            statusChannel.set("waiting for encoder reset");
+            if (isInitialized) {
+                Robot.driveTrain.startTalonProfile(leftPoints, rightPoints);
+            }
+            return;
+        }
+        TalonProfileStreamer streamer = Robot.driveTrain.getProfileStreamer();
+        statusChannel.set(streamer.getState().name());
+        underrunChannel.set(streamer.getUnderrunCount());
+        overrunChannel.set(streamer.getOverrunCount());
+        Robot.odometry.getPose(currentPose);
+        distanceToGoChannel.set(desiredDistanceInches
+                - direction * (currentPose.distance - startPose.distance));
+    }
+
+    protected boolean profiledIsFinished() {
+        if (!isInitialized) {
+            if (initializeRetryCount >= MAX_RETRIES) {
+                statusChannel.set("INITIALIZE FAILED, MAXED OUT RETRIES");
+                System.out.println("AutoDriveStreamed: INITIALIZE FAILED, MAXED OUT RETRIES");
+                return true;
+            }
+            return false;
+        }
+        if (isTimedOut()) {
+            System.out.println("AutoDriveStreamed: timed out in "
+                    + Robot.driveTrain.getProfileStreamer().getState());
+            return true;
+        }
+        return Robot.driveTrain.isTalonProfileFinished();
+    }
+
+    protected void profiledEnd() {
+        TalonProfileStreamer streamer = Robot.driveTrain.getProfileStreamer();
+        System.out.println("AutoDriveStreamed: " + streamer.getPushedCount() + " points, "
+                + streamer.getUnderrunCount() + " underruns, "
+                + streamer.getOverrunCount() + " overruns");
+        Robot.driveTrain.stopTalonProfile();
+        Robot.driveTrain.stop();
+    }
+
+    protected void interrupted() {
+        end();
+    }
+}
@@ -1,12 +1,12 @@
 package org.usfirst.frc.team4915.stronghold.commands.DriveTrain;
 
 import org.usfirst.frc.team4915.stronghold.Robot;
+import org.usfirst.frc.team4915.stronghold.commands.ProfiledCommand;
 import org.usfirst.frc.team4915.stronghold.vision.robot.VisionState;
 
 import edu.wpi.first.wpilibj.Joystick;
-import edu.wpi.first.wpilibj.command.Command;
 
-public class ArcadeDrive extends Command {
+public class ArcadeDrive extends ProfiledCommand {
 
     private double scaledThrottle;
     private double joystickX;
@@ -21,13 +21,13 @@ public class ArcadeDrive extends Command {
 
     // Called just before this Command runs the first time
     @Override
-    protected void initialize() {
+    protected void profiledInitialize() {
         Robot.driveTrain.init();
     }
 
     // Called repeatedly when this Command is scheduled to run
     @Override
-    protected void execute() {
+    protected void profiledExecute() {
         Joystick joystickDrive= Robot.oi.getJoystickDrive();
         this.joystickX = joystickDrive.getAxis(Joystick.AxisType.kX) * Robot.driveTrain.turnMultiplier;
         this.joystickY = joystickDrive.getAxis(Joystick.AxisType.kY) *-1;
@@ -42,12 +42,19 @@ public class ArcadeDrive extends Command {
             this.scaledThrottle = scaleThrottle(joystickDrive.getAxis(Joystick.AxisType.kThrottle));
             if ((Math.abs(this.joystickX) < 0.075) &&
                     (Math.abs(this.joystickY) < 0.075)) {
+                Robot.driveTrain.stopHeadingHold();
                 Robot.driveTrain.stop();
             }
+            else if (Robot.driveTrain.headingHoldInTeleop && Math.abs(this.joystickX) < 0.075) {
+                // not steering: keep going the way we're pointed
+                Robot.driveTrain.arcadeDriveStraight(joystickY * scaledThrottle);
+            }
             else {
+                Robot.driveTrain.stopHeadingHold();
                 Robot.driveTrain.arcadeDrive(joystickY * scaledThrottle, joystickX * scaledThrottle);
             }
         } else {
+            Robot.driveTrain.stopHeadingHold();
             Robot.driveTrain.trackVision();
         }
     }
@@ -84,13 +91,14 @@ public class ArcadeDrive extends Command {
 
     // Make this return true when this Command no longer needs to run execute()
     @Override
-    protected boolean isFinished() {
+    protected boolean profiledIsFinished() {
         return false;
     }
 
     // Called once after isFinished returns true
     @Override
-    protected void end() {
+    protected void profiledEnd() {
+        Robot.driveTrain.stopHeadingHold();
         Robot.driveTrain.stop();
     }
 
@@ -2,17 +2,17 @@ package org.usfirst.frc.team4915.stronghold.commands.DriveTrain;
 
 import org.usfirst.frc.team4915.stronghold.Robot;
 import org.usfirst.frc.team4915.stronghold.RobotMap;
-import org.usfirst.frc.team4915.stronghold.utils.BNO055;
-import edu.wpi.first.wpilibj.command.Command;
+import org.usfirst.frc.team4915.stronghold.commands.ProfiledCommand;
+import org.usfirst.frc.team4915.stronghold.hal.Imu;
 
-public class AutoRotateDegrees extends Command {
+public class AutoRotateDegrees extends ProfiledCommand {
 
     public final static double AUTOSPEED = 30.0;
 
     private double startingGyroValue;
     private boolean goLeft;
     private double robotAngle;
-    private BNO055 imu = RobotMap.imu;
+    private Imu imu = RobotMap.imu;
 
     // autonomous rotate command
 
@@ -23,28 +23,29 @@ public class AutoRotateDegrees extends Command {
     }
 
     @Override
-    protected void initialize() {
+    protected void profiledInitialize() {
         this.startingGyroValue = imu.getNormalizedHeading();
         Robot.driveTrain.init();
         Robot.driveTrain.startAutoTurn(this.robotAngle);
     }
 
     @Override
-    public void execute() {
+    protected void profiledExecute() {
         // we're under pid control... so nothing to do here..
-        //  drivetrain's m_turnPID invokes turn periodically.
+        //  drivetrain's m_turn steps and invokes turn on every IMU sample.
         //  also: Robot.periodicStatusUpdate updates IMU
     }
 
     @Override
-    protected boolean isFinished() {
+    protected boolean profiledIsFinished() {
     	// TODO: will this logic work if robotAngle is negative?
     	return Robot.driveTrain.isAutoTurnFinished();
     }
 
     @Override
-    protected void end() {
+    protected void profiledEnd() {
         Robot.driveTrain.endAutoTurn();
+        System.out.println(Robot.driveTrain.getTurnStats());
     }
 
     @Override
@@ -0,0 +1,133 @@
+package org.usfirst.frc.team4915.stronghold.commands.DriveTrain;
+
+import org.usfirst.frc.team4915.stronghold.Robot;
+import org.usfirst.frc.team4915.stronghold.commands.ProfiledCommand;
+import org.usfirst.frc.team4915.stronghold.utils.BNO055;
+import org.usfirst.frc.team4915.stronghold.utils.RelayTuner;
+import org.usfirst.frc.team4915.stronghold.utils.TurnGains;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * AutoTuneTurn re-tunes the auto-turn PID where the robot stands, for when
+ * battery, carpet or gearing have moved it away from the hand-tuned gains.
+ *
+ * It first rocks the robot around its current heading with a RelayTuner
+ * until it has measured the ultimate gain and period, then applies the
+ * gains they give and turns VERIFY_DEGREES with them. If that turn
+ * settles, the gains are saved to TurnGains.FILE for DriveTrain to load
+ * from then on, and the predicted and measured settle times are reported.
+ * Otherwise the previous gains are put back.
+ *
+ * Needs room to turn; it's started from the SmartDashboard.
+ */
+public class AutoTuneTurn extends ProfiledCommand {
+
+    public static final double VERIFY_DEGREES = 45.0;
+    public static final double VERIFY_TIMEOUT_SECONDS = 5.0;
+
+    private enum State {
+        RELAY,  // measuring Ku and Tu
+        VERIFY, // turning with the new gains
+        DONE
+    }
+
+    private State m_state;
+    private RelayTuner m_tuner;
+    private TurnGains m_previous;
+    private TurnGains m_tuned;
+    private double m_predicted;
+    private double m_verifyStart;
+
+    public AutoTuneTurn() {
+        requires(Robot.driveTrain);
+    }
+
+    @Override
+    protected void profiledInitialize() {
+        Robot.driveTrain.init();
+        m_previous = Robot.driveTrain.getTurnGains();
+        m_tuner = new RelayTuner(Robot.driveTrain.getCurrentHeading());
+        Robot.driveTrain.startRelayTest(m_tuner);
+        m_state = State.RELAY;
+        System.out.println("AutoTuneTurn: relay experiment around " + m_tuner.getSetpoint()
+                + ", current gains " + m_previous);
+    }
+
+    @Override
+    protected void profiledExecute() {
+        switch (m_state) {
+            case RELAY:
+                if (m_tuner.isFinished()) {
+                    Robot.driveTrain.stopRelayTest();
+                    System.out.println(m_tuner);
+                    if (m_tuner.isDone()) {
+                        startVerify();
+                    } else {
+                        report("failed, " + m_tuner.getFailure() + "; kept " + m_previous);
+                        m_state = State.DONE;
+                    }
+                }
+                break;
+            case VERIFY:
+                if (Robot.driveTrain.isAutoTurnFinished()) {
+                    Robot.driveTrain.endAutoTurn();
+                    finishVerify();
+                    m_state = State.DONE;
+                } else if (timeSinceInitialized() - m_verifyStart > VERIFY_TIMEOUT_SECONDS) {
+                    Robot.driveTrain.endAutoTurn();
+                    Robot.driveTrain.setTurnGains(m_previous);
+                    report(m_tuned + " didn't settle a " + VERIFY_DEGREES + " degree turn; kept "
+                            + m_previous);
+                    m_state = State.DONE;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void startVerify() {
+        m_tuned = m_tuner.computeGains(m_previous.Kf);
+        m_predicted = m_tuner.predictSettleSeconds(m_tuned, VERIFY_DEGREES,
+                Robot.driveTrain.getTurnPeriodSeconds());
+        Robot.driveTrain.setTurnGains(m_tuned);
+        Robot.driveTrain.startAutoTurn(BNO055.normalizeHeading(m_tuner.getSetpoint() + VERIFY_DEGREES));
+        m_verifyStart = timeSinceInitialized();
+        m_state = State.VERIFY;
+    }
+
+    private void finishVerify() {
+        double measured = Robot.driveTrain.getTurnStats().getLastSettleMillis() / 1000;
+        String result = String.format("Ku %.4f, Tu %.3fs: %s; %.0f degree turn settled in %.2fs,"
+                + " predicted %.2fs", m_tuner.getUltimateGain(), m_tuner.getUltimatePeriod(),
+                m_tuned, VERIFY_DEGREES, measured, m_predicted);
+        m_tuned.save(TurnGains.FILE, "AutoTuneTurn: " + result);
+        report(result);
+    }
+
+    private void report(String result) {
+        System.out.println("AutoTuneTurn: " + result);
+        SmartDashboard.putString("Turn auto-tune", result);
+    }
+
+    @Override
+    protected boolean profiledIsFinished() {
+        return m_state == State.DONE;
+    }
+
+    @Override
+    protected void profiledEnd() {
+        Robot.driveTrain.stopRelayTest();
+        if (m_state == State.VERIFY) {
+            // interrupted before the new gains proved themselves
+            Robot.driveTrain.endAutoTurn();
+            Robot.driveTrain.setTurnGains(m_previous);
+        }
+    }
+
+    @Override
+    protected void interrupted() {
+        end();
+    }
+}
@@ -0,0 +1,87 @@
+package org.usfirst.frc.team4915.stronghold.commands.DriveTrain;
+
+import org.usfirst.frc.team4915.stronghold.Robot;
+import org.usfirst.frc.team4915.stronghold.RobotMap;
+import org.usfirst.frc.team4915.stronghold.commands.ProfiledCommand;
+import org.usfirst.frc.team4915.stronghold.subsystems.DriveTrain;
+import org.usfirst.frc.team4915.stronghold.utils.DriveCharacterization;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * CharacterizeDrive runs one DriveCharacterization test on the drive
+ * masters, open loop, logging each side's applied voltage, speed and
+ * acceleration every cycle. The log is saved when the test ends; fit the
+ * four of them with FeedforwardFit.
+ *
+ * Needs MAX_DISTANCE of clear floor in the direction of travel; it's
+ * started from the SmartDashboard.
+ */
+public class CharacterizeDrive extends ProfiledCommand {
+
+    private static final double NOMINAL_BUS_VOLTS = 12.0;
+
+    private final DriveCharacterization.Test m_test;
+    private final boolean m_forward;
+    private DriveCharacterization m_log;
+    private boolean m_encodersZeroed;
+
+    public CharacterizeDrive(DriveCharacterization.Test test, boolean forward) {
+        requires(Robot.driveTrain);
+        m_test = test;
+        m_forward = forward;
+    }
+
+    @Override
+    protected void profiledInitialize() {
+        Robot.driveTrain.init();
+        m_log = new DriveCharacterization(m_test, m_forward);
+        m_encodersZeroed = false;
+        Robot.driveTrain.startOpenLoop();
+        System.out.println("CharacterizeDrive: " + m_log.getName());
+    }
+
+    @Override
+    protected void profiledExecute() {
+        DriveTrain.Sensors s = Robot.driveTrain.getSensors();
+        if (!m_encodersZeroed) {
+            // init()'s encoder reset lands a cycle or two later; the test
+            // (and its clock) starts once it has
+            m_encodersZeroed = (s.leftTicks == 0 && s.rightTicks == 0);
+            if (!m_encodersZeroed) {
+                return;
+            }
+        }
+
+        // the voltage from last cycle's command is what moved us since
+        double now = Timer.getFPGATimestamp();
+        m_log.record(now,
+                RobotMap.leftMasterMotor.getOutputVoltage(), s.leftSpeed * DriveTrain.INCHES_PER_SEC_PER_RPM,
+                RobotMap.rightMasterMotor.getOutputVoltage(), s.rightSpeed * DriveTrain.INCHES_PER_SEC_PER_RPM);
+
+        // percent of a nominal bus; the fit uses the measured voltage anyway
+        double fraction = Math.min(1, m_log.getVolts(now) / NOMINAL_BUS_VOLTS);
+        Robot.driveTrain.setOpenLoop(m_log.getLeftSign() * fraction, m_log.getRightSign() * fraction);
+    }
+
+    @Override
+    protected boolean profiledIsFinished() {
+        if (!m_encodersZeroed) {
+            return false;
+        }
+        DriveTrain.Sensors s = Robot.driveTrain.getSensors();
+        double distance = Math.max(Math.abs(s.leftTicks), Math.abs(s.rightTicks)) / RobotMap.quadTicksPerInch;
+        return m_log.isFinished(Timer.getFPGATimestamp(), distance);
+    }
+
+    @Override
+    protected void profiledEnd() {
+        Robot.driveTrain.stopOpenLoop();
+        m_log.save();
+    }
+
+    @Override
+    protected void interrupted() {
+        end();
+    }
+}
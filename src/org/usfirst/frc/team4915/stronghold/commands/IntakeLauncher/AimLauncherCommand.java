@@ -1,28 +1,27 @@
 package org.usfirst.frc.team4915.stronghold.commands.IntakeLauncher;
 
 import org.usfirst.frc.team4915.stronghold.Robot;
+import org.usfirst.frc.team4915.stronghold.commands.ProfiledCommand;
 
-import edu.wpi.first.wpilibj.command.Command;
-
-public class AimLauncherCommand extends Command {
+public class AimLauncherCommand extends ProfiledCommand {
 
     public AimLauncherCommand() {
         requires(Robot.intakeLauncher);
     }
 
-    protected void initialize() {
+    protected void profiledInitialize() {
 
     }
 
-    protected void execute() {
+    protected void profiledExecute() {
         Robot.intakeLauncher.aimLauncher();
     }
 
-    protected boolean isFinished() {
+    protected boolean profiledIsFinished() {
         return false;
     }
 
-    protected void end() {
+    protected void profiledEnd() {
     }
 
     protected void interrupted() {
@@ -32,7 +32,7 @@ public class SpinIntakeWheelsInwardCommand extends Command {
     protected boolean isFinished() {
         // ends once the ball is in the basket and presses the limit switch or
         // after 10 seconds
-        return (Robot.intakeLauncher.boulderSwitch.get() || isTimedOut());
+        return (Robot.intakeLauncher.isBoulderLoaded() || isTimedOut());
     }
 
     @Override
@@ -0,0 +1,58 @@
+package org.usfirst.frc.team4915.stronghold.commands;
+
+import org.usfirst.frc.team4915.stronghold.utils.LoopProfiler;
+
+import edu.wpi.first.wpilibj.command.Command;
+
+/**
+ * ProfiledCommand is a Command whose lifecycle methods are timed by
+ * LoopProfiler. Subclasses implement the profiled*() hooks instead of
+ * initialize/execute/isFinished/end; interrupted() is left to the subclass
+ * as usual (it normally just calls end(), which is timed).
+ */
+public abstract class ProfiledCommand extends Command {
+
+    private final LoopProfiler m_profiler = LoopProfiler.getInstance();
+    private final LoopProfiler.Profile m_profile;
+
+    public ProfiledCommand() {
+        m_profile = m_profiler.getProfile(getClass().getSimpleName());
+    }
+
+    protected abstract void profiledInitialize();
+
+    protected abstract void profiledExecute();
+
+    protected abstract boolean profiledIsFinished();
+
+    protected abstract void profiledEnd();
+
+    @Override
+    protected final void initialize() {
+        long start = System.nanoTime();
+        profiledInitialize();
+        m_profiler.record(m_profile, LoopProfiler.Phase.INITIALIZE, System.nanoTime() - start);
+    }
+
+    @Override
+    protected final void execute() {
+        long start = System.nanoTime();
+        profiledExecute();
+        m_profiler.record(m_profile, LoopProfiler.Phase.EXECUTE, System.nanoTime() - start);
+    }
+
+    @Override
+    protected final boolean isFinished() {
+        long start = System.nanoTime();
+        boolean finished = profiledIsFinished();
+        m_profiler.record(m_profile, LoopProfiler.Phase.IS_FINISHED, System.nanoTime() - start);
+        return finished;
+    }
+
+    @Override
+    protected final void end() {
+        long start = System.nanoTime();
+        profiledEnd();
+        m_profiler.record(m_profile, LoopProfiler.Phase.END, System.nanoTime() - start);
+    }
+}
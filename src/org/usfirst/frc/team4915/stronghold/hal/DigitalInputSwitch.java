@@ -0,0 +1,20 @@
+package org.usfirst.frc.team4915.stronghold.hal;
+
+import edu.wpi.first.wpilibj.DigitalInput;
+
+/**
+ * DigitalInputSwitch is a switch on a roboRIO DIO port.
+ */
+public class DigitalInputSwitch implements Switch {
+
+    private final DigitalInput m_input;
+
+    public DigitalInputSwitch(int channel) {
+        m_input = new DigitalInput(channel);
+    }
+
+    @Override
+    public boolean get() {
+        return m_input.get();
+    }
+}
@@ -0,0 +1,27 @@
+package org.usfirst.frc.team4915.stronghold.hal;
+
+import edu.wpi.first.wpilibj.DigitalOutput;
+
+/**
+ * DigitalOutputLight is a light switched by a roboRIO DIO port.
+ */
+public class DigitalOutputLight implements Light {
+
+    private final DigitalOutput m_output;
+    private boolean m_on;
+
+    public DigitalOutputLight(int channel) {
+        m_output = new DigitalOutput(channel);
+    }
+
+    @Override
+    public void set(boolean on) {
+        m_on = on;
+        m_output.set(on);
+    }
+
+    @Override
+    public boolean get() {
+        return m_on;
+    }
+}
@@ -0,0 +1,14 @@
+package org.usfirst.frc.team4915.stronghold.hal;
+
+/**
+ * Encoder is a quadrature encoder: a tick count and a speed.
+ */
+public interface Encoder {
+
+    int getTicks();
+
+    void setTicks(int ticks);
+
+    /** @return speed in the units of the Talon's Speed mode */
+    double getSpeed();
+}
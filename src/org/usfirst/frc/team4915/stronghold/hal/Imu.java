@@ -0,0 +1,56 @@
+package org.usfirst.frc.team4915.stronghold.hal;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.usfirst.frc.team4915.stronghold.utils.IMUSample;
+
+/**
+ * Imu is the orientation sensor as the subsystems use it. On the robot this
+ * is the BNO055; off the robot it is a SimImu. Anything BNO055-specific
+ * (calibration, read plan, sample scheduler) stays on BNO055.
+ *
+ * Controllers that should run on every new reading, rather than poll,
+ * register a SampleListener.
+ */
+public interface Imu {
+
+    /**
+     * Called on the thread that produced each sample, right after it is
+     * published. Keep it short: the next sample waits for it.
+     */
+    interface SampleListener {
+
+        /** @param sample the new sample; valid only during the call */
+        void sampleArrived(IMUSample sample);
+    }
+
+    void addSampleListener(SampleListener listener);
+
+    void removeSampleListener(SampleListener listener);
+
+    /** @return the nominal sample rate */
+    double getSampleRateHz();
+
+    /** @return heading in degrees, not normalized (counts whole turns) */
+    double getHeading();
+
+    /** @return heading rounded and normalized to [-180, 180] */
+    int getNormalizedHeading();
+
+    /**
+     * @return heading at a past FPGA time, as BNO055.headingAt()
+     */
+    double headingAt(double timestamp);
+
+    /** Copies the most recent sample into out without allocating. */
+    void getSnapshot(IMUSample out);
+
+    boolean isSensorPresent();
+
+    boolean isInitialized();
+
+    boolean isCalibrationRestored();
+
+    /** @return completes once the sensor is producing samples */
+    CompletableFuture<? extends Imu> awaitReady();
+}
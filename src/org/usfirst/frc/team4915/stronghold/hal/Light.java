@@ -0,0 +1,11 @@
+package org.usfirst.frc.team4915.stronghold.hal;
+
+/**
+ * Light is an on/off digital output, e.g. the photonic cannon.
+ */
+public interface Light {
+
+    void set(boolean on);
+
+    boolean get();
+}
@@ -0,0 +1,55 @@
+package org.usfirst.frc.team4915.stronghold.hal;
+
+import edu.wpi.first.wpilibj.CANTalon.MotionProfileStatus;
+import edu.wpi.first.wpilibj.CANTalon.TalonControlMode;
+import edu.wpi.first.wpilibj.CANTalon.TrajectoryPoint;
+import edu.wpi.first.wpilibj.SpeedController;
+
+/**
+ * MotorController is the part of a Talon SRX that subsystems drive: a
+ * setpoint in the current control mode. It is a SpeedController so that
+ * RobotDrive accepts it. On the robot this is a CachingCANTalon; off the
+ * robot it is a SimMotorController.
+ *
+ * Sensors wired into the Talon are handed out separately, as an Encoder,
+ * Potentiometer or Switch.
+ *
+ * The motion profile methods are the Talon's trajectory buffer, with
+ * CANTalon's semantics: points go into a top-level buffer on the roboRIO,
+ * processMotionProfileBuffer() moves them to the Talon, and the Talon
+ * executes them in MotionProfile mode. See TalonProfileStreamer.
+ */
+public interface MotorController extends SpeedController {
+
+    void changeControlMode(TalonControlMode mode);
+
+    TalonControlMode getControlMode();
+
+    void enableControl();
+
+    void disableControl();
+
+    /** @return true if the controller is answering (always true in sim) */
+    boolean isAlive();
+
+    /** @return volts applied to the motor */
+    double getOutputVoltage();
+
+    /** @return amps drawn by the motor */
+    double getOutputCurrent();
+
+    /** @return false if the top-level buffer is full */
+    boolean pushMotionProfileTrajectory(TrajectoryPoint point);
+
+    /** Moves buffered points toward the Talon. */
+    void processMotionProfileBuffer();
+
+    void getMotionProfileStatus(MotionProfileStatus status);
+
+    void clearMotionProfileTrajectories();
+
+    void clearMotionProfileHasUnderrun();
+
+    /** Sets how often, in ms, buffered points are sent to the Talon. */
+    void changeMotionControlFramePeriod(int periodMs);
+}
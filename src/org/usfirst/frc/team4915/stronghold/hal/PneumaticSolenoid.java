@@ -0,0 +1,25 @@
+package org.usfirst.frc.team4915.stronghold.hal;
+
+import edu.wpi.first.wpilibj.DoubleSolenoid;
+
+/**
+ * PneumaticSolenoid is a DoubleSolenoid on the PCM.
+ */
+public class PneumaticSolenoid implements Solenoid {
+
+    private final DoubleSolenoid m_solenoid;
+
+    public PneumaticSolenoid(int forwardChannel, int reverseChannel) {
+        m_solenoid = new DoubleSolenoid(forwardChannel, reverseChannel);
+    }
+
+    @Override
+    public void set(DoubleSolenoid.Value value) {
+        m_solenoid.set(value);
+    }
+
+    @Override
+    public DoubleSolenoid.Value get() {
+        return m_solenoid.get();
+    }
+}
@@ -0,0 +1,9 @@
+package org.usfirst.frc.team4915.stronghold.hal;
+
+/**
+ * Potentiometer is an analog position sensor, in raw ADC units.
+ */
+public interface Potentiometer {
+
+    double getPosition();
+}
@@ -0,0 +1,23 @@
+package org.usfirst.frc.team4915.stronghold.hal;
+
+/**
+ * PwmServo is a servo on a roboRIO PWM port.
+ */
+public class PwmServo implements Servo {
+
+    private final edu.wpi.first.wpilibj.Servo m_servo;
+
+    public PwmServo(int channel) {
+        m_servo = new edu.wpi.first.wpilibj.Servo(channel);
+    }
+
+    @Override
+    public void set(double position) {
+        m_servo.set(position);
+    }
+
+    @Override
+    public double get() {
+        return m_servo.get();
+    }
+}
@@ -0,0 +1,11 @@
+package org.usfirst.frc.team4915.stronghold.hal;
+
+/**
+ * Servo is a PWM servo position on [0, 1].
+ */
+public interface Servo {
+
+    void set(double position);
+
+    double get();
+}
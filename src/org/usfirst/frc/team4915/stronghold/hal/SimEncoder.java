@@ -0,0 +1,29 @@
+package org.usfirst.frc.team4915.stronghold.hal;
+
+/**
+ * SimEncoder reports whatever ticks and speed the simulation last set.
+ */
+public class SimEncoder implements Encoder {
+
+    private volatile int m_ticks;
+    private volatile double m_speed;
+
+    @Override
+    public int getTicks() {
+        return m_ticks;
+    }
+
+    @Override
+    public void setTicks(int ticks) {
+        m_ticks = ticks;
+    }
+
+    @Override
+    public double getSpeed() {
+        return m_speed;
+    }
+
+    public void setSpeed(double speed) {
+        m_speed = speed;
+    }
+}
@@ -0,0 +1,114 @@
+package org.usfirst.frc.team4915.stronghold.hal;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.usfirst.frc.team4915.stronghold.utils.BNO055;
+import org.usfirst.frc.team4915.stronghold.utils.HeadingHistory;
+import org.usfirst.frc.team4915.stronghold.utils.IMUSample;
+
+/**
+ * SimImu publishes samples the simulation hands it, the way BNO055 publishes
+ * what it reads from the sensor: a latest sample for getSnapshot() and a
+ * history for headingAt(). Sample listeners run on the thread that calls
+ * publish().
+ */
+public class SimImu implements Imu {
+
+    private final IMUSample m_published = new IMUSample();
+    private final HeadingHistory m_history =
+            new HeadingHistory((int) Math.ceil(BNO055.HISTORY_SECONDS * BNO055.MAX_SAMPLE_RATE_HZ));
+    private final CopyOnWriteArrayList<SampleListener> m_listeners =
+            new CopyOnWriteArrayList<SampleListener>();
+    private final double m_rateHz;
+
+    /** @param rateHz how often the simulation will publish */
+    public SimImu(double rateHz) {
+        m_rateHz = rateHz;
+    }
+
+    public SimImu() {
+        this(BNO055.DEFAULT_SAMPLE_RATE_HZ);
+    }
+
+    /**
+     * Publishes a new sample.
+     *
+     * @param sample heading, accel, etc. as BNO055 would fill them;
+     *        copied, so the caller may reuse it
+     */
+    public void publish(IMUSample sample) {
+        synchronized (m_published) {
+            sample.copyTo(m_published);
+        }
+        m_history.add(sample.timestamp, sample.heading[0], sample.heading[2], sample.heading[1]);
+        for (SampleListener listener : m_listeners) {
+            listener.sampleArrived(sample);
+        }
+    }
+
+    @Override
+    public void addSampleListener(SampleListener listener) {
+        m_listeners.addIfAbsent(listener);
+    }
+
+    @Override
+    public void removeSampleListener(SampleListener listener) {
+        m_listeners.remove(listener);
+    }
+
+    @Override
+    public double getSampleRateHz() {
+        return m_rateHz;
+    }
+
+    @Override
+    public void getSnapshot(IMUSample out) {
+        synchronized (m_published) {
+            m_published.copyTo(out);
+        }
+    }
+
+    @Override
+    public double getHeading() {
+        synchronized (m_published) {
+            return m_published.heading[0];
+        }
+    }
+
+    @Override
+    public int getNormalizedHeading() {
+        // same rounding as BNO055.getNormalizedHeading
+        int h = (int) Math.round(getHeading() % 360);
+        if (h > 180) {
+            h = -(360 - h);
+        }
+        return h;
+    }
+
+    @Override
+    public double headingAt(double timestamp) {
+        double h = m_history.headingAt(timestamp);
+        return Double.isNaN(h) ? getHeading() : h;
+    }
+
+    @Override
+    public boolean isSensorPresent() {
+        return true;
+    }
+
+    @Override
+    public boolean isInitialized() {
+        return true;
+    }
+
+    @Override
+    public boolean isCalibrationRestored() {
+        return true;
+    }
+
+    @Override
+    public CompletableFuture<SimImu> awaitReady() {
+        return CompletableFuture.completedFuture(this);
+    }
+}
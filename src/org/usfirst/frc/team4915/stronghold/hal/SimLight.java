@@ -0,0 +1,19 @@
+package org.usfirst.frc.team4915.stronghold.hal;
+
+/**
+ * SimLight holds the last state it was sent.
+ */
+public class SimLight implements Light {
+
+    private volatile boolean m_on;
+
+    @Override
+    public void set(boolean on) {
+        m_on = on;
+    }
+
+    @Override
+    public boolean get() {
+        return m_on;
+    }
+}
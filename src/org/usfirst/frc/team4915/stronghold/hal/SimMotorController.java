@@ -0,0 +1,268 @@
+package org.usfirst.frc.team4915.stronghold.hal;
+
+import java.util.ArrayDeque;
+
+import edu.wpi.first.wpilibj.CANTalon.MotionProfileStatus;
+import edu.wpi.first.wpilibj.CANTalon.SetValueMotionProfile;
+import edu.wpi.first.wpilibj.CANTalon.TalonControlMode;
+import edu.wpi.first.wpilibj.CANTalon.TrajectoryPoint;
+
+/**
+ * SimMotorController records what the subsystems ask of a Talon so that a
+ * simulation (or a benchmark) can read it back. It behaves like a Talon
+ * with nothing attached: the setpoint is held, and voltage and current are
+ * whatever the simulation last reported with setOutput().
+ *
+ * The motion profile buffer is modelled too: a top-level buffer,
+ * processMotionProfileBuffer() moving one point per call into the Talon's
+ * bottom buffer, and an executor that the simulation runs with
+ * advanceMotionProfile(). Underruns are flagged as on the Talon. Points
+ * are kept by reference, so don't change a point once it's pushed.
+ */
+public class SimMotorController implements MotorController {
+
+    public static final int TOP_BUFFER_CAPACITY = 2048;
+    public static final int BOTTOM_BUFFER_CAPACITY = 128;
+
+    private final int m_id;
+    private volatile TalonControlMode m_mode = TalonControlMode.PercentVbus;
+    private volatile double m_setpoint; // as commanded, before inversion
+    private volatile boolean m_enabled = true;
+    private volatile boolean m_inverted;
+    private volatile double m_voltage;
+    private volatile double m_current;
+
+    // motion profile buffer and executor, guarded by this
+    private final ArrayDeque<TrajectoryPoint> m_top = new ArrayDeque<TrajectoryPoint>();
+    private final ArrayDeque<TrajectoryPoint> m_bottom = new ArrayDeque<TrajectoryPoint>();
+    private TrajectoryPoint m_active;
+    private int m_activeRemainingMs;
+    private boolean m_hasUnderrun;
+    private boolean m_isUnderrun;
+    private boolean m_zeroPos;
+
+    public SimMotorController(int deviceNumber) {
+        m_id = deviceNumber;
+    }
+
+    public int getDeviceID() {
+        return m_id;
+    }
+
+    @Override
+    public void set(double setpoint) {
+        m_setpoint = setpoint;
+    }
+
+    @Override
+    public void set(double setpoint, byte syncGroup) {
+        set(setpoint);
+    }
+
+    @Override
+    public double get() {
+        return m_setpoint;
+    }
+
+    /**
+     * @return the setpoint in effect, as the motor sees it: inverted if
+     *         setInverted, zero while control is disabled
+     */
+    public double getSetpoint() {
+        if (!m_enabled) {
+            return 0;
+        }
+        return m_inverted ? -m_setpoint : m_setpoint;
+    }
+
+    @Override
+    public void pidWrite(double output) {
+        set(output);
+    }
+
+    @Override
+    public void setInverted(boolean isInverted) {
+        m_inverted = isInverted;
+    }
+
+    @Override
+    public boolean getInverted() {
+        return m_inverted;
+    }
+
+    @Override
+    public void disable() {
+        disableControl();
+    }
+
+    @Override
+    public void changeControlMode(TalonControlMode mode) {
+        m_mode = mode;
+    }
+
+    @Override
+    public TalonControlMode getControlMode() {
+        return m_mode;
+    }
+
+    @Override
+    public void enableControl() {
+        m_enabled = true;
+    }
+
+    @Override
+    public void disableControl() {
+        m_enabled = false;
+    }
+
+    public boolean isControlEnabled() {
+        return m_enabled;
+    }
+
+    @Override
+    public boolean isAlive() {
+        return true;
+    }
+
+    /** Called by the simulation with what the motor is doing. */
+    public void setOutput(double volts, double amps) {
+        m_voltage = volts;
+        m_current = amps;
+    }
+
+    @Override
+    public double getOutputVoltage() {
+        return m_voltage;
+    }
+
+    @Override
+    public double getOutputCurrent() {
+        return m_current;
+    }
+
+    @Override
+    public synchronized boolean pushMotionProfileTrajectory(TrajectoryPoint point) {
+        if (m_top.size() >= TOP_BUFFER_CAPACITY) {
+            return false;
+        }
+        m_top.add(point);
+        return true;
+    }
+
+    @Override
+    public synchronized void processMotionProfileBuffer() {
+        if (!m_top.isEmpty() && m_bottom.size() < BOTTOM_BUFFER_CAPACITY) {
+            m_bottom.add(m_top.poll());
+        }
+    }
+
+    @Override
+    public synchronized void getMotionProfileStatus(MotionProfileStatus status) {
+        status.topBufferRem = TOP_BUFFER_CAPACITY - m_top.size();
+        status.topBufferCnt = m_top.size();
+        status.btmBufferCnt = m_bottom.size();
+        status.hasUnderrun = m_hasUnderrun;
+        status.isUnderrun = m_isUnderrun;
+        status.activePointValid = m_active != null;
+        if (m_active != null) {
+            TrajectoryPoint p = status.activePoint;
+            p.position = m_active.position;
+            p.velocity = m_active.velocity;
+            p.timeDurMs = m_active.timeDurMs;
+            p.profileSlotSelect = m_active.profileSlotSelect;
+            p.velocityOnly = m_active.velocityOnly;
+            p.isLastPoint = m_active.isLastPoint;
+            p.zeroPos = m_active.zeroPos;
+        }
+        status.outputEnable = getMotionProfileSetValue();
+    }
+
+    private SetValueMotionProfile getMotionProfileSetValue() {
+        int value = (int) m_setpoint;
+        if (value == SetValueMotionProfile.Enable.value) {
+            return SetValueMotionProfile.Enable;
+        } else if (value == SetValueMotionProfile.Hold.value) {
+            return SetValueMotionProfile.Hold;
+        }
+        return SetValueMotionProfile.Disable;
+    }
+
+    @Override
+    public synchronized void clearMotionProfileTrajectories() {
+        m_top.clear();
+        m_bottom.clear();
+        m_active = null;
+        m_activeRemainingMs = 0;
+        m_isUnderrun = false;
+        m_zeroPos = false;
+    }
+
+    @Override
+    public synchronized void clearMotionProfileHasUnderrun() {
+        m_hasUnderrun = false;
+    }
+
+    @Override
+    public void changeMotionControlFramePeriod(int periodMs) {
+    }
+
+    /**
+     * Runs the Talon's profile executor for ms milliseconds of simulated
+     * time. It only runs in MotionProfile mode with the output enabled;
+     * Hold and Disable keep the active point where it is.
+     */
+    public synchronized void advanceMotionProfile(int ms) {
+        if (m_mode != TalonControlMode.MotionProfile || !m_enabled
+                || getMotionProfileSetValue() != SetValueMotionProfile.Enable) {
+            return;
+        }
+        while (ms > 0) {
+            if (m_active == null || m_activeRemainingMs <= 0) {
+                if (m_active != null && m_active.isLastPoint) {
+                    return; // the Talon stays on the last point
+                }
+                TrajectoryPoint next = m_bottom.poll();
+                if (next == null) {
+                    m_hasUnderrun = true;
+                    m_isUnderrun = true;
+                    return;
+                }
+                m_active = next;
+                m_activeRemainingMs = next.timeDurMs;
+                m_zeroPos |= next.zeroPos;
+                m_isUnderrun = false;
+            }
+            int step = Math.min(ms, m_activeRemainingMs);
+            m_activeRemainingMs -= step;
+            ms -= step;
+        }
+    }
+
+    /** @return the velocity of the point being executed, 0 if none */
+    public synchronized double getMotionProfileVelocity() {
+        return m_active == null ? 0 : m_active.velocity;
+    }
+
+    /** @return the position of the point being executed, 0 if none */
+    public synchronized double getMotionProfilePosition() {
+        return m_active == null ? 0 : m_active.position;
+    }
+
+    /**
+     * @return true while the Talon servoes to a point: one is active and
+     *         the output is Enable or Hold. Otherwise the output is neutral.
+     */
+    public synchronized boolean isMotionProfileActive() {
+        return m_active != null && getMotionProfileSetValue() != SetValueMotionProfile.Disable;
+    }
+
+    /**
+     * @return true, once, after a point with zeroPos set became active; the
+     *         simulation then zeroes this Talon's encoder
+     */
+    public synchronized boolean takeZeroPos() {
+        boolean zero = m_zeroPos;
+        m_zeroPos = false;
+        return zero;
+    }
+}
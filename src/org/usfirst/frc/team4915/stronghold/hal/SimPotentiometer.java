@@ -0,0 +1,22 @@
+package org.usfirst.frc.team4915.stronghold.hal;
+
+/**
+ * SimPotentiometer reports whatever position the simulation last set.
+ */
+public class SimPotentiometer implements Potentiometer {
+
+    private volatile double m_position;
+
+    public SimPotentiometer(double position) {
+        m_position = position;
+    }
+
+    @Override
+    public double getPosition() {
+        return m_position;
+    }
+
+    public void setPosition(double position) {
+        m_position = position;
+    }
+}
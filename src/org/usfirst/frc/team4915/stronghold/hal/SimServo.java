@@ -0,0 +1,19 @@
+package org.usfirst.frc.team4915.stronghold.hal;
+
+/**
+ * SimServo holds the last position it was sent.
+ */
+public class SimServo implements Servo {
+
+    private volatile double m_position;
+
+    @Override
+    public void set(double position) {
+        m_position = Math.max(0, Math.min(1, position));
+    }
+
+    @Override
+    public double get() {
+        return m_position;
+    }
+}
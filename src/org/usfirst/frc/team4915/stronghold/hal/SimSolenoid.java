@@ -0,0 +1,21 @@
+package org.usfirst.frc.team4915.stronghold.hal;
+
+import edu.wpi.first.wpilibj.DoubleSolenoid;
+
+/**
+ * SimSolenoid holds the last value it was sent.
+ */
+public class SimSolenoid implements Solenoid {
+
+    private volatile DoubleSolenoid.Value m_value = DoubleSolenoid.Value.kOff;
+
+    @Override
+    public void set(DoubleSolenoid.Value value) {
+        m_value = value;
+    }
+
+    @Override
+    public DoubleSolenoid.Value get() {
+        return m_value;
+    }
+}
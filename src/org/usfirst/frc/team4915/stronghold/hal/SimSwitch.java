@@ -0,0 +1,18 @@
+package org.usfirst.frc.team4915.stronghold.hal;
+
+/**
+ * SimSwitch reports whatever state the simulation last set.
+ */
+public class SimSwitch implements Switch {
+
+    private volatile boolean m_closed;
+
+    @Override
+    public boolean get() {
+        return m_closed;
+    }
+
+    public void set(boolean closed) {
+        m_closed = closed;
+    }
+}
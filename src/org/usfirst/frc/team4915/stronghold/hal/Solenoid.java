@@ -0,0 +1,13 @@
+package org.usfirst.frc.team4915.stronghold.hal;
+
+import edu.wpi.first.wpilibj.DoubleSolenoid;
+
+/**
+ * Solenoid is a double-acting pneumatic valve.
+ */
+public interface Solenoid {
+
+    void set(DoubleSolenoid.Value value);
+
+    DoubleSolenoid.Value get();
+}
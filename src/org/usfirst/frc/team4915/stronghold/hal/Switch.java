@@ -0,0 +1,9 @@
+package org.usfirst.frc.team4915.stronghold.hal;
+
+/**
+ * Switch is any on/off input: a limit switch or a digital input.
+ */
+public interface Switch {
+
+    boolean get();
+}
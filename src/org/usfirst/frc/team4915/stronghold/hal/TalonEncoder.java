@@ -0,0 +1,30 @@
+package org.usfirst.frc.team4915.stronghold.hal;
+
+import edu.wpi.first.wpilibj.CANTalon;
+
+/**
+ * TalonEncoder is the quadrature encoder wired into a Talon SRX.
+ */
+public class TalonEncoder implements Encoder {
+
+    private final CANTalon m_talon;
+
+    public TalonEncoder(CANTalon talon) {
+        m_talon = talon;
+    }
+
+    @Override
+    public int getTicks() {
+        return m_talon.getEncPosition();
+    }
+
+    @Override
+    public void setTicks(int ticks) {
+        m_talon.setEncPosition(ticks);
+    }
+
+    @Override
+    public double getSpeed() {
+        return m_talon.getSpeed();
+    }
+}
@@ -0,0 +1,25 @@
+package org.usfirst.frc.team4915.stronghold.hal;
+
+import edu.wpi.first.wpilibj.CANTalon;
+
+/**
+ * TalonLimitSwitch is one of the two limit switch inputs on a Talon SRX.
+ */
+public class TalonLimitSwitch implements Switch {
+
+    private final CANTalon m_talon;
+    private final boolean m_forward;
+
+    /**
+     * @param forward true for the forward limit switch, false for reverse
+     */
+    public TalonLimitSwitch(CANTalon talon, boolean forward) {
+        m_talon = talon;
+        m_forward = forward;
+    }
+
+    @Override
+    public boolean get() {
+        return m_forward ? m_talon.isFwdLimitSwitchClosed() : m_talon.isRevLimitSwitchClosed();
+    }
+}
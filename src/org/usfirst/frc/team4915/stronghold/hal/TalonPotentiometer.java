@@ -0,0 +1,21 @@
+package org.usfirst.frc.team4915.stronghold.hal;
+
+import edu.wpi.first.wpilibj.CANTalon;
+
+/**
+ * TalonPotentiometer is an analog pot selected as a Talon SRX's feedback
+ * device.
+ */
+public class TalonPotentiometer implements Potentiometer {
+
+    private final CANTalon m_talon;
+
+    public TalonPotentiometer(CANTalon talon) {
+        m_talon = talon;
+    }
+
+    @Override
+    public double getPosition() {
+        return m_talon.getPosition();
+    }
+}
@@ -0,0 +1,57 @@
+package org.usfirst.frc.team4915.stronghold.replay;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.usfirst.frc.team4915.stronghold.utils.FlightRecorder;
+
+/**
+ * FlightLogSource replays a FlightRecorder file, oldest record first. The
+ * whole file is read into memory up front so replay speed isn't limited
+ * by the disk.
+ */
+public class FlightLogSource implements RecordSource {
+
+    private final ByteBuffer m_buf;
+    private final long m_first;
+    private final long m_count;
+    private final String[] m_names;
+    private long m_next;
+
+    public FlightLogSource(String path) throws IOException {
+        m_buf = ByteBuffer.wrap(Files.readAllBytes(Paths.get(path)));
+        String problem = FlightRecorder.checkHeader(m_buf);
+        if (problem != null) {
+            throw new IOException(path + ": " + problem);
+        }
+        m_first = FlightRecorder.firstRecord(m_buf);
+        m_count = FlightRecorder.recordCount(m_buf);
+        m_names = FlightRecorder.readCommandNames(m_buf);
+        m_next = m_first;
+    }
+
+    @Override
+    public boolean next(FlightRecorder.Record out) {
+        if (m_next >= m_count) {
+            return false;
+        }
+        FlightRecorder.readRecord(m_buf, m_next++, out);
+        return true;
+    }
+
+    @Override
+    public void rewind() {
+        m_next = m_first;
+    }
+
+    @Override
+    public String[] getCommandNames() {
+        return m_names;
+    }
+
+    public long size() {
+        return m_count - m_first;
+    }
+}
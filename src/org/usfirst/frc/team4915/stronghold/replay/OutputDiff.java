@@ -0,0 +1,66 @@
+package org.usfirst.frc.team4915.stronghold.replay;
+
+/**
+ * OutputDiff compares one replayed output against what the robot recorded
+ * for the same cycle.
+ */
+public class OutputDiff {
+
+    private final String m_name;
+    private final double m_tolerance;
+    private long m_compared;
+    private long m_mismatches;
+    private double m_sumAbs;
+    private double m_maxAbs;
+    private long m_firstMismatch = -1;
+
+    /**
+     * @param tolerance differences up to this are not counted as mismatches
+     *        (recorded values are stored as floats)
+     */
+    public OutputDiff(String name, double tolerance) {
+        m_name = name;
+        m_tolerance = tolerance;
+    }
+
+    public void compare(long sequence, double recorded, double replayed) {
+        double d = Math.abs(recorded - replayed);
+        m_compared++;
+        m_sumAbs += d;
+        if (d > m_maxAbs) {
+            m_maxAbs = d;
+        }
+        if (d > m_tolerance) {
+            m_mismatches++;
+            if (m_firstMismatch < 0) {
+                m_firstMismatch = sequence;
+            }
+        }
+    }
+
+    public void compare(long sequence, boolean recorded, boolean replayed) {
+        compare(sequence, recorded ? 1 : 0, replayed ? 1 : 0);
+    }
+
+    public String getName() {
+        return m_name;
+    }
+
+    public long getComparedCount() {
+        return m_compared;
+    }
+
+    public long getMismatchCount() {
+        return m_mismatches;
+    }
+
+    @Override
+    public String toString() {
+        if (m_compared == 0) {
+            return String.format("%-18s not exercised", m_name);
+        }
+        return String.format("%-18s %7d compared  %6d mismatched  mean|d| %.4f  max|d| %.4f%s",
+                m_name, m_compared, m_mismatches, m_sumAbs / m_compared, m_maxAbs,
+                m_firstMismatch < 0 ? "" : "  first at seq " + m_firstMismatch);
+    }
+}
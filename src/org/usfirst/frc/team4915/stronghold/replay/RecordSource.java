@@ -0,0 +1,25 @@
+package org.usfirst.frc.team4915.stronghold.replay;
+
+import org.usfirst.frc.team4915.stronghold.utils.FlightRecorder;
+
+/**
+ * RecordSource supplies one cycle of sensor inputs (and the outputs the
+ * robot produced from them) at a time. The replay harness only sees this
+ * interface, so a recorded match, a synthetic trace or a simulator can all
+ * drive the same logic.
+ */
+public interface RecordSource {
+
+    /**
+     * Fills out with the next cycle.
+     *
+     * @return false when there are no more cycles
+     */
+    boolean next(FlightRecorder.Record out);
+
+    /** Starts over from the first cycle. */
+    void rewind();
+
+    /** @return command names by Record.commandMask bit */
+    String[] getCommandNames();
+}
@@ -0,0 +1,244 @@
+package org.usfirst.frc.team4915.stronghold.replay;
+
+import java.io.PrintStream;
+
+import org.usfirst.frc.team4915.stronghold.subsystems.IntakeLauncher;
+import org.usfirst.frc.team4915.stronghold.subsystems.LauncherAimLogic;
+import org.usfirst.frc.team4915.stronghold.utils.BNO055;
+import org.usfirst.frc.team4915.stronghold.utils.FlightRecorder;
+import org.usfirst.frc.team4915.stronghold.utils.HeadingHistory;
+import org.usfirst.frc.team4915.stronghold.utils.TurnController;
+import org.usfirst.frc.team4915.stronghold.utils.TurnGains;
+
+/**
+ * ReplayHarness re-runs the launcher aiming logic (LauncherAimLogic) and
+ * the auto-turn logic (TurnController, as used by DriveTrain.trackVision
+ * and AutoRotateDegrees) against a recorded match, as fast as the CPU
+ * allows. It compares what the logic decides now against what the robot
+ * decided then, and reports throughput in cycles per second.
+ *
+ * <pre>
+ *   java -cp bin:WPILib.jar org.usfirst.frc.team4915.stronghold.replay.ReplayHarness flight.prev.bin [passes]
+ * </pre>
+ *
+ * WPILib.jar only needs to be on the classpath so that classes resolve;
+ * nothing from it is initialized. Expect small turnOutput differences: on
+ * the robot the turn PID steps on each IMU sample, which the replay
+ * approximates with a grid at the IMU's default rate in recorded time.
+ */
+public class ReplayHarness {
+
+    private final RecordSource m_source;
+    private final int m_aimBit;
+    private final int m_arcadeBit;
+    private final TurnGains m_turnGains; // as DriveTrain would load them
+
+    // the logic under test, rebuilt for every pass
+    private IntakeLauncher.Sensors m_sensors;
+    private LauncherAimLogic m_aim;
+    private TurnController m_turn;
+    private HeadingHistory m_history;
+    private ReplayVision m_vision;
+    private double m_nextTurnStep;
+    private boolean m_wasVisionControl;
+
+    public final OutputDiff aimSetPoint = new OutputDiff("aimSetPoint", 0.01);
+    public final OutputDiff potScrewed = new OutputDiff("potScrewed", 0);
+    public final OutputDiff launcherLocked = new OutputDiff("launcherLocked", 0);
+    public final OutputDiff visionTurnTarget = new OutputDiff("visionTurnTarget", 0.01);
+    public final OutputDiff driveLocked = new OutputDiff("driveLocked", 0);
+    public final OutputDiff turnOutput = new OutputDiff("turnOutput", 0.05);
+
+    /** Vision inputs come from the record; locks are ours to decide. */
+    private static class ReplayVision implements LauncherAimLogic.Vision {
+
+        double targetY;
+        boolean launcherLocked;
+        boolean driveLocked;
+
+        public boolean isLauncherLocked() {
+            return launcherLocked;
+        }
+
+        public void setLauncherLocked() {
+            launcherLocked = true;
+        }
+
+        public double getTargetElevation(double currentElevation) {
+            return targetY + currentElevation;
+        }
+    }
+
+    public ReplayHarness(RecordSource source) {
+        m_source = source;
+        m_aimBit = commandBit(source.getCommandNames(), "AimLauncherCommand");
+        m_arcadeBit = commandBit(source.getCommandNames(), "ArcadeDrive");
+        m_turnGains = TurnGains.loadSaved();
+    }
+
+    private static int commandBit(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return 1 << i;
+            }
+        }
+        return 0;
+    }
+
+    private static final double TURN_PERIOD = 1.0 / BNO055.DEFAULT_SAMPLE_RATE_HZ;
+
+    private void resetLogic() {
+        m_sensors = new IntakeLauncher.Sensors();
+        m_aim = new LauncherAimLogic(m_sensors);
+        m_turn = new TurnController(m_turnGains.Kp, m_turnGains.Ki,
+                m_turnGains.Kd, m_turnGains.Kf, TURN_PERIOD);
+        m_history = new HeadingHistory(256);
+        m_vision = new ReplayVision();
+        m_nextTurnStep = Double.NEGATIVE_INFINITY;
+        m_wasVisionControl = false;
+    }
+
+    /**
+     * Replays the source once from the beginning.
+     *
+     * @param compare false for timing-only passes
+     * @return the number of cycles replayed
+     */
+    public long runPass(boolean compare) {
+        resetLogic();
+        m_source.rewind();
+        FlightRecorder.Record r = new FlightRecorder.Record();
+        long cycles = 0;
+        boolean first = true;
+        while (m_source.next(r)) {
+            if (first) {
+                // the robot read its set point from the pot at startup
+                loadSensors(r);
+                m_aim.readSetPoint();
+                first = false;
+            }
+            cycle(r, compare);
+            cycles++;
+        }
+        return cycles;
+    }
+
+    private void loadSensors(FlightRecorder.Record r) {
+        m_sensors.position = r.aimPosition;
+        m_sensors.atTop = r.has(FlightRecorder.FLAG_AT_TOP);
+        m_sensors.atBottom = r.has(FlightRecorder.FLAG_AT_BOTTOM);
+        m_sensors.boulderLoaded = r.has(FlightRecorder.FLAG_BOULDER_LOADED);
+    }
+
+    private void cycle(FlightRecorder.Record r, boolean compare) {
+        loadSensors(r);
+        m_history.add(r.time, r.heading < 0 ? r.heading + 360 : r.heading, 0, 0);
+        m_vision.targetY = r.targetY;
+
+        // VisionState.toggleAimState clears both locks
+        boolean visionControl = r.has(FlightRecorder.FLAG_VISION_CONTROL);
+        if (visionControl != m_wasVisionControl) {
+            m_vision.launcherLocked = false;
+            m_vision.driveLocked = false;
+            m_wasVisionControl = visionControl;
+        }
+
+        // the IMU listener: one PID step per sample period of recorded time
+        if (m_nextTurnStep == Double.NEGATIVE_INFINITY) {
+            m_nextTurnStep = r.time;
+        }
+        while (m_nextTurnStep <= r.time) {
+            m_turn.step(r.heading);
+            m_nextTurnStep += TURN_PERIOD;
+        }
+
+        // mirrors IntakeLauncher.aimLauncher / moveToSetPoint
+        if ((r.commandMask & m_aimBit) != 0) {
+            boolean move;
+            if (visionControl) {
+                move = m_aim.trackVision(m_vision);
+            } else {
+                m_aim.trackJoystick(r.aimStickY);
+                move = true;
+            }
+            if (move) {
+                m_aim.calibratePotentiometer();
+                m_aim.dangerTest();
+            }
+            if (compare) {
+                aimSetPoint.compare(r.sequence, r.aimSetPoint, m_aim.getSetPoint());
+                potScrewed.compare(r.sequence, r.has(FlightRecorder.FLAG_POT_SCREWED),
+                        m_aim.getIsPotentiometerScrewed());
+                if (visionControl) {
+                    launcherLocked.compare(r.sequence, r.has(FlightRecorder.FLAG_LAUNCHER_LOCKED),
+                            m_vision.launcherLocked);
+                }
+            }
+        }
+
+        // mirrors DriveTrain.trackVision when ArcadeDrive hands it control;
+        // otherwise (AutoRotateDegrees) follow the recorded turn requests
+        if ((r.commandMask & m_arcadeBit) != 0 && visionControl) {
+            if (!m_vision.driveLocked && !Double.isNaN(r.targetTime)) {
+                boolean starting = !m_turn.isEnabled();
+                double h = BNO055.normalizeHeading(m_history.headingAt(r.targetTime));
+                if (m_turn.trackVision(r.targetX + h)) {
+                    m_vision.driveLocked = true;
+                }
+                if (compare && starting && r.has(FlightRecorder.FLAG_AUTO_TURNING)) {
+                    visionTurnTarget.compare(r.sequence, r.turnSetpoint, m_turn.getSetpoint());
+                }
+            }
+            if (compare) {
+                driveLocked.compare(r.sequence, r.has(FlightRecorder.FLAG_DRIVE_LOCKED),
+                        m_vision.driveLocked);
+            }
+        } else if (r.has(FlightRecorder.FLAG_AUTO_TURNING)) {
+            if (!m_turn.isEnabled() || Math.abs(m_turn.getSetpoint() - r.turnSetpoint) > 1e-3) {
+                m_turn.start(r.turnSetpoint);
+            }
+        } else if (m_turn.isEnabled()) {
+            m_turn.stop();
+        }
+
+        if (compare && r.has(FlightRecorder.FLAG_AUTO_TURNING) && m_turn.isEnabled()) {
+            turnOutput.compare(r.sequence, r.turnOutput, m_turn.getOutput());
+        }
+    }
+
+    public void report(PrintStream out) {
+        out.println(aimSetPoint);
+        out.println(potScrewed);
+        out.println(launcherLocked);
+        out.println(visionTurnTarget);
+        out.println(driveLocked);
+        out.println(turnOutput);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: ReplayHarness <flight.bin> [passes]");
+            System.exit(1);
+        }
+        int passes = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        FlightLogSource source = new FlightLogSource(args[0]);
+        ReplayHarness harness = new ReplayHarness(source);
+
+        // first pass compares; the rest are for timing, and warm up the JIT
+        long cycles = harness.runPass(true);
+        System.out.println(args[0] + ": " + cycles + " cycles");
+        harness.report(System.out);
+
+        if (passes > 1) {
+            harness.runPass(false);
+            long start = System.nanoTime();
+            long total = 0;
+            for (int i = 1; i < passes; i++) {
+                total += harness.runPass(false);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format("throughput: %.0f cycles/s (%d cycles in %.3f s, %.0fx real time)",
+                    total / seconds, total, seconds, total * 0.02 / seconds));
+        }
+    }
+}
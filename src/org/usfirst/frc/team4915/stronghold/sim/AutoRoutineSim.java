@@ -0,0 +1,412 @@
+package org.usfirst.frc.team4915.stronghold.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.usfirst.frc.team4915.stronghold.RobotMap;
+import org.usfirst.frc.team4915.stronghold.commands.AutoCommand1;
+import org.usfirst.frc.team4915.stronghold.commands.AutoDriveStraightLogic;
+import org.usfirst.frc.team4915.stronghold.subsystems.Autonomous;
+import org.usfirst.frc.team4915.stronghold.subsystems.DriveTrain;
+import org.usfirst.frc.team4915.stronghold.utils.BNO055;
+import org.usfirst.frc.team4915.stronghold.utils.DefenseCrossing;
+import org.usfirst.frc.team4915.stronghold.utils.EncoderTracker;
+import org.usfirst.frc.team4915.stronghold.utils.HeadingHold;
+import org.usfirst.frc.team4915.stronghold.utils.MotionProfile;
+import org.usfirst.frc.team4915.stronghold.utils.TractionMonitor;
+import org.usfirst.frc.team4915.stronghold.utils.TurnController;
+import org.usfirst.frc.team4915.stronghold.utils.TurnGains;
+
+/**
+ * AutoRoutineSim runs the drivetrain part of an AutoCommand1 routine
+ * (AutoDriveStraight with its heading hold, traction monitor and defense
+ * crossing, then AutoRotateDegrees)
+ * against a DrivetrainModel, faster than real time. It sequences those
+ * commands itself rather than running them, so it needs no scheduler, no
+ * devices and no roboRIO, and one instance per thread can run in parallel.
+ * The decisions within a drive are AutoDriveStraightLogic's, and distance
+ * comes through Odometry's EncoderTracker, so only the wiring is mirrored.
+ *
+ * Timing follows the robot: the scheduler runs every 20ms, Odometry
+ * updates every 10ms, and the IMU samples at BNO055's default rate with the
+ * turn controller stepping on each sample.
+ *
+ * <pre>
+ *   java -cp bin:WPILib.jar org.usfirst.frc.team4915.stronghold.sim.AutoRoutineSim LOWBAR DRIVE_SHOOT_NO_VISION ONE
+ * </pre>
+ */
+public class AutoRoutineSim {
+
+    public static final double AUTONOMOUS_SECONDS = 15.0;
+    public static final double SCHEDULER_PERIOD = 0.02;
+    public static final double SENSOR_PERIOD = 0.01; // Odometry
+    public static final double IMU_PERIOD = 1.0 / BNO055.DEFAULT_SAMPLE_RATE_HZ;
+
+    /** One drivetrain command from an AutoCommand1 routine. */
+    public static class Step {
+
+        public final boolean isTurn;
+        public final double distanceInches; // AutoDriveStraight
+        public final double speed;          // AutoDriveStraight
+        public final double degrees;        // AutoRotateDegrees
+        public final DefenseCrossing.Signature crossing; // AutoDriveStraight, or null
+        public final double pastDefense;    // inches to go once crossed
+        final MotionProfile profile;        // as AutoDriveStraight builds it
+
+        private Step(boolean isTurn, double distanceInches, double speed, double degrees,
+                DefenseCrossing.Signature crossing, double pastDefense, MotionProfile profile) {
+            this.isTurn = isTurn;
+            this.distanceInches = distanceInches;
+            this.speed = speed;
+            this.degrees = degrees;
+            this.crossing = crossing;
+            this.pastDefense = pastDefense;
+            this.profile = profile;
+        }
+
+        public static Step drive(double distanceInches, double speed) {
+            return drive(distanceInches, speed, null, 0);
+        }
+
+        public static Step drive(double distanceInches, double speed,
+                DefenseCrossing.Signature crossing, double pastDefense) {
+            MotionProfile profile = new MotionProfile(Math.abs(distanceInches),
+                    Math.max(Math.abs(speed), 1) * DriveTrain.INCHES_PER_SEC_PER_SPEED,
+                    DriveTrain.PROFILE_MAX_ACCELERATION, DriveTrain.PROFILE_MAX_JERK,
+                    DriveTrain.PROFILE_PERIOD_SECONDS);
+            return new Step(false, distanceInches, speed, 0, crossing, pastDefense, profile);
+        }
+
+        public static Step turn(double degrees) {
+            return new Step(true, 0, 0, degrees, null, 0, null);
+        }
+
+        @Override
+        public String toString() {
+            return isTurn ? "turn " + degrees : "drive " + distanceInches + " @ " + speed;
+        }
+    }
+
+    /** How a run ended. */
+    public static class Result {
+
+        public boolean finished;   // every step finished within AUTONOMOUS_SECONDS
+        public int stepsFinished;
+        public double seconds;     // when the last step finished, or the timeout
+        public double x;           // end pose, inches and degrees, once at rest
+        public double y;
+        public double heading;
+        public int slips;          // TractionMonitor events while driving
+        public int stalls;
+        public double crossedAt;   // where DefenseCrossing saw the far side, or NaN
+
+        @Override
+        public String toString() {
+            return String.format("%s after %.2fs (%d steps): x %.1f y %.1f heading %.1f, %d slips, %d stalls,"
+                    + " crossed at %.1f",
+                    finished ? "finished" : "timed out", seconds, stepsFinished, x, y, heading,
+                    slips, stalls, crossedAt);
+        }
+    }
+
+    /**
+     * @return the drivetrain commands AutoCommand1 schedules for this
+     *         routine, in order
+     */
+    public static List<Step> plan(Autonomous.Type type, Autonomous.Strat strat,
+            Autonomous.Position position) {
+        List<Step> steps = new ArrayList<Step>();
+        double pastDefense = AutoCommand1.getDistancePastDefense(position);
+        double totalDistance = AutoCommand1.getDistance(type) + pastDefense;
+        DefenseCrossing.Signature crossing = AutoCommand1.getCrossingSignature(type);
+        switch (strat) {
+            case DRIVE_ACROSS:
+                steps.add(Step.drive(totalDistance, AutoCommand1.getSpeed(type), crossing, pastDefense));
+                break;
+            case DRIVE_SHOOT_VISION:
+            case DRIVE_SHOOT_NO_VISION:
+                steps.add(Step.drive(totalDistance, AutoCommand1.getSpeed(type), crossing, pastDefense));
+                steps.add(Step.turn(AutoCommand1.getTurnAngle(position)));
+                break;
+            default:
+                break;
+        }
+        return steps;
+    }
+
+    private final DrivetrainModel m_model;
+    private final TurnController m_turn;
+    private final HeadingHold m_hold;
+    private final EncoderTracker m_encoders = new EncoderTracker();
+    private final AutoDriveStraightLogic.Sensors m_sensors = new AutoDriveStraightLogic.Sensors();
+    private final TractionMonitor.Listener m_tractionCounter;
+
+    // per-run state
+    private List<Step> m_plan;
+    private int m_current;
+    private boolean m_started;
+    private double m_startDistance;
+    private double m_odometryDistance; // as of the last Odometry update
+    private int m_imuHeading;          // as of the last IMU sample
+    private double m_imuRawHeading;    // the same, as getSnapshot gives it
+    private double m_imuAccel;         // inches/sec^2
+    private double m_imuPitch;
+    private double m_imuRoll;
+    private int m_tickLeft;            // encoder snapshot, Robot.sampleSensors
+    private int m_tickRight;
+    private boolean m_encodersZeroed;
+    private AutoDriveStraightLogic m_logic;
+    private int m_slips;
+    private int m_stalls;
+    private double m_crossedAt;
+
+    public AutoRoutineSim(DrivetrainModel model) {
+        this(model, TurnGains.loadSaved());
+    }
+
+    /** @param turnGains for AutoRotateDegrees, as DriveTrain would load them */
+    public AutoRoutineSim(DrivetrainModel model, TurnGains turnGains) {
+        m_model = model;
+        m_turn = new TurnController(turnGains.Kp, turnGains.Ki,
+                turnGains.Kd, turnGains.Kf, IMU_PERIOD);
+        m_hold = new HeadingHold(DriveTrain.headingKp, DriveTrain.headingKi, DriveTrain.headingKd);
+        m_tractionCounter = new TractionMonitor.Listener() {
+
+            public void tractionChanged(TractionMonitor.Event event) {
+                if (event.condition == TractionMonitor.Condition.SLIP) {
+                    m_slips++;
+                } else if (event.condition == TractionMonitor.Condition.STALL) {
+                    m_stalls++;
+                }
+            }
+        };
+    }
+
+    public DrivetrainModel getModel() {
+        return m_model;
+    }
+
+    /**
+     * Runs plan from a standing start at the origin.
+     *
+     * @param out filled with the outcome
+     * @return out
+     */
+    public Result run(List<Step> plan, Result out) {
+        m_model.reset();
+        m_turn.stop();
+        m_hold.stop();
+        m_plan = plan;
+        m_current = 0;
+        m_started = false;
+        m_odometryDistance = 0;
+        m_encoders.rebaseline();
+        m_logic = null;
+        m_imuHeading = 0;
+        m_imuRawHeading = 0;
+        m_imuAccel = 0;
+        m_imuPitch = 0;
+        m_imuRoll = 0;
+        m_slips = 0;
+        m_stalls = 0;
+        m_crossedAt = Double.NaN;
+
+        int ticksPerImuSample = (int) Math.round(IMU_PERIOD / SENSOR_PERIOD);
+        int ticksPerSchedule = (int) Math.round(SCHEDULER_PERIOD / SENSOR_PERIOD);
+        int maxTicks = (int) Math.round(AUTONOMOUS_SECONDS / SENSOR_PERIOD);
+        double finishedAt = AUTONOMOUS_SECONDS;
+        for (int tick = 0; tick < maxTicks; tick++) {
+            if (tick % ticksPerSchedule == 0) {
+                if (schedulerTick()) {
+                    finishedAt = m_model.getTime();
+                    break;
+                }
+            }
+            m_model.advance(SENSOR_PERIOD);
+            updateOdometry();
+            if ((tick + 1) % ticksPerImuSample == 0) {
+                // DriveTrain.stepAutoTurn runs on each new sample
+                double heading = m_model.readHeading();
+                m_imuHeading = normalizedHeading(heading);
+                m_imuRawHeading = heading;
+                m_imuAccel = Math.abs(m_model.getAcceleration());
+                m_imuPitch = m_model.readPitch();
+                m_imuRoll = m_model.readRoll();
+                if (m_turn.isEnabled()) {
+                    turn(m_turn.step(BNO055.normalizeHeading(heading)) * DriveTrain.MAXIMUM_TURN_SPEED);
+                }
+            }
+        }
+
+        out.finished = m_current >= m_plan.size();
+        out.stepsFinished = m_current;
+        out.seconds = finishedAt;
+        out.slips = m_slips;
+        out.stalls = m_stalls;
+        out.crossedAt = m_crossedAt;
+
+        // let the robot come to rest where it's going to end up
+        m_turn.stop();
+        m_model.advance(1.0);
+        out.x = m_model.getX();
+        out.y = m_model.getY();
+        out.heading = BNO055.normalizeHeading(m_model.getHeading());
+        return out;
+    }
+
+    // Odometry.update: distance comes from the encoders, so wheel slip
+    // counts as distance travelled; the right master counts down
+    private void updateOdometry() {
+        m_encoders.update(m_model.getTime(), m_model.getLeftTicks(), -m_model.getRightTicks());
+        m_odometryDistance += (m_encoders.getLeftDelta() + m_encoders.getRightDelta()) / 2.0
+                / RobotMap.quadTicksPerInch;
+    }
+
+    // one Scheduler.run(); true once the whole plan has finished
+    private boolean schedulerTick() {
+        // Robot.sampleSensors
+        m_tickLeft = m_model.getLeftTicks();
+        m_tickRight = m_model.getRightTicks();
+
+        // CommandGroup starts the next command in the same tick the previous
+        // one finishes
+        while (m_current < m_plan.size()) {
+            Step step = m_plan.get(m_current);
+            if (!m_started) {
+                initialize(step);
+                m_started = true;
+            }
+            execute(step);
+            if (!isFinished(step)) {
+                return false;
+            }
+            end(step);
+            m_current++;
+            m_started = false;
+        }
+        return true;
+    }
+
+    private void initialize(Step step) {
+        // both commands call DriveTrain.init(), which zeroes the encoders
+        // and tells Odometry
+        m_model.setTicks(0, 0);
+        m_encoders.encodersReset(m_model.getTime());
+        if (step.isTurn) {
+            m_turn.start(step.degrees);
+        } else {
+            // AutoDriveStraight builds its logic when it's constructed
+            m_encodersZeroed = false;
+            m_startDistance = m_odometryDistance;
+            m_logic = new AutoDriveStraightLogic(step.profile, step.speed,
+                    RobotMap.driveTrackWidthInInches, step.crossing, step.pastDefense);
+            m_logic.getTraction().addListener(m_tractionCounter);
+            m_logic.reset();
+        }
+    }
+
+    private void execute(Step step) {
+        if (!step.isTurn) {
+            // AutoDriveStraight waits to see the encoder reset first
+            if (!m_encodersZeroed) {
+                m_encodersZeroed = m_tickLeft == 0 && m_tickRight == 0;
+                if (m_encodersZeroed) {
+                    m_logic.start();
+                    m_hold.start(m_imuHeading);
+                }
+            } else if (step.distanceInches != 0) {
+                double speed = m_logic.step(readSensors());
+                DefenseCrossing crossing = m_logic.getCrossing();
+                if (crossing != null && crossing.isCrossed()) {
+                    m_crossedAt = crossing.getCrossedAt();
+                }
+                // DriveTrain.driveStraight
+                double correction = m_hold.step(m_imuHeading) * DriveTrain.MAXIMUM_TURN_SPEED;
+                m_model.setLeft(DrivetrainModel.Mode.SPEED, speed + correction);
+                m_model.setRight(DrivetrainModel.Mode.SPEED, -speed + correction);
+            }
+        }
+    }
+
+    // AutoDriveStraight.readLogicSensors
+    private AutoDriveStraightLogic.Sensors readSensors() {
+        AutoDriveStraightLogic.Sensors in = m_sensors;
+        in.time = m_model.getTime();
+        in.travelled = m_odometryDistance - m_startDistance;
+        in.leftVelocity = m_model.getLeftSpeed() * DriveTrain.INCHES_PER_SEC_PER_RPM;
+        in.rightVelocity = -m_model.getRightSpeed() * DriveTrain.INCHES_PER_SEC_PER_RPM;
+        in.leftCurrent = m_model.getLeftCurrent();
+        in.rightCurrent = m_model.getRightCurrent();
+        in.heading = m_imuRawHeading;
+        in.accel = m_imuAccel;
+        in.pitch = m_imuPitch;
+        in.roll = m_imuRoll;
+        return in;
+    }
+
+    private boolean isFinished(Step step) {
+        if (step.isTurn) {
+            return m_turn.isOnTarget();
+        }
+        return m_encodersZeroed && (step.distanceInches == 0
+                || m_logic.isFinished(m_odometryDistance - m_startDistance));
+    }
+
+    private void end(Step step) {
+        if (step.isTurn) {
+            // DriveTrain.endAutoTurn
+            m_turn.stop();
+            turn(0);
+        } else {
+            m_hold.stop();
+            // DriveTrain.stop: RobotDrive.stopMotor leaves the Talons neutral
+            m_model.setLeft(DrivetrainModel.Mode.DISABLED, 0);
+            m_model.setRight(DrivetrainModel.Mode.DISABLED, 0);
+        }
+    }
+
+    // DriveTrain.turn
+    private void turn(double speed) {
+        m_model.setLeft(DrivetrainModel.Mode.SPEED, speed);
+        m_model.setRight(DrivetrainModel.Mode.SPEED, speed);
+    }
+
+    // same rounding as BNO055.getNormalizedHeading, which IMUPIDSource uses
+    private static int normalizedHeading(double heading) {
+        int h = (int) Math.round(heading % 360);
+        if (h > 180) {
+            h = -(360 - h);
+        }
+        return h;
+    }
+
+    public static void main(String[] args) {
+        Autonomous.Type type = args.length > 0 ? Autonomous.Type.valueOf(args[0]) : Autonomous.Type.LOWBAR;
+        Autonomous.Strat strat = args.length > 1 ? Autonomous.Strat.valueOf(args[1])
+                : Autonomous.Strat.DRIVE_SHOOT_NO_VISION;
+        Autonomous.Position position = args.length > 2 ? Autonomous.Position.valueOf(args[2])
+                : Autonomous.Position.ONE;
+
+        List<Step> plan = plan(type, strat, position);
+        System.out.println(type + " " + strat + " " + position + ": " + plan);
+        DrivetrainModel model = new DrivetrainModel();
+        model.setDefense(DefenseModel.forType(type));
+        AutoRoutineSim sim = new AutoRoutineSim(model);
+        Result result = new Result();
+        System.out.println(sim.run(plan, result));
+
+        // warm up, then time it
+        for (int i = 0; i < 20; i++) {
+            sim.run(plan, result);
+        }
+        int runs = 200;
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            sim.run(plan, result);
+        }
+        double millis = (System.nanoTime() - start) / 1e6 / runs;
+        double simulated = sim.getModel().getTime();
+        System.out.println(String.format("%.2f ms per run of %.2fs simulated (%.0fx real time)",
+                millis, simulated, simulated * 1000 / millis));
+    }
+}
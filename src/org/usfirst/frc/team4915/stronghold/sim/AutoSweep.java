@@ -0,0 +1,334 @@
+package org.usfirst.frc.team4915.stronghold.sim;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.usfirst.frc.team4915.stronghold.subsystems.Autonomous;
+import org.usfirst.frc.team4915.stronghold.utils.BNO055;
+import org.usfirst.frc.team4915.stronghold.utils.TurnGains;
+
+/**
+ * AutoSweep runs every AutoCommand1 configuration (barrier type x strategy
+ * x position) many times in AutoRoutineSim. Each run perturbs the robot:
+ * wheel slip on the defense, uneven motors, worn wheels and IMU noise, and
+ * drives it over the defense's DefenseModel. It reports, per
+ * configuration, how far from the intended pose the robot ends up and how
+ * long the routine takes. The fragile routines are listed first.
+ *
+ * The intended pose is getDistancePastDefense beyond the DefenseModel's
+ * far side where AutoDriveStraight watches for the crossing, and the
+ * AutoCommand1 distance otherwise.
+ *
+ * Runs are spread over every core with fork/join. Each run is seeded from
+ * its configuration and run number, so results repeat exactly.
+ *
+ * <pre>
+ *   java -cp bin:WPILib.jar org.usfirst.frc.team4915.stronghold.sim.AutoSweep [runs per configuration]
+ * </pre>
+ */
+public class AutoSweep {
+
+    // runs per fork/join leaf
+    private static final int BATCH = 25;
+
+    // perturbations, drawn per run
+    private static final double MOTOR_SPREAD = 0.05;        // kV, kS, efficiency
+    private static final double WHEEL_DIAMETER_SPREAD = 0.1; // inches
+    private static final double HEADING_NOISE = 0.5;         // degrees per sample
+
+    // loaded once, not per run; every run turns with what the robot would
+    private static final TurnGains TURN_GAINS = TurnGains.loadSaved();
+
+    /**
+     * @return the worst-case fraction of wheel travel lost to slip while
+     *         crossing this defense
+     */
+    public static double getMaxSlip(Autonomous.Type type) {
+        switch (type) {
+            case LOWBAR:
+                return 0.02;
+            case PORTCULLIS:
+                return 0.03;
+            case ROUGH_TERRAIN:
+                return 0.10;
+            case MOAT:
+                return 0.15;
+            case ROCK_WALL:
+                return 0.15;
+            default:
+                return 0.05;
+        }
+    }
+
+    /** One AutoCommand1 configuration and what became of its runs. */
+    public static class Configuration {
+
+        public final Autonomous.Type type;
+        public final Autonomous.Strat strat;
+        public final Autonomous.Position position;
+        final List<AutoRoutineSim.Step> plan;
+        final DefenseModel defense;
+
+        // where the routine means to leave the robot
+        double targetX;
+        double targetHeading;
+
+        // per run
+        final double[] poseError;
+        final double[] headingError;
+        final double[] seconds;
+        final boolean[] finished;
+        final int[] slips;
+        final boolean[] crossed;
+        final boolean watchesCrossing;
+
+        Configuration(Autonomous.Type type, Autonomous.Strat strat, Autonomous.Position position,
+                int runs) {
+            this.type = type;
+            this.strat = strat;
+            this.position = position;
+            this.plan = AutoRoutineSim.plan(type, strat, position);
+            this.defense = DefenseModel.forType(type);
+            boolean watches = false;
+            for (AutoRoutineSim.Step step : plan) {
+                if (step.isTurn) {
+                    targetHeading = step.degrees;
+                } else if (step.crossing != null) {
+                    targetX += Math.signum(step.speed) * (defense.getFarSide() + step.pastDefense);
+                    watches = true;
+                } else {
+                    targetX += Math.signum(step.speed) * step.distanceInches;
+                }
+            }
+            watchesCrossing = watches;
+            poseError = new double[runs];
+            headingError = new double[runs];
+            seconds = new double[runs];
+            finished = new boolean[runs];
+            slips = new int[runs];
+            crossed = new boolean[runs];
+        }
+
+        void run(int i, AutoRoutineSim.Result result) {
+            long configSeed = (type.ordinal() * 31 + strat.ordinal()) * 31 + position.ordinal();
+            Random random = new Random(configSeed << 32 | i);
+            DrivetrainModel.Parameters params = new DrivetrainModel.Parameters();
+            double maxSlip = getMaxSlip(type);
+            params.leftTraction = 1 - maxSlip * random.nextDouble();
+            params.rightTraction = 1 - maxSlip * random.nextDouble();
+            params.slipDistanceInches = defense.getFarSide();
+            params.kV *= 1 + MOTOR_SPREAD * random.nextGaussian();
+            params.kS *= 1 + MOTOR_SPREAD * random.nextGaussian();
+            params.leftEfficiency = 1 - MOTOR_SPREAD * Math.abs(random.nextGaussian());
+            params.rightEfficiency = 1 - MOTOR_SPREAD * Math.abs(random.nextGaussian());
+            params.wheelDiameterInches += WHEEL_DIAMETER_SPREAD * random.nextGaussian();
+            params.headingNoiseDegrees = HEADING_NOISE;
+            DrivetrainModel model = new DrivetrainModel(params);
+            model.setNoise(random);
+            model.setDefense(defense);
+
+            new AutoRoutineSim(model, TURN_GAINS).run(plan, result);
+            poseError[i] = Math.hypot(result.x - targetX, result.y);
+            headingError[i] = Math.abs(BNO055.normalizeHeading(result.heading - targetHeading));
+            seconds[i] = result.seconds;
+            finished[i] = result.finished;
+            slips[i] = result.slips + result.stalls;
+            crossed[i] = !Double.isNaN(result.crossedAt);
+        }
+
+        public boolean isEmpty() {
+            return plan.isEmpty();
+        }
+
+        public double getFinishedFraction() {
+            int n = 0;
+            for (boolean f : finished) {
+                n += f ? 1 : 0;
+            }
+            return (double) n / finished.length;
+        }
+
+        /** @return the fraction of runs in which TractionMonitor reported anything */
+        public double getSlipFraction() {
+            int n = 0;
+            for (int s : slips) {
+                n += s > 0 ? 1 : 0;
+            }
+            return (double) n / slips.length;
+        }
+
+        /** @return the fraction of runs in which DefenseCrossing saw the far side */
+        public double getCrossedFraction() {
+            int n = 0;
+            for (boolean c : crossed) {
+                n += c ? 1 : 0;
+            }
+            return (double) n / crossed.length;
+        }
+
+        public double getPoseErrorPercentile(double p) {
+            return percentile(poseError, p);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-13s %-21s %-5s %5.1f%%  %5.2f %5.2f  %6.1f %6.1f %6.1f  %5.1f %5.1f %5.1f  %5.1f%%  %s",
+                    type, strat, position, 100 * getFinishedFraction(),
+                    mean(seconds), percentile(seconds, 95),
+                    mean(poseError), percentile(poseError, 95), percentile(poseError, 100),
+                    mean(headingError), percentile(headingError, 95), percentile(headingError, 100),
+                    100 * getSlipFraction(),
+                    watchesCrossing ? String.format("%5.1f%%", 100 * getCrossedFraction()) : "    -");
+        }
+    }
+
+    static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values) {
+            sum += v;
+        }
+        return sum / values.length;
+    }
+
+    static double percentile(double[] values, double p) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int i = (int) Math.ceil(p / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, i))];
+    }
+
+    // runs [from, to) of one configuration, splitting until BATCH runs remain
+    private static class Runs extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Configuration m_config;
+        private final int m_from;
+        private final int m_to;
+
+        Runs(Configuration config, int from, int to) {
+            m_config = config;
+            m_from = from;
+            m_to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (m_to - m_from <= BATCH) {
+                AutoRoutineSim.Result result = new AutoRoutineSim.Result();
+                for (int i = m_from; i < m_to; i++) {
+                    m_config.run(i, result);
+                }
+            } else {
+                int mid = (m_from + m_to) >>> 1;
+                invokeAll(new Runs(m_config, m_from, mid), new Runs(m_config, mid, m_to));
+            }
+        }
+    }
+
+    // every configuration, one task each
+    private static class Sweep extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Configuration> m_configs;
+
+        Sweep(List<Configuration> configs) {
+            m_configs = configs;
+        }
+
+        @Override
+        protected void compute() {
+            List<Runs> tasks = new ArrayList<Runs>();
+            for (Configuration c : m_configs) {
+                tasks.add(new Runs(c, 0, c.seconds.length));
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    /**
+     * Builds every configuration with a drivetrain plan.
+     */
+    public static List<Configuration> configurations(int runs) {
+        // AutoCommand1's table lookups print their arguments; hush them
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+
+            @Override
+            public void write(int b) {
+            }
+        }));
+        List<Configuration> configs = new ArrayList<Configuration>();
+        try {
+            for (Autonomous.Type type : Autonomous.Type.values()) {
+                for (Autonomous.Strat strat : Autonomous.Strat.values()) {
+                    for (Autonomous.Position position : Autonomous.Position.values()) {
+                        configs.add(new Configuration(type, strat, position, runs));
+                    }
+                }
+            }
+        } finally {
+            System.setOut(out);
+        }
+        return configs;
+    }
+
+    /** Runs every configuration in pool. */
+    public static void sweep(List<Configuration> configs, ForkJoinPool pool) {
+        List<Configuration> work = new ArrayList<Configuration>();
+        for (Configuration c : configs) {
+            if (!c.isEmpty()) {
+                work.add(c);
+            }
+        }
+        pool.invoke(new Sweep(work));
+    }
+
+    public static void main(String[] args) {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        List<Configuration> configs = configurations(runs);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        long start = System.nanoTime();
+        sweep(configs, pool);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        List<Configuration> ran = new ArrayList<Configuration>();
+        int skipped = 0;
+        for (Configuration c : configs) {
+            if (c.isEmpty()) {
+                skipped++;
+            } else {
+                ran.add(c);
+            }
+        }
+        // most fragile first
+        Collections.sort(ran, new Comparator<Configuration>() {
+
+            public int compare(Configuration a, Configuration b) {
+                return Double.compare(b.getPoseErrorPercentile(95), a.getPoseErrorPercentile(95));
+            }
+        });
+
+        System.out.println(String.format("%d configurations x %d runs in %.1fs on %d threads"
+                + " (%d configurations drive nowhere and were skipped)",
+                ran.size(), runs, seconds, pool.getParallelism(), skipped));
+        System.out.println(String.format("%-13s %-21s %-5s %6s  %-11s  %-20s  %-17s  %6s  %6s",
+                "type", "strat", "pos", "done", "time s", "pose error in", "heading error", "slip",
+                "crossed"));
+        System.out.println(String.format("%-13s %-21s %-5s %6s  %5s %5s  %6s %6s %6s  %5s %5s %5s  %6s  %6s",
+                "", "", "", "", "mean", "p95", "mean", "p95", "max", "mean", "p95", "max", "runs", "runs"));
+        for (Configuration c : ran) {
+            System.out.println(c);
+        }
+    }
+}
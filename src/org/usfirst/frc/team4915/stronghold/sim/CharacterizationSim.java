@@ -0,0 +1,77 @@
+package org.usfirst.frc.team4915.stronghold.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.usfirst.frc.team4915.stronghold.utils.DriveCharacterization;
+import org.usfirst.frc.team4915.stronghold.utils.FeedforwardFit;
+
+/**
+ * CharacterizationSim runs the four CharacterizeDrive tests against a
+ * DrivetrainModel and fits the logs with FeedforwardFit, so the fit can
+ * be checked against the constants the model was built with. Like
+ * AutoRoutineSim it mirrors what the command does each scheduler tick.
+ *
+ * An optional scale for the model's kS, kV and kA stands in for a
+ * different robot.
+ *
+ * <pre>
+ *   java -cp bin:WPILib.jar org.usfirst.frc.team4915.stronghold.sim.CharacterizationSim [scale]
+ * </pre>
+ */
+public class CharacterizationSim {
+
+    private final DrivetrainModel m_model;
+
+    public CharacterizationSim(DrivetrainModel model) {
+        m_model = model;
+    }
+
+    /** Runs one test from rest at the origin. */
+    public DriveCharacterization run(DriveCharacterization.Test test, boolean forward) {
+        DriveCharacterization log = new DriveCharacterization(test, forward);
+        double ticksPerInch = m_model.getParameters().ticksPerInch();
+        double busVolts = m_model.getParameters().busVoltage;
+        m_model.reset();
+        while (true) {
+            double now = m_model.getTime();
+            log.record(now, m_model.getLeftVoltage(), m_model.getLeftVelocity(),
+                    m_model.getRightVoltage(), m_model.getRightVelocity());
+            double fraction = Math.min(1, log.getVolts(now) / busVolts);
+            m_model.setLeft(DrivetrainModel.Mode.PERCENT_VBUS, log.getLeftSign() * fraction);
+            m_model.setRight(DrivetrainModel.Mode.PERCENT_VBUS, log.getRightSign() * fraction);
+
+            double distance = Math.max(Math.abs(m_model.getLeftTicks()),
+                    Math.abs(m_model.getRightTicks())) / ticksPerInch;
+            if (log.isFinished(now, distance)) {
+                break;
+            }
+            m_model.advance(AutoRoutineSim.SCHEDULER_PERIOD);
+        }
+        m_model.setLeft(DrivetrainModel.Mode.DISABLED, 0);
+        m_model.setRight(DrivetrainModel.Mode.DISABLED, 0);
+        return log;
+    }
+
+    public static void main(String[] args) {
+        double scale = args.length > 0 ? Double.parseDouble(args[0]) : 1.0;
+        DrivetrainModel.Parameters params = new DrivetrainModel.Parameters();
+        params.kS *= scale;
+        params.kV *= scale;
+        params.kA *= scale;
+        CharacterizationSim sim = new CharacterizationSim(new DrivetrainModel(params));
+
+        List<double[]> rows = new ArrayList<double[]>();
+        for (DriveCharacterization.Test test : DriveCharacterization.Test.values()) {
+            for (boolean forward : new boolean[] {true, false}) {
+                DriveCharacterization log = sim.run(test, forward);
+                System.out.println(String.format("%s: %d rows, %.1fs", log.getName(),
+                        log.getRows().size(), sim.m_model.getTime()));
+                rows.addAll(log.getRows());
+            }
+        }
+        System.out.println(String.format("model: kS %.3f V, kV %.4f V/(in/s), kA %.4f V/(in/s^2)",
+                params.kS, params.kV, params.kA));
+        FeedforwardFit.report(rows);
+    }
+}
@@ -0,0 +1,85 @@
+package org.usfirst.frc.team4915.stronghold.sim;
+
+import org.usfirst.frc.team4915.stronghold.RobotMap;
+import org.usfirst.frc.team4915.stronghold.subsystems.Autonomous;
+
+/**
+ * DefenseModel is the ground the robot drives over in the simulator: a
+ * defense as a raised platform, with rocks or bumps on some, starting
+ * START inches ahead and LENGTH long. DrivetrainModel turns it into pitch
+ * and roll from the height under the front and rear wheels, and under the
+ * left and right.
+ *
+ * The shapes are rough, only meant to give DefenseCrossing the climb,
+ * crest and descent a real crossing would. The low bar and portcullis are
+ * flat: the robot goes under them.
+ */
+public class DefenseModel {
+
+    public static final double START = 70.0;     // inches of rear wheel travel
+    public static final double LENGTH = 48.0;    // inches, including ramps
+    public static final double RAMP = 6.0;       // inches to reach full height
+    public static final double WHEELBASE = 26.0; // inches, rear to front wheels
+
+    private final double m_height;   // of the platform, inches
+    private final double m_bumps;    // height of bumps on top, inches
+    private final double m_spacing;  // between bumps, inches
+    private final double m_rocks;    // left/right height difference, inches
+
+    public DefenseModel(double height, double bumps, double spacing, double rocks) {
+        m_height = height;
+        m_bumps = bumps;
+        m_spacing = spacing;
+        m_rocks = rocks;
+    }
+
+    public static DefenseModel forType(Autonomous.Type type) {
+        switch (type) {
+            case MOAT:
+                return new DefenseModel(5, 0, 1, 0);
+            case ROCK_WALL:
+                return new DefenseModel(6, 1, 10, 2.5);
+            case ROUGH_TERRAIN:
+                return new DefenseModel(2, 2, 12, 1);
+            default:
+                return new DefenseModel(0, 0, 1, 0);
+        }
+    }
+
+    /** @return rear wheel travel at which the robot is clear of the far side */
+    public double getFarSide() {
+        return START + LENGTH;
+    }
+
+    /**
+     * @param distance inches the rear wheels have travelled
+     * @return degrees, positive with the front higher
+     */
+    public double getPitch(double distance) {
+        return Math.toDegrees(Math.atan2(height(distance + WHEELBASE, 0) - height(distance, 0),
+                WHEELBASE));
+    }
+
+    /** @return degrees, positive with the left higher */
+    public double getRoll(double distance) {
+        double middle = distance + WHEELBASE / 2;
+        return Math.toDegrees(Math.atan2(height(middle, 1) - height(middle, -1),
+                RobotMap.driveTrackWidthInInches));
+    }
+
+    // inches above the floor at x, on the left (1), right (-1) or center
+    private double height(double x, int side) {
+        double on = Math.min(ramp(x - START), ramp(START + LENGTH - x));
+        if (on <= 0) {
+            return 0;
+        }
+        double bump = m_bumps * Math.max(0, Math.sin(Math.PI * (x - START) / m_spacing));
+        double rock = side * m_rocks / 2 * Math.sin(2 * Math.PI * (x - START) / (2.7 * m_spacing));
+        return on * (m_height + bump + rock);
+    }
+
+    // 0 before, rising to 1 over RAMP inches
+    private static double ramp(double x) {
+        return Math.max(0, Math.min(1, x / RAMP));
+    }
+}
@@ -0,0 +1,392 @@
+package org.usfirst.frc.team4915.stronghold.sim;
+
+import java.util.Random;
+
+import org.usfirst.frc.team4915.stronghold.RobotMap;
+
+/**
+ * DrivetrainModel is a 2D differential-drive physics model of our robot.
+ * It steps in simulated time, so it runs as fast as the CPU allows: a 15
+ * second autonomous at the default 1ms step takes a few milliseconds.
+ *
+ * Each side is one master Talon driving a lumped motor/wheel. The Talon is
+ * modelled the way RobotMap configures it: a P-only speed loop on the quad
+ * encoder (RobotMap.DRIVE_SPEED_KP, slot 0) and, for motion profile points,
+ * F on the point's velocity plus P on its position (RobotMap.DRIVE_PROFILE_KF
+ * and DRIVE_PROFILE_KP, slot 1), with the output voltage slew limited to
+ * RobotMap.DRIVE_VOLTAGE_RAMP_RATE. The motor is modelled as
+ *
+ * <pre>
+ *   volts = kS * sign(v) + kV * v + kA * a
+ * </pre>
+ *
+ * with v in inches/sec along the ground. Everything is in the motor's frame,
+ * so like the real right master, a positive right output drives the right
+ * wheels backward.
+ *
+ * Wheel slip and IMU noise can be switched on through Parameters and
+ * setNoise(), for Monte Carlo runs (see AutoSweep). A DefenseModel
+ * (setDefense) tilts the robot as it goes.
+ *
+ * Not thread safe; use one model per thread.
+ */
+public class DrivetrainModel {
+
+    /** How a side's Talon interprets its setpoint. */
+    public enum Mode {
+        DISABLED,     // neutral output, the wheels coast
+        PERCENT_VBUS, // setpoint is a fraction of bus voltage
+        SPEED,        // setpoint is in the Talon's Speed mode units
+        PROFILE       // setpoint is a point's velocity (rpm), plus its position
+    }
+
+    /**
+     * Model constants. The defaults describe our robot; anything may be
+     * changed before the model is constructed.
+     */
+    public static class Parameters {
+
+        public double ticksPerWheelRev = RobotMap.quadTicksPerWheelRev;
+        public double wheelDiameterInches = RobotMap.wheelDiameterInInches;
+        public double trackWidthInches = RobotMap.driveTrackWidthInInches;
+
+        public double talonKp = RobotMap.DRIVE_SPEED_KP;
+        public double profileKp = RobotMap.DRIVE_PROFILE_KP;
+        public double profileKf = RobotMap.DRIVE_PROFILE_KF;
+        public double rampVoltsPerSec = RobotMap.DRIVE_VOLTAGE_RAMP_RATE;
+        public double busVoltage = 12.0;
+
+        public double ticksPerTalonRotation = RobotMap.quadTicksPerTalonRotation;
+
+        // Chosen so that Speed setpoints of 100 and 150 settle at the ~13
+        // and ~20 ft/sec noted in DriveTrain.
+        public double kS = 1.0;   // volts
+        public double kV = 0.044; // volts per inch/sec
+        public double kA = 0.03;  // volts per inch/sec^2
+
+        // fraction of the Talon's voltage each side turns into torque, for
+        // modelling a weak gearbox or motor on one side
+        public double leftEfficiency = 1.0;
+        public double rightEfficiency = 1.0;
+
+        // for reporting output current; two CIMs per side stall at ~260A
+        public double motorOhms = 12.0 / 260;
+
+        // Wheel slip: the fraction of each side's wheel travel that moves
+        // the robot, applied over the first slipDistanceInches of the path
+        // (i.e. while on the defense). Encoders count wheel travel, so
+        // slip makes them over-read.
+        public double leftTraction = 1.0;
+        public double rightTraction = 1.0;
+        public double slipDistanceInches = Double.POSITIVE_INFINITY;
+
+        // IMU noise, standard deviation, applied by readHeading() when a
+        // Random is set. Encoder error is better modelled by changing
+        // wheelDiameterInches, which the robot code assumes is nominal.
+        public double headingNoiseDegrees = 0;
+
+        // physics and Talon loop step
+        public double stepSeconds = 0.001;
+
+        public double ticksPerInch() {
+            return ticksPerWheelRev / (wheelDiameterInches * Math.PI);
+        }
+    }
+
+    // one master Talon and its side of the drivetrain, in the motor's frame
+    private static class Side {
+
+        Mode mode = Mode.DISABLED;
+        double setpoint;
+        double positionSetpoint; // PROFILE only, Talon rotations
+        double volts;
+        double velocity; // inches/sec
+        double position; // inches
+        int tickOffset;  // see setTicks
+    }
+
+    private final Parameters m_params;
+    private final double m_ticksPerInch;
+    // Talon native velocity units are ticks per 100ms
+    private final double m_nativePerSpeedUnit;
+    private final Side m_left = new Side();
+    private final Side m_right = new Side();
+
+    private double m_time;
+    private double m_heading; // degrees, clockwise positive, not normalized
+    private double m_x;       // inches, forward from the start
+    private double m_y;       // inches, to the right of the start
+    private double m_distance; // signed inches along the path, as Odometry
+    private double m_speed;    // inches/sec forward over the ground
+    private double m_accel;    // inches/sec^2 forward, as the IMU feels it
+    private Random m_noise;     // null for noiseless sensors
+    private DefenseModel m_defense; // null for a flat floor
+
+    public DrivetrainModel(Parameters params) {
+        m_params = params;
+        m_ticksPerInch = params.ticksPerInch();
+        m_nativePerSpeedUnit = params.ticksPerTalonRotation / 600.0;
+    }
+
+    public DrivetrainModel() {
+        this(new Parameters());
+    }
+
+    public Parameters getParameters() {
+        return m_params;
+    }
+
+    /** Sets the source of sensor noise; null turns noise off. */
+    public void setNoise(Random noise) {
+        m_noise = noise;
+    }
+
+    /** Sets the ground to drive over; null for a flat floor. */
+    public void setDefense(DefenseModel defense) {
+        m_defense = defense;
+    }
+
+    /** Puts the robot back at the origin, at rest, with heading 0. */
+    public void reset() {
+        for (Side s : new Side[] {m_left, m_right}) {
+            s.mode = Mode.DISABLED;
+            s.setpoint = 0;
+            s.positionSetpoint = 0;
+            s.volts = 0;
+            s.velocity = 0;
+            s.position = 0;
+            s.tickOffset = 0;
+        }
+        m_time = 0;
+        m_heading = 0;
+        m_x = 0;
+        m_y = 0;
+        m_distance = 0;
+        m_speed = 0;
+        m_accel = 0;
+    }
+
+    public void setLeft(Mode mode, double setpoint) {
+        m_left.mode = mode;
+        m_left.setpoint = setpoint;
+    }
+
+    public void setRight(Mode mode, double setpoint) {
+        m_right.mode = mode;
+        m_right.setpoint = setpoint;
+    }
+
+    /** As setLeft, with a PROFILE point's position in Talon rotations. */
+    public void setLeft(Mode mode, double setpoint, double position) {
+        setLeft(mode, setpoint);
+        m_left.positionSetpoint = position;
+    }
+
+    public void setRight(Mode mode, double setpoint, double position) {
+        setRight(mode, setpoint);
+        m_right.positionSetpoint = position;
+    }
+
+    /**
+     * Advances the model by seconds, in whole steps of
+     * Parameters.stepSeconds.
+     */
+    public void advance(double seconds) {
+        double dt = m_params.stepSeconds;
+        double end = m_time + seconds - dt / 2;
+        while (m_time < end) {
+            step(dt);
+        }
+    }
+
+    private void step(double dt) {
+        stepSide(m_left, m_params.leftEfficiency, dt);
+        stepSide(m_right, m_params.rightEfficiency, dt);
+
+        // ground speed of each side, after slip
+        double left = m_left.velocity;
+        double right = m_right.velocity;
+        if (Math.abs(m_distance) < m_params.slipDistanceInches) {
+            left *= m_params.leftTraction;
+            right *= m_params.rightTraction;
+        }
+
+        // right is reversed, so its forward speed is -velocity
+        double forward = (left - right) / 2;
+        double omega = Math.toDegrees((left + right) / m_params.trackWidthInches);
+        double mid = Math.toRadians(m_heading + omega * dt / 2);
+        m_x += forward * dt * Math.cos(mid);
+        m_y += forward * dt * Math.sin(mid);
+        m_distance += forward * dt;
+        m_accel = (forward - m_speed) / dt;
+        m_speed = forward;
+        m_heading += omega * dt;
+        m_time += dt;
+    }
+
+    private void stepSide(Side s, double efficiency, double dt) {
+        double target;
+        switch (s.mode) {
+            case PERCENT_VBUS:
+                target = s.setpoint * m_params.busVoltage;
+                break;
+            case SPEED:
+                // P on the error in native units, output scaled to 1023
+                double error = s.setpoint * m_nativePerSpeedUnit - toNative(s.velocity);
+                target = m_params.talonKp * error / 1023 * m_params.busVoltage;
+                break;
+            case PROFILE:
+                // F on the point's velocity, P on the position error
+                double feedForward = s.setpoint * m_nativePerSpeedUnit;
+                double positionError = s.positionSetpoint * m_params.ticksPerTalonRotation - ticks(s);
+                target = (m_params.profileKf * feedForward + m_params.profileKp * positionError)
+                        / 1023 * m_params.busVoltage;
+                break;
+            default:
+                target = 0;
+                break;
+        }
+        target = clamp(target, m_params.busVoltage);
+        if (s.mode == Mode.DISABLED) {
+            s.volts = 0; // neutral isn't ramped
+        } else if (s.mode == Mode.PROFILE) {
+            s.volts = target; // slot 1's closed-loop ramp is 0, i.e. none
+        } else {
+            double maxStep = m_params.rampVoltsPerSec * dt;
+            s.volts += clamp(target - s.volts, maxStep);
+        }
+
+        // static friction holds a stopped wheel until kS is overcome
+        double volts = s.volts * efficiency;
+        if (s.velocity == 0 && Math.abs(volts) <= m_params.kS) {
+            return;
+        }
+        double friction = m_params.kS * Math.signum(s.velocity != 0 ? s.velocity : volts);
+        double v = s.velocity
+                + (volts - m_params.kV * s.velocity - friction) / m_params.kA * dt;
+        if (s.velocity != 0 && Math.signum(v) != Math.signum(s.velocity)) {
+            v = 0; // stop first; reversing starts from rest next step
+        }
+        s.velocity = v;
+        s.position += v * dt;
+    }
+
+    private double toNative(double inchesPerSec) {
+        return inchesPerSec * m_ticksPerInch / 10;
+    }
+
+    private static double clamp(double x, double limit) {
+        return Math.max(-limit, Math.min(limit, x));
+    }
+
+    public double getTime() {
+        return m_time;
+    }
+
+    /** @return heading in degrees as the BNO055 reports it: not normalized */
+    public double getHeading() {
+        return m_heading;
+    }
+
+    /** @return getHeading() as the IMU would read it, with noise */
+    public double readHeading() {
+        return m_heading + noise(m_params.headingNoiseDegrees);
+    }
+
+    /**
+     * @return pitch in degrees as the IMU would read it, with noise:
+     *         positive nose up
+     */
+    public double readPitch() {
+        double pitch = 0;
+        if (m_defense != null) {
+            // backward, the rear wheels meet the defense first
+            pitch = Math.signum(m_distance) * m_defense.getPitch(Math.abs(m_distance));
+        }
+        return pitch + noise(m_params.headingNoiseDegrees);
+    }
+
+    /** @return roll in degrees as the IMU would read it, with noise */
+    public double readRoll() {
+        double roll = m_defense != null ? m_defense.getRoll(Math.abs(m_distance)) : 0;
+        return roll + noise(m_params.headingNoiseDegrees);
+    }
+
+    private double noise(double stdDev) {
+        return m_noise == null ? 0 : m_noise.nextGaussian() * stdDev;
+    }
+
+    /** @return forward acceleration over the ground, inches/sec^2 */
+    public double getAcceleration() {
+        return m_accel;
+    }
+
+    public double getX() {
+        return m_x;
+    }
+
+    public double getY() {
+        return m_y;
+    }
+
+    /** @return signed path length, as Pose.distance from Odometry */
+    public double getDistance() {
+        return m_distance;
+    }
+
+    public int getLeftTicks() {
+        return ticks(m_left);
+    }
+
+    public int getRightTicks() {
+        return ticks(m_right);
+    }
+
+    private int ticks(Side s) {
+        return (int) Math.round(s.position * m_ticksPerInch) - s.tickOffset;
+    }
+
+    /** As CANTalon.setEncPosition(ticks) on both masters. */
+    public void setTicks(int left, int right) {
+        m_left.tickOffset += getLeftTicks() - left;
+        m_right.tickOffset += getRightTicks() - right;
+    }
+
+    /** @return left speed as CANTalon.getSpeed() reports it */
+    public double getLeftSpeed() {
+        return toNative(m_left.velocity) / m_nativePerSpeedUnit;
+    }
+
+    public double getRightSpeed() {
+        return toNative(m_right.velocity) / m_nativePerSpeedUnit;
+    }
+
+    /** @return left wheel surface speed in inches/sec, motor frame */
+    public double getLeftVelocity() {
+        return m_left.velocity;
+    }
+
+    public double getRightVelocity() {
+        return m_right.velocity;
+    }
+
+    public double getLeftVoltage() {
+        return m_left.volts;
+    }
+
+    public double getRightVoltage() {
+        return m_right.volts;
+    }
+
+    public double getLeftCurrent() {
+        return current(m_left);
+    }
+
+    public double getRightCurrent() {
+        return current(m_right);
+    }
+
+    private double current(Side s) {
+        return (s.volts - m_params.kV * s.velocity) / m_params.motorOhms;
+    }
+}
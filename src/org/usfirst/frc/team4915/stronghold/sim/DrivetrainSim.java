@@ -0,0 +1,130 @@
+package org.usfirst.frc.team4915.stronghold.sim;
+
+import org.usfirst.frc.team4915.stronghold.RobotMap;
+import org.usfirst.frc.team4915.stronghold.hal.SimEncoder;
+import org.usfirst.frc.team4915.stronghold.hal.SimImu;
+import org.usfirst.frc.team4915.stronghold.hal.SimMotorController;
+import org.usfirst.frc.team4915.stronghold.utils.IMUSample;
+
+import edu.wpi.first.wpilibj.CANTalon.TalonControlMode;
+
+/**
+ * DrivetrainSim connects a DrivetrainModel to the simulated devices that
+ * RobotMap hands out when running with -Dstronghold.simulation=true. Each
+ * step() reads what the robot code asked of the drive masters, advances the
+ * model, and publishes the resulting encoder ticks, speeds and IMU heading
+ * and tilt back through the devices, so DriveTrain and Odometry see them exactly as
+ * they would see hardware.
+ *
+ * Time is the model's, not the wall clock's: call step() as often as you
+ * like.
+ */
+public class DrivetrainSim {
+
+    private final DrivetrainModel m_model;
+    private final SimMotorController m_leftMotor;
+    private final SimMotorController m_rightMotor;
+    private final SimEncoder m_leftEncoder;
+    private final SimEncoder m_rightEncoder;
+    private final SimImu m_imu; // null if the IMU module is off
+    private final IMUSample m_sample = new IMUSample();
+
+    // what we last published, to notice DriveTrain.init() resetting them
+    private int m_leftTicks;
+    private int m_rightTicks;
+    // simulated time not yet given to the Talons' profile executors
+    private double m_profileSeconds;
+
+    public DrivetrainSim(DrivetrainModel model) {
+        if (!RobotMap.SIMULATION || RobotMap.leftMasterMotor == null) {
+            throw new IllegalStateException(
+                    "DrivetrainSim needs RobotMap.init() with -Dstronghold.simulation=true");
+        }
+        m_model = model;
+        m_leftMotor = (SimMotorController) RobotMap.leftMasterMotor;
+        m_rightMotor = (SimMotorController) RobotMap.rightMasterMotor;
+        m_leftEncoder = (SimEncoder) RobotMap.leftMasterEncoder;
+        m_rightEncoder = (SimEncoder) RobotMap.rightMasterEncoder;
+        m_imu = (SimImu) RobotMap.imu;
+        publish();
+    }
+
+    public DrivetrainModel getModel() {
+        return m_model;
+    }
+
+    /** Advances the simulation by seconds of robot time. */
+    public void step(double seconds) {
+        // the robot code may have zeroed the encoders since we last looked
+        int left = m_leftEncoder.getTicks();
+        int right = m_rightEncoder.getTicks();
+        if (left != m_leftTicks || right != m_rightTicks) {
+            m_model.setTicks(left, right);
+        }
+
+        // the Talons' profile executors run in whole milliseconds
+        m_profileSeconds += seconds;
+        int ms = (int) (m_profileSeconds * 1000);
+        m_profileSeconds -= ms / 1000.0;
+        m_leftMotor.advanceMotionProfile(ms);
+        m_rightMotor.advanceMotionProfile(ms);
+        if (m_leftMotor.takeZeroPos()) {
+            m_model.setTicks(0, m_model.getRightTicks());
+        }
+        if (m_rightMotor.takeZeroPos()) {
+            m_model.setTicks(m_model.getLeftTicks(), 0);
+        }
+
+        m_model.setLeft(modeOf(m_leftMotor), setpointOf(m_leftMotor),
+                m_leftMotor.getMotionProfilePosition());
+        m_model.setRight(modeOf(m_rightMotor), setpointOf(m_rightMotor),
+                m_rightMotor.getMotionProfilePosition());
+        m_model.advance(seconds);
+        publish();
+    }
+
+    private static DrivetrainModel.Mode modeOf(SimMotorController motor) {
+        if (!motor.isControlEnabled()) {
+            return DrivetrainModel.Mode.DISABLED;
+        }
+        TalonControlMode mode = motor.getControlMode();
+        if (mode == TalonControlMode.MotionProfile) {
+            return motor.isMotionProfileActive() ? DrivetrainModel.Mode.PROFILE
+                    : DrivetrainModel.Mode.DISABLED;
+        } else if (mode == TalonControlMode.Speed) {
+            return DrivetrainModel.Mode.SPEED;
+        } else if (mode == TalonControlMode.PercentVbus) {
+            return DrivetrainModel.Mode.PERCENT_VBUS;
+        }
+        return DrivetrainModel.Mode.DISABLED;
+    }
+
+    // a profile point's velocity is in rpm, the same units as Speed mode;
+    // its position goes alongside
+    private static double setpointOf(SimMotorController motor) {
+        if (motor.getControlMode() == TalonControlMode.MotionProfile) {
+            return motor.getMotionProfileVelocity();
+        }
+        return motor.getSetpoint();
+    }
+
+    private void publish() {
+        m_leftTicks = m_model.getLeftTicks();
+        m_rightTicks = m_model.getRightTicks();
+        m_leftEncoder.setTicks(m_leftTicks);
+        m_rightEncoder.setTicks(m_rightTicks);
+        m_leftEncoder.setSpeed(m_model.getLeftSpeed());
+        m_rightEncoder.setSpeed(m_model.getRightSpeed());
+        m_leftMotor.setOutput(m_model.getLeftVoltage(), m_model.getLeftCurrent());
+        m_rightMotor.setOutput(m_model.getRightVoltage(), m_model.getRightCurrent());
+        if (m_imu != null) {
+            m_sample.timestamp = m_model.getTime();
+            // euler angles are heading, roll, pitch
+            m_sample.heading[0] = m_model.readHeading();
+            m_sample.heading[1] = m_model.readRoll();
+            m_sample.heading[2] = m_model.readPitch();
+            m_sample.accel[0] = m_model.getAcceleration() / 39.37; // m/s^2
+            m_imu.publish(m_sample);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.usfirst.frc.team4915.stronghold.sim;
+
+import org.usfirst.frc.team4915.stronghold.RobotMap;
+import org.usfirst.frc.team4915.stronghold.subsystems.DriveTrain;
+import org.usfirst.frc.team4915.stronghold.utils.MotionProfile;
+import org.usfirst.frc.team4915.stronghold.utils.TalonProfileStreamer;
+
+import edu.wpi.first.wpilibj.CANTalon.TrajectoryPoint;
+
+/**
+ * MotionProfileCheck builds MotionProfiles with the drive's limits and
+ * finite-differences them, failing if any period's velocity, acceleration
+ * or jerk exceeds its limit or the profile doesn't cover its distance.
+ * Each profile is then played through a DrivetrainModel's Talon profile
+ * slot, with RobotMap's gains, and must end within FOLLOW_TOLERANCE_INCHES.
+ * Exits non-zero on a failure, so it can gate a build.
+ *
+ * <pre>
+ *   java -cp bin:WPILib.jar org.usfirst.frc.team4915.stronghold.sim.MotionProfileCheck [maxVelocity]
+ * </pre>
+ */
+public class MotionProfileCheck {
+
+    private static final double[] DISTANCES = { 0.5, 5, 20, 60, 200 };
+    private static final double TOLERANCE = 1e-6; // relative, for rounding
+    private static final double FOLLOW_TOLERANCE_INCHES = 1.0;
+    private static final double SETTLE_SECONDS = 1.0; // holding the last point
+
+    private static int s_failures;
+
+    private static void check(String what, double value, double limit, double distance) {
+        if (Math.abs(value) > limit * (1 + TOLERANCE)) {
+            System.out.println(String.format("FAIL %.1f in: |%s| %.1f > %.1f", distance, what,
+                    Math.abs(value), limit));
+            s_failures++;
+        }
+    }
+
+    /** Differences velocity across the whole move, starting and ending at rest. */
+    static void checkProfile(double distance, double maxVelocity) {
+        double maxAcceleration = DriveTrain.PROFILE_MAX_ACCELERATION;
+        double maxJerk = DriveTrain.PROFILE_MAX_JERK;
+        double period = DriveTrain.PROFILE_PERIOD_SECONDS;
+        MotionProfile profile = new MotionProfile(distance, maxVelocity, maxAcceleration, maxJerk, period);
+
+        double peakJerk = 0;
+        double lastVelocity = 0;
+        double lastAcceleration = 0;
+        for (int k = 0; k <= profile.size(); k++) {
+            double velocity = profile.getVelocity(k);
+            double acceleration = (velocity - lastVelocity) / period;
+            double jerk = (acceleration - lastAcceleration) / period;
+            check("velocity", velocity, maxVelocity, distance);
+            check("acceleration", acceleration, maxAcceleration, distance);
+            check("jerk", jerk, maxJerk, distance);
+            peakJerk = Math.max(peakJerk, Math.abs(jerk));
+            lastVelocity = velocity;
+            lastAcceleration = acceleration;
+        }
+        // one more difference brings the acceleration back to zero
+        check("jerk", -lastAcceleration / period, maxJerk, distance);
+        if (lastVelocity != 0 || Math.abs(profile.getPosition(profile.size()) - distance) > 1e-9) {
+            System.out.println(String.format("FAIL %.1f in: doesn't end at rest at the distance", distance));
+            s_failures++;
+        }
+        System.out.println(String.format("%6.1f in: %.2f s, peak jerk %.0f in/s^3", distance,
+                profile.getDurationSeconds(), peakJerk));
+    }
+
+    /** Runs the Talons' points through the model, as DrivetrainSim would. */
+    static void checkFollowing(double distance, double maxVelocity) {
+        double period = DriveTrain.PROFILE_PERIOD_SECONDS;
+        MotionProfile profile = new MotionProfile(distance, maxVelocity, DriveTrain.PROFILE_MAX_ACCELERATION,
+                DriveTrain.PROFILE_MAX_JERK, period);
+        TrajectoryPoint[] left = TalonProfileStreamer.toTrajectory(profile, 1);
+        TrajectoryPoint[] right = TalonProfileStreamer.toTrajectory(profile, -1);
+        DrivetrainModel model = new DrivetrainModel();
+
+        double worst = 0;
+        for (int k = 0; k < left.length; k++) {
+            model.setLeft(DrivetrainModel.Mode.PROFILE, left[k].velocity, left[k].position);
+            model.setRight(DrivetrainModel.Mode.PROFILE, right[k].velocity, right[k].position);
+            model.advance(left[k].timeDurMs / 1000.0);
+            worst = Math.max(worst, Math.abs(model.getDistance() - profile.getPosition(k)));
+        }
+        model.advance(SETTLE_SECONDS);
+        double error = model.getDistance() - distance;
+        if (Math.abs(error) > FOLLOW_TOLERANCE_INCHES) {
+            System.out.println(String.format("FAIL %.1f in: followed to %.2f in off", distance, error));
+            s_failures++;
+        }
+        System.out.println(String.format("%6.1f in: worst following error %.2f in, ends %.2f in off",
+                distance, worst, error));
+    }
+
+    public static void main(String[] args) {
+        double maxVelocity = args.length > 0 ? Double.parseDouble(args[0])
+                : DriveTrain.INCHES_PER_SEC_PER_SPEED * DriveTrain.DEFAULT_SPEED_MAX_OUTPUT;
+        for (double distance : DISTANCES) {
+            checkProfile(distance, maxVelocity);
+        }
+        System.out.println(String.format("following with F %.2f, P %.2f", RobotMap.DRIVE_PROFILE_KF,
+                RobotMap.DRIVE_PROFILE_KP));
+        for (double distance : DISTANCES) {
+            checkFollowing(distance, maxVelocity);
+        }
+        if (s_failures > 0) {
+            System.out.println(s_failures + " failures");
+            System.exit(1);
+        }
+        System.out.println("all limits held");
+    }
+}
@@ -0,0 +1,112 @@
+package org.usfirst.frc.team4915.stronghold.sim;
+
+import java.util.Random;
+
+import org.usfirst.frc.team4915.stronghold.commands.DriveTrain.AutoTuneTurn;
+import org.usfirst.frc.team4915.stronghold.subsystems.DriveTrain;
+import org.usfirst.frc.team4915.stronghold.utils.BNO055;
+import org.usfirst.frc.team4915.stronghold.utils.RelayTuner;
+import org.usfirst.frc.team4915.stronghold.utils.TurnController;
+import org.usfirst.frc.team4915.stronghold.utils.TurnGains;
+
+/**
+ * TurnTuneSim runs AutoTuneTurn against a DrivetrainModel: the relay
+ * experiment, then a VERIFY_DEGREES turn with the gains it gives, and the
+ * same turn with the hand-tuned gains for comparison. Like AutoRoutineSim
+ * it mirrors what the robot code does on each IMU sample rather than
+ * running the command.
+ *
+ * An optional scale for the motor's kV and kS stands in for a tired
+ * battery or a different carpet, and an optional seed adds IMU noise.
+ *
+ * <pre>
+ *   java -cp bin:WPILib.jar org.usfirst.frc.team4915.stronghold.sim.TurnTuneSim [motor scale] [seed]
+ * </pre>
+ */
+public class TurnTuneSim {
+
+    private final DrivetrainModel m_model;
+
+    public TurnTuneSim(DrivetrainModel model) {
+        m_model = model;
+    }
+
+    /** Runs the relay experiment around the current heading. */
+    public RelayTuner relay() {
+        RelayTuner tuner = new RelayTuner(BNO055.normalizeHeading(m_model.readHeading()));
+        while (!tuner.isFinished()) {
+            m_model.advance(AutoRoutineSim.IMU_PERIOD);
+            double heading = BNO055.normalizeHeading(m_model.readHeading());
+            turn(tuner.step(heading, m_model.getTime()) * DriveTrain.MAXIMUM_TURN_SPEED);
+        }
+        turn(0);
+        return tuner;
+    }
+
+    /**
+     * Turns by degrees from the current heading, as AutoRotateDegrees
+     * does, then stops the motors.
+     *
+     * @return seconds until the controller was first on target, or NaN
+     */
+    public double turn(TurnGains gains, double degrees) {
+        TurnController controller = new TurnController(gains.Kp, gains.Ki, gains.Kd, gains.Kf,
+                AutoRoutineSim.IMU_PERIOD);
+        controller.start(BNO055.normalizeHeading(m_model.readHeading() + degrees));
+        double start = m_model.getTime();
+        double settled = Double.NaN;
+        while (m_model.getTime() - start < AutoTuneTurn.VERIFY_TIMEOUT_SECONDS) {
+            m_model.advance(AutoRoutineSim.IMU_PERIOD);
+            double heading = BNO055.normalizeHeading(m_model.readHeading());
+            turn(controller.step(heading) * DriveTrain.MAXIMUM_TURN_SPEED);
+            if (controller.isOnTarget()) {
+                settled = m_model.getTime() - start;
+                break;
+            }
+        }
+        turn(0);
+        return settled;
+    }
+
+    private void turn(double speed) {
+        m_model.setLeft(DrivetrainModel.Mode.SPEED, speed);
+        m_model.setRight(DrivetrainModel.Mode.SPEED, speed);
+    }
+
+    // turns with gains from heading 0 and reports where the robot comes to rest
+    private static String verify(DrivetrainModel model, TurnGains gains, double predicted) {
+        model.reset();
+        double settled = new TurnTuneSim(model).turn(gains, AutoTuneTurn.VERIFY_DEGREES);
+        model.advance(1.0);
+        return String.format("%s: settled in %.2fs (predicted %s), at rest %.1f degrees off",
+                gains, settled, Double.isNaN(predicted) ? "-" : String.format("%.2fs", predicted),
+                BNO055.normalizeHeading(model.getHeading() - AutoTuneTurn.VERIFY_DEGREES));
+    }
+
+    public static void main(String[] args) {
+        double motorScale = args.length > 0 ? Double.parseDouble(args[0]) : 1.0;
+        DrivetrainModel.Parameters params = new DrivetrainModel.Parameters();
+        params.kV *= motorScale;
+        params.kS *= motorScale;
+        DrivetrainModel model = new DrivetrainModel(params);
+        if (args.length > 1) {
+            params.headingNoiseDegrees = 0.5;
+            model.setNoise(new Random(Long.parseLong(args[1])));
+        }
+
+        model.reset();
+        RelayTuner tuner = new TurnTuneSim(model).relay();
+        System.out.println(tuner);
+        if (!tuner.isDone()) {
+            return;
+        }
+        TurnGains hand = new TurnGains(DriveTrain.turnKp, DriveTrain.turnKi, DriveTrain.turnKd,
+                DriveTrain.turnKf);
+        TurnGains tuned = tuner.computeGains(hand.Kf);
+        double predicted = tuner.predictSettleSeconds(tuned, AutoTuneTurn.VERIFY_DEGREES,
+                AutoRoutineSim.IMU_PERIOD);
+        System.out.println("tuned " + verify(model, tuned, predicted));
+        System.out.println("hand  " + verify(model, hand, tuner.predictSettleSeconds(hand,
+                AutoTuneTurn.VERIFY_DEGREES, AutoRoutineSim.IMU_PERIOD)));
+    }
+}
@@ -2,11 +2,21 @@ package org.usfirst.frc.team4915.stronghold.subsystems;
 import org.usfirst.frc.team4915.stronghold.Robot;
 import org.usfirst.frc.team4915.stronghold.RobotMap;
 import org.usfirst.frc.team4915.stronghold.commands.DriveTrain.ArcadeDrive;
+import org.usfirst.frc.team4915.stronghold.hal.Imu;
+import org.usfirst.frc.team4915.stronghold.utils.BNO055;
+import org.usfirst.frc.team4915.stronghold.utils.ControlLoopStats;
+import org.usfirst.frc.team4915.stronghold.utils.HeadingHold;
 import org.usfirst.frc.team4915.stronghold.utils.IMUPIDSource;
+import org.usfirst.frc.team4915.stronghold.utils.IMUSample;
+import org.usfirst.frc.team4915.stronghold.utils.RelayTuner;
+import org.usfirst.frc.team4915.stronghold.utils.TalonProfileStreamer;
+import org.usfirst.frc.team4915.stronghold.utils.Telemetry;
+import org.usfirst.frc.team4915.stronghold.utils.TurnController;
+import org.usfirst.frc.team4915.stronghold.utils.TurnGains;
 import org.usfirst.frc.team4915.stronghold.vision.robot.VisionState;
 
-import edu.wpi.first.wpilibj.PIDController;
-import edu.wpi.first.wpilibj.PIDOutput;
+import edu.wpi.first.wpilibj.CANTalon.TalonControlMode;
+import edu.wpi.first.wpilibj.CANTalon.TrajectoryPoint;
 import edu.wpi.first.wpilibj.RobotDrive;
 import edu.wpi.first.wpilibj.command.Subsystem;
 
@@ -15,6 +25,15 @@ public class DriveTrain extends Subsystem {
     public final static double DEFAULT_SPEED_MAX_OUTPUT = 100.0;  // 100.0 == ~13 ft/sec interpolated from observations
     public final static double MAXIMUM_SPEED_MAX_OUTPUT = 150.0;  // 150.0 == ~20 ft/sec interpolated from observations
     public final static double MAXIMUM_TURN_SPEED = 40.0;  //3-4 ft per sec
+    // from the same observations; converts profile velocities to driveStraight speeds
+    public final static double INCHES_PER_SEC_PER_SPEED = 13 * 12 / DEFAULT_SPEED_MAX_OUTPUT;
+    // AutoDriveStraight motion profile limits; kept well inside the voltage ramp
+    public final static double PROFILE_MAX_ACCELERATION = 120.0; // inches/sec^2
+    public final static double PROFILE_MAX_JERK = 600.0;        // inches/sec^3
+    public final static double PROFILE_PERIOD_SECONDS = 0.02;   // one scheduler tick
+    // Sensors speeds are Talon rpm (see RobotMap.quadTicksPerTalonRotation)
+    public final static double INCHES_PER_SEC_PER_RPM =
+            RobotMap.quadTicksPerTalonRotation / RobotMap.quadTicksPerInch / 60;
     public double turnMultiplier = MEDIUM_TURN; 
     public static final double FAST_TURN = -1;
     public static final double MEDIUM_TURN = -.75;
@@ -25,40 +44,101 @@ public class DriveTrain extends Subsystem {
 
     private double maxSpeed = 0;
 
+    /**
+     * Sensors holds the drive master encoder readings for one scheduler
+     * cycle, filled by readSensors() before the scheduler runs.
+     */
+    public static class Sensors {
+
+        public int leftTicks;
+        public int rightTicks;
+        public double leftSpeed;
+        public double rightSpeed;
+    }
+
+    private final Sensors sensors = new Sensors();
+
     // support for pid-based turning
-    private PIDController m_turnPID;
+    private TurnController m_turn;
+    private ControlLoopStats m_turnStats;
     private IMUPIDSource m_imu;
-    private static final double turnKp = 0.1;
-    private static final double turnKi = 0;
-    private static final double turnKd = 0.30;
-    private static final double turnKf = 0.001;
+    // hand-tuned defaults, used unless AutoTuneTurn has saved TurnGains.FILE
+    public static final double turnKp = 0.1;
+    public static final double turnKi = 0;
+    public static final double turnKd = 0.30;
+    public static final double turnKf = 0.001;
+    private TurnGains m_turnGains;
+    private RelayTuner m_relay; // guarded by m_turn
+
+    // heading hold while driving straight; its output is scaled by
+    // MAXIMUM_TURN_SPEED in autonomous and used as-is by arcadeDriveStraight
+    private HeadingHold m_headingHold;
+    public static final double headingKp = 0.05;
+    public static final double headingKi = 0;
+    public static final double headingKd = 0.2;
+    public boolean headingHoldInTeleop = false;
+    private static final Telemetry.NumberChannel headingErrorChannel =
+            Telemetry.getInstance().number("Heading hold error", Telemetry.Priority.NORMAL);
+    private static final Telemetry.NumberChannel headingCorrectionChannel =
+            Telemetry.getInstance().number("Heading hold correction", Telemetry.Priority.LOW);
+
+    // trajectories executed by the master Talons themselves, fed from a
+    // background thread (see AutoDriveStreamed)
+    private TalonProfileStreamer m_streamer;
+
+    // the masters' modes while driving open loop, restored by stopOpenLoop
+    private TalonControlMode m_leftMode;
+    private TalonControlMode m_rightMode;
 
     public DriveTrain() {
         // TODO: would be nice to migrate stuff from RobotMap here.
 
-        // m_turnPID is used to improve accuracy during auto-turn operations.
+        // m_turn is used to improve accuracy during auto-turn operations.
+        // It's the same math PIDController did, but stepped on the IMU's
+        // thread as each sample arrives, so every step sees a fresh heading
+        // and the output goes out with no extra wait. The replay harness
+        // and simulator run the identical logic offline.
         m_imu = new IMUPIDSource();
-        m_turnPID = new PIDController(turnKp, turnKi, turnKd, turnKf,
-                                      m_imu,
-                                      new PIDOutput() {
-                    public void pidWrite(double output) {
-                        // output is [-1, 1]... we need to
-                        // convert this to a speed...
-                        Robot.driveTrain.turn(output * MAXIMUM_TURN_SPEED);
-                        // robotDrive.tankDrive(-output, output);
-                    }
-                });
-        m_turnPID.setOutputRange(-1, 1);
-        m_turnPID.setInputRange(-180, 180);
-        m_turnPID.setPercentTolerance(2);
-        // m_turnPID.setContuous?
+        double period = RobotMap.imu != null ? 1.0 / RobotMap.imu.getSampleRateHz()
+                : TurnController.PERIOD_SECONDS;
+        m_turnGains = TurnGains.loadSaved();
+        m_turn = new TurnController(m_turnGains.Kp, m_turnGains.Ki, m_turnGains.Kd,
+                m_turnGains.Kf, period);
+        m_turnStats = new ControlLoopStats("AutoTurn", period);
+        if (RobotMap.imu != null) {
+            RobotMap.imu.addSampleListener(new Imu.SampleListener() {
+
+                public void sampleArrived(IMUSample sample) {
+                    stepAutoTurn(sample);
+                }
+            });
+        }
+
+        m_headingHold = new HeadingHold(headingKp, headingKi, headingKd);
+        m_streamer = new TalonProfileStreamer("DriveProfileStreamer",
+                RobotMap.leftMasterMotor, RobotMap.rightMasterMotor);
+    }
+
+    // Called by Robot once per cycle, before the scheduler runs.
+    public void readSensors() {
+        sensors.leftTicks = RobotMap.leftMasterEncoder.getTicks();
+        sensors.rightTicks = RobotMap.rightMasterEncoder.getTicks();
+        sensors.leftSpeed = RobotMap.leftMasterEncoder.getSpeed();
+        sensors.rightSpeed = RobotMap.rightMasterEncoder.getSpeed();
+    }
+
+    public Sensors getSensors() {
+        return sensors;
     }
 
     public void init() {
         this.setMaxOutput(this.getMaxOutput());
         // reset encoders
-        RobotMap.leftMasterMotor.setEncPosition(0);
-        RobotMap.rightMasterMotor.setEncPosition(0);
+        if (Robot.odometry != null) {
+            Robot.odometry.encodersReset();
+        }
+        RobotMap.leftMasterEncoder.setTicks(0);
+        RobotMap.rightMasterEncoder.setTicks(0);
     }
 
     @Override
@@ -82,6 +162,10 @@ public class DriveTrain extends Subsystem {
         return m_imu.getHeading();
     }
 
+    public double getHeadingAt(double timestamp) {
+        return BNO055.normalizeHeading(RobotMap.imu.headingAt(timestamp));
+    }
+
     public void stop() {
         robotDrive.stopMotor();
     }
@@ -92,8 +176,59 @@ public class DriveTrain extends Subsystem {
         //  initialization establishing encoding ticks per revolution.
         //  This is approximate so we rely on the observed values above.
         //  (DEFAULT_SPEED_MAX_OUTPUT)
-        RobotMap.leftMasterMotor.set(speed);
-        RobotMap.rightMasterMotor.set(-speed);
+        // With a heading hold active, the same correction goes to both
+        //  masters, as in turn(): positive steers right.
+        double correction = stepHeadingHold() * MAXIMUM_TURN_SPEED;
+        RobotMap.leftMasterMotor.set(speed + correction);
+        RobotMap.rightMasterMotor.set(-speed + correction);
+    }
+
+    /*
+     * Heading hold: driveStraight and arcadeDriveStraight steer back to the
+     * heading we had at startHeadingHold until stopHeadingHold.
+     */
+    public void startHeadingHold() {
+        m_headingHold.start(m_imu.getHeading());
+    }
+
+    public void stopHeadingHold() {
+        if (m_headingHold.isHolding()) {
+            m_headingHold.stop();
+            System.out.println(m_headingHold);
+        }
+    }
+
+    public boolean isHoldingHeading() {
+        return m_headingHold.isHolding();
+    }
+
+    public void setHeadingHoldGains(double Kp, double Ki, double Kd) {
+        m_headingHold.setGains(Kp, Ki, Kd);
+    }
+
+    public double getHeadingHoldError() {
+        return m_headingHold.getError();
+    }
+
+    // one hold step per driving cycle; 0 when not holding
+    private double stepHeadingHold() {
+        if (!m_headingHold.isHolding()) {
+            return 0;
+        }
+        double correction = m_headingHold.step(m_imu.getHeading());
+        headingErrorChannel.set(m_headingHold.getError());
+        headingCorrectionChannel.set(correction);
+        return correction;
+    }
+
+    // Teleop driving with the stick centered in x: hold the heading we had
+    //  when the driver stopped steering. arcadeDrive's rotate is negative
+    //  to the right (cf: turnMultiplier), hence the sign.
+    public void arcadeDriveStraight(double driveYstick) {
+        if (!m_headingHold.isHolding()) {
+            startHeadingHold();
+        }
+        robotDrive.arcadeDrive(driveYstick, -stepHeadingHold());
     }
 
     // turn takes a speed, not an angle...
@@ -114,26 +249,59 @@ public class DriveTrain extends Subsystem {
 
     public void trackVision() {
         VisionState vs = VisionState.getInstance();
-        if(vs.DriveLockedOnTarget) {
-            // wait for launcher to shoot and exit auto mode or toggle AutoAim
+        if(vs.DriveLockedOnTarget || !vs.hasTargetTimestamp()) {
+            // wait for launcher to shoot and exit auto mode or toggle AutoAim;
+            // without a capture time we can't tell what TargetX is relative to.
+            // End any auto-turn first, or the IMU thread drives the motors
+            // again on its next sample.
+            this.endAutoTurn();
             this.stop(); // needed to keep driveTrain alive
         }
         else {
-            if (!this.isAutoTurning()) {
-                double h = this.getCurrentHeading();
-                double target = vs.getTargetHeading(h);
-                this.startAutoTurn(target);
-            } else if (this.isAutoTurnFinished()) {
-                this.endAutoTurn();
-                vs.DriveLockedOnTarget = true;
-            } // else allow auto-turn to continue
+            // TargetX is relative to where we pointed when the frame was
+            // captured, not where we point now.
+            double h = this.getHeadingAt(vs.getTargetTimestamp());
+            synchronized (m_turn) {
+                if (!m_turn.isEnabled()) {
+                    m_turnStats.startSettling();
+                }
+                if (m_turn.trackVision(vs.getTargetHeading(h))) {
+                    this.turn(0);
+                    vs.DriveLockedOnTarget = true;
+                } // else allow auto-turn to continue
+            }
+        }
+    }
+
+    // IMU thread: one controller step per sample, straight to the motors.
+    // Holding m_turn keeps endAutoTurn from slipping in between the step
+    // and the write and leaving the motors turning.
+    private void stepAutoTurn(IMUSample sample) {
+        synchronized (m_turn) {
+            if (m_relay != null) {
+                turn(m_relay.step(BNO055.normalizeHeading(sample.heading[0]), sample.timestamp)
+                        * MAXIMUM_TURN_SPEED);
+                return;
+            }
+            if (!m_turn.isEnabled()) {
+                return;
+            }
+            long begin = m_turnStats.begin();
+            // output is [-1, 1]... we need to
+            // convert this to a speed...
+            turn(m_turn.step(BNO055.normalizeHeading(sample.heading[0])) * MAXIMUM_TURN_SPEED);
+            if (m_turn.isOnTarget()) {
+                m_turnStats.settled();
+            }
+            m_turnStats.end(begin);
         }
     }
 
     public void startAutoTurn(double degrees) {
-        m_turnPID.reset();
-        m_turnPID.setSetpoint(degrees);
-        m_turnPID.enable();
+        synchronized (m_turn) {
+            m_turnStats.startSettling();
+            m_turn.start(degrees);
+        }
         // Timer.delay(.2);
         System.out.println("start turning from "
                 + roundToHundredths(m_imu.getHeading())
@@ -141,20 +309,127 @@ public class DriveTrain extends Subsystem {
     }
 
     public boolean isAutoTurning() {
-        return m_turnPID.isEnabled();
+        return m_turn.isEnabled();
     }
 
+    // heading, output and error are captured every cycle by the flight
+    // recorder, see Robot.recordFlight()
     public boolean isAutoTurnFinished() {
-        System.out.println("is turn done: " + m_turnPID.onTarget()
-                + " deg:" + roundToHundredths(m_imu.getHeading())
-                + " out:" + roundToHundredths(m_turnPID.get())
-                + " err:" + roundToHundredths(m_turnPID.getError()));
-        return m_turnPID.onTarget();
+        return m_turn.isOnTarget();
+    }
+
+    public double getTurnSetpoint() {
+        return m_turn.getSetpoint();
+    }
+
+    public double getTurnError() {
+        return m_turn.getError();
+    }
+
+    public double getTurnOutput() {
+        return m_turn.getOutput();
     }
 
     public void endAutoTurn() {
-        if(m_turnPID.isEnabled())
-            m_turnPID.disable();
+        synchronized (m_turn) {
+            if (m_turn.isEnabled()) {
+                m_turn.stop();
+                this.turn(0); // as PIDController.disable() did
+            }
+        }
+    }
+
+    /** @return loop rate, compute time and settle time of auto-turns */
+    public ControlLoopStats getTurnStats() {
+        return m_turnStats;
+    }
+
+    public double getTurnPeriodSeconds() {
+        return m_turn.getPeriodSeconds();
+    }
+
+    public TurnGains getTurnGains() {
+        return m_turnGains;
+    }
+
+    // takes effect from the next step, even mid-turn
+    public void setTurnGains(TurnGains gains) {
+        m_turn.setGains(gains.Kp, gains.Ki, gains.Kd, gains.Kf);
+        m_turnGains = gains;
+    }
+
+    /*
+     * Relay experiment (see AutoTuneTurn): until stopRelayTest, each IMU
+     * sample steps the tuner instead of the turn controller.
+     */
+    public void startRelayTest(RelayTuner tuner) {
+        synchronized (m_turn) {
+            m_turn.stop();
+            m_relay = tuner;
+        }
+    }
+
+    public void stopRelayTest() {
+        synchronized (m_turn) {
+            if (m_relay != null) {
+                m_relay = null;
+                this.turn(0);
+            }
+        }
+    }
+
+    /*
+     * Talon motion profiles: the masters run the trajectories on their own
+     * 10ms loop until stopTalonProfile. RobotDrive isn't fed meanwhile, so
+     * its motor safety is off for the duration.
+     */
+    public void startTalonProfile(TrajectoryPoint[] left, TrajectoryPoint[] right) {
+        robotDrive.setSafetyEnabled(false);
+        m_streamer.start(left, right);
+    }
+
+    public boolean isTalonProfileFinished() {
+        return m_streamer.isFinished();
+    }
+
+    public void stopTalonProfile() {
+        m_streamer.stop();
+        robotDrive.setSafetyEnabled(true);
+    }
+
+    public TalonProfileStreamer getProfileStreamer() {
+        return m_streamer;
+    }
+
+    /*
+     * Open loop (see CharacterizeDrive): the masters take a fraction of bus
+     * voltage, in their own frames, until stopOpenLoop. RobotDrive isn't
+     * fed meanwhile, so its motor safety is off.
+     */
+    public void startOpenLoop() {
+        robotDrive.setSafetyEnabled(false);
+        m_leftMode = RobotMap.leftMasterMotor.getControlMode();
+        m_rightMode = RobotMap.rightMasterMotor.getControlMode();
+        RobotMap.leftMasterMotor.changeControlMode(TalonControlMode.PercentVbus);
+        RobotMap.rightMasterMotor.changeControlMode(TalonControlMode.PercentVbus);
+    }
+
+    public void setOpenLoop(double left, double right) {
+        RobotMap.leftMasterMotor.set(left);
+        RobotMap.rightMasterMotor.set(right);
+    }
+
+    public void stopOpenLoop() {
+        if (m_leftMode == null) {
+            return;
+        }
+        RobotMap.leftMasterMotor.set(0);
+        RobotMap.rightMasterMotor.set(0);
+        RobotMap.leftMasterMotor.changeControlMode(m_leftMode);
+        RobotMap.rightMasterMotor.changeControlMode(m_rightMode);
+        m_leftMode = null;
+        m_rightMode = null;
+        robotDrive.setSafetyEnabled(true);
     }
 
     /*
@@ -1,13 +1,14 @@
 package org.usfirst.frc.team4915.stronghold.subsystems;
 
 import org.usfirst.frc.team4915.stronghold.RobotMap;
+import org.usfirst.frc.team4915.stronghold.hal.Solenoid;
 
 import edu.wpi.first.wpilibj.DoubleSolenoid;
 import edu.wpi.first.wpilibj.command.Subsystem;
 
 public class GearShift extends Subsystem {
 
-    DoubleSolenoid doubleSolenoid = RobotMap.doubleSolenoid;
+    Solenoid doubleSolenoid = RobotMap.doubleSolenoid;
 
     @Override
     protected void initDefaultCommand() {
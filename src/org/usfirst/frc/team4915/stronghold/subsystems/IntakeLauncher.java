@@ -3,15 +3,16 @@ package org.usfirst.frc.team4915.stronghold.subsystems;
 import org.usfirst.frc.team4915.stronghold.Robot;
 import org.usfirst.frc.team4915.stronghold.RobotMap;
 import org.usfirst.frc.team4915.stronghold.commands.IntakeLauncher.AimLauncherCommand;
+import org.usfirst.frc.team4915.stronghold.hal.MotorController;
+import org.usfirst.frc.team4915.stronghold.hal.Potentiometer;
+import org.usfirst.frc.team4915.stronghold.hal.Servo;
+import org.usfirst.frc.team4915.stronghold.hal.Switch;
+import org.usfirst.frc.team4915.stronghold.utils.Telemetry;
 import org.usfirst.frc.team4915.stronghold.vision.robot.VisionState;
 
-import edu.wpi.first.wpilibj.CANTalon;
 import edu.wpi.first.wpilibj.CANTalon.TalonControlMode;
-import edu.wpi.first.wpilibj.DigitalInput;
 import edu.wpi.first.wpilibj.Joystick;
-import edu.wpi.first.wpilibj.Servo;
 import edu.wpi.first.wpilibj.command.Subsystem;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 public class IntakeLauncher extends Subsystem {
 
@@ -22,64 +23,62 @@ public class IntakeLauncher extends Subsystem {
     private final double FULL_SPEED_FORWARD = 1;
     private final double LAUNCH_SPEED_FORWARD_LOW = 0.5; //TODO
     private final double ZERO_SPEED = 0.0;
-    private final double AIM_DEGREES_SLOP = 2; // TODO: tune this number
-    private final double AIM_TICKS_SLOP = degreesToTicks(AIM_DEGREES_SLOP);
 
-    private final double LAUNCHER_MAX_HEIGHT_DEGREES = 45.0; // in degrees from
-                                                             // horizontal
-    private final double LAUNCHER_MIN_HEIGHT_DEGREES = -11.0; // in degrees from
-                                                              // horizontal
     private final double SERVO_LEFT_LAUNCH_POSITION = .45; // in servo units
     private final double SERVO_RIGHT_LAUNCH_POSITION = .65; // in servo units
     private final double SERVO_LEFT_NEUTRAL_POSITION = .75; // in servo units
     private final double SERVO_RIGHT_NEUTRAL_POSITION = .4; // in servo units
 
-    private double launcherMaxHeightTicks = 829.0; // in potentiometer
-                                                   // ticks
-    private double launcherMinHeightTicks = 570.0; // in potentiometer
-                                                   // ticks
-    private double launcherNeutralHeightTicks = 719.0; // in
-                                                       // potentiometer
-                                                       // ticks
-    private double launcherTravelHeightTicks = 585.0; // in
-                                                      // potentiometer
-                                                      // ticks
-
-    private final double MAX_POTENTIOMETER_ERROR = 20;
-
-    private final double APPROXIMATE_DANGER = 50;
-
-
-    private final double JOYSTICK_SCALE = 50.0; // TODO
-
-    private final double MIN_JOYSTICK_MOTION = 0.1;
-
     private boolean isJoystickIdle = false;
-
-    private final double NO_VISION_TARGET = -1000;
-
-    private final int POTENTIOMETER_NEGATIVITY = -1;
-
-    private double setPoint; // in potentiometer ticks
-    private boolean isPotentiometerScrewed = false;
-    private double visionTarget = NO_VISION_TARGET;
+    private double lastJoystickY; // for the flight recorder
 
     // left and right are determined when standing behind the robot
     // These motors control flywheels that collect and shoot the ball
-    private CANTalon intakeLeftMotor = RobotMap.intakeLeftMotor; // ID 15
-    private CANTalon intakeRightMotor = RobotMap.intakeRightMotor; // ID 14
+    private MotorController intakeLeftMotor = RobotMap.intakeLeftMotor; // ID 15
+    private MotorController intakeRightMotor = RobotMap.intakeRightMotor; // ID 14
 
     // This motor adjusts the angle of the launcher for shooting
-    public CANTalon aimMotor = RobotMap.aimMotor; // ID 16
+    public MotorController aimMotor = RobotMap.aimMotor; // ID 16
+
+    // aimMotor's feedback: the pot and the limit switches at either end
+    private Potentiometer aimPotentiometer = RobotMap.aimPotentiometer;
+    private Switch aimTopSwitch = RobotMap.aimTopSwitch;
+    private Switch aimBottomSwitch = RobotMap.aimBottomSwitch;
 
     // limitswitch in the back of the basket that tells the robot when the
     // boulder is secure
-    public DigitalInput boulderSwitch = RobotMap.boulderSwitch;
+    public Switch boulderSwitch = RobotMap.boulderSwitch;
 
     // These servos push the boulder into the launcher flywheels
     public Servo launcherServoLeft = RobotMap.launcherServoLeft; // port 0
     public Servo launcherServoRight = RobotMap.launcherServoRight; // port 1
 
+    /**
+     * Sensors holds every launcher sensor value for one scheduler cycle.
+     * It is filled once by readSensors() at the start of the cycle, and all
+     * of the aiming logic reads from it. That means one JNI read per sensor
+     * per cycle, and every decision in a cycle sees the same values.
+     */
+    public static class Sensors {
+
+        public double position; // potentiometer ticks, sign corrected
+        public boolean atTop;
+        public boolean atBottom;
+        public boolean boulderLoaded;
+    }
+
+    private final Sensors sensors = new Sensors();
+
+    // all of the aiming decisions; we just carry them out
+    private final LauncherAimLogic aim = new LauncherAimLogic(sensors);
+
+    private final Telemetry.NumberChannel offsetChannel =
+            Telemetry.getInstance().number("Offset: ", Telemetry.Priority.NORMAL);
+    private final Telemetry.NumberChannel setPointChannel =
+            Telemetry.getInstance().number("Moving to setPoint", Telemetry.Priority.NORMAL);
+    private final Telemetry.NumberChannel launchAngleChannel =
+            Telemetry.getInstance().number("Launch Angle", Telemetry.Priority.HIGH);
+
     @Override
     protected void initDefaultCommand() {
         setDefaultCommand(new AimLauncherCommand());
@@ -87,7 +86,20 @@ public class IntakeLauncher extends Subsystem {
     }
 
     public IntakeLauncher() {
-        readSetPoint();
+        readSensors();
+        aim.readSetPoint();
+    }
+
+    // Called by Robot once per cycle, before the scheduler runs.
+    public void readSensors() {
+        sensors.position = aimPotentiometer.getPosition() * LauncherAimLogic.POTENTIOMETER_NEGATIVITY;
+        sensors.atTop = aimTopSwitch.get();
+        sensors.atBottom = aimBottomSwitch.get();
+        sensors.boulderLoaded = boulderSwitch.get();
+    }
+
+    public Sensors getSensors() {
+        return sensors;
     }
 
     public boolean IsAlive() {
@@ -125,36 +137,21 @@ public class IntakeLauncher extends Subsystem {
         this.launcherServoRight.set(SERVO_RIGHT_NEUTRAL_POSITION);
     }
 
-    private void readSetPoint() { // TODO rename
-        setPoint = getPosition() * POTENTIOMETER_NEGATIVITY;
-    }
-
     public void setElevationDegrees(double deg) {
-        setSetPoint(degreesToTicks(deg));
+        aim.setSetPoint(aim.degreesToTicks(deg));
     }
 
     public double getElevationDegrees() {
-        return ticksToDegrees(getPosition());
+        return aim.getElevationDegrees();
     }
 
     public boolean elevationTargetReached(double targetDegrees) {
-        double currentElevation = getElevationDegrees();
-        if(Math.abs(this.visionTarget - currentElevation) < AIM_DEGREES_SLOP)
-            return true;
-        else
-            return false;
+        return aim.elevationTargetReached(targetDegrees);
     }
 
     // changes the set point to a value
     public void setSetPoint(double newSetPoint) {
-        setPoint = newSetPoint;
-    }
-
-    // changes the set point based on an offset
-    private void offsetSetPoint(double offset) {
-        setPoint += offset;
-        SmartDashboard.putNumber("Offset: ", offset);
-        SmartDashboard.putNumber("Moving to setPoint", getSetPoint());
+        aim.setSetPoint(newSetPoint);
     }
 
     // sets the set point with the joystick and moves to set point
@@ -168,41 +165,23 @@ public class IntakeLauncher extends Subsystem {
         VisionState vs = VisionState.getInstance();
         if(vs == null) return;
 
-    	if(!vs.LauncherLockedOnTarget) {
-            double currentElevation = getElevationDegrees();
-            if(this.visionTarget == NO_VISION_TARGET) {
-                this.visionTarget = vs.getTargetElevation(currentElevation);
-                setSetPoint(degreesToTicks(this.visionTarget)); // TODO: verify sign
-            }
-            if(Math.abs(this.visionTarget - currentElevation) < AIM_DEGREES_SLOP) {
-    			vs.LauncherLockedOnTarget = true;
-                this.visionTarget = NO_VISION_TARGET; // ok since we're locked
-    			System.out.println("Stopping aimer!");
-    		}
-            else {
-                moveToSetPoint();
-            }
-    	}
-    	else if (vs.DriveLockedOnTarget) {
-    		//shoot
-    		//Leave AutoAimMode
-    	}
-    	else {
-    		//Do nothing, waiting for driveTrain to get into position
-    	}
+        if (aim.trackVision(vs)) {
+            moveToSetPoint();
+        }
     }
 
     // changes the set point based on the joystick
     private void moveLauncherWithJoystick() {
         double joystickY = Robot.oi.aimStick.getAxis((Joystick.AxisType.kY));
-        if (Math.abs(joystickY) > MIN_JOYSTICK_MOTION) {
+        lastJoystickY = joystickY;
+        if (aim.trackJoystick(joystickY)) {
             if(isJoystickIdle) {
             	aimMotor.enableControl();
             	isJoystickIdle = false;
             	System.out.println("Enabling Aim Control");
             }
-        	readSetPoint();
-            offsetSetPoint(joystickY * JOYSTICK_SCALE * POTENTIOMETER_NEGATIVITY);
+            offsetChannel.set(aim.getLastOffset());
+            setPointChannel.set(aim.getSetPoint());
         } else {
         	if(!isJoystickIdle) {
         		aimMotor.disableControl();
@@ -210,7 +189,6 @@ public class IntakeLauncher extends Subsystem {
         		System.out.println("Disabling Aim Control");
         	}
         }
-        	//aimMotor.disableControl();
     }
 
     // aimLauncher is invoked from AimLauncherCommand which is installed
@@ -220,7 +198,7 @@ public class IntakeLauncher extends Subsystem {
     public void aimLauncher() {
     	//System.out.println("aimLauncher called");
         //System.out.println("Potentiometer value: " + getPosition());
-        SmartDashboard.putNumber("Launch Angle", (int) ticksToDegrees(getPosition()));
+        launchAngleChannel.set((int) aim.ticksToDegrees(getPosition()));
         if (VisionState.getInstance().wantsControl()) {
         	//System.out.println("Tracking vision!");
             trackVision();
@@ -233,100 +211,68 @@ public class IntakeLauncher extends Subsystem {
     // If aimMototr.safetyEnabled() (defaults is false), aimMotor.set must be
     // called periodically (even with the same setpoint) to prevent motorsafety timeouts.
     public void moveToSetPoint() {
-        //keepSetPointInRange();
-        calibratePotentiometer();
-        aimMotor.changeControlMode(TalonControlMode.Position); // redundant, but harmless
-        aimMotor.set(setPoint);
-        dangerTest();
+        //aim.keepSetPointInRange();
+        aim.calibratePotentiometer();
+        aimMotor.changeControlMode(TalonControlMode.Position); // no CAN frame unless the mode changed
+        aimMotor.set(aim.getRawSetPoint());
+        aim.dangerTest();
     }
 
     public void launcherSetNeutralPosition() {
-        setSetPoint(launcherNeutralHeightTicks * POTENTIOMETER_NEGATIVITY);
+        aim.setNeutralPosition();
     }
 
     public boolean launcherAtNeutralPosition() {
-        if( Math.abs(getPosition() - launcherNeutralHeightTicks) < AIM_TICKS_SLOP)
-            return true;
-        else
-            return false;
+        return aim.atNeutralPosition();
     }
 
     public void launcherSetTravelPosition() {
-        setSetPoint(launcherTravelHeightTicks * POTENTIOMETER_NEGATIVITY);
+        aim.setTravelPosition();
     }
 
     public boolean launcherAtTravelPosition() {
-        if( Math.abs(getPosition() - launcherTravelHeightTicks) < AIM_TICKS_SLOP)
-            return true;
-        else
-            return false;
+        return aim.atTravelPosition();
     }
 
     public void launcherSetIntakePosition() {
-        setSetPoint(launcherTravelHeightTicks * POTENTIOMETER_NEGATIVITY);
+        aim.setTravelPosition();
     }
 
     public void launcherJumpToAngle(double angle) {
-        setSetPoint(degreesToTicks(angle) * POTENTIOMETER_NEGATIVITY);
-    }
-
-    // makes sure the set point doesn't go outside its max or min range
-    private void keepSetPointInRange() {
-        if (getSetPoint() < launcherMinHeightTicks - APPROXIMATE_DANGER) {
-            setPoint = launcherMinHeightTicks * POTENTIOMETER_NEGATIVITY;
-        }
-        if(getSetPoint() > launcherMaxHeightTicks + APPROXIMATE_DANGER) {
-            setPoint = launcherMaxHeightTicks * POTENTIOMETER_NEGATIVITY;
-        }
-    }
-
-    private void calibratePotentiometer() {
-        if(isLauncherAtBottom()) {
-            launcherMinHeightTicks = getPosition();
-        }
-        if(isLauncherAtTop()) {
-            launcherMaxHeightTicks = getPosition();
-        }
-    }
-
-    private void dangerTest() {
-        if((isLauncherAtBottom() && Math.abs(getPosition() - launcherMinHeightTicks) > MAX_POTENTIOMETER_ERROR) || (isLauncherAtTop() && Math.abs(getPosition() - launcherMaxHeightTicks) > MAX_POTENTIOMETER_ERROR)) {
-            isPotentiometerScrewed = true;
-        }
-    }
-
-    private double degreesToTicks(double degrees) {
-        double heightRatio = (degrees - LAUNCHER_MIN_HEIGHT_DEGREES) / (LAUNCHER_MAX_HEIGHT_DEGREES - LAUNCHER_MIN_HEIGHT_DEGREES);
-        return launcherMinHeightTicks + (launcherMaxHeightTicks - launcherMinHeightTicks) * heightRatio;
-    }
-
-    private double ticksToDegrees(double ticks) {
-        double heightRatio = (ticks - launcherMinHeightTicks) / (launcherMaxHeightTicks - launcherMinHeightTicks);
-        return LAUNCHER_MIN_HEIGHT_DEGREES + (LAUNCHER_MAX_HEIGHT_DEGREES - LAUNCHER_MIN_HEIGHT_DEGREES) * heightRatio;
+        aim.jumpToAngle(angle);
     }
 
     public boolean isLauncherAtTop() {
-        return aimMotor.isRevLimitSwitchClosed();
+        return sensors.atTop;
     }
 
     public boolean isLauncherAtBottom() {
-        return aimMotor.isFwdLimitSwitchClosed();
+        return sensors.atBottom;
     }
 
     public boolean isBoulderLoaded() {
-        return boulderSwitch.get();
+        return sensors.boulderLoaded;
     }
 
     public double getPosition() {
-        return aimMotor.getPosition() * POTENTIOMETER_NEGATIVITY;
+        return sensors.position;
     }
 
     public double getSetPoint() {
-        return setPoint * POTENTIOMETER_NEGATIVITY;
+        return aim.getSetPoint();
     }
 
     public boolean getIsPotentiometerScrewed() {
-        return isPotentiometerScrewed;
+        return aim.getIsPotentiometerScrewed();
+    }
+
+    // the aim stick as of the last joystick-controlled cycle
+    public double getLastJoystickY() {
+        return lastJoystickY;
+    }
+
+    public LauncherAimLogic getAimLogic() {
+        return aim;
     }
 
     public void backUpJoystickMethod() {
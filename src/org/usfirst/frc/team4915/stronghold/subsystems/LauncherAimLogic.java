@@ -0,0 +1,212 @@
+package org.usfirst.frc.team4915.stronghold.subsystems;
+
+/**
+ * LauncherAimLogic holds IntakeLauncher's aiming decisions: set point
+ * bookkeeping, potentiometer calibration against the limit switches, and
+ * vision/joystick tracking. It reads only the Sensors snapshot and the
+ * Vision interface it is handed, and never touches hardware, so the replay
+ * harness can run it against recorded matches on a laptop. IntakeLauncher
+ * owns one and turns its decisions into motor commands.
+ */
+public class LauncherAimLogic {
+
+    /** What the aiming logic needs from the vision system. */
+    public interface Vision {
+
+        boolean isLauncherLocked();
+
+        void setLauncherLocked();
+
+        double getTargetElevation(double currentElevation);
+    }
+
+    private final double AIM_DEGREES_SLOP = 2; // TODO: tune this number
+    private final double AIM_TICKS_SLOP = degreesToTicks(AIM_DEGREES_SLOP);
+
+    private final double LAUNCHER_MAX_HEIGHT_DEGREES = 45.0; // in degrees from
+                                                             // horizontal
+    private final double LAUNCHER_MIN_HEIGHT_DEGREES = -11.0; // in degrees from
+                                                              // horizontal
+
+    private double launcherMaxHeightTicks = 829.0; // in potentiometer
+                                                   // ticks
+    private double launcherMinHeightTicks = 570.0; // in potentiometer
+                                                   // ticks
+    private double launcherNeutralHeightTicks = 719.0; // in
+                                                       // potentiometer
+                                                       // ticks
+    private double launcherTravelHeightTicks = 585.0; // in
+                                                      // potentiometer
+                                                      // ticks
+
+    private final double MAX_POTENTIOMETER_ERROR = 20;
+
+    private final double APPROXIMATE_DANGER = 50;
+
+    private final double JOYSTICK_SCALE = 50.0; // TODO
+
+    private final double MIN_JOYSTICK_MOTION = 0.1;
+
+    private final double NO_VISION_TARGET = -1000;
+
+    public static final int POTENTIOMETER_NEGATIVITY = -1;
+
+    private final IntakeLauncher.Sensors sensors;
+
+    private double setPoint; // in potentiometer ticks
+    private boolean isPotentiometerScrewed = false;
+    private double visionTarget = NO_VISION_TARGET;
+    private double lastOffset;
+
+    public LauncherAimLogic(IntakeLauncher.Sensors sensors) {
+        this.sensors = sensors;
+    }
+
+    public void readSetPoint() { // TODO rename
+        setPoint = getPosition() * POTENTIOMETER_NEGATIVITY;
+    }
+
+    public double getElevationDegrees() {
+        return ticksToDegrees(getPosition());
+    }
+
+    public boolean elevationTargetReached(double targetDegrees) {
+        double currentElevation = getElevationDegrees();
+        if(Math.abs(this.visionTarget - currentElevation) < AIM_DEGREES_SLOP)
+            return true;
+        else
+            return false;
+    }
+
+    // changes the set point to a value
+    public void setSetPoint(double newSetPoint) {
+        setPoint = newSetPoint;
+    }
+
+    // changes the set point based on an offset
+    public void offsetSetPoint(double offset) {
+        setPoint += offset;
+        lastOffset = offset;
+    }
+
+    public double getLastOffset() {
+        return lastOffset;
+    }
+
+    /**
+     * Changes the set point based on the joystick.
+     *
+     * @return true if the stick is outside its dead band
+     */
+    public boolean trackJoystick(double joystickY) {
+        if (Math.abs(joystickY) > MIN_JOYSTICK_MOTION) {
+            readSetPoint();
+            offsetSetPoint(joystickY * JOYSTICK_SCALE * POTENTIOMETER_NEGATIVITY);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sets the set point from vision.
+     *
+     * @return true if the launcher should move to the set point this cycle
+     */
+    public boolean trackVision(Vision vs) {
+    	if(!vs.isLauncherLocked()) {
+            double currentElevation = getElevationDegrees();
+            if(this.visionTarget == NO_VISION_TARGET) {
+                this.visionTarget = vs.getTargetElevation(currentElevation);
+                setSetPoint(degreesToTicks(this.visionTarget)); // TODO: verify sign
+            }
+            if(Math.abs(this.visionTarget - currentElevation) < AIM_DEGREES_SLOP) {
+    			vs.setLauncherLocked();
+                this.visionTarget = NO_VISION_TARGET; // ok since we're locked
+    			System.out.println("Stopping aimer!");
+                return false;
+    		}
+            return true;
+    	}
+    	// else: locked; either drive is too and we shoot, or we wait for
+    	// the driveTrain to get into position
+    	return false;
+    }
+
+    public void setNeutralPosition() {
+        setSetPoint(launcherNeutralHeightTicks * POTENTIOMETER_NEGATIVITY);
+    }
+
+    public boolean atNeutralPosition() {
+        if( Math.abs(getPosition() - launcherNeutralHeightTicks) < AIM_TICKS_SLOP)
+            return true;
+        else
+            return false;
+    }
+
+    public void setTravelPosition() {
+        setSetPoint(launcherTravelHeightTicks * POTENTIOMETER_NEGATIVITY);
+    }
+
+    public boolean atTravelPosition() {
+        if( Math.abs(getPosition() - launcherTravelHeightTicks) < AIM_TICKS_SLOP)
+            return true;
+        else
+            return false;
+    }
+
+    public void jumpToAngle(double angle) {
+        setSetPoint(degreesToTicks(angle) * POTENTIOMETER_NEGATIVITY);
+    }
+
+    // makes sure the set point doesn't go outside its max or min range
+    public void keepSetPointInRange() {
+        if (getSetPoint() < launcherMinHeightTicks - APPROXIMATE_DANGER) {
+            setPoint = launcherMinHeightTicks * POTENTIOMETER_NEGATIVITY;
+        }
+        if(getSetPoint() > launcherMaxHeightTicks + APPROXIMATE_DANGER) {
+            setPoint = launcherMaxHeightTicks * POTENTIOMETER_NEGATIVITY;
+        }
+    }
+
+    public void calibratePotentiometer() {
+        if(sensors.atBottom) {
+            launcherMinHeightTicks = getPosition();
+        }
+        if(sensors.atTop) {
+            launcherMaxHeightTicks = getPosition();
+        }
+    }
+
+    public void dangerTest() {
+        if((sensors.atBottom && Math.abs(getPosition() - launcherMinHeightTicks) > MAX_POTENTIOMETER_ERROR) || (sensors.atTop && Math.abs(getPosition() - launcherMaxHeightTicks) > MAX_POTENTIOMETER_ERROR)) {
+            isPotentiometerScrewed = true;
+        }
+    }
+
+    public double degreesToTicks(double degrees) {
+        double heightRatio = (degrees - LAUNCHER_MIN_HEIGHT_DEGREES) / (LAUNCHER_MAX_HEIGHT_DEGREES - LAUNCHER_MIN_HEIGHT_DEGREES);
+        return launcherMinHeightTicks + (launcherMaxHeightTicks - launcherMinHeightTicks) * heightRatio;
+    }
+
+    public double ticksToDegrees(double ticks) {
+        double heightRatio = (ticks - launcherMinHeightTicks) / (launcherMaxHeightTicks - launcherMinHeightTicks);
+        return LAUNCHER_MIN_HEIGHT_DEGREES + (LAUNCHER_MAX_HEIGHT_DEGREES - LAUNCHER_MIN_HEIGHT_DEGREES) * heightRatio;
+    }
+
+    public double getPosition() {
+        return sensors.position;
+    }
+
+    // the value to hand the Talon in Position mode
+    public double getRawSetPoint() {
+        return setPoint;
+    }
+
+    public double getSetPoint() {
+        return setPoint * POTENTIOMETER_NEGATIVITY;
+    }
+
+    public boolean getIsPotentiometerScrewed() {
+        return isPotentiometerScrewed;
+    }
+}
@@ -0,0 +1,173 @@
+package org.usfirst.frc.team4915.stronghold.subsystems;
+
+import java.util.concurrent.locks.StampedLock;
+
+import org.usfirst.frc.team4915.stronghold.ModuleManager;
+import org.usfirst.frc.team4915.stronghold.RobotMap;
+import org.usfirst.frc.team4915.stronghold.utils.BNO055;
+import org.usfirst.frc.team4915.stronghold.utils.EncoderTracker;
+import org.usfirst.frc.team4915.stronghold.utils.IMUSample;
+import org.usfirst.frc.team4915.stronghold.utils.Pose;
+import org.usfirst.frc.team4915.stronghold.utils.RealTimeSampleThread;
+import org.usfirst.frc.team4915.stronghold.utils.SampleScheduler;
+import org.usfirst.frc.team4915.stronghold.utils.TrackWidthEstimator;
+
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.command.Subsystem;
+
+/**
+ * Odometry tracks the robot's (x, y, theta) pose by combining the drive
+ * master encoders with IMU heading. Encoders give distance travelled, the
+ * IMU gives direction; that's far better than double-integrating the
+ * BNO055's linear acceleration. When the IMU isn't available, heading is
+ * derived from the difference between the two sides instead, over the
+ * track width measured while it was (see TrackWidthEstimator), or
+ * RobotMap.driveTrackWidthInInches until there's a measurement.
+ *
+ * Runs on its own thread at UPDATE_RATE_HZ. The latest pose is published
+ * under a StampedLock so getPose() never blocks the update thread.
+ */
+public class Odometry extends Subsystem {
+
+    public static final double UPDATE_RATE_HZ = 100;
+
+    // Our right master is reversed (see DriveTrain.driveStraight), so its
+    // encoder counts down when the robot drives forward.
+    private static final int LEFT_ENCODER_SIGN = 1;
+    private static final int RIGHT_ENCODER_SIGN = -1;
+
+    private final SampleScheduler m_scheduler;
+
+    // update thread state
+    private final Pose m_pose = new Pose();
+    private final IMUSample m_imuSample = new IMUSample();
+    private final EncoderTracker m_encoders = new EncoderTracker();
+    private double m_headingOffset; // IMU heading that corresponds to theta 0
+    private final TrackWidthEstimator m_trackWidthEstimator = new TrackWidthEstimator();
+    private volatile double m_trackWidth = RobotMap.driveTrackWidthInInches;
+    private volatile boolean m_resetRequested = true;
+    private volatile boolean m_encoderResetRequested;
+
+    private final Pose m_published = new Pose();
+    private final StampedLock m_lock = new StampedLock();
+
+    public Odometry() {
+        m_scheduler = new RealTimeSampleThread("Odometry", UPDATE_RATE_HZ);
+        m_scheduler.start(new Runnable() {
+
+            public void run() {
+                update();
+            }
+        });
+    }
+
+    @Override
+    protected void initDefaultCommand() {
+        // runs on its own thread, nothing to schedule
+    }
+
+    /**
+     * Makes the current position the origin and the current heading theta 0.
+     * Takes effect on the next update.
+     */
+    public void reset() {
+        m_resetRequested = true;
+    }
+
+    /**
+     * Tells odometry the encoders are about to be zeroed, so the drop isn't
+     * counted as motion.
+     */
+    public void encodersReset() {
+        m_encoderResetRequested = true;
+    }
+
+    /**
+     * Copies the latest pose into out. Does not allocate.
+     */
+    public void getPose(Pose out) {
+        long stamp = m_lock.tryOptimisticRead();
+        m_published.copyTo(out);
+        if (!m_lock.validate(stamp)) {
+            stamp = m_lock.readLock();
+            try {
+                m_published.copyTo(out);
+            } finally {
+                m_lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    /** @return the effective track width in inches, measured or assumed */
+    public double getTrackWidth() {
+        return m_trackWidth;
+    }
+
+    public SampleScheduler getSampleScheduler() {
+        return m_scheduler;
+    }
+
+    private boolean imuAvailable() {
+        return ModuleManager.IMU_MODULE_ON && RobotMap.imu != null
+                && RobotMap.imu.isInitialized();
+    }
+
+    private void update() {
+        int left = RobotMap.leftMasterEncoder.getTicks() * LEFT_ENCODER_SIGN;
+        int right = RobotMap.rightMasterEncoder.getTicks() * RIGHT_ENCODER_SIGN;
+        boolean haveImu = imuAvailable();
+        if (haveImu) {
+            RobotMap.imu.getSnapshot(m_imuSample);
+        }
+
+        if (m_resetRequested) {
+            m_resetRequested = false;
+            m_pose.x = 0;
+            m_pose.y = 0;
+            m_pose.theta = 0;
+            m_pose.distance = 0;
+            m_headingOffset = haveImu ? m_imuSample.heading[0] : 0;
+            m_encoders.rebaseline();
+        }
+
+        double now = Timer.getFPGATimestamp();
+        if (m_encoderResetRequested) {
+            m_encoderResetRequested = false;
+            m_encoders.encodersReset(now);
+        }
+        m_encoders.update(now, left, right);
+        double dLeft = m_encoders.getLeftDelta() / RobotMap.quadTicksPerInch;
+        double dRight = m_encoders.getRightDelta() / RobotMap.quadTicksPerInch;
+        double d = (dLeft + dRight) / 2;
+
+        double oldTheta = m_pose.theta;
+        double newTheta;
+        if (haveImu) {
+            newTheta = BNO055.normalizeHeading(m_imuSample.heading[0] - m_headingOffset);
+        } else {
+            // left running further than right turns us clockwise
+            newTheta = BNO055.normalizeHeading(oldTheta
+                    + Math.toDegrees((dLeft - dRight) / m_trackWidth));
+        }
+
+        // integrate along the mean heading over the step
+        double dTheta = BNO055.normalizeHeading(newTheta - oldTheta);
+        if (haveImu) {
+            m_trackWidthEstimator.update(dLeft, dRight, dTheta);
+            m_trackWidth = m_trackWidthEstimator.getTrackWidth(RobotMap.driveTrackWidthInInches);
+        }
+        double mid = Math.toRadians(oldTheta + dTheta / 2);
+        m_pose.x += d * Math.cos(mid);
+        m_pose.y += d * Math.sin(mid);
+        m_pose.theta = newTheta;
+        m_pose.distance += d;
+        m_pose.timestamp = now;
+
+        long stamp = m_lock.writeLock();
+        try {
+            m_pose.copyTo(m_published);
+        } finally {
+            m_lock.unlockWrite(stamp);
+        }
+    }
+}
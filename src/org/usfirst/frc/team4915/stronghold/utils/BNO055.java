@@ -1,7 +1,17 @@
 package org.usfirst.frc.team4915.stronghold.utils;
 
-import java.util.TimerTask;
-
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.StampedLock;
+
+import org.usfirst.frc.team4915.stronghold.hal.Imu;
+import org.usfirst.frc.team4915.stronghold.utils.BNO055ReadPlan.Vector;
+
+import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.I2C;
 import edu.wpi.first.wpilibj.Timer;
 
@@ -61,12 +71,12 @@ import edu.wpi.first.wpilibj.Timer;
  *         MIT license, all text above must be included in any redistribution
  *
  */
-public class BNO055 {
+public class BNO055 implements Imu {
 
-    // Tread variables
-    private java.util.Timer executor;
-    private static final long THREAD_PERIOD = 20; // ms - max poll rate on
-                                                  // sensor.
+    // Thread variables
+    public static final double DEFAULT_SAMPLE_RATE_HZ = 50; // 20ms period
+    public static final double MAX_SAMPLE_RATE_HZ = 100; // fusion output rate
+    private final SampleScheduler m_scheduler;
 
     public static final byte BNO055_ADDRESS_A = 0x28;
     public static final byte BNO055_ADDRESS_B = 0x29;
@@ -84,19 +94,43 @@ public class BNO055 {
     private volatile boolean initialized = false;
     private volatile double currentTime; // seconds
     private volatile double nextTime; // seconds
-    private volatile byte[] accelVector = new byte[6];
-    private volatile double[] m_accel = new double[3];
-    private volatile double[] m_velocity = new double[3];
-    private volatile double[] m_position = new double[3];
-    private volatile double m_distFromOrigin = 0;
-
-    private volatile byte[] headingVector = new byte[6];
-    private volatile double[] m_heading = new double[3];
-    private volatile double[] m_initialHeading = new double[3];
-
-/*    private volatile byte[] calDataStore = new byte[22];
- *    public String calDataStoreString = "fill me with gibberish";
- */
+
+    // Sample path. m_sample is owned by the update thread and is filled in
+    // place each tick; it is then copied into m_published under m_sampleLock.
+    // Readers take an optimistic (seqlock style) read of m_published and only
+    // fall back to a real read lock if the writer raced them. Nothing on this
+    // path allocates once the sensor is running.
+    private volatile BNO055ReadPlan m_readPlan = new BNO055ReadPlan(
+            EnumSet.of(Vector.EULER, Vector.LINEAR_ACCEL, Vector.CALIB_STAT));
+    private final IMUSample m_sample = new IMUSample();
+    private final IMUSample m_published = new IMUSample();
+    private final StampedLock m_sampleLock = new StampedLock();
+    private final double[] m_initialHeading = new double[3];
+    private double m_lastSampleTime = 0; // update thread only
+    // run on the update thread after each sample is published
+    private final CopyOnWriteArrayList<SampleListener> m_listeners =
+            new CopyOnWriteArrayList<SampleListener>();
+
+    // at least two seconds of orientation at the fastest sample rate
+    public static final double HISTORY_SECONDS = 2.0;
+    private final HeadingHistory m_history =
+            new HeadingHistory((int) Math.ceil(HISTORY_SECONDS * MAX_SAMPLE_RATE_HZ));
+
+    // Calibration profile persistence. The offsets are restored while the
+    // sensor is still in config mode during init so that heading is usable
+    // right away instead of after the sensor re-learns them.
+    public static final String CALIBRATION_FILE = "/home/lvuser/bno055_calibration.bin";
+    private static final int CALIBRATION_DATA_LEN = 22; // 0x55..0x6A
+    private final byte[] calDataStore = new byte[CALIBRATION_DATA_LEN];
+    private volatile boolean calibrationRestored = false;
+    private volatile boolean calibrationSaveRequested = false;
+    private boolean calibrationSaved = false; // update thread only
+    private boolean saveSucceeded = false; // update thread only
+    private double saveRetryTime = 0; // update thread only
+    private int saveState = 0; // update thread only
+    private int initReadFailures = 0; // update thread only
+    private static final double SAVE_RETRY_SECONDS = 1.0;
+    private final CompletableFuture<BNO055> m_ready = new CompletableFuture<BNO055>();
 
     public class SystemStatus {
 
@@ -349,12 +383,17 @@ public class BNO055 {
      * @param port the physical port the sensor is plugged into on the roboRio
      * @param address the address the sensor is at (0x28 or 0x29)
      */
-    private BNO055(I2C.Port port, byte address) {
+    private BNO055(I2C.Port port, byte address, SampleScheduler scheduler) {
         imu = new I2C(port, address);
         this.initialized = false;
         this.state = 0;
-        executor = new java.util.Timer();
-        executor.schedule(new BNO055UpdateTask(this), 0L, THREAD_PERIOD);
+        m_scheduler = scheduler;
+        m_scheduler.start(new Runnable() {
+
+            public void run() {
+                update();
+            }
+        });
     }
 
 
@@ -368,13 +407,54 @@ public class BNO055 {
      */
     public static BNO055 getInstance(opmode_t mode, vector_type_t vectorType,
             I2C.Port port, byte address) {
+        return getInstance(mode, vectorType, port, address,
+                new RealTimeSampleThread("BNO055", DEFAULT_SAMPLE_RATE_HZ));
+    }
+
+    /**
+     * Get an instance of the IMU object, polled by the given scheduler. The
+     * scheduler is only used by the call that creates the instance.
+     *
+     * @param mode the operating mode to run the sensor in.
+     * @param port the physical port the sensor is plugged into on the roboRio
+     * @param address the address the sensor is at (0x28 or 0x29)
+     * @param scheduler drives update(); its rate may not exceed
+     *        MAX_SAMPLE_RATE_HZ
+     * @return the instantiated BNO055 object
+     */
+    public static BNO055 getInstance(opmode_t mode, vector_type_t vectorType,
+            I2C.Port port, byte address, SampleScheduler scheduler) {
         if (instance == null) {
-            instance = new BNO055(port, address);
+            checkSampleRate(scheduler.getRateHz());
+            instance = new BNO055(port, address, scheduler);
         }
         requestedMode = mode;
         return instance;
     }
 
+    /**
+     * Get an instance of the IMU object plugged into the onboard I2C header,
+     * sampled at the given rate on a dedicated thread.
+     *
+     * @param mode the operating mode to run the sensor in.
+     * @param rateHz samples per second, up to MAX_SAMPLE_RATE_HZ
+     * @return the instantiated BNO055 object
+     */
+    public static BNO055 getInstance(opmode_t mode, vector_type_t vectorType,
+            double rateHz) {
+        checkSampleRate(rateHz);
+        return getInstance(mode, vectorType, I2C.Port.kOnboard, BNO055_ADDRESS_A,
+                new RealTimeSampleThread("BNO055", rateHz));
+    }
+
+    // the sensor only produces new fusion data at MAX_SAMPLE_RATE_HZ
+    private static void checkSampleRate(double rateHz) {
+        if (rateHz > MAX_SAMPLE_RATE_HZ) {
+            throw new IllegalArgumentException("BNO055 sample rate "
+                    + rateHz + "Hz exceeds " + MAX_SAMPLE_RATE_HZ);
+        }
+    }
+
     /**
      * Get an instance of the IMU object plugged into the onboard I2C header.
      * Using the default address (0x28)
@@ -470,90 +550,331 @@ public class BNO055 {
                     }
                     break;
                 case 7:
-                    // Set operating mode to mode requested at instantiation
+                    // Still in config mode: restore saved offsets if we have
+                    // them, then set operating mode to mode requested at
+                    // instantiation. Config -> operation mode takes 7ms
+                    // (Table 3-6), so there's no need to wait a full second.
                     if (currentTime >= nextTime) {
+                        calibrationRestored = restoreCalibrationData();
                         setMode(requestedMode);
-                        nextTime = Timer.getFPGATimestamp() + 1.05;
+                        nextTime = Timer.getFPGATimestamp() + 0.050;
                         state++;
                     }
                     break;
                 case 8:
+                    // let the fusion output settle after the mode switch
                     if (currentTime >= nextTime) {
                         state++;
                     }
+                    break;
                 case 9:
-                    calculateHeadingAndPosition();
-                    this.m_initialHeading = this.m_heading;
+                    // the initial heading must come from a real read;
+                    // awaitReady() callers time out if it never succeeds
+                    if (!calculateHeadingAndPosition()) {
+                        if (++initReadFailures == 1) {
+                            System.out.println("BNO055 first sample read failed (I2C), retrying");
+                        }
+                        break;
+                    }
+                    System.arraycopy(m_sample.heading, 0, m_initialHeading, 0, 3);
                     initialized = true;
+                    m_ready.complete(this);
                     break;
                 default:
                     // Should never get here - Fail safe
                     initialized = false;
             }
+        } else if (saveState != 0 || wantsCalibrationSave()) {
+            saveCalibrationStep();
         } else {
             // Sensor is initialized, periodically query position data
             calculateHeadingAndPosition();
         }
     }
 
-    private void calculateHeadingAndPosition() {
-        short hx = 0, hy = 0, hz = 0;
-        short ax = 0, ay = 0, az = 0;
+    // Save once per boot when the sensor first reports full calibration,
+    // unless we booted from a saved profile, or whenever asked to. Either
+    // way only while disabled: the save pauses fusion, and auto-turn and
+    // heading hold steer on it. A request waits until then.
+    private boolean wantsCalibrationSave() {
+        if (currentTime < saveRetryTime) {
+            return false; // the last attempt failed; don't hammer the bus
+        }
+        if (!DriverStation.getInstance().isDisabled()) {
+            return false;
+        }
+        if (calibrationSaveRequested) {
+            return true;
+        }
+        if (calibrationSaved || calibrationRestored) {
+            return false;
+        }
+        // use the status from this thread's last burst read (no allocation)
+        int raw = m_sample.calibStatus;
+        return m_readPlan.contains(Vector.CALIB_STAT)
+                && isCalibrated((raw >> 2) & 0x03, raw & 0x03, (raw >> 4) & 0x03);
+    }
 
-        // Read vector data (6 bytes)
-        readLen(reg_t.BNO055_EULER_H_LSB_ADDR.getVal(), headingVector);
+    // The offset registers are only valid in config mode, so saving briefly
+    // interrupts fusion output (~40ms). Heading reads keep returning the last
+    // published sample meanwhile.
+    private void saveCalibrationStep() {
+        switch (saveState) {
+            case 0:
+                write8(reg_t.BNO055_OPR_MODE_ADDR, (byte) opmode_t.OPERATION_MODE_CONFIG.getVal());
+                nextTime = currentTime + 0.025; // any -> config is 19ms
+                saveState++;
+                break;
+            case 1:
+                if (currentTime >= nextTime) {
+                    boolean ok = readLen(reg_t.ACCEL_OFFSET_X_LSB_ADDR, calDataStore);
+                    write8(reg_t.BNO055_OPR_MODE_ADDR, (byte) _mode);
+                    nextTime = currentTime + 0.010;
+                    saveSucceeded = ok && writeCalibrationFile();
+                    if (!ok) {
+                        System.out.println("BNO055 calibration read failed (I2C)");
+                    }
+                    saveState++;
+                }
+                break;
+            default:
+                if (currentTime >= nextTime) {
+                    if (saveSucceeded) {
+                        calibrationSaved = true;
+                        calibrationSaveRequested = false;
+                    } else {
+                        saveRetryTime = currentTime + SAVE_RETRY_SECONDS;
+                    }
+                    saveState = 0;
+                }
+                break;
+        }
+    }
 
-        readLen(reg_t.BNO055_LINEAR_ACCEL_DATA_X_LSB_ADDR.getVal(), accelVector);
+    private boolean writeCalibrationFile() {
+        try {
+            Files.write(new File(CALIBRATION_FILE).toPath(), calDataStore);
+            System.out.println("BNO055 calibration saved to " + CALIBRATION_FILE);
+            return true;
+        } catch (IOException e) {
+            System.out.println("BNO055 calibration save failed: " + e);
+            return false;
+        }
+    }
 
-        hx = (short) ((headingVector[0] & 0xFF)
-                | ((headingVector[1] << 8) & 0xFF00));
-        hy = (short) ((headingVector[2] & 0xFF)
-                | ((headingVector[3] << 8) & 0xFF00));
-        hz = (short) ((headingVector[4] & 0xFF)
-                | ((headingVector[5] << 8) & 0xFF00));
-        /* 1 degree = 16 LSB */
-        m_heading[0] = ((double) hx) / 16.0;
-        m_heading[1] = ((double) hy) / 16.0;
-        m_heading[2] = ((double) hz) / 16.0;
+    // Must be called in config mode.
+    private boolean restoreCalibrationData() {
+        File f = new File(CALIBRATION_FILE);
+        if (!f.exists()) {
+            return false;
+        }
+        try {
+            byte[] data = Files.readAllBytes(f.toPath());
+            if (data.length != CALIBRATION_DATA_LEN) {
+                System.out.println("BNO055 ignoring calibration file of length " + data.length);
+                return false;
+            }
+            // register address followed by the offset block; the sensor
+            // auto-increments through 0x55..0x6A.
+            byte[] msg = new byte[CALIBRATION_DATA_LEN + 1];
+            msg[0] = (byte) reg_t.ACCEL_OFFSET_X_LSB_ADDR.getVal();
+            System.arraycopy(data, 0, msg, 1, CALIBRATION_DATA_LEN);
+            if (imu.writeBulk(msg)) { // true on abort
+                System.out.println("BNO055 calibration restore failed (I2C)");
+                return false;
+            }
+            System.out.println("BNO055 calibration restored from " + CALIBRATION_FILE);
+            return true;
+        } catch (IOException e) {
+            System.out.println("BNO055 calibration restore failed: " + e);
+            return false;
+        }
+    }
+
+    /** @return false if the read failed and the previous sample was kept */
+    private boolean calculateHeadingAndPosition() {
+        BNO055ReadPlan plan = m_readPlan;
+        double[] velocity = m_sample.velocity;
+        double[] accel = m_sample.accel;
 
-        ax = (short) ((accelVector[0] & 0xFF)
-                | ((accelVector[1] << 8) & 0xFF00));
-        ay = (short) ((accelVector[2] & 0xFF)
-                | ((accelVector[3] << 8) & 0xFF00));
-        az = (short) ((accelVector[4] & 0xFF)
-                | ((accelVector[5] << 8) & 0xFF00));
+        // One burst read per contiguous register range in the plan.
+        if (!plan.read(imu)) {
+            return false; // keep the previous sample rather than publish garbage
+        }
+        m_sample.timestamp = Timer.getFPGATimestamp();
 
+        /* 1 degree = 16 LSB */
+        if (plan.contains(Vector.EULER)) {
+            for (int i = 0; i < 3; i++) {
+                m_sample.heading[i] = plan.getShort(Vector.EULER, i) / 16.0;
+            }
+        }
+        /* 1m/s^2 = 100 LSB */
+        if (plan.contains(Vector.LINEAR_ACCEL)) {
+            for (int i = 0; i < 3; i++) {
+                accel[i] = plan.getShort(Vector.LINEAR_ACCEL, i) / 100.0;
+            }
+        }
+        /* 1 dps = 16 LSB */
+        if (plan.contains(Vector.GYRO)) {
+            for (int i = 0; i < 3; i++) {
+                m_sample.gyro[i] = plan.getShort(Vector.GYRO, i) / 16.0;
+            }
+        }
+        /* 1 quaternion unit = 2^14 LSB */
+        if (plan.contains(Vector.QUATERNION)) {
+            for (int i = 0; i < 4; i++) {
+                m_sample.quaternion[i] = plan.getShort(Vector.QUATERNION, i) / 16384.0;
+            }
+        }
         /* 1m/s^2 = 100 LSB */
-        m_accel[0] = ((double) ax) / 100.0;
-        m_accel[1] = ((double) ay) / 100.0;
-        m_accel[2] = ((double) az) / 100.0;
-
-        // note that this double-integration is too noisy
-        // to be useful.  This is, in part, due to the fact
-        // that generally the linear accelerator isn't properly
-        // calibrated (it needs to be recalibrated each power-on)
-        double deltaT = THREAD_PERIOD / 1000.0;
-        double[] deltaVelocity = new double[3];
-        double[] newVelocity = new double[3];
+        if (plan.contains(Vector.GRAVITY)) {
+            for (int i = 0; i < 3; i++) {
+                m_sample.gravity[i] = plan.getShort(Vector.GRAVITY, i) / 100.0;
+            }
+        }
+        if (plan.contains(Vector.CALIB_STAT)) {
+            m_sample.calibStatus = plan.getByte(Vector.CALIB_STAT) & 0xFF;
+        }
+
+        // note that integrating acceleration is too noisy to be
+        // useful for position (use the Odometry subsystem for that).
+        // This is, in part, due to the fact that generally the
+        // linear accelerator isn't properly calibrated (it needs to
+        // be recalibrated each power-on).
+        // Integrate over the measured time between samples, since ticks
+        // can be late or dropped.
+        double deltaT = 1.0 / m_scheduler.getRateHz();
+        if (m_lastSampleTime > 0) {
+            deltaT = m_sample.timestamp - m_lastSampleTime;
+        }
+        m_lastSampleTime = m_sample.timestamp;
         for (int i = 0; i < 3; i++) {
-            deltaVelocity[i] = m_accel[i] * deltaT;
-            newVelocity[i] = m_velocity[i] + deltaVelocity[i];
-            m_position[i] += ((newVelocity[i] + m_velocity[i]) / 2 * deltaT);
-            m_velocity[i] = newVelocity[i];
+            velocity[i] += accel[i] * deltaT;
         }
-        m_distFromOrigin = Math.hypot(m_position[0], m_position[1]);
+
+        publishSample();
+        return true;
     }
 
+    // Called only from the update thread.
+    private void publishSample() {
+        long stamp = m_sampleLock.writeLock();
+        try {
+            m_sample.copyTo(m_published);
+        } finally {
+            m_sampleLock.unlockWrite(stamp);
+        }
+        // euler registers are ordered heading, roll, pitch
+        m_history.add(m_sample.timestamp, m_sample.heading[0],
+                m_sample.heading[2], m_sample.heading[1]);
+        for (SampleListener listener : m_listeners) {
+            try {
+                listener.sampleArrived(m_sample);
+            } catch (RuntimeException e) {
+                // one bad listener must not starve the others
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void addSampleListener(SampleListener listener) {
+        m_listeners.addIfAbsent(listener);
+    }
+
+    @Override
+    public void removeSampleListener(SampleListener listener) {
+        m_listeners.remove(listener);
+    }
+
+    @Override
+    public double getSampleRateHz() {
+        return m_scheduler.getRateHz();
+    }
+
+    /**
+     * Copies the most recent sample into out. Heading, accel, velocity and
+     * timestamp are guaranteed to come from the same sensor read. Does not
+     * allocate, so it is safe to call every scheduler tick.
+     *
+     * @param out caller-owned record to fill
+     */
+    public void getSnapshot(IMUSample out) {
+        long stamp = m_sampleLock.tryOptimisticRead();
+        m_published.copyTo(out);
+        if (!m_sampleLock.validate(stamp)) {
+            stamp = m_sampleLock.readLock();
+            try {
+                m_published.copyTo(out);
+            } finally {
+                m_sampleLock.unlockRead(stamp);
+            }
+        }
+    }
+
+    // reads a single published euler component consistently
+    private double readHeading(int axis) {
+        long stamp = m_sampleLock.tryOptimisticRead();
+        double value = m_published.heading[axis];
+        if (!m_sampleLock.validate(stamp)) {
+            stamp = m_sampleLock.readLock();
+            try {
+                value = m_published.heading[axis];
+            } finally {
+                m_sampleLock.unlockRead(stamp);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @return a copy of the latest linear acceleration. Prefer getSnapshot()
+     *         in periodic code since this allocates.
+     */
     public double[] getAccel() {
-        return m_accel;
+        IMUSample sample = new IMUSample();
+        getSnapshot(sample);
+        return sample.accel;
     }
 
     public int getTurns() {
-        return (int) (m_heading[0] / 360);
+        return (int) (readHeading(0) / 360);
     }
 
     public double getHeading() {
-        return m_heading[0];
+        return readHeading(0);
+    }
+
+    /**
+     * Heading at a past FPGA time, interpolated from the sample history.
+     * Use this to line up other sensors' readings (e.g. a vision frame) with
+     * where the robot was pointing when they were taken.
+     *
+     * @param timestamp FPGA time in seconds, within the last HISTORY_SECONDS
+     * @return heading in the same units as getHeading(), or the current
+     *         heading if no history is available yet
+     */
+    public double headingAt(double timestamp) {
+        double h = m_history.headingAt(timestamp);
+        return Double.isNaN(h) ? getHeading() : h;
+    }
+
+    public HeadingHistory getHeadingHistory() {
+        return m_history;
+    }
+
+    /**
+     * @return heading normalized to [-180, 180], without rounding
+     */
+    public static double normalizeHeading(double heading) {
+        double h = heading % 360;
+        if (h > 180) {
+            h -= 360;
+        } else if (h < -180) {
+            h += 360;
+        }
+        return h;
     }
 
     // we normalize on [-180, 180]
@@ -562,15 +883,38 @@ public class BNO055 {
     //  -13 % 360 == 347
     //  -377 % 360 == 347
     public int getNormalizedHeading() {
-    	// int h = (int) Math.round((m_heading[0]-m_initialHeading[0]) % 360);
-        int h = (int) Math.round(m_heading[0] % 360);
+    	// int h = (int) Math.round((readHeading(0)-m_initialHeading[0]) % 360);
+        int h = (int) Math.round(readHeading(0) % 360);
     	if(h > 180)
     		h = -(360 - h);
         return h;
     }
 
-    public double getDistFromOrigin() {
-        return m_distFromOrigin;
+    /**
+     * @return the scheduler polling the sensor; its histogram reports the
+     *         actual sample period, jitter and overruns.
+     */
+    public SampleScheduler getSampleScheduler() {
+        return m_scheduler;
+    }
+
+    /**
+     * Chooses which data vectors are read each cycle. The register ranges
+     * are coalesced into as few I2C burst reads as possible; see
+     * BNO055ReadPlan.
+     *
+     * @param vectors the vectors to read
+     */
+    public void setReadVectors(EnumSet<Vector> vectors) {
+        m_readPlan = new BNO055ReadPlan(vectors);
+    }
+
+    /**
+     * @return the active read plan, which reports bytes and transactions per
+     *         cycle.
+     */
+    public BNO055ReadPlan getReadPlan() {
+        return m_readPlan;
     }
 
     /**
@@ -688,7 +1032,22 @@ public class BNO055 {
      */
     public CalData getCalibration() {
         CalData data = new CalData();
-        int rawCalData = read8(reg_t.BNO055_CALIB_STAT_ADDR);
+        int rawCalData;
+        if (initialized && m_readPlan.contains(Vector.CALIB_STAT)) {
+            // already fetched by the update thread's burst read
+            long stamp = m_sampleLock.tryOptimisticRead();
+            rawCalData = m_published.calibStatus;
+            if (!m_sampleLock.validate(stamp)) {
+                stamp = m_sampleLock.readLock();
+                try {
+                    rawCalData = m_published.calibStatus;
+                } finally {
+                    m_sampleLock.unlockRead(stamp);
+                }
+            }
+        } else {
+            rawCalData = read8(reg_t.BNO055_CALIB_STAT_ADDR);
+        }
 
         data.sys = (byte) ((rawCalData >> 6) & 0x03);
         data.gyro = (byte) ((rawCalData >> 4) & 0x03);
@@ -698,21 +1057,31 @@ public class BNO055 {
         return data;
     }
 
-/*    public void getCalibrationData() {
-        setMode(opmode_t.OPERATION_MODE_CONFIG.getVal());
-        readLen(reg_t.ACCEL_OFFSET_X_LSB_ADDR, calDataStore);
-        DatatypeConverter.printHexBinary(calDataStore);
-        System.out.println(DatatypeConverter.printHexBinary(calDataStore));
-
-        setMode(opmode_t.OPERATION_MODE_IMUPLUS);
+    /**
+     * Asks the update thread to write the sensor's current calibration
+     * offsets to CALIBRATION_FILE. Fusion output pauses briefly, so the save
+     * waits until the robot is disabled.
+     */
+    public void requestCalibrationSave() {
+        calibrationSaveRequested = true;
     }
 
-    public void setCalibrationData() {
-        setMode(opmode_t.OPERATION_MODE_CONFIG.getVal());
-        calDataStore = DatatypeConverter.parseHexBinary(calDataStoreString);
-        retVal = imu.write(reg_t.ACCEL_OFFSET_X_LSB_ADDR.getVal(), 22);
+    /**
+     * @return true if offsets from CALIBRATION_FILE were loaded during init
+     */
+    public boolean isCalibrationRestored() {
+        return calibrationRestored;
+    }
 
-        setMode(opmode_t.OPERATION_MODE_IMUPLUS);
+    /**
+     * Completes with this instance once initialization has finished and the
+     * first sample has been published. Lets startup code overlap IMU bring-up
+     * with other work and only block when it actually needs heading.
+     *
+     * @return a future that completes when isInitialized() becomes true
+     */
+    public CompletableFuture<BNO055> awaitReady() {
+        return m_ready;
     }
 
     /**
@@ -725,34 +1094,37 @@ public class BNO055 {
      *         mode the sensor is currently operating in.
      */
     public boolean isCalibrated() {
-        boolean retVal = true;
+        CalData data = getCalibration();
+        return isCalibrated(data.accel, data.mag, data.gyro);
+    }
 
-        // Per Table 3-3
-        boolean[][] sensorModeMap = new boolean[][] {
-                // {accel, mag, gyro}
-                {false, false, false}, // OPERATION_MODE_CONFIG
-                {true, false, false}, // OPERATION_MODE_ACCONLY
-                {false, true, false}, // OPERATION_MODE_MAGONLY
-                {false, false, true}, // OPERATION_MODE_GYRONLY
-                {true, true, false}, // OPERATION_MODE_ACCMAG
-                {true, false, true}, // OPERATION_MODE_ACCGYRO
-                {false, true, true}, // OPERATION_MODE_MAGGYRO
-                {true, true, true}, // OPERATION_MODE_AMG
-                {true, false, true}, // OPERATION_MODE_IMUPLUS
-                {true, true, false}, // OPERATION_MODE_COMPASS
-                {true, true, false}, // OPERATION_MODE_M4G
-                {true, true, true}, // OPERATION_MODE_NDOF_FMC_OFF
-                {true, true, true} // OPERATION_MODE_NDOF
-        };
+    // Per Table 3-3
+    private static final boolean[][] sensorModeMap = new boolean[][] {
+            // {accel, mag, gyro}
+            {false, false, false}, // OPERATION_MODE_CONFIG
+            {true, false, false}, // OPERATION_MODE_ACCONLY
+            {false, true, false}, // OPERATION_MODE_MAGONLY
+            {false, false, true}, // OPERATION_MODE_GYRONLY
+            {true, true, false}, // OPERATION_MODE_ACCMAG
+            {true, false, true}, // OPERATION_MODE_ACCGYRO
+            {false, true, true}, // OPERATION_MODE_MAGGYRO
+            {true, true, true}, // OPERATION_MODE_AMG
+            {true, false, true}, // OPERATION_MODE_IMUPLUS
+            {true, true, false}, // OPERATION_MODE_COMPASS
+            {true, true, false}, // OPERATION_MODE_M4G
+            {true, true, true}, // OPERATION_MODE_NDOF_FMC_OFF
+            {true, true, true} // OPERATION_MODE_NDOF
+    };
 
-        CalData data = getCalibration();
+    private static boolean isCalibrated(int accel, int mag, int gyro) {
+        boolean retVal = true;
 
         if (sensorModeMap[_mode][0]) // Accelerometer used
-            retVal = retVal && (data.accel >= 3);
+            retVal = retVal && (accel >= 3);
         if (sensorModeMap[_mode][1]) // Magnetometer used
-            retVal = retVal && (data.mag >= 3);
+            retVal = retVal && (mag >= 3);
         if (sensorModeMap[_mode][2]) // Gyroscope used
-            retVal = retVal && (data.gyro >= 3);
+            retVal = retVal && (gyro >= 3);
 
         return retVal;
     }
@@ -825,23 +1197,4 @@ public class BNO055 {
 
         return retVal;
     }
-
-    private class BNO055UpdateTask extends TimerTask {
-
-        private BNO055 imu;
-
-        private BNO055UpdateTask(BNO055 imu) {
-            if (imu == null) {
-                throw new NullPointerException("BNO055 pointer null");
-            }
-            this.imu = imu;
-        }
-
-        /**
-         * Called periodically in its own thread
-         */
-        public void run() {
-            imu.update();
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,159 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+import java.util.EnumSet;
+
+import edu.wpi.first.wpilibj.I2C;
+
+/**
+ * BNO055ReadPlan turns a set of requested data vectors into the fewest I2C
+ * burst reads that cover them. The BNO055 auto-increments its register
+ * pointer, so neighbouring vectors (e.g. Euler, quaternion and linear accel
+ * at 0x1A..0x2D) can be fetched in one transaction. Small gaps between
+ * requested vectors are read through as well when that is cheaper than
+ * starting another transaction.
+ *
+ * A plan owns its buffers and is only ever used by the IMU update thread;
+ * to change what is read, build a new plan and swap it in.
+ */
+public class BNO055ReadPlan {
+
+    /**
+     * Default number of unrequested bytes we'll read through to avoid a
+     * second transaction. Each transaction costs a start, two address bytes,
+     * the register byte and a restart on top of the HAL call itself, which
+     * is worth several data bytes at 400kHz.
+     */
+    public static final int DEFAULT_MAX_GAP_BYTES = 8;
+
+    public enum Vector {
+        GYRO(BNO055.reg_t.BNO055_GYRO_DATA_X_LSB_ADDR, 6),
+        EULER(BNO055.reg_t.BNO055_EULER_H_LSB_ADDR, 6),
+        QUATERNION(BNO055.reg_t.BNO055_QUATERNION_DATA_W_LSB_ADDR, 8),
+        LINEAR_ACCEL(BNO055.reg_t.BNO055_LINEAR_ACCEL_DATA_X_LSB_ADDR, 6),
+        GRAVITY(BNO055.reg_t.BNO055_GRAVITY_DATA_X_LSB_ADDR, 6),
+        CALIB_STAT(BNO055.reg_t.BNO055_CALIB_STAT_ADDR, 1);
+
+        private final int reg;
+        private final int length;
+
+        Vector(BNO055.reg_t reg, int length) {
+            this.reg = reg.getVal();
+            this.length = length;
+        }
+
+        public int getReg() {
+            return reg;
+        }
+
+        public int getLength() {
+            return length;
+        }
+    }
+
+    private final EnumSet<Vector> m_vectors;
+    private final int m_base; // register address of m_image[0]
+    private final byte[] m_image; // register image covering every range
+    private final int[] m_rangeStart;
+    private final byte[][] m_rangeBuffer;
+    private final int m_bytesPerCycle;
+
+    public BNO055ReadPlan(EnumSet<Vector> vectors) {
+        this(vectors, DEFAULT_MAX_GAP_BYTES);
+    }
+
+    /**
+     * @param vectors the data to fetch each cycle; must not be empty
+     * @param maxGapBytes largest run of unrequested registers to read through
+     *        rather than split into two transactions
+     */
+    public BNO055ReadPlan(EnumSet<Vector> vectors, int maxGapBytes) {
+        if (vectors.isEmpty()) {
+            throw new IllegalArgumentException("BNO055ReadPlan needs at least one vector");
+        }
+        m_vectors = EnumSet.copyOf(vectors);
+
+        // Vector is declared in register order, so iteration is sorted.
+        int[] starts = new int[m_vectors.size()];
+        int[] ends = new int[m_vectors.size()]; // exclusive
+        int n = 0;
+        for (Vector v : m_vectors) {
+            int start = v.getReg();
+            int end = start + v.getLength();
+            if (n > 0 && start - ends[n - 1] <= maxGapBytes) {
+                ends[n - 1] = Math.max(ends[n - 1], end);
+            } else {
+                starts[n] = start;
+                ends[n] = end;
+                n++;
+            }
+        }
+
+        m_base = starts[0];
+        m_image = new byte[ends[n - 1] - m_base];
+        m_rangeStart = new int[n];
+        m_rangeBuffer = new byte[n][];
+        int bytes = 0;
+        for (int i = 0; i < n; i++) {
+            m_rangeStart[i] = starts[i];
+            m_rangeBuffer[i] = new byte[ends[i] - starts[i]];
+            bytes += m_rangeBuffer[i].length;
+        }
+        m_bytesPerCycle = bytes;
+    }
+
+    /**
+     * Performs one burst read per range. Called from the IMU update thread.
+     *
+     * @return true if every transaction succeeded
+     */
+    boolean read(I2C bus) {
+        boolean ok = true;
+        for (int i = 0; i < m_rangeStart.length; i++) {
+            byte[] buf = m_rangeBuffer[i];
+            // I2C.read returns true on abort
+            if (bus.read(m_rangeStart[i], buf.length, buf)) {
+                ok = false;
+            } else {
+                System.arraycopy(buf, 0, m_image, m_rangeStart[i] - m_base, buf.length);
+            }
+        }
+        return ok;
+    }
+
+    public boolean contains(Vector v) {
+        return m_vectors.contains(v);
+    }
+
+    /**
+     * @return the signed little-endian 16 bit value at component index of v
+     */
+    public short getShort(Vector v, int index) {
+        int off = v.getReg() - m_base + 2 * index;
+        return (short) ((m_image[off] & 0xFF) | ((m_image[off + 1] << 8) & 0xFF00));
+    }
+
+    /** @return the raw byte at the start of v (e.g. CALIB_STAT) */
+    public byte getByte(Vector v) {
+        return m_image[v.getReg() - m_base];
+    }
+
+    public int getBytesPerCycle() {
+        return m_bytesPerCycle;
+    }
+
+    public int getTransactionsPerCycle() {
+        return m_rangeStart.length;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(m_vectors).append(": ");
+        for (int i = 0; i < m_rangeStart.length; i++) {
+            sb.append(String.format("0x%02X+%d ", m_rangeStart[i], m_rangeBuffer[i].length));
+        }
+        sb.append("(").append(m_bytesPerCycle).append(" bytes, ")
+          .append(m_rangeStart.length).append(" transactions)");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,265 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.usfirst.frc.team4915.stronghold.hal.MotorController;
+
+import edu.wpi.first.wpilibj.CANTalon;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * CachingCANTalon is a CANTalon that drops writes identical to the last value
+ * it sent: control mode, setpoint, PID gains (per profile slot), soft
+ * limits, limit switch enables and ramp rate. Subsystems tend to re-send
+ * the same thing every scheduler tick (e.g. IntakeLauncher.moveToSetPoint
+ * re-selecting Position mode), and every one of those is a CAN frame.
+ *
+ * A repeated setpoint is still sent if motor safety is enabled and half the
+ * expiration time has passed since the last real write, so the safety
+ * watchdog keeps getting fed. Enabling/disabling control or stopping the
+ * motor forgets the cached setpoint since the Talon's state changed under
+ * it.
+ *
+ * The writes are synchronized: the drive masters are driven from the IMU,
+ * main and MotorSafety threads, and a check against a cache another thread
+ * is halfway through updating can drop a write that was needed.
+ */
+public class CachingCANTalon extends CANTalon implements MotorController {
+
+    private static final List<CachingCANTalon> s_all =
+            Collections.synchronizedList(new ArrayList<CachingCANTalon>());
+
+    private final int m_id;
+
+    private TalonControlMode m_mode;
+    private boolean m_haveSetpoint;
+    private double m_setpoint;
+    private double m_lastSetTime;
+    // setPID(p, i, d) writes the selected slot; the Talon has two
+    private static final int NUM_SLOTS = 2;
+    private int m_slot;
+    private final boolean[] m_havePID = new boolean[NUM_SLOTS];
+    private final double[] m_p = new double[NUM_SLOTS];
+    private final double[] m_i = new double[NUM_SLOTS];
+    private final double[] m_d = new double[NUM_SLOTS];
+    // NaN / UNKNOWN until first written
+    private static final int UNKNOWN = -1;
+    private double m_fwdSoftLimit = Double.NaN;
+    private double m_revSoftLimit = Double.NaN;
+    private double m_rampRate = Double.NaN;
+    private int m_fwdSoftLimitEnabled = UNKNOWN;
+    private int m_revSoftLimitEnabled = UNKNOWN;
+    private int m_fwdLimitSwitchEnabled = UNKNOWN;
+    private int m_revLimitSwitchEnabled = UNKNOWN;
+
+    // written by whichever thread drives the Talon, read for reporting
+    private final AtomicLong m_issued = new AtomicLong();
+    private final AtomicLong m_suppressed = new AtomicLong();
+
+    public CachingCANTalon(int deviceNumber) {
+        super(deviceNumber);
+        m_id = deviceNumber;
+        s_all.add(this);
+    }
+
+    /** @return every CachingCANTalon constructed, for reporting */
+    public static List<CachingCANTalon> getAll() {
+        return s_all;
+    }
+
+    public long getIssuedCount() {
+        return m_issued.get();
+    }
+
+    public long getSuppressedCount() {
+        return m_suppressed.get();
+    }
+
+    private void issue() {
+        m_issued.incrementAndGet();
+    }
+
+    private void suppress() {
+        m_suppressed.incrementAndGet();
+    }
+
+    private static int bit(boolean b) {
+        return b ? 1 : 0;
+    }
+
+    @Override
+    public synchronized void set(double outputValue) {
+        double now = Timer.getFPGATimestamp();
+        if (m_haveSetpoint && outputValue == m_setpoint
+                && !(isSafetyEnabled() && now - m_lastSetTime >= getExpiration() / 2)) {
+            suppress();
+            return;
+        }
+        issue();
+        super.set(outputValue);
+        m_haveSetpoint = true;
+        m_setpoint = outputValue;
+        m_lastSetTime = now;
+    }
+
+    @Override
+    public synchronized void changeControlMode(TalonControlMode controlMode) {
+        if (controlMode == m_mode) {
+            suppress();
+            return;
+        }
+        issue();
+        super.changeControlMode(controlMode);
+        m_mode = controlMode;
+        // the setpoint means something different in the new mode
+        m_haveSetpoint = false;
+    }
+
+    @Override
+    public synchronized void setProfile(int profile) {
+        super.setProfile(profile);
+        if (profile >= 0 && profile < NUM_SLOTS) {
+            m_slot = profile;
+        }
+    }
+
+    @Override
+    public synchronized void setPID(double p, double i, double d) {
+        int slot = m_slot;
+        if (m_havePID[slot] && p == m_p[slot] && i == m_i[slot] && d == m_d[slot]) {
+            suppress();
+            return;
+        }
+        issue();
+        super.setPID(p, i, d);
+        m_havePID[slot] = true;
+        m_p[slot] = p;
+        m_i[slot] = i;
+        m_d[slot] = d;
+    }
+
+    @Override
+    public synchronized void setPID(double p, double i, double d, double f, int izone, double closeLoopRampRate,
+            int profile) {
+        issue();
+        super.setPID(p, i, d, f, izone, closeLoopRampRate, profile);
+        if (profile >= 0 && profile < NUM_SLOTS) {
+            m_havePID[profile] = true;
+            m_p[profile] = p;
+            m_i[profile] = i;
+            m_d[profile] = d;
+        }
+    }
+
+    // the single-gain setters write the selected slot behind the cache
+    @Override
+    public synchronized void setP(double p) {
+        super.setP(p);
+        m_havePID[m_slot] = false;
+    }
+
+    @Override
+    public synchronized void setI(double i) {
+        super.setI(i);
+        m_havePID[m_slot] = false;
+    }
+
+    @Override
+    public synchronized void setD(double d) {
+        super.setD(d);
+        m_havePID[m_slot] = false;
+    }
+
+    @Override
+    public synchronized void setForwardSoftLimit(double forwardLimit) {
+        if (forwardLimit == m_fwdSoftLimit) {
+            suppress();
+            return;
+        }
+        issue();
+        super.setForwardSoftLimit(forwardLimit);
+        m_fwdSoftLimit = forwardLimit;
+    }
+
+    @Override
+    public synchronized void setReverseSoftLimit(double reverseLimit) {
+        if (reverseLimit == m_revSoftLimit) {
+            suppress();
+            return;
+        }
+        issue();
+        super.setReverseSoftLimit(reverseLimit);
+        m_revSoftLimit = reverseLimit;
+    }
+
+    @Override
+    public synchronized void enableForwardSoftLimit(boolean enable) {
+        if (bit(enable) == m_fwdSoftLimitEnabled) {
+            suppress();
+            return;
+        }
+        issue();
+        super.enableForwardSoftLimit(enable);
+        m_fwdSoftLimitEnabled = bit(enable);
+    }
+
+    @Override
+    public synchronized void enableReverseSoftLimit(boolean enable) {
+        if (bit(enable) == m_revSoftLimitEnabled) {
+            suppress();
+            return;
+        }
+        issue();
+        super.enableReverseSoftLimit(enable);
+        m_revSoftLimitEnabled = bit(enable);
+    }
+
+    @Override
+    public synchronized void enableLimitSwitch(boolean forward, boolean reverse) {
+        if (bit(forward) == m_fwdLimitSwitchEnabled && bit(reverse) == m_revLimitSwitchEnabled) {
+            suppress();
+            return;
+        }
+        issue();
+        super.enableLimitSwitch(forward, reverse);
+        m_fwdLimitSwitchEnabled = bit(forward);
+        m_revLimitSwitchEnabled = bit(reverse);
+    }
+
+    @Override
+    public synchronized void setVoltageRampRate(double rampRate) {
+        if (rampRate == m_rampRate) {
+            suppress();
+            return;
+        }
+        issue();
+        super.setVoltageRampRate(rampRate);
+        m_rampRate = rampRate;
+    }
+
+    @Override
+    public synchronized void enableControl() {
+        super.enableControl();
+        m_haveSetpoint = false;
+    }
+
+    @Override
+    public synchronized void disableControl() {
+        super.disableControl();
+        m_haveSetpoint = false;
+    }
+
+    @Override
+    public synchronized void stopMotor() {
+        super.stopMotor();
+        m_haveSetpoint = false;
+    }
+
+    @Override
+    public String toString() {
+        return "SRX " + m_id + ": sent " + m_issued.get() + ", suppressed " + m_suppressed.get();
+    }
+}
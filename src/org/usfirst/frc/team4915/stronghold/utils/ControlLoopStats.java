@@ -0,0 +1,99 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+/**
+ * ControlLoopStats measures an event-driven control loop: the period
+ * between runs (i.e. the actual loop rate), how long each run takes from
+ * input to output, and how long and how many runs each move takes to
+ * settle.
+ *
+ * begin() and end() are called by the loop's thread; startSettling() may
+ * be called from any thread. Readers on other threads may see slightly
+ * stale values, which is fine for reporting.
+ */
+public class ControlLoopStats {
+
+    private final String m_name;
+    private final PeriodHistogram m_period;
+    private final PeriodHistogram m_compute;
+
+    private volatile long m_lastBegin; // 0 after startSettling: no period yet
+    private volatile boolean m_settling;
+    private volatile long m_settleStart;
+    private volatile int m_steps;
+    private volatile double m_lastSettleMillis = Double.NaN;
+    private volatile int m_lastSettleSteps;
+
+    /** @param nominalPeriodSeconds the expected time between runs */
+    public ControlLoopStats(String name, double nominalPeriodSeconds) {
+        m_name = name;
+        long nominalNanos = (long) (nominalPeriodSeconds * 1e9);
+        m_period = new PeriodHistogram(nominalNanos);
+        // over budget if it takes longer than the period itself
+        m_compute = PeriodHistogram.forDurations(nominalNanos, nominalNanos / 4);
+    }
+
+    /** @return the start time, for end() */
+    public long begin() {
+        return System.nanoTime();
+    }
+
+    public void end(long begin) {
+        long end = System.nanoTime();
+        long last = m_lastBegin;
+        if (last != 0) {
+            m_period.record(begin - last, end - begin);
+        }
+        m_compute.record(end - begin);
+        m_lastBegin = begin;
+        if (m_settling) {
+            m_steps++;
+        }
+    }
+
+    /** A new move begins; the next settled() ends it. */
+    public void startSettling() {
+        m_lastBegin = 0;
+        m_steps = 0;
+        m_settleStart = System.nanoTime();
+        m_settling = true;
+    }
+
+    /** The move has reached its target; only the first call counts. */
+    public void settled() {
+        if (m_settling) {
+            m_settling = false;
+            m_lastSettleMillis = (System.nanoTime() - m_settleStart) / 1e6;
+            m_lastSettleSteps = m_steps + 1; // this run hasn't ended yet
+        }
+    }
+
+    public boolean isSettling() {
+        return m_settling;
+    }
+
+    public PeriodHistogram getPeriodHistogram() {
+        return m_period;
+    }
+
+    public PeriodHistogram getComputeHistogram() {
+        return m_compute;
+    }
+
+    /** @return how long the last completed move took, NaN if none has */
+    public double getLastSettleMillis() {
+        return m_lastSettleMillis;
+    }
+
+    public int getLastSettleSteps() {
+        return m_lastSettleSteps;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: period %.1fms (max jitter %.1fms), compute %.3fms (max %.3fms),"
+                + " last settle %.0fms in %d steps",
+                m_name, m_period.getMeanMillis(), m_period.getMaxJitterMillis(),
+                m_compute.getMeanMillis(), m_compute.getMaxMillis(),
+                m_lastSettleMillis, m_lastSettleSteps);
+    }
+}
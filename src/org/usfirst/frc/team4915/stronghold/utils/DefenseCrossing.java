@@ -0,0 +1,148 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+/**
+ * DefenseCrossing follows the robot over a defense by its pitch and roll,
+ * so the drive can end a fixed distance past the far side rather than a
+ * padded distance from the start. Crossing looks like:
+ *
+ * <ul>
+ * <li>CLIMB: the front wheels go up, so the robot tilts one way.</li>
+ * <li>CREST: on top, back to (nearly) level.</li>
+ * <li>DESCENT: the front wheels go down, so it tilts the other way.</li>
+ * <li>CROSSED: level again, for long enough that the rear wheels must be
+ * off too.</li>
+ * </ul>
+ *
+ * Tilting up again after the crest or descent (another rock, the next
+ * bump) goes back to CLIMB. The direction of the first tilt is whatever it
+ * is, so driving backward and the IMU's mounting don't matter; roll only
+ * has to settle before the robot counts as level.
+ *
+ * Each defense has its own Signature: how far it tilts the robot and how
+ * flat "level" is. The thresholds are guesses; check them against
+ * HeadingHistory's pitch and roll from a practice crossing.
+ *
+ * Pitch and roll are passed in, so the simulator's DefenseModel can stand
+ * in for the IMU.
+ */
+public class DefenseCrossing {
+
+    public enum State {
+        APPROACH, // level, not there yet
+        CLIMB,
+        CREST,
+        DESCENT,
+        CROSSED
+    }
+
+    /** What crossing one defense looks like to the IMU. */
+    public static class Signature {
+
+        public final double climbDegrees; // pitch beyond this is on the defense
+        public final double levelDegrees; // pitch and roll within this are level
+        public final double levelInches;  // level this far to be across
+
+        public Signature(double climbDegrees, double levelDegrees, double levelInches) {
+            this.climbDegrees = climbDegrees;
+            this.levelDegrees = levelDegrees;
+            this.levelInches = levelInches;
+        }
+    }
+
+    private final Signature m_signature;
+
+    private State m_state;
+    private double m_sign;       // of the pitch while climbing
+    private double m_levelSince; // distance level began, NaN while tilted
+    private double m_crossedAt;  // distance the far side was reached
+    private double m_maxTilt;    // degrees, for the log
+
+    public DefenseCrossing(Signature signature) {
+        m_signature = signature;
+        reset();
+    }
+
+    public void reset() {
+        m_state = State.APPROACH;
+        m_sign = 0;
+        m_levelSince = Double.NaN;
+        m_crossedAt = Double.NaN;
+        m_maxTilt = 0;
+    }
+
+    /**
+     * Checks one IMU sample.
+     *
+     * @param distance inches travelled, always positive
+     * @param pitch degrees
+     * @param roll degrees
+     * @return the state after this sample
+     */
+    public State step(double distance, double pitch, double roll) {
+        if (m_state == State.CROSSED) {
+            return m_state;
+        }
+        m_maxTilt = Math.max(m_maxTilt, Math.max(Math.abs(pitch), Math.abs(roll)));
+        double climb = m_signature.climbDegrees;
+        boolean level = Math.abs(pitch) < m_signature.levelDegrees
+                && Math.abs(roll) < m_signature.levelDegrees;
+        if (!level) {
+            m_levelSince = Double.NaN;
+        } else if (Double.isNaN(m_levelSince)) {
+            m_levelSince = distance;
+        }
+
+        switch (m_state) {
+            case APPROACH:
+                if (Math.abs(pitch) > climb) {
+                    m_sign = Math.signum(pitch);
+                    m_state = State.CLIMB;
+                }
+                break;
+            case CLIMB:
+                if (-m_sign * pitch > climb) {
+                    m_state = State.DESCENT;
+                } else if (m_sign * pitch < climb) {
+                    m_state = State.CREST;
+                }
+                break;
+            case CREST:
+                if (m_sign * pitch > climb) {
+                    m_state = State.CLIMB;
+                } else if (-m_sign * pitch > climb) {
+                    m_state = State.DESCENT;
+                }
+                break;
+            case DESCENT:
+                if (m_sign * pitch > climb) {
+                    m_state = State.CLIMB;
+                } else if (level && distance - m_levelSince >= m_signature.levelInches) {
+                    m_crossedAt = m_levelSince;
+                    m_state = State.CROSSED;
+                }
+                break;
+            default:
+                break;
+        }
+        return m_state;
+    }
+
+    public State getState() {
+        return m_state;
+    }
+
+    public boolean isCrossed() {
+        return m_state == State.CROSSED;
+    }
+
+    /** @return distance at which the robot came level on the far side; NaN until CROSSED */
+    public double getCrossedAt() {
+        return m_crossedAt;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DefenseCrossing: %s, crossed at %.1f in, max tilt %.1f deg", m_state,
+                m_crossedAt, m_maxTilt);
+    }
+}
@@ -0,0 +1,158 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+/**
+ * DiscretePID is the arithmetic of WPILib's PIDController (2016) without
+ * its thread, PIDSource or PIDOutput: the caller supplies each input and
+ * decides what to do with the result. Whoever calls calculate() sets the
+ * rate, so the same code can run from a Notifier on the robot or as fast
+ * as possible in the replay harness, and produce the same outputs.
+ *
+ * Not thread safe; callers that share one across threads synchronize.
+ */
+public class DiscretePID {
+
+    private double m_P;
+    private double m_I;
+    private double m_D;
+    private double m_F;
+
+    private double m_minimumInput;
+    private double m_maximumInput;
+    private boolean m_inputRangeSet;
+    private boolean m_continuous;
+    private double m_minimumOutput = -1;
+    private double m_maximumOutput = 1;
+    private double m_tolerancePercent = 0.05;
+
+    private double m_setpoint;
+    private double m_error;
+    private double m_prevError;
+    private double m_totalError;
+    private double m_result;
+
+    public DiscretePID(double Kp, double Ki, double Kd, double Kf) {
+        setPID(Kp, Ki, Kd, Kf);
+    }
+
+    public void setPID(double Kp, double Ki, double Kd, double Kf) {
+        m_P = Kp;
+        m_I = Ki;
+        m_D = Kd;
+        m_F = Kf;
+    }
+
+    public double getP() {
+        return m_P;
+    }
+
+    public double getI() {
+        return m_I;
+    }
+
+    public double getD() {
+        return m_D;
+    }
+
+    public double getF() {
+        return m_F;
+    }
+
+    public void setInputRange(double minimumInput, double maximumInput) {
+        if (minimumInput > maximumInput) {
+            throw new IllegalArgumentException("Lower bound is greater than upper bound");
+        }
+        m_minimumInput = minimumInput;
+        m_maximumInput = maximumInput;
+        m_inputRangeSet = true;
+        setSetpoint(m_setpoint);
+    }
+
+    public void setOutputRange(double minimumOutput, double maximumOutput) {
+        if (minimumOutput > maximumOutput) {
+            throw new IllegalArgumentException("Lower bound is greater than upper bound");
+        }
+        m_minimumOutput = minimumOutput;
+        m_maximumOutput = maximumOutput;
+    }
+
+    public void setContinuous(boolean continuous) {
+        m_continuous = continuous;
+    }
+
+    /** On target when |error| is under this percentage of the input range. */
+    public void setPercentTolerance(double percent) {
+        m_tolerancePercent = percent;
+    }
+
+    public void setSetpoint(double setpoint) {
+        if (m_inputRangeSet) {
+            setpoint = Math.max(m_minimumInput, Math.min(m_maximumInput, setpoint));
+        }
+        m_setpoint = setpoint;
+    }
+
+    public double getSetpoint() {
+        return m_setpoint;
+    }
+
+    /**
+     * Runs one step with a new measurement.
+     *
+     * @return the new output, also available from get()
+     */
+    public double calculate(double input) {
+        m_error = m_setpoint - input;
+        if (m_continuous && Math.abs(m_error) > (m_maximumInput - m_minimumInput) / 2) {
+            if (m_error > 0) {
+                m_error = m_error - m_maximumInput + m_minimumInput;
+            } else {
+                m_error = m_error + m_maximumInput - m_minimumInput;
+            }
+        }
+
+        if (m_I != 0) {
+            // anti-windup: don't let the integral term alone exceed the output range
+            double potentialIGain = (m_totalError + m_error) * m_I;
+            if (potentialIGain < m_maximumOutput) {
+                if (potentialIGain > m_minimumOutput) {
+                    m_totalError += m_error;
+                } else {
+                    m_totalError = m_minimumOutput / m_I;
+                }
+            } else {
+                m_totalError = m_maximumOutput / m_I;
+            }
+        }
+
+        double result = m_P * m_error + m_I * m_totalError + m_D * (m_error - m_prevError)
+                + m_F * m_setpoint;
+        m_prevError = m_error;
+
+        if (result > m_maximumOutput) {
+            result = m_maximumOutput;
+        } else if (result < m_minimumOutput) {
+            result = m_minimumOutput;
+        }
+        m_result = result;
+        return result;
+    }
+
+    public double get() {
+        return m_result;
+    }
+
+    public double getError() {
+        return m_error;
+    }
+
+    public boolean onTarget() {
+        return Math.abs(m_error) < m_tolerancePercent / 100 * (m_maximumInput - m_minimumInput);
+    }
+
+    /** Clears the accumulated state, as PIDController.reset() does. */
+    public void reset() {
+        m_prevError = 0;
+        m_totalError = 0;
+        m_result = 0;
+    }
+}
@@ -0,0 +1,165 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DriveCharacterization is one drivetrain characterization test: the
+ * voltage to apply at each moment, and a log of what each side did. The
+ * log is fitted offline by FeedforwardFit to
+ *
+ * <pre>
+ *   volts = kS * sign(v) + kV * v + kA * a
+ * </pre>
+ *
+ * per side. A quasi-static test ramps the voltage slowly, so acceleration
+ * is negligible and kS and kV dominate; a step test applies a fixed
+ * voltage, so acceleration is large and pins down kA. Run each forward and
+ * backward.
+ *
+ * Everything is in each motor's frame (the right master is reversed, so
+ * forward is negative on the right), which is all the fit needs.
+ *
+ * CharacterizationSim runs the same tests against a DrivetrainModel to
+ * check the fit against known constants.
+ */
+public class DriveCharacterization {
+
+    public static final String DIRECTORY = "/home/lvuser";
+    public static final String[] COLUMNS = {
+        "time", "leftVolts", "leftVelocity", "leftAccel", "rightVolts", "rightVelocity", "rightAccel"
+    };
+
+    public static final double QUASI_STATIC_VOLTS_PER_SEC = 0.25;
+    public static final double STEP_VOLTS = 6.0;
+    public static final double MAX_DISTANCE = 180.0; // inches; room needed
+    public static final double TIMEOUT_SECONDS = 20.0;
+
+    public enum Test {
+        QUASI_STATIC,
+        STEP
+    }
+
+    private final Test m_test;
+    private final boolean m_forward;
+    private final List<double[]> m_rows = new ArrayList<double[]>();
+    private double m_start = Double.NaN;
+
+    public DriveCharacterization(Test test, boolean forward) {
+        m_test = test;
+        m_forward = forward;
+    }
+
+    public Test getTest() {
+        return m_test;
+    }
+
+    public boolean isForward() {
+        return m_forward;
+    }
+
+    /** @return e.g. "quasi_static_forward", for file names */
+    public String getName() {
+        return m_test.name().toLowerCase() + (m_forward ? "_forward" : "_backward");
+    }
+
+    /**
+     * @param time now, seconds; the first call starts the test
+     * @return volts to drive forward (or backward) with, positive
+     *         regardless of direction or side
+     */
+    public double getVolts(double time) {
+        if (Double.isNaN(m_start)) {
+            m_start = time;
+        }
+        switch (m_test) {
+            case QUASI_STATIC:
+                return QUASI_STATIC_VOLTS_PER_SEC * (time - m_start);
+            default:
+                return STEP_VOLTS;
+        }
+    }
+
+    /** @return the sign to apply to getVolts() for the left master */
+    public double getLeftSign() {
+        return m_forward ? 1 : -1;
+    }
+
+    /** @return the sign to apply to getVolts() for the (reversed) right master */
+    public double getRightSign() {
+        return m_forward ? -1 : 1;
+    }
+
+    /**
+     * Logs one loop's readings. Acceleration is the change in velocity
+     * since the previous row.
+     *
+     * @param leftVolts voltage the left master actually applied
+     * @param leftVelocity left wheel speed, inches/sec
+     */
+    public void record(double time, double leftVolts, double leftVelocity,
+            double rightVolts, double rightVelocity) {
+        double leftAccel = 0;
+        double rightAccel = 0;
+        if (!m_rows.isEmpty()) {
+            double[] last = m_rows.get(m_rows.size() - 1);
+            double dt = time - last[0];
+            if (dt > 0) {
+                leftAccel = (leftVelocity - last[2]) / dt;
+                rightAccel = (rightVelocity - last[5]) / dt;
+            }
+        }
+        m_rows.add(new double[] {
+            time, leftVolts, leftVelocity, leftAccel, rightVolts, rightVelocity, rightAccel
+        });
+    }
+
+    /**
+     * @param distance inches either side has travelled since the start
+     * @return true when the test has run out of room or time
+     */
+    public boolean isFinished(double time, double distance) {
+        return Math.abs(distance) >= MAX_DISTANCE
+                || (!Double.isNaN(m_start) && time - m_start >= TIMEOUT_SECONDS);
+    }
+
+    /** @return rows of COLUMNS, in time order */
+    public List<double[]> getRows() {
+        return m_rows;
+    }
+
+    public void write(PrintStream out) {
+        out.println(String.join(",", COLUMNS));
+        StringBuilder sb = new StringBuilder();
+        for (double[] row : m_rows) {
+            sb.setLength(0);
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append((float) row[i]);
+            }
+            out.println(sb);
+        }
+    }
+
+    /**
+     * Writes the log to DIRECTORY/characterization_NAME.csv.
+     *
+     * @return the file name, or null if it couldn't be written
+     */
+    public String save() {
+        String path = DIRECTORY + "/characterization_" + getName() + ".csv";
+        try (PrintStream out = new PrintStream(path, "UTF-8")) {
+            write(out);
+            System.out.println("DriveCharacterization: " + m_rows.size() + " rows saved to " + path);
+            return path;
+        } catch (FileNotFoundException | UnsupportedEncodingException e) {
+            System.out.println("DriveCharacterization save failed: " + e);
+            return null;
+        }
+    }
+}
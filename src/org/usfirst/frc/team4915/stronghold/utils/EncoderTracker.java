@@ -0,0 +1,82 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+/**
+ * EncoderTracker turns a pair of drive encoder counts into per-update
+ * deltas for Odometry, without counting encoder resets as motion.
+ *
+ * The Talons apply a reset asynchronously, so after encodersReset() the
+ * old counts keep coming for a cycle or two. Deltas are held at zero until
+ * both sides read (nearly) zero, as AutoDriveStraight waits for, or until
+ * the reset must have been lost. A jump no drivetrain could make in one
+ * update is dropped as well, in case a reset comes unannounced.
+ */
+public class EncoderTracker {
+
+    public static final int MAX_TICKS_PER_UPDATE = 5000;
+    public static final int RESET_TOLERANCE_TICKS = 50;
+    public static final double RESET_TIMEOUT_SECONDS = 0.5;
+
+    private int m_lastLeft;
+    private int m_lastRight;
+    private boolean m_needsBaseline = true;
+    private double m_resetTime = Double.NaN; // NaN: none pending
+    private int m_leftDelta;
+    private int m_rightDelta;
+
+    /** Takes the next counts as the baseline, reporting no motion. */
+    public void rebaseline() {
+        m_needsBaseline = true;
+    }
+
+    /**
+     * The encoders have been told to zero at time; ignore counts until
+     * they do.
+     */
+    public void encodersReset(double time) {
+        m_resetTime = time;
+    }
+
+    public boolean isWaitingForReset() {
+        return !Double.isNaN(m_resetTime);
+    }
+
+    /**
+     * @param left ticks, positive forward
+     * @param right ticks, positive forward
+     */
+    public void update(double time, int left, int right) {
+        m_leftDelta = 0;
+        m_rightDelta = 0;
+        if (!Double.isNaN(m_resetTime)) {
+            boolean zeroed = Math.abs(left) <= RESET_TOLERANCE_TICKS
+                    && Math.abs(right) <= RESET_TOLERANCE_TICKS;
+            if (!zeroed && time - m_resetTime < RESET_TIMEOUT_SECONDS) {
+                return; // still the stale counts
+            }
+            m_resetTime = Double.NaN;
+            m_needsBaseline = true;
+        }
+
+        int dLeft = left - m_lastLeft;
+        int dRight = right - m_lastRight;
+        m_lastLeft = left;
+        m_lastRight = right;
+        if (m_needsBaseline || Math.abs(dLeft) > MAX_TICKS_PER_UPDATE
+                || Math.abs(dRight) > MAX_TICKS_PER_UPDATE) {
+            m_needsBaseline = false;
+            return;
+        }
+        m_leftDelta = dLeft;
+        m_rightDelta = dRight;
+    }
+
+    /** @return left ticks moved in the last update */
+    public int getLeftDelta() {
+        return m_leftDelta;
+    }
+
+    /** @return right ticks moved in the last update */
+    public int getRightDelta() {
+        return m_rightDelta;
+    }
+}
@@ -0,0 +1,192 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * FeedforwardFit is a desktop tool: it reads the CSV logs written by
+ * CharacterizeDrive and fits, per side, by ordinary least squares,
+ *
+ * <pre>
+ *   volts = kS * sign(v) + kV * v + kA * a
+ * </pre>
+ *
+ * with v in inches/sec and a in inches/sec^2. Give it all four tests (both
+ * directions, quasi-static and step) so the three terms are told apart.
+ * It uses nothing from WPILib.
+ *
+ * <pre>
+ *   scp 'lvuser@roborio-4915-frc.local:characterization_*.csv' .
+ *   java -cp bin org.usfirst.frc.team4915.stronghold.utils.FeedforwardFit characterization_*.csv
+ * </pre>
+ */
+public class FeedforwardFit {
+
+    // below this the wheel is (nearly) stopped and static friction, not
+    // kS, decides the voltage
+    public static final double MIN_VELOCITY = 2.0; // inches/sec
+
+    /** One side's constants, in volts, volts per inch/sec and per inch/sec^2. */
+    public static class Result {
+
+        public final double kS;
+        public final double kV;
+        public final double kA;
+        public final double rSquared;
+        public final int samples;
+
+        Result(double kS, double kV, double kA, double rSquared, int samples) {
+            this.kS = kS;
+            this.kV = kV;
+            this.kA = kA;
+            this.rSquared = rSquared;
+            this.samples = samples;
+        }
+
+        /** @return steady speed at volts, inches/sec */
+        public double getSpeed(double volts) {
+            return Math.max(0, volts - kS) / kV;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("kS %.3f V, kV %.4f V/(in/s), kA %.4f V/(in/s^2), r^2 %.4f over %d samples",
+                    kS, kV, kA, rSquared, samples);
+        }
+    }
+
+    /**
+     * Fits one side.
+     *
+     * @param rows rows of DriveCharacterization.COLUMNS
+     * @param right false for the left side's columns, true for the right's
+     * @return the fit, or null with too few moving samples
+     */
+    public static Result fit(List<double[]> rows, boolean right) {
+        int base = right ? 4 : 1;
+        // normal equations for x = (kS, kV, kA)
+        double[][] ata = new double[3][3];
+        double[] atb = new double[3];
+        int n = 0;
+        double sumV = 0;
+        double sumVV = 0;
+        for (double[] row : rows) {
+            double volts = row[base];
+            double v = row[base + 1];
+            double a = row[base + 2];
+            if (Math.abs(v) < MIN_VELOCITY) {
+                continue;
+            }
+            double[] x = {Math.signum(v), v, a};
+            for (int i = 0; i < 3; i++) {
+                for (int j = 0; j < 3; j++) {
+                    ata[i][j] += x[i] * x[j];
+                }
+                atb[i] += x[i] * volts;
+            }
+            n++;
+            sumV += volts;
+            sumVV += volts * volts;
+        }
+        if (n < 3) {
+            return null;
+        }
+        double[] k = solve(ata, atb);
+        if (k == null) {
+            return null;
+        }
+
+        // r^2 from the normal equations: SSres = b.b - k.(A^T b)
+        double ssTotal = sumVV - sumV * sumV / n;
+        double ssResidual = sumVV - (k[0] * atb[0] + k[1] * atb[1] + k[2] * atb[2]);
+        double rSquared = ssTotal > 0 ? 1 - ssResidual / ssTotal : 0;
+        return new Result(k[0], k[1], k[2], rSquared, n);
+    }
+
+    // Gaussian elimination with partial pivoting; null if singular
+    private static double[] solve(double[][] a, double[] b) {
+        int n = b.length;
+        double[][] m = new double[n][n + 1];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(a[i], 0, m[i], 0, n);
+            m[i][n] = b[i];
+        }
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            for (int r = col + 1; r < n; r++) {
+                if (Math.abs(m[r][col]) > Math.abs(m[pivot][col])) {
+                    pivot = r;
+                }
+            }
+            if (Math.abs(m[pivot][col]) < 1e-12) {
+                return null;
+            }
+            double[] t = m[col];
+            m[col] = m[pivot];
+            m[pivot] = t;
+            for (int r = col + 1; r < n; r++) {
+                double f = m[r][col] / m[col][col];
+                for (int c = col; c <= n; c++) {
+                    m[r][c] -= f * m[col][c];
+                }
+            }
+        }
+        double[] x = new double[n];
+        for (int r = n - 1; r >= 0; r--) {
+            double s = m[r][n];
+            for (int c = r + 1; c < n; c++) {
+                s -= m[r][c] * x[c];
+            }
+            x[r] = s / m[r][r];
+        }
+        return x;
+    }
+
+    /** Reads a file written by DriveCharacterization.write(). */
+    public static List<double[]> read(String path) throws IOException {
+        List<double[]> rows = new ArrayList<double[]>();
+        for (String line : Files.readAllLines(Paths.get(path))) {
+            if (line.isEmpty() || line.startsWith(DriveCharacterization.COLUMNS[0])) {
+                continue; // the header
+            }
+            String[] fields = line.split(",");
+            double[] row = new double[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                row[i] = Double.parseDouble(fields[i]);
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: FeedforwardFit <characterization.csv>...");
+            System.exit(1);
+        }
+        List<double[]> rows = new ArrayList<double[]>();
+        for (String path : args) {
+            List<double[]> file = read(path);
+            System.out.println(path + ": " + file.size() + " rows");
+            rows.addAll(file);
+        }
+        report(rows);
+    }
+
+    public static void report(List<double[]> rows) {
+        for (boolean right : new boolean[] {false, true}) {
+            Result r = fit(rows, right);
+            String side = right ? "right" : "left ";
+            if (r == null) {
+                System.out.println(side + ": not enough moving samples");
+                continue;
+            }
+            System.out.println(side + ": " + r);
+            System.out.println(String.format("       %.0f in/s (%.1f ft/s) at 12V", r.getSpeed(12),
+                    r.getSpeed(12) / 12));
+        }
+    }
+}
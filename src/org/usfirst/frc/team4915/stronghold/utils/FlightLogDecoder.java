@@ -0,0 +1,178 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * FlightLogDecoder is a desktop tool: it reads a FlightRecorder file copied
+ * off the robot and writes it as CSV, oldest record first, followed by
+ * summary statistics on stderr. It uses nothing from WPILib.
+ *
+ * <pre>
+ *   scp lvuser@roborio-4915-frc.local:flight.prev.bin .
+ *   java -cp bin org.usfirst.frc.team4915.stronghold.utils.FlightLogDecoder flight.prev.bin flight.csv
+ * </pre>
+ *
+ * With no output file the CSV goes to stdout.
+ */
+public class FlightLogDecoder {
+
+    private static final String[] COLUMNS = {
+        "seq", "time", "leftTicks", "rightTicks", "leftSpeed", "rightSpeed",
+        "heading", "turnSetpoint", "turnError", "turnOutput", "aimPosition", "aimSetPoint",
+        "aimStickY", "targetX", "targetY", "targetTime",
+        "atTop", "atBottom", "boulderLoaded", "autoTurning", "visionControl",
+        "launcherLocked", "driveLocked", "potScrewed", "commands", "loopMillis"
+    };
+
+    private static final int[] FLAG_COLUMNS = {
+        FlightRecorder.FLAG_AT_TOP, FlightRecorder.FLAG_AT_BOTTOM, FlightRecorder.FLAG_BOULDER_LOADED,
+        FlightRecorder.FLAG_AUTO_TURNING, FlightRecorder.FLAG_VISION_CONTROL,
+        FlightRecorder.FLAG_LAUNCHER_LOCKED, FlightRecorder.FLAG_DRIVE_LOCKED,
+        FlightRecorder.FLAG_POT_SCREWED
+    };
+
+    // LoopProfiler.LOOP_BUDGET_NANOS; repeated so this class needs nothing
+    // from the robot side at runtime
+    private static final double LOOP_BUDGET_MILLIS = 20.0;
+
+    // numeric columns we summarize
+    private static final String[] STAT_NAMES = {
+        "leftSpeed", "rightSpeed", "heading", "turnError", "turnOutput", "aimPosition", "loopMillis"
+    };
+
+    private static double stat(FlightRecorder.Record r, int i) {
+        switch (i) {
+        case 0: return r.leftSpeed;
+        case 1: return r.rightSpeed;
+        case 2: return r.heading;
+        case 3: return r.turnError;
+        case 4: return r.turnOutput;
+        case 5: return r.aimPosition;
+        default: return r.loopMillis;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: FlightLogDecoder <flight.bin> [out.csv]");
+            System.exit(1);
+        }
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(Paths.get(args[0])));
+        String problem = FlightRecorder.checkHeader(buf);
+        if (problem != null) {
+            System.err.println(args[0] + ": " + problem);
+            System.exit(1);
+        }
+        PrintStream out = args.length > 1 ? new PrintStream(args[1], "UTF-8") : System.out;
+        decode(buf, out, System.err);
+        if (out != System.out) {
+            out.close();
+        }
+    }
+
+    public static void decode(ByteBuffer buf, PrintStream csv, PrintStream summary) {
+        int capacity = buf.getInt(12);
+        long count = FlightRecorder.recordCount(buf);
+        long first = FlightRecorder.firstRecord(buf);
+        String[] names = FlightRecorder.readCommandNames(buf);
+        int n = (int) (count - first);
+
+        double[] min = new double[STAT_NAMES.length];
+        double[] max = new double[STAT_NAMES.length];
+        double[] sum = new double[STAT_NAMES.length];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        long[] commandCycles = new long[FlightRecorder.MAX_COMMANDS];
+        long overruns = 0;
+        long gaps = 0;
+        double firstTime = 0;
+        double lastTime = 0;
+
+        csv.println(String.join(",", COLUMNS));
+        FlightRecorder.Record r = new FlightRecorder.Record();
+        StringBuilder sb = new StringBuilder();
+        for (long seq = first; seq < count; seq++) {
+            FlightRecorder.readRecord(buf, seq, r);
+
+            sb.setLength(0);
+            sb.append(r.sequence).append(',');
+            sb.append(r.time).append(',');
+            sb.append(r.leftTicks).append(',');
+            sb.append(r.rightTicks).append(',');
+            sb.append((float) r.leftSpeed).append(',');
+            sb.append((float) r.rightSpeed).append(',');
+            sb.append((float) r.heading).append(',');
+            sb.append((float) r.turnSetpoint).append(',');
+            sb.append((float) r.turnError).append(',');
+            sb.append((float) r.turnOutput).append(',');
+            sb.append((float) r.aimPosition).append(',');
+            sb.append((float) r.aimSetPoint).append(',');
+            sb.append((float) r.aimStickY).append(',');
+            sb.append((float) r.targetX).append(',');
+            sb.append((float) r.targetY).append(',');
+            sb.append(r.targetTime).append(',');
+            for (int flag : FLAG_COLUMNS) {
+                sb.append(r.has(flag) ? 1 : 0).append(',');
+            }
+            appendCommands(sb, r.commandMask, names);
+            sb.append(',').append((float) r.loopMillis);
+            csv.println(sb);
+
+            for (int i = 0; i < STAT_NAMES.length; i++) {
+                double v = stat(r, i);
+                min[i] = Math.min(min[i], v);
+                max[i] = Math.max(max[i], v);
+                sum[i] += v;
+            }
+            for (int i = 0; i < FlightRecorder.MAX_COMMANDS; i++) {
+                if ((r.commandMask & (1 << i)) != 0) {
+                    commandCycles[i]++;
+                }
+            }
+            if (r.loopMillis > LOOP_BUDGET_MILLIS) {
+                overruns++;
+            }
+            if (seq == first) {
+                firstTime = r.time;
+            } else if (r.time - lastTime > 2 * LOOP_BUDGET_MILLIS / 1000) {
+                gaps++; // disabled, or the loop stalled
+            }
+            lastTime = r.time;
+        }
+
+        summary.println(String.format("%d records (%d written, capacity %d), %.1f s",
+                n, count, capacity, lastTime - firstTime));
+        summary.println(String.format("loop overruns: %d, gaps > %.0fms: %d",
+                overruns, 2 * LOOP_BUDGET_MILLIS, gaps));
+        if (n > 0) {
+            for (int i = 0; i < STAT_NAMES.length; i++) {
+                summary.println(String.format("  %-12s min %10.3f  mean %10.3f  max %10.3f",
+                        STAT_NAMES[i], min[i], sum[i] / n, max[i]));
+            }
+        }
+        for (int i = 0; i < FlightRecorder.MAX_COMMANDS; i++) {
+            if (commandCycles[i] > 0) {
+                summary.println(String.format("  %-24s %d cycles", names[i], commandCycles[i]));
+            }
+        }
+    }
+
+    // commands are joined with '|' so the CSV stays one column
+    private static void appendCommands(StringBuilder sb, int mask, String[] names) {
+        boolean first = true;
+        for (int i = 0; i < FlightRecorder.MAX_COMMANDS; i++) {
+            if ((mask & (1 << i)) != 0) {
+                if (!first) {
+                    sb.append('|');
+                }
+                sb.append(names[i]);
+                first = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * FlightRecorder appends one fixed-size binary record per main-loop cycle
+ * to a memory-mapped ring file. Writing a record is a handful of absolute
+ * puts into the mapping: no allocation, no syscall, and the kernel writes
+ * the pages back on its own schedule, so the data survives a code crash
+ * (though not necessarily a power cut).
+ *
+ * The previous run's file is kept as PREVIOUS_FILE so that rebooting the
+ * roboRIO after a match doesn't throw the match away. Use FlightLogDecoder
+ * on a desktop to turn a file into CSV.
+ *
+ * File layout (big-endian):
+ *
+ * <pre>
+ *   header (HEADER_SIZE bytes)
+ *     0  int   MAGIC
+ *     4  int   VERSION
+ *     8  int   RECORD_SIZE
+ *    12  int   capacity (records)
+ *    16  long  count (records ever written; next slot is count % capacity)
+ *    64  MAX_COMMANDS x NAME_BYTES  command names, indexed by bit in commandMask
+ *   records (capacity x RECORD_SIZE bytes), see the OFF_ constants
+ * </pre>
+ *
+ * Only the main loop thread writes. Version 2 added the vision target,
+ * turn setpoint and aim stick so that ReplayHarness can re-run the logic.
+ */
+public class FlightRecorder {
+
+    public static final String FILE = "/home/lvuser/flight.bin";
+    public static final String PREVIOUS_FILE = "/home/lvuser/flight.prev.bin";
+
+    public static final int MAGIC = 0x46524543; // "FREC"
+    public static final int VERSION = 2;
+    public static final int HEADER_SIZE = 4096;
+    public static final int RECORD_SIZE = 96;
+    public static final int DEFAULT_CAPACITY = 65536; // ~22 minutes at 50Hz
+
+    public static final int HEADER_OFF_COUNT = 16;
+    public static final int HEADER_OFF_NAMES = 64;
+    public static final int MAX_COMMANDS = 32;
+    public static final int NAME_BYTES = 32;
+
+    // record field offsets
+    public static final int OFF_SEQUENCE = 0; // long
+    public static final int OFF_TIME = 8; // double, FPGA seconds
+    public static final int OFF_LEFT_TICKS = 16; // int
+    public static final int OFF_RIGHT_TICKS = 20; // int
+    public static final int OFF_LEFT_SPEED = 24; // float
+    public static final int OFF_RIGHT_SPEED = 28; // float
+    public static final int OFF_HEADING = 32; // float, degrees
+    public static final int OFF_TURN_ERROR = 36; // float
+    public static final int OFF_TURN_OUTPUT = 40; // float
+    public static final int OFF_AIM_POSITION = 44; // float, pot ticks
+    public static final int OFF_AIM_SETPOINT = 48; // float, pot ticks
+    public static final int OFF_FLAGS = 52; // int, FLAG_ bits
+    public static final int OFF_COMMAND_MASK = 56; // int, bit i = command name i ran
+    public static final int OFF_LOOP_MILLIS = 60; // float
+    // inputs needed to replay the vision and turn logic (version 2)
+    public static final int OFF_TARGET_TIME = 64; // double, FPGA time of vision frame
+    public static final int OFF_TURN_SETPOINT = 72; // float
+    public static final int OFF_TARGET_X = 76; // float
+    public static final int OFF_TARGET_Y = 80; // float
+    public static final int OFF_AIM_STICK_Y = 84; // float
+    // 88..95 spare
+
+    public static final int FLAG_AT_TOP = 1;
+    public static final int FLAG_AT_BOTTOM = 2;
+    public static final int FLAG_BOULDER_LOADED = 4;
+    public static final int FLAG_AUTO_TURNING = 8;
+    public static final int FLAG_VISION_CONTROL = 16;
+    public static final int FLAG_LAUNCHER_LOCKED = 32;
+    public static final int FLAG_DRIVE_LOCKED = 64;
+    public static final int FLAG_POT_SCREWED = 128;
+
+    /** One cycle's worth of data; reuse a single instance. */
+    public static class Record {
+
+        public long sequence; // filled by append / readRecord
+        public double time;
+        public int leftTicks;
+        public int rightTicks;
+        public double leftSpeed;
+        public double rightSpeed;
+        public double heading;
+        public double turnError;
+        public double turnOutput;
+        public double aimPosition;
+        public double aimSetPoint;
+        public int flags;
+        public int commandMask;
+        public double loopMillis;
+        public double targetTime;
+        public double turnSetpoint;
+        public double targetX;
+        public double targetY;
+        public double aimStickY;
+
+        public boolean has(int flag) {
+            return (flags & flag) != 0;
+        }
+
+        public void clear() {
+            time = 0;
+            leftTicks = 0;
+            rightTicks = 0;
+            leftSpeed = 0;
+            rightSpeed = 0;
+            heading = 0;
+            turnError = 0;
+            turnOutput = 0;
+            aimPosition = 0;
+            aimSetPoint = 0;
+            flags = 0;
+            commandMask = 0;
+            loopMillis = 0;
+            targetTime = Double.NaN; // no vision timestamp
+            turnSetpoint = 0;
+            targetX = 0;
+            targetY = 0;
+            aimStickY = 0;
+        }
+    }
+
+    private final MappedByteBuffer m_map;
+    private final int m_capacity;
+    private long m_count;
+
+    /**
+     * Opens the default file, keeping the previous one.
+     *
+     * @return a recorder, or null if the file can't be mapped (we'd rather
+     *         run without a recorder than not run)
+     */
+    public static FlightRecorder open() {
+        File current = new File(FILE);
+        File previous = new File(PREVIOUS_FILE);
+        if (current.exists()) {
+            previous.delete();
+            if (!current.renameTo(previous)) {
+                System.out.println("FlightRecorder couldn't keep previous log " + FILE);
+            }
+        }
+        try {
+            return new FlightRecorder(current, DEFAULT_CAPACITY);
+        } catch (IOException e) {
+            System.out.println("FlightRecorder disabled: " + e);
+            return null;
+        }
+    }
+
+    public FlightRecorder(File file, int capacity) throws IOException {
+        m_capacity = capacity;
+        long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(size);
+            // the mapping stays valid after the channel is closed
+            m_map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            raf.close();
+        }
+        m_map.putInt(0, MAGIC);
+        m_map.putInt(4, VERSION);
+        m_map.putInt(8, RECORD_SIZE);
+        m_map.putInt(12, capacity);
+        m_map.putLong(HEADER_OFF_COUNT, 0);
+    }
+
+    /**
+     * Names bit index of Record.commandMask. Called rarely (when a command
+     * class is first seen), so it may allocate.
+     */
+    public void setCommandName(int index, String name) {
+        if (index < 0 || index >= MAX_COMMANDS) {
+            return;
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+        int base = HEADER_OFF_NAMES + index * NAME_BYTES;
+        for (int i = 0; i < NAME_BYTES; i++) {
+            m_map.put(base + i, i < bytes.length && i < NAME_BYTES - 1 ? bytes[i] : 0);
+        }
+    }
+
+    public void append(Record r) {
+        int base = HEADER_SIZE + (int) (m_count % m_capacity) * RECORD_SIZE;
+        m_map.putLong(base + OFF_SEQUENCE, m_count);
+        m_map.putDouble(base + OFF_TIME, r.time);
+        m_map.putInt(base + OFF_LEFT_TICKS, r.leftTicks);
+        m_map.putInt(base + OFF_RIGHT_TICKS, r.rightTicks);
+        m_map.putFloat(base + OFF_LEFT_SPEED, (float) r.leftSpeed);
+        m_map.putFloat(base + OFF_RIGHT_SPEED, (float) r.rightSpeed);
+        m_map.putFloat(base + OFF_HEADING, (float) r.heading);
+        m_map.putFloat(base + OFF_TURN_ERROR, (float) r.turnError);
+        m_map.putFloat(base + OFF_TURN_OUTPUT, (float) r.turnOutput);
+        m_map.putFloat(base + OFF_AIM_POSITION, (float) r.aimPosition);
+        m_map.putFloat(base + OFF_AIM_SETPOINT, (float) r.aimSetPoint);
+        m_map.putInt(base + OFF_FLAGS, r.flags);
+        m_map.putInt(base + OFF_COMMAND_MASK, r.commandMask);
+        m_map.putFloat(base + OFF_LOOP_MILLIS, (float) r.loopMillis);
+        m_map.putDouble(base + OFF_TARGET_TIME, r.targetTime);
+        m_map.putFloat(base + OFF_TURN_SETPOINT, (float) r.turnSetpoint);
+        m_map.putFloat(base + OFF_TARGET_X, (float) r.targetX);
+        m_map.putFloat(base + OFF_TARGET_Y, (float) r.targetY);
+        m_map.putFloat(base + OFF_AIM_STICK_Y, (float) r.aimStickY);
+        r.sequence = m_count;
+        m_count++;
+        // publish the count last so a reader never sees a half-written record
+        m_map.putLong(HEADER_OFF_COUNT, m_count);
+    }
+
+    /**
+     * Decodes record number seq (as counted by the header) from a copy of
+     * a recorder file.
+     */
+    public static void readRecord(ByteBuffer buf, long seq, Record out) {
+        int capacity = buf.getInt(12);
+        int base = HEADER_SIZE + (int) (seq % capacity) * RECORD_SIZE;
+        out.sequence = buf.getLong(base + OFF_SEQUENCE);
+        out.time = buf.getDouble(base + OFF_TIME);
+        out.leftTicks = buf.getInt(base + OFF_LEFT_TICKS);
+        out.rightTicks = buf.getInt(base + OFF_RIGHT_TICKS);
+        out.leftSpeed = buf.getFloat(base + OFF_LEFT_SPEED);
+        out.rightSpeed = buf.getFloat(base + OFF_RIGHT_SPEED);
+        out.heading = buf.getFloat(base + OFF_HEADING);
+        out.turnError = buf.getFloat(base + OFF_TURN_ERROR);
+        out.turnOutput = buf.getFloat(base + OFF_TURN_OUTPUT);
+        out.aimPosition = buf.getFloat(base + OFF_AIM_POSITION);
+        out.aimSetPoint = buf.getFloat(base + OFF_AIM_SETPOINT);
+        out.flags = buf.getInt(base + OFF_FLAGS);
+        out.commandMask = buf.getInt(base + OFF_COMMAND_MASK);
+        out.loopMillis = buf.getFloat(base + OFF_LOOP_MILLIS);
+        out.targetTime = buf.getDouble(base + OFF_TARGET_TIME);
+        out.turnSetpoint = buf.getFloat(base + OFF_TURN_SETPOINT);
+        out.targetX = buf.getFloat(base + OFF_TARGET_X);
+        out.targetY = buf.getFloat(base + OFF_TARGET_Y);
+        out.aimStickY = buf.getFloat(base + OFF_AIM_STICK_Y);
+    }
+
+    /**
+     * @return a description of what's wrong with buf as a recorder file,
+     *         or null if it's one we can read
+     */
+    public static String checkHeader(ByteBuffer buf) {
+        if (buf.capacity() < HEADER_SIZE || buf.getInt(0) != MAGIC) {
+            return "not a flight recorder file";
+        }
+        if (buf.getInt(4) != VERSION || buf.getInt(8) != RECORD_SIZE) {
+            return "version " + buf.getInt(4) + ", expected " + VERSION;
+        }
+        return null;
+    }
+
+    /** @return the index of the oldest record still in buf */
+    public static long firstRecord(ByteBuffer buf) {
+        return Math.max(0, recordCount(buf) - buf.getInt(12));
+    }
+
+    /** @return one past the index of the newest record in buf */
+    public static long recordCount(ByteBuffer buf) {
+        return buf.getLong(HEADER_OFF_COUNT);
+    }
+
+    /** @return the command names from the header, "cmdN" for unused slots */
+    public static String[] readCommandNames(ByteBuffer buf) {
+        String[] names = new String[MAX_COMMANDS];
+        byte[] bytes = new byte[NAME_BYTES];
+        for (int i = 0; i < names.length; i++) {
+            int base = HEADER_OFF_NAMES + i * NAME_BYTES;
+            int len = 0;
+            while (len < bytes.length && buf.get(base + len) != 0) {
+                bytes[len] = buf.get(base + len);
+                len++;
+            }
+            names[i] = len == 0 ? "cmd" + i : new String(bytes, 0, len, StandardCharsets.US_ASCII);
+        }
+        return names;
+    }
+
+    public long getCount() {
+        return m_count;
+    }
+
+    public int getCapacity() {
+        return m_capacity;
+    }
+}
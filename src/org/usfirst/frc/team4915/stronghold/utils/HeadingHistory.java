@@ -0,0 +1,152 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * HeadingHistory is a fixed-size ring of timestamped orientation samples.
+ * It lets us ask "which way were we pointing at time t?", e.g. when a vision
+ * frame was captured, rather than using wherever the robot points by the
+ * time the result reaches us.
+ *
+ * One thread (the IMU update thread) appends; any thread may query. Queries
+ * use an optimistic read and binary search, so they're O(log n) and don't
+ * allocate or block the writer.
+ */
+public class HeadingHistory {
+
+    private final int m_mask;
+    private final double[] m_time;
+    private final double[] m_heading;
+    private final double[] m_pitch;
+    private final double[] m_roll;
+    private final StampedLock m_lock = new StampedLock();
+    private long m_count; // total samples ever added
+
+    /**
+     * @param minCapacity at least this many samples are retained; rounded up
+     *        to a power of two.
+     */
+    public HeadingHistory(int minCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, minCapacity) - 1) << 1;
+        m_mask = capacity - 1;
+        m_time = new double[capacity];
+        m_heading = new double[capacity];
+        m_pitch = new double[capacity];
+        m_roll = new double[capacity];
+    }
+
+    public int getCapacity() {
+        return m_mask + 1;
+    }
+
+    /**
+     * Appends a sample. Timestamps must be non-decreasing.
+     */
+    public void add(double timestamp, double heading, double pitch, double roll) {
+        long stamp = m_lock.writeLock();
+        try {
+            int i = (int) (m_count & m_mask);
+            m_time[i] = timestamp;
+            m_heading[i] = heading;
+            m_pitch[i] = pitch;
+            m_roll[i] = roll;
+            m_count++;
+        } finally {
+            m_lock.unlockWrite(stamp);
+        }
+    }
+
+    /** @return the number of samples currently retained */
+    public int size() {
+        long stamp = m_lock.tryOptimisticRead();
+        long n = m_count;
+        if (!m_lock.validate(stamp)) {
+            stamp = m_lock.readLock();
+            try {
+                n = m_count;
+            } finally {
+                m_lock.unlockRead(stamp);
+            }
+        }
+        return (int) Math.min(n, m_mask + 1);
+    }
+
+    /**
+     * Heading at the given FPGA time, linearly interpolated between the two
+     * surrounding samples. Interpolation takes the short way around 0/360.
+     * Times outside the retained window clamp to the oldest/newest sample.
+     *
+     * @return heading in the same units as BNO055.getHeading(), or NaN if
+     *         the history is empty
+     */
+    public double headingAt(double timestamp) {
+        return valueAt(m_heading, timestamp, true);
+    }
+
+    public double pitchAt(double timestamp) {
+        return valueAt(m_pitch, timestamp, false);
+    }
+
+    public double rollAt(double timestamp) {
+        return valueAt(m_roll, timestamp, false);
+    }
+
+    private double valueAt(double[] values, double timestamp, boolean angle) {
+        long stamp = m_lock.tryOptimisticRead();
+        double v = search(values, timestamp, angle);
+        if (!m_lock.validate(stamp)) {
+            stamp = m_lock.readLock();
+            try {
+                v = search(values, timestamp, angle);
+            } finally {
+                m_lock.unlockRead(stamp);
+            }
+        }
+        return v;
+    }
+
+    // May see torn data under an optimistic read; callers validate.
+    private double search(double[] values, double timestamp, boolean angle) {
+        long count = m_count;
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long newest = count - 1;
+        long oldest = Math.max(0, count - (m_mask + 1));
+        if (timestamp <= m_time[(int) (oldest & m_mask)]) {
+            return values[(int) (oldest & m_mask)];
+        }
+        if (timestamp >= m_time[(int) (newest & m_mask)]) {
+            return values[(int) (newest & m_mask)];
+        }
+        // find the last sample with time <= timestamp
+        long lo = oldest;
+        long hi = newest;
+        while (hi - lo > 1) {
+            long mid = (lo + hi) >>> 1;
+            if (m_time[(int) (mid & m_mask)] <= timestamp) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        int a = (int) (lo & m_mask);
+        int b = (int) (hi & m_mask);
+        double dt = m_time[b] - m_time[a];
+        if (dt <= 0) {
+            return values[b];
+        }
+        double frac = (timestamp - m_time[a]) / dt;
+        double delta = values[b] - values[a];
+        if (angle) {
+            if (delta > 180) {
+                delta -= 360;
+            } else if (delta < -180) {
+                delta += 360;
+            }
+            double v = values[a] + frac * delta;
+            return v < 0 ? v + 360 : (v >= 360 ? v - 360 : v);
+        }
+        return values[a] + frac * delta;
+    }
+}
@@ -0,0 +1,98 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+/**
+ * HeadingHold keeps the robot on the heading it had when start() was
+ * called, while something else decides how fast to drive. Each step turns
+ * the heading error into a differential correction: positive means turn
+ * right (clockwise, the way BNO055 headings increase).
+ *
+ * It also keeps simple error statistics for the current hold, for
+ * telemetry and for tuning.
+ *
+ * All methods are synchronized so gains can be changed from another
+ * thread while the main loop steps it.
+ */
+public class HeadingHold {
+
+    // largest correction, as a fraction of full turn output
+    public static final double MAX_CORRECTION = 0.5;
+
+    private final DiscretePID m_pid;
+    private boolean m_holding;
+
+    // error statistics since start()
+    private int m_steps;
+    private double m_sumSquaredError;
+    private double m_maxError;
+
+    public HeadingHold(double Kp, double Ki, double Kd) {
+        m_pid = new DiscretePID(Kp, Ki, Kd, 0);
+        m_pid.setOutputRange(-MAX_CORRECTION, MAX_CORRECTION);
+        m_pid.setInputRange(-180, 180);
+        m_pid.setContinuous(true);
+    }
+
+    public synchronized void setGains(double Kp, double Ki, double Kd) {
+        m_pid.setPID(Kp, Ki, Kd, 0);
+    }
+
+    /** Starts holding heading, a normalized heading in degrees. */
+    public synchronized void start(double heading) {
+        m_pid.reset();
+        m_pid.setSetpoint(heading);
+        m_holding = true;
+        m_steps = 0;
+        m_sumSquaredError = 0;
+        m_maxError = 0;
+    }
+
+    public synchronized void stop() {
+        m_holding = false;
+    }
+
+    public synchronized boolean isHolding() {
+        return m_holding;
+    }
+
+    /**
+     * Runs one step.
+     *
+     * @param heading current normalized heading, degrees
+     * @return correction in [-MAX_CORRECTION, MAX_CORRECTION], positive to
+     *         turn right, or 0 when not holding
+     */
+    public synchronized double step(double heading) {
+        if (!m_holding) {
+            return 0;
+        }
+        double correction = m_pid.calculate(heading);
+        double error = Math.abs(m_pid.getError());
+        m_steps++;
+        m_sumSquaredError += error * error;
+        m_maxError = Math.max(m_maxError, error);
+        return correction;
+    }
+
+    public synchronized double getSetpoint() {
+        return m_pid.getSetpoint();
+    }
+
+    /** @return the error at the last step, degrees, positive when left of the heading */
+    public synchronized double getError() {
+        return m_pid.getError();
+    }
+
+    public synchronized double getMaxError() {
+        return m_maxError;
+    }
+
+    public synchronized double getRmsError() {
+        return m_steps == 0 ? 0 : Math.sqrt(m_sumSquaredError / m_steps);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("HeadingHold at %.0f: %d steps, rms error %.2f, max %.2f degrees",
+                m_pid.getSetpoint(), m_steps, getRmsError(), m_maxError);
+    }
+}
@@ -0,0 +1,56 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+/**
+ * IMUSample is a fixed-size record of a single BNO055 reading. Instances are
+ * meant to be allocated once and reused: the sampling thread fills one in
+ * place, and callers hand their own instance to BNO055.getSnapshot() to
+ * receive a consistent copy of heading, accel, velocity and timestamp.
+ */
+public class IMUSample {
+
+    // FPGA time (seconds) at which the sample was read from the sensor.
+    public double timestamp;
+
+    // Euler angles in degrees, in register order: heading, roll, pitch.
+    public final double[] heading = new double[3];
+
+    // Linear acceleration in m/s^2.
+    public final double[] accel = new double[3];
+
+    // Integrated velocity in m/s (see note in BNO055 about its accuracy).
+    public final double[] velocity = new double[3];
+
+    // The following are only filled when the read plan includes them.
+
+    // Angular rate in degrees/sec (x, y, z).
+    public final double[] gyro = new double[3];
+
+    // Unit quaternion (w, x, y, z).
+    public final double[] quaternion = new double[4];
+
+    // Gravity vector in m/s^2.
+    public final double[] gravity = new double[3];
+
+    // Raw BNO055_CALIB_STAT_ADDR: sys, gyro, accel, mag in 2 bit fields.
+    public int calibStatus;
+
+    /**
+     * Copies every field of this sample into out without allocating.
+     *
+     * @param out the record to overwrite
+     */
+    public void copyTo(IMUSample out) {
+        out.timestamp = this.timestamp;
+        for (int i = 0; i < 3; i++) {
+            out.heading[i] = this.heading[i];
+            out.accel[i] = this.accel[i];
+            out.velocity[i] = this.velocity[i];
+            out.gyro[i] = this.gyro[i];
+            out.gravity[i] = this.gravity[i];
+        }
+        for (int i = 0; i < 4; i++) {
+            out.quaternion[i] = this.quaternion[i];
+        }
+        out.calibStatus = this.calibStatus;
+    }
+}
@@ -0,0 +1,228 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LoopProfiler measures the main robot loop and the commands that run in it.
+ *
+ * Robot brackets each periodic call with beginLoop()/endLoop(), and
+ * ProfiledCommand reports the time spent in each lifecycle method. Every
+ * loop longer than LOOP_BUDGET_NANOS is counted as an overrun and charged to
+ * the command that used the most time in that loop.
+ *
+ * Profiles are created once per command class (in the command constructor),
+ * so recording never allocates. Everything here is called from the main
+ * loop thread only; the numbers reach the dashboard through Telemetry.
+ */
+public class LoopProfiler {
+
+    public static final long LOOP_BUDGET_NANOS = 20000000L; // 20ms
+
+    public enum Phase {
+        INITIALIZE, EXECUTE, IS_FINISHED, END
+    }
+
+    /** Timing for one command class. */
+    public static class Profile {
+
+        private final String m_name;
+        private final int m_index; // creation order
+        private final PeriodHistogram[] m_phases = new PeriodHistogram[Phase.values().length];
+        private long m_loopNanos; // time used in loop m_loopId
+        private long m_loopId = -1;
+        private long m_overruns;
+        private final Telemetry.NumberChannel m_executeChannel;
+
+        Profile(String name, int index) {
+            m_name = name;
+            m_index = index;
+            for (int i = 0; i < m_phases.length; i++) {
+                m_phases[i] = PeriodHistogram.forDurations(LOOP_BUDGET_NANOS, LOOP_BUDGET_NANOS);
+            }
+            m_executeChannel = Telemetry.getInstance().number("Profile " + name + " execute ms",
+                    Telemetry.Priority.LOW);
+        }
+
+        public String getName() {
+            return m_name;
+        }
+
+        public int getIndex() {
+            return m_index;
+        }
+
+        public PeriodHistogram getHistogram(Phase phase) {
+            return m_phases[phase.ordinal()];
+        }
+
+        /** @return the number of loop overruns this command was blamed for */
+        public long getOverrunCount() {
+            return m_overruns;
+        }
+    }
+
+    private static LoopProfiler instance;
+
+    private final Map<String, Profile> m_profiles = new HashMap<String, Profile>();
+    private final List<Profile> m_profileList = new ArrayList<Profile>();
+    private final PeriodHistogram m_loop = PeriodHistogram.forDurations(LOOP_BUDGET_NANOS, 2 * LOOP_BUDGET_NANOS);
+    private long m_loopId;
+    private long m_loopStart;
+    private Profile m_loopWorst; // command that used the most time this loop
+    private int m_loopMask; // bit i set if profile i ran this loop
+    private int m_lastLoopMask;
+    private long m_lastLoopNanos;
+    private long m_overruns;
+    private Profile m_lastOffender;
+
+    private final Telemetry.NumberChannel m_loopMeanChannel =
+            Telemetry.getInstance().number("Loop mean ms", Telemetry.Priority.LOW);
+    private final Telemetry.NumberChannel m_loopMaxChannel =
+            Telemetry.getInstance().number("Loop max ms", Telemetry.Priority.LOW);
+    private final Telemetry.NumberChannel m_overrunChannel =
+            Telemetry.getInstance().number("Loop overruns", Telemetry.Priority.NORMAL);
+    private final Telemetry.StringChannel m_offenderChannel =
+            Telemetry.getInstance().string("Loop last overrun by", Telemetry.Priority.NORMAL);
+
+    public static synchronized LoopProfiler getInstance() {
+        if (instance == null) {
+            instance = new LoopProfiler();
+        }
+        return instance;
+    }
+
+    private LoopProfiler() {
+    }
+
+    /**
+     * @return the profile shared by every command with this name, created
+     *         on first use
+     */
+    public Profile getProfile(String name) {
+        Profile p = m_profiles.get(name);
+        if (p == null) {
+            p = new Profile(name, m_profileList.size());
+            m_profiles.put(name, p);
+            m_profileList.add(p);
+        }
+        return p;
+    }
+
+    public void beginLoop() {
+        m_loopId++;
+        m_loopWorst = null;
+        m_loopMask = 0;
+        m_loopStart = System.nanoTime();
+    }
+
+    public void endLoop() {
+        long elapsed = System.nanoTime() - m_loopStart;
+        m_loop.record(elapsed);
+        m_lastLoopNanos = elapsed;
+        m_lastLoopMask = m_loopMask;
+        if (elapsed > LOOP_BUDGET_NANOS) {
+            m_overruns++;
+            if (m_loopWorst != null) {
+                m_loopWorst.m_overruns++;
+                m_lastOffender = m_loopWorst;
+                m_offenderChannel.set(m_loopWorst.m_name);
+            }
+        }
+        m_loopMeanChannel.set(m_loop.getMeanMillis());
+        m_loopMaxChannel.set(m_loop.getMaxMillis());
+        m_overrunChannel.set(m_overruns);
+    }
+
+    /** Called by ProfiledCommand after each timed lifecycle method. */
+    public void record(Profile p, Phase phase, long nanos) {
+        PeriodHistogram h = p.m_phases[phase.ordinal()];
+        h.record(nanos);
+        if (p.m_loopId != m_loopId) {
+            p.m_loopId = m_loopId;
+            p.m_loopNanos = 0;
+        }
+        p.m_loopNanos += nanos;
+        if (p.m_index < 32) {
+            m_loopMask |= 1 << p.m_index;
+        }
+        if (m_loopWorst == null || p.m_loopNanos > m_loopWorst.m_loopNanos) {
+            m_loopWorst = p;
+        }
+        if (phase == Phase.EXECUTE) {
+            p.m_executeChannel.set(h.getMeanMillis());
+        }
+    }
+
+    public int getProfileCount() {
+        return m_profileList.size();
+    }
+
+    public Profile getProfile(int index) {
+        return m_profileList.get(index);
+    }
+
+    /** @return duration of the last completed loop */
+    public long getLastLoopNanos() {
+        return m_lastLoopNanos;
+    }
+
+    /**
+     * @return bit i is set if the command with profile index i ran any
+     *         lifecycle method in the last completed loop (first 32 only)
+     */
+    public int getLastLoopCommandMask() {
+        return m_lastLoopMask;
+    }
+
+    public PeriodHistogram getLoopHistogram() {
+        return m_loop;
+    }
+
+    public long getOverrunCount() {
+        return m_overruns;
+    }
+
+    /** @return the command blamed for the most recent overrun, or null */
+    public Profile getLastOffender() {
+        return m_lastOffender;
+    }
+
+    /**
+     * Prints everything recorded so far and starts over. Called from
+     * disabledInit, i.e. at the end of each match; this is the one place
+     * that allocates.
+     */
+    public void dump() {
+        if (m_loop.getCount() == 0) {
+            return;
+        }
+        System.out.println("Loop: " + m_loop);
+        for (Profile p : m_profileList) {
+            for (Phase phase : Phase.values()) {
+                PeriodHistogram h = p.getHistogram(phase);
+                if (h.getCount() > 0) {
+                    System.out.println("  " + p.m_name + "." + phase + ": " + h);
+                }
+            }
+            if (p.m_overruns > 0) {
+                System.out.println("  " + p.m_name + " blamed for " + p.m_overruns + " overruns");
+            }
+        }
+        reset();
+    }
+
+    public void reset() {
+        m_loop.reset();
+        m_overruns = 0;
+        m_lastOffender = null;
+        for (Profile p : m_profileList) {
+            for (PeriodHistogram h : p.m_phases) {
+                h.reset();
+            }
+            p.m_overruns = 0;
+        }
+    }
+}
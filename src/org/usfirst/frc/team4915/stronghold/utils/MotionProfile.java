@@ -0,0 +1,129 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+/**
+ * MotionProfile is a precomputed, jerk-limited (S-curve) velocity profile
+ * for moving a distance from rest to rest, sampled once per control
+ * period. It is immutable, so one profile can be built when a command is
+ * constructed and shared.
+ *
+ * The profile is generated by running a constant-velocity pulse through
+ * two moving-average filters, one as long as the acceleration time and one
+ * as long as the jerk time. The area, i.e. the distance, is exact. The
+ * filters only hold the acceleration and jerk limits if the pulse is at
+ * least as long as both of them together, so a short move is given a
+ * lower peak velocity rather than a shorter pulse; it then takes a little
+ * longer than the time-optimal S-curve.
+ */
+public class MotionProfile {
+
+    private final double m_period;
+    private final double m_distance;
+    private final double[] m_velocity;
+    private final double[] m_position; // at the end of each period
+    // periods [m_cruiseStart, m_cruiseEnd) are at constant velocity
+    private int m_cruiseStart;
+    private int m_cruiseEnd;
+
+    /**
+     * @param distance how far to move; must be >= 0
+     * @param maxVelocity distance units per second
+     * @param maxAcceleration distance units per second^2
+     * @param maxJerk distance units per second^3
+     * @param period seconds between samples, e.g. the scheduler period
+     */
+    public MotionProfile(double distance, double maxVelocity, double maxAcceleration,
+            double maxJerk, double period) {
+        if (distance < 0 || maxVelocity <= 0 || maxAcceleration <= 0 || maxJerk <= 0) {
+            throw new IllegalArgumentException("MotionProfile needs a distance >= 0 and positive limits");
+        }
+        m_period = period;
+        m_distance = distance;
+        if (distance == 0) {
+            m_velocity = new double[0];
+            m_position = new double[0];
+            return;
+        }
+
+        double v = Math.min(maxVelocity, reachableVelocity(distance, maxAcceleration, maxJerk));
+        double a = Math.min(maxAcceleration, Math.sqrt(v * maxJerk));
+
+        int accel = Math.max(1, (int) Math.ceil(v / a / period));
+        int jerk = Math.max(1, (int) Math.ceil(a / maxJerk / period));
+        int cruise = Math.max(accel + jerk, (int) Math.ceil(distance / v / period));
+        double pulse = distance / (cruise * period); // <= v, keeps the area exact
+
+        int n = cruise + accel + jerk - 2;
+        m_cruiseStart = accel + jerk - 2;
+        m_cruiseEnd = cruise;
+        m_velocity = new double[n];
+        m_position = new double[n];
+        double[] first = new double[n];
+        double sum1 = 0;
+        double sum2 = 0;
+        double position = 0;
+        for (int k = 0; k < n; k++) {
+            sum1 += (k < cruise ? pulse : 0) - (k >= accel && k - accel < cruise ? pulse : 0);
+            first[k] = sum1 / accel;
+            sum2 += first[k] - (k >= jerk ? first[k - jerk] : 0);
+            m_velocity[k] = Math.max(0, sum2 / jerk);
+            position += m_velocity[k] * period;
+            m_position[k] = position;
+        }
+        if (n > 0) {
+            m_position[n - 1] = distance; // absorb rounding
+        }
+    }
+
+    /**
+     * @return the peak velocity v at which the pulse, distance / v long,
+     *         just covers the acceleration and jerk filters:
+     *         distance = v * (v / a + a / maxJerk), where a is the
+     *         acceleration reachable within v
+     */
+    private static double reachableVelocity(double distance, double maxAcceleration, double maxJerk) {
+        double a = maxAcceleration;
+        double v = a / 2 * (Math.sqrt(a * a / (maxJerk * maxJerk) + 4 * distance / a) - a / maxJerk);
+        if (v * maxJerk >= a * a) {
+            return v;
+        }
+        // never reaches maxAcceleration either: a = sqrt(v * maxJerk)
+        return Math.pow(distance * Math.sqrt(maxJerk) / 2, 2.0 / 3.0);
+    }
+
+    public double getPeriod() {
+        return m_period;
+    }
+
+    public double getDistance() {
+        return m_distance;
+    }
+
+    /** @return number of periods until the profile comes to rest */
+    public int size() {
+        return m_velocity.length;
+    }
+
+    public double getDurationSeconds() {
+        return m_velocity.length * m_period;
+    }
+
+    /** @return true if period k is at the profile's full, constant velocity */
+    public boolean isCruising(int k) {
+        return k >= m_cruiseStart && k < m_cruiseEnd;
+    }
+
+    /** @return the first period after cruising */
+    public int getCruiseEnd() {
+        return m_cruiseEnd;
+    }
+
+    /** @return velocity during period k; 0 once the profile is done */
+    public double getVelocity(int k) {
+        return k < m_velocity.length ? m_velocity[k] : 0;
+    }
+
+    /** @return position at the end of period k; the distance once done */
+    public double getPosition(int k) {
+        return k < m_position.length ? m_position[k] : m_distance;
+    }
+}
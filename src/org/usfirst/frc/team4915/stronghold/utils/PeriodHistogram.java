@@ -0,0 +1,207 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * PeriodHistogram records the measured period between successive ticks of a
+ * periodic task, or, made with forDurations(), how long something took
+ * against a time budget. Jitter (distance from the nominal period) is only
+ * kept for periods; a duration well under budget isn't jitter. Durations are
+ * binned in fixed-width buckets; anything past the last bucket lands in the
+ * final one. Recording is done by a single thread and never allocates; any
+ * thread may query the counters while recording is in progress.
+ */
+public class PeriodHistogram {
+
+    private static final int NUM_BINS = 64;
+
+    private final long m_nominalNanos; // the period, or the budget
+    private final boolean m_durations;
+    private final long m_binWidthNanos;
+    private final AtomicLongArray m_bins = new AtomicLongArray(NUM_BINS);
+
+    private volatile long m_count;
+    private volatile long m_sumNanos;
+    private volatile long m_maxNanos;
+    private volatile long m_maxJitterNanos;
+    private volatile long m_sumAbsJitterNanos;
+    private volatile long m_overruns; // task ran longer than one period (the budget)
+    private volatile long m_skipped; // ticks dropped to catch up
+
+    /**
+     * @param nominalNanos the requested period; bins cover 0 to 4x that
+     */
+    public PeriodHistogram(long nominalNanos) {
+        this(nominalNanos, 4 * nominalNanos);
+    }
+
+    /**
+     * @param nominalNanos the requested period, or the budget
+     * @param rangeNanos durations up to this are binned individually
+     */
+    public PeriodHistogram(long nominalNanos, long rangeNanos) {
+        this(nominalNanos, rangeNanos, false);
+    }
+
+    private PeriodHistogram(long nominalNanos, long rangeNanos, boolean durations) {
+        m_nominalNanos = nominalNanos;
+        m_binWidthNanos = Math.max(1, rangeNanos / NUM_BINS);
+        m_durations = durations;
+    }
+
+    /**
+     * @param budgetNanos longer than this counts as an overrun
+     * @param rangeNanos durations up to this are binned individually
+     * @return a histogram for record(long) that keeps no jitter
+     */
+    public static PeriodHistogram forDurations(long budgetNanos, long rangeNanos) {
+        return new PeriodHistogram(budgetNanos, rangeNanos, true);
+    }
+
+    /**
+     * Records one measured tick.
+     *
+     * @param periodNanos time since the previous tick started
+     * @param runNanos how long the task itself took this tick
+     */
+    public void record(long periodNanos, long runNanos) {
+        int bin = (int) (periodNanos / m_binWidthNanos);
+        if (bin >= NUM_BINS) {
+            bin = NUM_BINS - 1;
+        } else if (bin < 0) {
+            bin = 0;
+        }
+        m_bins.incrementAndGet(bin);
+
+        if (periodNanos > m_maxNanos) {
+            m_maxNanos = periodNanos;
+        }
+        if (!m_durations) {
+            long jitter = Math.abs(periodNanos - m_nominalNanos);
+            if (jitter > m_maxJitterNanos) {
+                m_maxJitterNanos = jitter;
+            }
+            m_sumAbsJitterNanos += jitter;
+        }
+        m_sumNanos += periodNanos;
+        if (runNanos > m_nominalNanos) {
+            m_overruns++;
+        }
+        m_count++;
+    }
+
+    /**
+     * Records how long something took; longer than the nominal period
+     * counts as an overrun.
+     */
+    public void record(long nanos) {
+        record(nanos, nanos);
+    }
+
+    /** Records that the scheduler dropped ticks to get back on schedule. */
+    public void recordSkipped(long ticks) {
+        m_skipped += ticks;
+    }
+
+    public void reset() {
+        for (int i = 0; i < NUM_BINS; i++) {
+            m_bins.set(i, 0);
+        }
+        m_count = 0;
+        m_sumNanos = 0;
+        m_maxNanos = 0;
+        m_maxJitterNanos = 0;
+        m_sumAbsJitterNanos = 0;
+        m_overruns = 0;
+        m_skipped = 0;
+    }
+
+    public int getNumBins() {
+        return NUM_BINS;
+    }
+
+    public double getBinWidthMillis() {
+        return m_binWidthNanos / 1e6;
+    }
+
+    public long getBinCount(int bin) {
+        return m_bins.get(bin);
+    }
+
+    public long getCount() {
+        return m_count;
+    }
+
+    public double getNominalPeriodMillis() {
+        return m_nominalNanos / 1e6;
+    }
+
+    public boolean isDurations() {
+        return m_durations;
+    }
+
+    public double getMeanMillis() {
+        long n = m_count;
+        return n == 0 ? 0 : (m_sumNanos / (double) n) / 1e6;
+    }
+
+    public double getMaxMillis() {
+        return m_maxNanos / 1e6;
+    }
+
+    /** @return NaN for a forDurations() histogram */
+    public double getMeanJitterMillis() {
+        if (m_durations) {
+            return Double.NaN;
+        }
+        long n = m_count;
+        return n == 0 ? 0 : (m_sumAbsJitterNanos / (double) n) / 1e6;
+    }
+
+    /** @return NaN for a forDurations() histogram */
+    public double getMaxJitterMillis() {
+        return m_durations ? Double.NaN : m_maxJitterNanos / 1e6;
+    }
+
+    public long getOverrunCount() {
+        return m_overruns;
+    }
+
+    public long getSkippedCount() {
+        return m_skipped;
+    }
+
+    /**
+     * @param fraction e.g. 0.99 for the 99th percentile
+     * @return the upper edge of the bin containing that percentile, in ms
+     */
+    public double getPercentileMillis(double fraction) {
+        long total = 0;
+        for (int i = 0; i < NUM_BINS; i++) {
+            total += m_bins.get(i);
+        }
+        long target = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < NUM_BINS; i++) {
+            seen += m_bins.get(i);
+            if (seen >= target && seen > 0) {
+                return (i + 1) * getBinWidthMillis();
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        if (m_durations) {
+            return String.format("n=%d mean=%.3fms p99=%.3fms max=%.3fms budget=%.3fms overruns=%d",
+                    getCount(), getMeanMillis(), getPercentileMillis(0.99), getMaxMillis(),
+                    getNominalPeriodMillis(), getOverrunCount());
+        }
+        return String.format("n=%d mean=%.3fms p99=%.3fms max=%.3fms jitter(mean/max)=%.2f/%.2fms"
+                + " overruns=%d skipped=%d",
+                getCount(), getMeanMillis(), getPercentileMillis(0.99), getMaxMillis(),
+                getMeanJitterMillis(), getMaxJitterMillis(),
+                getOverrunCount(), getSkippedCount());
+    }
+}
@@ -0,0 +1,36 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+/**
+ * Pose is a reusable record of the robot's estimated field position, as
+ * published by the Odometry subsystem. Callers allocate one and pass it to
+ * Odometry.getPose() each time they need the latest estimate.
+ *
+ * Coordinates are relative to where odometry was last reset: x is along
+ * the heading at reset, y is to the right of it and theta follows the
+ * IMU convention (degrees, clockwise positive).
+ */
+public class Pose {
+
+    public double timestamp; // FPGA seconds
+    public double x; // inches
+    public double y; // inches
+    public double theta; // degrees, normalized to [-180, 180]
+    public double distance; // signed inches travelled along the path
+
+    public void copyTo(Pose out) {
+        out.timestamp = this.timestamp;
+        out.x = this.x;
+        out.y = this.y;
+        out.theta = this.theta;
+        out.distance = this.distance;
+    }
+
+    public double distanceTo(Pose other) {
+        return Math.hypot(other.x - this.x, other.y - this.y);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("(%.1f, %.1f) %.1fdeg", x, y, theta);
+    }
+}
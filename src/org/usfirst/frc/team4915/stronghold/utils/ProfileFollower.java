@@ -0,0 +1,117 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+/**
+ * ProfileFollower tracks a MotionProfile one period at a time. Each step
+ * commands the profile's velocity plus a correction proportional to the
+ * distance-to-go error, i.e. how far the encoders say we are behind (or
+ * ahead of) where the profile expects us to be. Once the profile has come
+ * to rest the correction alone closes the remaining gap.
+ *
+ * The move can be shortened on the way (setDistance) by skipping part of
+ * the cruise, so the deceleration is the profile's own.
+ *
+ * It advances one period per step(), not by the clock, so a caller that
+ * stops stepping (backing off a stall) pauses the profile.
+ */
+public class ProfileFollower {
+
+    // inches/sec of correction per inch behind the profile
+    public static final double POSITION_GAIN = 3.0;
+    // finished when this close to the end, once the profile is done
+    public static final double DISTANCE_TOLERANCE = 1.0; // inches
+    // give up closing the last gap this long after the profile ends
+    public static final double SETTLE_SECONDS = 1.0;
+
+    private final MotionProfile m_profile;
+    private final double m_direction; // +1 forward, -1 backward
+    private final int m_settlePeriods;
+    private int m_period;
+    private double m_expected;
+    private double m_skipped; // inches of cruise dropped by setDistance
+    private double m_target;  // where setDistance wants to stop
+
+    /**
+     * @param profile the distance to cover, always positive
+     * @param direction sign of travel; negative drives backward
+     */
+    public ProfileFollower(MotionProfile profile, double direction) {
+        m_profile = profile;
+        m_direction = direction < 0 ? -1 : 1;
+        m_settlePeriods = (int) Math.ceil(SETTLE_SECONDS / profile.getPeriod());
+    }
+
+    public void start() {
+        m_period = 0;
+        m_expected = 0;
+        m_skipped = 0;
+        m_target = m_profile.getDistance();
+    }
+
+    /**
+     * Ends the move at distance instead, as soon as the profile is
+     * cruising. It can't lengthen the move, or shorten it by more than the
+     * cruise left; it ends as near distance as that allows.
+     *
+     * @param distance inches from start(), always positive
+     */
+    public void setDistance(double distance) {
+        m_target = Math.min(distance, getDistance());
+    }
+
+    /** @return where the move will end, inches from start() */
+    public double getDistance() {
+        return m_profile.getDistance() - m_skipped;
+    }
+
+    // while cruising every period covers the same distance, so dropping
+    // some of them shifts the rest of the profile back smoothly
+    private void skipCruise() {
+        double excess = getDistance() - m_target;
+        if (excess <= 0 || !m_profile.isCruising(m_period)) {
+            return;
+        }
+        double perPeriod = m_profile.getVelocity(m_period) * m_profile.getPeriod();
+        int skip = Math.min((int) Math.round(excess / perPeriod), m_profile.getCruiseEnd() - m_period);
+        m_period += skip;
+        m_skipped += skip * perPeriod;
+        m_target = getDistance();
+    }
+
+    /**
+     * Advances one period.
+     *
+     * @param travelled signed inches travelled since start()
+     * @return signed velocity to command for this period, inches/sec
+     */
+    public double step(double travelled) {
+        double ahead = m_direction * travelled;
+        skipCruise();
+        m_expected = m_profile.getPosition(m_period) - m_skipped;
+        double velocity = m_profile.getVelocity(m_period)
+                + POSITION_GAIN * (m_expected - ahead);
+        m_period++;
+        return m_direction * velocity;
+    }
+
+    /** @return inches left to the end of the profile, negative past it */
+    public double getDistanceToGo(double travelled) {
+        return getDistance() - m_direction * travelled;
+    }
+
+    /** @return where the profile expected us to be at the last step */
+    public double getExpectedDistance() {
+        return m_expected;
+    }
+
+    public boolean isProfileDone() {
+        return m_period >= m_profile.size();
+    }
+
+    public boolean isFinished(double travelled) {
+        if (!isProfileDone()) {
+            return false;
+        }
+        return Math.abs(getDistanceToGo(travelled)) <= DISTANCE_TOLERANCE
+                || m_period >= m_profile.size() + m_settlePeriods;
+    }
+}
@@ -0,0 +1,98 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * RealTimeSampleThread is the default SampleScheduler: a dedicated,
+ * elevated-priority thread that wakes on absolute deadlines so that a late
+ * tick does not push every later tick back (java.util.Timer's
+ * schedule() drifts that way). If the thread falls more than a full period
+ * behind, e.g. across a GC pause, the missed ticks are dropped and counted
+ * rather than run back-to-back.
+ */
+public class RealTimeSampleThread implements SampleScheduler {
+
+    private final String m_name;
+    private final double m_rateHz;
+    private final long m_periodNanos;
+    private final PeriodHistogram m_histogram;
+    private volatile boolean m_running;
+    private Thread m_thread;
+
+    public RealTimeSampleThread(String name, double rateHz) {
+        if (rateHz <= 0) {
+            throw new IllegalArgumentException("rate must be positive: " + rateHz);
+        }
+        m_name = name;
+        m_rateHz = rateHz;
+        m_periodNanos = (long) (1e9 / rateHz);
+        m_histogram = new PeriodHistogram(m_periodNanos);
+    }
+
+    @Override
+    public synchronized void start(final Runnable task) {
+        if (m_thread != null) {
+            throw new IllegalStateException(m_name + " already started");
+        }
+        m_running = true;
+        m_thread = new Thread(new Runnable() {
+
+            public void run() {
+                loop(task);
+            }
+        }, m_name);
+        m_thread.setDaemon(true);
+        m_thread.setPriority(Thread.MAX_PRIORITY);
+        m_thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        m_running = false;
+        if (m_thread != null) {
+            m_thread.interrupt();
+            m_thread = null;
+        }
+    }
+
+    @Override
+    public double getRateHz() {
+        return m_rateHz;
+    }
+
+    @Override
+    public PeriodHistogram getHistogram() {
+        return m_histogram;
+    }
+
+    private void loop(Runnable task) {
+        long deadline = System.nanoTime();
+        long lastStart = 0;
+        while (m_running) {
+            long start = System.nanoTime();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // a single bad read must not kill the sampling thread
+                e.printStackTrace();
+            }
+            long end = System.nanoTime();
+            if (lastStart != 0) {
+                m_histogram.record(start - lastStart, end - start);
+            }
+            lastStart = start;
+
+            deadline += m_periodNanos;
+            long behind = end - deadline;
+            if (behind > 0) {
+                long missed = behind / m_periodNanos + 1;
+                m_histogram.recordSkipped(missed);
+                deadline += missed * m_periodNanos;
+            }
+            long wait;
+            while (m_running && (wait = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+/**
+ * RelayTuner runs a relay feedback (Astrom-Hagglund) experiment on the
+ * turn loop. It turns at a fixed output toward a setpoint heading, flipping
+ * direction each time the heading crosses it, so the robot oscillates at
+ * the loop's ultimate period Tu. From the oscillation's amplitude a and
+ * the relay output d it estimates the ultimate gain
+ *
+ * <pre>
+ *   Ku = 4d / (pi * sqrt(a^2 - h^2))
+ * </pre>
+ *
+ * where h is the relay's hysteresis, and from Ku and Tu it derives turn
+ * gains and predicts how they will settle.
+ *
+ * Not thread safe; on the robot DriveTrain steps it under the same lock as
+ * the turn controller.
+ */
+public class RelayTuner {
+
+    public static final double RELAY_OUTPUT = 0.3;   // fraction of full turn output
+    public static final double HYSTERESIS = 1.0;     // degrees, rejects IMU noise
+    public static final int SKIPPED_CYCLES = 1;      // let the oscillation settle
+    public static final int MEASURED_CYCLES = 4;
+    public static final double MAX_ERROR = 45.0;     // degrees; give up past this
+    public static final double TIMEOUT_SECONDS = 15.0;
+
+    // Tuning rule: a PD controller, like the hand-tuned gains, since the
+    // heading already integrates the turn rate. Kp = KP_RATIO * Ku and
+    // Td = TD_RATIO * Tu, from the "some overshoot" Ziegler-Nichols rule.
+    public static final double KP_RATIO = 0.33;
+    public static final double TD_RATIO = 1.0 / 3;
+
+    private static final int PREDICT_SUBSTEPS = 20; // per controller step
+
+    private final double m_setpoint;
+    private final double m_relayOutput;
+    private final double m_hysteresis;
+
+    private double m_startTime = Double.NaN;
+    private double m_output;
+    private double m_lastError;
+
+    // the cycle in progress, from one rising switch to the next
+    private double m_cycleStart = Double.NaN;
+    private double m_cycleMax;
+    private double m_cycleMin;
+    private int m_cycles;      // completed, including skipped ones
+    private double m_sumPeriod;
+    private double m_sumAmplitude;
+
+    private boolean m_done;
+    private String m_failure;
+
+    /** @param setpoint normalized heading to oscillate around, degrees */
+    public RelayTuner(double setpoint) {
+        this(setpoint, RELAY_OUTPUT, HYSTERESIS);
+    }
+
+    public RelayTuner(double setpoint, double relayOutput, double hysteresis) {
+        m_setpoint = setpoint;
+        m_relayOutput = relayOutput;
+        m_hysteresis = hysteresis;
+    }
+
+    /**
+     * Runs one relay step.
+     *
+     * @param heading current normalized heading, degrees
+     * @param time when the heading was sampled, seconds
+     * @return turn output, positive to turn right, or 0 once finished
+     */
+    public double step(double heading, double time) {
+        if (isFinished()) {
+            return 0;
+        }
+        double error = BNO055.normalizeHeading(m_setpoint - heading);
+        m_lastError = error;
+        if (Double.isNaN(m_startTime)) {
+            m_startTime = time;
+            m_output = error < -m_hysteresis ? -m_relayOutput : m_relayOutput;
+        }
+        if (Math.abs(error) > MAX_ERROR) {
+            m_failure = String.format("error %.1f degrees exceeds %.0f", error, MAX_ERROR);
+            return 0;
+        }
+        if (time - m_startTime > TIMEOUT_SECONDS) {
+            m_failure = "no steady oscillation after " + TIMEOUT_SECONDS + "s";
+            return 0;
+        }
+
+        m_cycleMax = Math.max(m_cycleMax, error);
+        m_cycleMin = Math.min(m_cycleMin, error);
+        if (m_output < 0 && error > m_hysteresis) {
+            m_output = m_relayOutput;
+            risingSwitch(time);
+        } else if (m_output > 0 && error < -m_hysteresis) {
+            m_output = -m_relayOutput;
+        }
+        return isFinished() ? 0 : m_output;
+    }
+
+    private void risingSwitch(double time) {
+        if (!Double.isNaN(m_cycleStart)) {
+            if (m_cycles >= SKIPPED_CYCLES) {
+                m_sumPeriod += time - m_cycleStart;
+                m_sumAmplitude += (m_cycleMax - m_cycleMin) / 2;
+            }
+            m_cycles++;
+        }
+        m_cycleStart = time;
+        m_cycleMax = m_lastError;
+        m_cycleMin = m_lastError;
+        if (m_cycles >= SKIPPED_CYCLES + MEASURED_CYCLES) {
+            m_done = true;
+            if (getAmplitude() <= m_hysteresis) {
+                m_failure = String.format("amplitude %.2f within hysteresis", getAmplitude());
+            }
+        }
+    }
+
+    public boolean isFinished() {
+        return m_done || m_failure != null;
+    }
+
+    /** @return true once enough cycles have been measured, and they make sense */
+    public boolean isDone() {
+        return m_done && m_failure == null;
+    }
+
+    /** @return why the experiment failed, or null */
+    public String getFailure() {
+        return m_failure;
+    }
+
+    public double getSetpoint() {
+        return m_setpoint;
+    }
+
+    public double getError() {
+        return m_lastError;
+    }
+
+    /** @return measured oscillation amplitude, degrees */
+    public double getAmplitude() {
+        int n = m_cycles - SKIPPED_CYCLES;
+        return n <= 0 ? Double.NaN : m_sumAmplitude / n;
+    }
+
+    /** @return Tu, seconds */
+    public double getUltimatePeriod() {
+        int n = m_cycles - SKIPPED_CYCLES;
+        return n <= 0 ? Double.NaN : m_sumPeriod / n;
+    }
+
+    /** @return Ku, turn output per degree */
+    public double getUltimateGain() {
+        double a = getAmplitude();
+        return 4 * m_relayOutput / (Math.PI * Math.sqrt(a * a - m_hysteresis * m_hysteresis));
+    }
+
+    /**
+     * @param Kf kept from the current gains; the experiment says nothing
+     *        about it
+     * @return PD gains per step at TurnController.PERIOD_SECONDS
+     */
+    public TurnGains computeGains(double Kf) {
+        double Kp = KP_RATIO * getUltimateGain();
+        double Td = TD_RATIO * getUltimatePeriod();
+        return new TurnGains(Kp, 0, Kp * Td / TurnController.PERIOD_SECONDS, Kf);
+    }
+
+    /**
+     * Predicts how long a turn takes to settle with the given gains, the
+     * same way DriveTrain measures it: until TurnController first reports
+     * on target. The turn is modelled as an integrator behind a first-order
+     * lag (the Talon speed loop and voltage ramp),
+     *
+     * <pre>
+     *   tau * rate'(t) = K * output(t) - rate(t),  heading'(t) = rate(t)
+     * </pre>
+     *
+     * fitted so that it oscillates with the measured period and amplitude:
+     * at w = 2pi/Tu its gain is pi*a / 4d, and its phase is -180 degrees
+     * plus the asin(h/a) the hysteresis lags by.
+     *
+     * @param degrees size of the turn
+     * @param periodSeconds how often the controller steps
+     * @return seconds, or NaN if it doesn't settle within TIMEOUT_SECONDS
+     */
+    public double predictSettleSeconds(TurnGains gains, double degrees, double periodSeconds) {
+        double w = 2 * Math.PI / getUltimatePeriod();
+        double a = getAmplitude();
+        double tau = Math.sqrt(a * a - m_hysteresis * m_hysteresis) / (m_hysteresis * w);
+        double K = Math.PI * a / (4 * m_relayOutput) * w * Math.sqrt(1 + w * w * tau * tau);
+
+        TurnController turn = new TurnController(gains.Kp, gains.Ki, gains.Kd, gains.Kf, periodSeconds);
+        turn.start(BNO055.normalizeHeading(degrees));
+        double heading = 0;
+        double rate = 0;
+        double dt = periodSeconds / PREDICT_SUBSTEPS;
+        int steps = (int) (TIMEOUT_SECONDS / periodSeconds);
+        for (int k = 0; k < steps; k++) {
+            double output = turn.step(BNO055.normalizeHeading(heading));
+            if (turn.isOnTarget()) {
+                return k * periodSeconds;
+            }
+            for (int j = 0; j < PREDICT_SUBSTEPS; j++) {
+                rate += (K * output - rate) / tau * dt;
+                heading += rate * dt;
+            }
+        }
+        return Double.NaN;
+    }
+
+    @Override
+    public String toString() {
+        if (m_failure != null) {
+            return "RelayTuner failed: " + m_failure;
+        }
+        return String.format("RelayTuner: amplitude %.2f degrees, Tu %.3fs, Ku %.4f per degree",
+                getAmplitude(), getUltimatePeriod(), getUltimateGain());
+    }
+}
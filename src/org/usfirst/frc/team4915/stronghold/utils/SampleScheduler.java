@@ -0,0 +1,26 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+/**
+ * SampleScheduler runs a sensor polling task at a fixed rate and keeps a
+ * record of how well it kept that rate. BNO055 (and anything else that polls
+ * hardware on its own thread) takes one of these so the threading policy can
+ * be swapped without touching the sensor code.
+ */
+public interface SampleScheduler {
+
+    /**
+     * Begins invoking task periodically. Calling start twice is an error.
+     *
+     * @param task the work to do each tick
+     */
+    void start(Runnable task);
+
+    /** Stops invoking the task. The histogram is left intact. */
+    void stop();
+
+    /** @return the requested tick rate in Hz */
+    double getRateHz();
+
+    /** @return actual period, jitter and overrun statistics */
+    PeriodHistogram getHistogram();
+}
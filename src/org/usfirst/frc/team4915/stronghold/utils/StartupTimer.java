@@ -0,0 +1,63 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+import java.util.ArrayList;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * StartupTimer collects how long each phase of robot initialization took and
+ * prints a summary. Phases that ran in the background are recorded with
+ * addBackground(); the summary compares the sum of all phases against the
+ * wall time actually spent to show what overlapping them saved.
+ */
+public class StartupTimer {
+
+    private final double m_start = Timer.getFPGATimestamp();
+    private final ArrayList<String> m_names = new ArrayList<String>();
+    private final ArrayList<Double> m_seconds = new ArrayList<Double>();
+    private final ArrayList<Boolean> m_background = new ArrayList<Boolean>();
+    private String m_phase;
+    private double m_phaseStart;
+
+    /** Starts timing a foreground phase, ending any phase in progress. */
+    public void begin(String phase) {
+        end();
+        m_phase = phase;
+        m_phaseStart = Timer.getFPGATimestamp();
+    }
+
+    /** Ends the current foreground phase, if any. */
+    public void end() {
+        if (m_phase != null) {
+            add(m_phase, Timer.getFPGATimestamp() - m_phaseStart, false);
+            m_phase = null;
+        }
+    }
+
+    /** Records a phase that ran concurrently with the foreground phases. */
+    public synchronized void addBackground(String phase, double seconds) {
+        add(phase, seconds, true);
+    }
+
+    private synchronized void add(String phase, double seconds, boolean background) {
+        m_names.add(phase);
+        m_seconds.add(seconds);
+        m_background.add(background);
+    }
+
+    public synchronized void report(String title) {
+        end();
+        double wall = Timer.getFPGATimestamp() - m_start;
+        double sum = 0;
+        StringBuilder sb = new StringBuilder(title).append(" startup:");
+        for (int i = 0; i < m_names.size(); i++) {
+            double s = m_seconds.get(i);
+            sum += s;
+            sb.append(String.format(" %s=%.0fms%s", m_names.get(i), s * 1000,
+                    m_background.get(i) ? "(bg)" : ""));
+        }
+        sb.append(String.format(", wall=%.0fms, serial would be %.0fms, saved %.0fms",
+                wall * 1000, sum * 1000, Math.max(0, sum - wall) * 1000));
+        System.out.println(sb);
+    }
+}
@@ -0,0 +1,233 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+import org.usfirst.frc.team4915.stronghold.RobotMap;
+import org.usfirst.frc.team4915.stronghold.hal.MotorController;
+
+import edu.wpi.first.wpilibj.CANTalon.MotionProfileStatus;
+import edu.wpi.first.wpilibj.CANTalon.SetValueMotionProfile;
+import edu.wpi.first.wpilibj.CANTalon.TalonControlMode;
+import edu.wpi.first.wpilibj.CANTalon.TrajectoryPoint;
+
+/**
+ * TalonProfileStreamer runs trajectories on the Talons' own motion profile
+ * executors, so the drive loop closes on the Talon every point (10ms)
+ * whatever the roboRIO main loop is doing.
+ *
+ * A background thread, twice per point, tops up each Talon's top-level
+ * buffer, calls processMotionProfileBuffer() to move points down to the
+ * Talon, and watches the status. Output is enabled on every Talon at once,
+ * when each holds MIN_POINTS_TO_START points, and switched to Hold when
+ * they all reach their last point.
+ *
+ * Underruns (the Talon ran out of points) and overruns (a push refused
+ * because the top buffer was full) are counted for the life of the
+ * streamer. Either means the feeder can't keep up.
+ *
+ * start() and stop() are called from the main loop and the feeder runs on
+ * the streamer thread; they synchronize on the streamer. The counters and
+ * state are volatile, for telemetry from any thread.
+ */
+public class TalonProfileStreamer {
+
+    public static final int POINT_DURATION_MS = 10;
+    public static final double SERVICE_RATE_HZ = 2000.0 / POINT_DURATION_MS;
+    public static final int MIN_POINTS_TO_START = 10; // in each Talon's buffer
+    public static final int MAX_PUSH_PER_SERVICE = 64; // keep each service short
+    public static final int PROFILE_SLOT = 1;         // gains set up by RobotMap
+
+    public enum State {
+        IDLE,    // not streaming
+        FILLING, // buffering before enabling output
+        RUNNING, // the Talons are executing points
+        HOLDING  // finished; holding the last point
+    }
+
+    private final MotorController[] m_talons;
+    private final MotionProfileStatus[] m_status;
+    private final String m_name;
+    private SampleScheduler m_scheduler;
+
+    // the job, guarded by this
+    private TrajectoryPoint[][] m_points;
+    private final int[] m_next;
+    private TalonControlMode[] m_previousModes;
+    private volatile State m_state = State.IDLE;
+
+    private volatile long m_underruns;
+    private volatile long m_overruns;
+    private volatile long m_pushed;
+
+    public TalonProfileStreamer(String name, MotorController... talons) {
+        m_name = name;
+        m_talons = talons;
+        m_status = new MotionProfileStatus[talons.length];
+        for (int i = 0; i < talons.length; i++) {
+            m_status[i] = new MotionProfileStatus();
+        }
+        m_next = new int[talons.length];
+    }
+
+    /**
+     * Converts a profile, in inches, into Talon trajectory points for one
+     * side. The profile's period must be a whole number of ms, at most
+     * 255.
+     *
+     * @param sign +1, or -1 for a reversed Talon or to drive backward
+     */
+    public static TrajectoryPoint[] toTrajectory(MotionProfile profile, double sign) {
+        int durationMs = (int) Math.round(profile.getPeriod() * 1000);
+        if (durationMs < 1 || durationMs > 255) {
+            throw new IllegalArgumentException("point duration out of range: " + durationMs + "ms");
+        }
+        double rotationsPerInch = RobotMap.quadTicksPerInch / RobotMap.quadTicksPerTalonRotation;
+        int n = Math.max(1, profile.size());
+        TrajectoryPoint[] points = new TrajectoryPoint[n];
+        for (int k = 0; k < n; k++) {
+            TrajectoryPoint p = new TrajectoryPoint();
+            p.position = sign * profile.getPosition(k) * rotationsPerInch;
+            p.velocity = sign * profile.getVelocity(k) * rotationsPerInch * 60; // rpm
+            p.timeDurMs = durationMs;
+            p.profileSlotSelect = PROFILE_SLOT;
+            p.velocityOnly = false;
+            p.zeroPos = k == 0;
+            p.isLastPoint = k == n - 1;
+            points[k] = p;
+        }
+        return points;
+    }
+
+    /**
+     * Puts the Talons in MotionProfile mode and starts streaming, one
+     * trajectory per Talon in constructor order. Their previous control
+     * modes come back on stop().
+     */
+    public synchronized void start(TrajectoryPoint[]... trajectories) {
+        if (trajectories.length != m_talons.length) {
+            throw new IllegalArgumentException(m_name + " needs " + m_talons.length + " trajectories");
+        }
+        if (m_state != State.IDLE) {
+            stop();
+        }
+        m_points = trajectories;
+        m_previousModes = new TalonControlMode[m_talons.length];
+        for (int i = 0; i < m_talons.length; i++) {
+            MotorController talon = m_talons[i];
+            m_previousModes[i] = talon.getControlMode();
+            talon.changeControlMode(TalonControlMode.MotionProfile);
+            talon.set(SetValueMotionProfile.Disable.value);
+            talon.clearMotionProfileTrajectories();
+            talon.changeMotionControlFramePeriod(POINT_DURATION_MS / 2);
+            m_next[i] = 0;
+        }
+        m_state = State.FILLING;
+        if (m_scheduler == null) {
+            m_scheduler = new RealTimeSampleThread(m_name, SERVICE_RATE_HZ);
+            m_scheduler.start(new Runnable() {
+
+                public void run() {
+                    service();
+                }
+            });
+        }
+    }
+
+    /** Stops streaming and returns the Talons to their previous modes. */
+    public synchronized void stop() {
+        if (m_scheduler != null) {
+            m_scheduler.stop();
+            m_scheduler = null;
+        }
+        if (m_state == State.IDLE) {
+            return;
+        }
+        for (int i = 0; i < m_talons.length; i++) {
+            MotorController talon = m_talons[i];
+            talon.set(SetValueMotionProfile.Disable.value);
+            talon.clearMotionProfileTrajectories();
+            talon.changeControlMode(m_previousModes[i]);
+            talon.set(0);
+        }
+        m_points = null;
+        m_state = State.IDLE;
+    }
+
+    public State getState() {
+        return m_state;
+    }
+
+    /** @return true once every Talon has reached its last point */
+    public boolean isFinished() {
+        return m_state == State.HOLDING;
+    }
+
+    public long getUnderrunCount() {
+        return m_underruns;
+    }
+
+    public long getOverrunCount() {
+        return m_overruns;
+    }
+
+    /** @return points accepted into the top-level buffers */
+    public long getPushedCount() {
+        return m_pushed;
+    }
+
+    /** @return the service thread's period statistics, or null if idle */
+    public synchronized PeriodHistogram getHistogram() {
+        return m_scheduler == null ? null : m_scheduler.getHistogram();
+    }
+
+    /** One pass of the feeder; called on the streamer thread. */
+    synchronized void service() {
+        if (m_state == State.IDLE) {
+            return;
+        }
+        boolean allBuffered = true;
+        boolean allLast = true;
+        for (int i = 0; i < m_talons.length; i++) {
+            MotorController talon = m_talons[i];
+            MotionProfileStatus status = m_status[i];
+            talon.getMotionProfileStatus(status);
+            if (status.hasUnderrun) {
+                m_underruns++;
+                talon.clearMotionProfileHasUnderrun();
+            }
+            feed(i, status.topBufferRem);
+            talon.processMotionProfileBuffer();
+
+            int remaining = m_points[i].length - m_next[i];
+            allBuffered &= status.btmBufferCnt >= Math.min(MIN_POINTS_TO_START, m_points[i].length)
+                    || (remaining == 0 && status.topBufferCnt == 0);
+            allLast &= status.activePointValid && status.activePoint.isLastPoint;
+        }
+
+        if (m_state == State.FILLING && allBuffered) {
+            setOutput(SetValueMotionProfile.Enable);
+            m_state = State.RUNNING;
+        } else if (m_state == State.RUNNING && allLast) {
+            setOutput(SetValueMotionProfile.Hold);
+            m_state = State.HOLDING;
+        }
+    }
+
+    // push what fits in talon i's top-level buffer
+    private void feed(int i, int room) {
+        TrajectoryPoint[] points = m_points[i];
+        int n = Math.min(Math.min(room, MAX_PUSH_PER_SERVICE), points.length - m_next[i]);
+        for (int k = 0; k < n; k++) {
+            if (!m_talons[i].pushMotionProfileTrajectory(points[m_next[i]])) {
+                m_overruns++;
+                return;
+            }
+            m_next[i]++;
+            m_pushed++;
+        }
+    }
+
+    private void setOutput(SetValueMotionProfile value) {
+        for (MotorController talon : m_talons) {
+            talon.set(value.value);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Telemetry decouples dashboard output from the main loop. Code registers a
+ * channel once (usually in a constructor) and then calls its set() method
+ * as often as it likes; set() only stores a primitive and bumps a version
+ * number, so it is cheap and never touches NetworkTables.
+ *
+ * A low-priority background thread does the actual SmartDashboard puts. It
+ * only sends a key whose value changed, no more often than that key's
+ * minimum period, and never more than MAX_PUTS_PER_TICK keys per tick.
+ * Higher-priority channels are offered the budget first, so adding keys can
+ * slow down LOW traffic but cannot grow the NetworkTables load or cost the
+ * main loop anything.
+ *
+ * Registering a key that already exists returns the existing channel, at
+ * its original priority.
+ */
+public class Telemetry {
+
+    public enum Priority {
+        HIGH(0.05), // driver-critical, e.g. launcher angle
+        NORMAL(0.25), // status worth watching
+        LOW(1.0); // diagnostics
+
+        private final double minPeriodSeconds;
+
+        Priority(double minPeriodSeconds) {
+            this.minPeriodSeconds = minPeriodSeconds;
+        }
+
+        public double getMinPeriodSeconds() {
+            return minPeriodSeconds;
+        }
+    }
+
+    public static final long PUBLISH_PERIOD_MS = 20;
+    public static final int MAX_PUTS_PER_TICK = 16;
+
+    private static Telemetry instance;
+
+    // one list per Priority, in Priority order
+    private final List<List<Channel>> m_channels = new ArrayList<List<Channel>>();
+    private final Map<String, Channel> m_byKey = new HashMap<String, Channel>(); // guarded by this
+    private final int[] m_nextIndex; // round-robin start per priority class
+    private volatile long m_publishedCount;
+    private Thread m_thread;
+
+    public static synchronized Telemetry getInstance() {
+        if (instance == null) {
+            instance = new Telemetry();
+            instance.start();
+        }
+        return instance;
+    }
+
+    private Telemetry() {
+        Priority[] priorities = Priority.values();
+        m_nextIndex = new int[priorities.length];
+        for (int i = 0; i < priorities.length; i++) {
+            m_channels.add(new CopyOnWriteArrayList<Channel>());
+        }
+    }
+
+    private void start() {
+        m_thread = new Thread(new Runnable() {
+
+            public void run() {
+                loop();
+            }
+        }, "Telemetry");
+        m_thread.setDaemon(true);
+        m_thread.setPriority(Thread.MIN_PRIORITY);
+        m_thread.start();
+    }
+
+    public synchronized NumberChannel number(String key, Priority priority) {
+        NumberChannel channel = existing(key, NumberChannel.class);
+        return channel != null ? channel
+                : register(new NumberChannel(key, priority.getMinPeriodSeconds()), priority);
+    }
+
+    public synchronized BooleanChannel bool(String key, Priority priority) {
+        BooleanChannel channel = existing(key, BooleanChannel.class);
+        return channel != null ? channel
+                : register(new BooleanChannel(key, priority.getMinPeriodSeconds()), priority);
+    }
+
+    public synchronized StringChannel string(String key, Priority priority) {
+        StringChannel channel = existing(key, StringChannel.class);
+        return channel != null ? channel
+                : register(new StringChannel(key, priority.getMinPeriodSeconds()), priority);
+    }
+
+    // null if key is new; a key can't be reused for a different type
+    private <T extends Channel> T existing(String key, Class<T> type) {
+        Channel channel = m_byKey.get(key);
+        if (channel == null) {
+            return null;
+        }
+        if (!type.isInstance(channel)) {
+            throw new IllegalArgumentException("Telemetry key \"" + key + "\" is already a "
+                    + channel.getClass().getSimpleName());
+        }
+        return type.cast(channel);
+    }
+
+    private <T extends Channel> T register(T channel, Priority priority) {
+        m_byKey.put(channel.getKey(), channel);
+        m_channels.get(priority.ordinal()).add(channel);
+        return channel;
+    }
+
+    /** @return total SmartDashboard puts made since startup */
+    public long getPublishedCount() {
+        return m_publishedCount;
+    }
+
+    private void loop() {
+        while (true) {
+            try {
+                Thread.sleep(PUBLISH_PERIOD_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                publish(System.nanoTime() / 1e9);
+            } catch (RuntimeException e) {
+                // a bad key must not stop the rest of the dashboard
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void publish(double now) {
+        int budget = MAX_PUTS_PER_TICK;
+        for (int p = 0; p < m_channels.size() && budget > 0; p++) {
+            List<Channel> channels = m_channels.get(p);
+            int n = channels.size();
+            int start = n == 0 ? 0 : m_nextIndex[p] % n;
+            int i = 0;
+            for (; i < n && budget > 0; i++) {
+                Channel c = channels.get((start + i) % n);
+                if (c.isDue(now)) {
+                    c.publish(now);
+                    budget--;
+                    m_publishedCount++;
+                }
+            }
+            // next tick, start where we ran out of budget
+            m_nextIndex[p] = start + i;
+        }
+    }
+
+    /**
+     * A single dashboard key. Each channel should have one writer thread
+     * (normally the main loop). The publisher reads the value after seeing
+     * a new version, so a change is never lost, only coalesced with later
+     * changes.
+     */
+    public static abstract class Channel {
+
+        protected final String m_key;
+        private final double m_minPeriod;
+        protected volatile int m_version;
+        private int m_publishedVersion;
+        private double m_lastPublish = Double.NEGATIVE_INFINITY;
+
+        Channel(String key, double minPeriodSeconds) {
+            m_key = key;
+            m_minPeriod = minPeriodSeconds;
+        }
+
+        public String getKey() {
+            return m_key;
+        }
+
+        boolean isDue(double now) {
+            return m_version != m_publishedVersion && now - m_lastPublish >= m_minPeriod;
+        }
+
+        void publish(double now) {
+            // read the version first: a set() racing with us bumps it again
+            // and we send the newer value next time
+            m_publishedVersion = m_version;
+            m_lastPublish = now;
+            put();
+        }
+
+        abstract void put();
+    }
+
+    public static class NumberChannel extends Channel {
+
+        private volatile double m_value = Double.NaN;
+
+        NumberChannel(String key, double minPeriodSeconds) {
+            super(key, minPeriodSeconds);
+        }
+
+        public void set(double value) {
+            if (Double.doubleToLongBits(value) != Double.doubleToLongBits(m_value)) {
+                m_value = value;
+                m_version++;
+            }
+        }
+
+        @Override
+        void put() {
+            SmartDashboard.putNumber(m_key, m_value);
+        }
+    }
+
+    public static class BooleanChannel extends Channel {
+
+        private volatile boolean m_value;
+
+        BooleanChannel(String key, double minPeriodSeconds) {
+            super(key, minPeriodSeconds);
+            m_version++; // publish the initial false too
+        }
+
+        public void set(boolean value) {
+            if (value != m_value) {
+                m_value = value;
+                m_version++;
+            }
+        }
+
+        @Override
+        void put() {
+            SmartDashboard.putBoolean(m_key, m_value);
+        }
+    }
+
+    public static class StringChannel extends Channel {
+
+        private volatile String m_value = "";
+
+        StringChannel(String key, double minPeriodSeconds) {
+            super(key, minPeriodSeconds);
+        }
+
+        public void set(String value) {
+            if (value == null) {
+                value = "";
+            }
+            if (!value.equals(m_value)) {
+                m_value = value;
+                m_version++;
+            }
+        }
+
+        @Override
+        void put() {
+            SmartDashboard.putString(m_key, m_value);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+/**
+ * TrackWidthEstimator measures the drive's effective track width: how far
+ * the two sides run apart per radian the IMU says we turned. Our wheels
+ * scrub sideways in a turn, so this comes out wider than a tape measure
+ * would say, but it's the width that turns an encoder difference into
+ * heading.
+ *
+ * Only updates where the sides run apart by at least MIN_APART_INCHES
+ * count, and the direction comes from the encoders, so IMU noise averages
+ * out instead of biasing the width. No estimate is given until
+ * MIN_TOTAL_DEGREES of turning have been seen.
+ */
+public class TrackWidthEstimator {
+
+    public static final double MIN_APART_INCHES = 0.05; // per update
+    public static final double MIN_TOTAL_DEGREES = 360;
+
+    private double m_inches;  // left minus right, unsigned
+    private double m_radians; // turned, in the direction the encoders say
+
+    public void reset() {
+        m_inches = 0;
+        m_radians = 0;
+    }
+
+    /**
+     * @param dLeft inches, positive forward
+     * @param dRight inches, positive forward
+     * @param dTheta IMU heading change in degrees, clockwise positive
+     */
+    public void update(double dLeft, double dRight, double dTheta) {
+        double apart = dLeft - dRight; // left further turns us clockwise
+        if (Math.abs(apart) < MIN_APART_INCHES) {
+            return;
+        }
+        m_inches += Math.abs(apart);
+        m_radians += Math.signum(apart) * Math.toRadians(dTheta);
+    }
+
+    public boolean hasEstimate() {
+        return Math.toDegrees(m_radians) >= MIN_TOTAL_DEGREES;
+    }
+
+    /** @return the measured width in inches, or fallback until there is one */
+    public double getTrackWidth(double fallback) {
+        return hasEstimate() ? m_inches / m_radians : fallback;
+    }
+}
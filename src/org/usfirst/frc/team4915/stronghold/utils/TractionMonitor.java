@@ -0,0 +1,229 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * TractionMonitor watches the drivetrain for wheel slip and stalls by
+ * checking the encoders against the IMU, and motor current against speed,
+ * once per cycle:
+ *
+ * <ul>
+ * <li>SLIP: the encoders disagree with the IMU. Either the yaw rate the
+ * two sides' speeds imply isn't what the IMU sees (one side is spinning),
+ * or the encoders accelerate much harder than the IMU feels (both are).</li>
+ * <li>STALL: current is high but the wheels barely turn, e.g. pushing into
+ * a defense.</li>
+ * </ul>
+ *
+ * Both comparisons are low-pass filtered first: differencing IMU headings
+ * 20ms apart amplifies their noise into tens of degrees/sec. A condition
+ * must then persist for a while before it is reported, and must be
+ * clearly gone for a while before TRACTION is reported again. Each change
+ * is delivered to the listeners as an Event.
+ *
+ * Listeners are called from step(), on the caller's thread.
+ */
+public class TractionMonitor {
+
+    public enum Condition {
+        TRACTION, // wheels and robot agree
+        SLIP,
+        STALL
+    }
+
+    /** A change of condition. */
+    public static class Event {
+
+        public final Condition condition;
+        public final double time;   // seconds, as passed to step()
+        public final String detail; // what tripped it, for the log
+
+        Event(Condition condition, double time, String detail) {
+            this.condition = condition;
+            this.time = time;
+            this.detail = detail;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s at %.2f: %s", condition, time, detail);
+        }
+    }
+
+    public interface Listener {
+
+        /** Called from step() when the condition changes. */
+        void tractionChanged(Event event);
+    }
+
+    /** One cycle's readings, filled in by the caller. */
+    public static class Inputs {
+
+        public double time;          // seconds
+        public double leftVelocity;  // inches/sec, positive forward
+        public double rightVelocity; // inches/sec, positive forward
+        public double leftCurrent;   // amps
+        public double rightCurrent;
+        public double heading;       // IMU degrees, clockwise positive
+        public double accel;         // IMU horizontal acceleration, inches/sec^2;
+                                     // NaN if not available
+    }
+
+    public static final double YAW_RATE_TOLERANCE = 30.0; // degrees/sec
+    public static final double ACCEL_TOLERANCE = 100.0;   // inches/sec^2
+    public static final double STALL_CURRENT = 60.0;      // amps, either side
+    public static final double STALL_VELOCITY = 4.0;      // inches/sec
+    public static final double FILTER_SECONDS = 0.2;      // error time constant
+    public static final double SLIP_SECONDS = 0.1;        // to report SLIP
+    public static final double STALL_SECONDS = 0.5;       // to report STALL
+    public static final double CLEAR_SECONDS = 0.25;      // to report TRACTION
+
+    private final double m_trackWidth;
+    private final CopyOnWriteArrayList<Listener> m_listeners = new CopyOnWriteArrayList<Listener>();
+
+    private Condition m_condition = Condition.TRACTION;
+    private boolean m_started;
+    private double m_lastTime;
+    private double m_lastHeading;
+    private double m_lastVelocity;
+
+    // when each symptom began, NaN while absent
+    private double m_slipSince;
+    private double m_stallSince;
+    private double m_clearSince;
+
+    private int m_slipEvents;
+    private int m_stallEvents;
+    private double m_yawRateError;
+    private double m_accelError;
+
+    /** @param trackWidthInches distance between the left and right wheels */
+    public TractionMonitor(double trackWidthInches) {
+        m_trackWidth = trackWidthInches;
+        reset();
+    }
+
+    public void addListener(Listener listener) {
+        m_listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        m_listeners.remove(listener);
+    }
+
+    /** Forgets the past; the next step() only primes the rates. */
+    public void reset() {
+        m_condition = Condition.TRACTION;
+        m_started = false;
+        m_slipSince = Double.NaN;
+        m_stallSince = Double.NaN;
+        m_clearSince = Double.NaN;
+        m_slipEvents = 0;
+        m_stallEvents = 0;
+        m_yawRateError = 0;
+        m_accelError = 0;
+    }
+
+    /**
+     * Checks one cycle's readings.
+     *
+     * @return the condition after this step
+     */
+    public Condition step(Inputs in) {
+        double velocity = (in.leftVelocity + in.rightVelocity) / 2;
+        if (!m_started || in.time <= m_lastTime) {
+            prime(in, velocity);
+            return m_condition;
+        }
+        double dt = in.time - m_lastTime;
+
+        // left faster than right turns right, as the heading increases
+        double encoderYawRate = Math.toDegrees((in.leftVelocity - in.rightVelocity) / m_trackWidth);
+        double imuYawRate = BNO055.normalizeHeading(in.heading - m_lastHeading) / dt;
+        double encoderAccel = (velocity - m_lastVelocity) / dt;
+        double accelError = Double.isNaN(in.accel) ? 0 : Math.abs(encoderAccel) - in.accel;
+        double alpha = dt / (FILTER_SECONDS + dt);
+        m_yawRateError += alpha * (encoderYawRate - imuYawRate - m_yawRateError);
+        m_accelError += alpha * (accelError - m_accelError);
+        prime(in, velocity);
+
+        boolean slipping = Math.abs(m_yawRateError) > YAW_RATE_TOLERANCE
+                || m_accelError > ACCEL_TOLERANCE;
+        boolean stalled = Math.max(Math.abs(in.leftCurrent), Math.abs(in.rightCurrent)) > STALL_CURRENT
+                && Math.abs(velocity) < STALL_VELOCITY;
+        // half the tolerances, so we don't flap around them
+        boolean clear = !stalled && Math.abs(m_yawRateError) < YAW_RATE_TOLERANCE / 2
+                && m_accelError < ACCEL_TOLERANCE / 2;
+
+        m_slipSince = since(slipping, m_slipSince, in.time);
+        m_stallSince = since(stalled, m_stallSince, in.time);
+        m_clearSince = since(clear, m_clearSince, in.time);
+
+        if (m_condition != Condition.STALL && lasted(m_stallSince, in.time, STALL_SECONDS)) {
+            m_stallEvents++;
+            change(Condition.STALL, in.time, String.format("%.0fA at %.1f in/s",
+                    Math.max(Math.abs(in.leftCurrent), Math.abs(in.rightCurrent)), velocity));
+        } else if (m_condition == Condition.TRACTION && lasted(m_slipSince, in.time, SLIP_SECONDS)) {
+            m_slipEvents++;
+            change(Condition.SLIP, in.time, String.format("yaw rate off by %.0f deg/s, accel by %.0f in/s^2",
+                    m_yawRateError, m_accelError));
+        } else if (m_condition != Condition.TRACTION && lasted(m_clearSince, in.time, CLEAR_SECONDS)) {
+            change(Condition.TRACTION, in.time, "recovered");
+        }
+        return m_condition;
+    }
+
+    private void prime(Inputs in, double velocity) {
+        m_started = true;
+        m_lastTime = in.time;
+        m_lastHeading = in.heading;
+        m_lastVelocity = velocity;
+    }
+
+    private static double since(boolean present, double since, double now) {
+        if (!present) {
+            return Double.NaN;
+        }
+        return Double.isNaN(since) ? now : since;
+    }
+
+    private static boolean lasted(double since, double now, double seconds) {
+        return !Double.isNaN(since) && now - since >= seconds - 1e-9;
+    }
+
+    private void change(Condition condition, double time, String detail) {
+        m_condition = condition;
+        Event event = new Event(condition, time, detail);
+        for (Listener listener : m_listeners) {
+            listener.tractionChanged(event);
+        }
+    }
+
+    public Condition getCondition() {
+        return m_condition;
+    }
+
+    /** @return encoder minus IMU yaw rate, filtered, degrees/sec */
+    public double getYawRateError() {
+        return m_yawRateError;
+    }
+
+    /** @return encoder minus IMU acceleration, filtered, inches/sec^2 */
+    public double getAccelError() {
+        return m_accelError;
+    }
+
+    public int getSlipCount() {
+        return m_slipEvents;
+    }
+
+    public int getStallCount() {
+        return m_stallEvents;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TractionMonitor: %s, %d slips, %d stalls", m_condition,
+                m_slipEvents, m_stallEvents);
+    }
+}
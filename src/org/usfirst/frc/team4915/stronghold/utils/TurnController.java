@@ -0,0 +1,117 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+/**
+ * TurnController holds DriveTrain's auto-turn logic: a heading PID plus the
+ * enable/disable and vision-lock decisions around it. It has no WPILib or
+ * hardware references. DriveTrain feeds it IMU headings and sends its output
+ * to the motors, and the replay harness feeds it recorded headings. Both run
+ * exactly the same code.
+ *
+ * All methods are synchronized: on the robot, step() runs on the turn
+ * thread and everything else runs on the main loop.
+ */
+public class TurnController {
+
+    // The gains are tuned for steps this far apart (PIDController's default
+    // period). At other periods Ki and Kd are rescaled so that the
+    // controller behaves the same in real time.
+    public static final double PERIOD_SECONDS = 0.05;
+
+    private final DiscretePID m_pid;
+    private final double m_periodSeconds;
+    private boolean m_enabled;
+    private boolean m_stepped; // since start(); the error is stale until then
+
+    public TurnController(double Kp, double Ki, double Kd, double Kf) {
+        this(Kp, Ki, Kd, Kf, PERIOD_SECONDS);
+    }
+
+    /**
+     * @param periodSeconds how often step() will be called, e.g. the IMU
+     *        sample period
+     */
+    public TurnController(double Kp, double Ki, double Kd, double Kf, double periodSeconds) {
+        m_periodSeconds = periodSeconds;
+        m_pid = new DiscretePID(0, 0, 0, 0);
+        setGains(Kp, Ki, Kd, Kf);
+        m_pid.setOutputRange(-1, 1);
+        m_pid.setInputRange(-180, 180);
+        m_pid.setPercentTolerance(2);
+    }
+
+    /** Changes the gains, given at PERIOD_SECONDS like the constructor's. */
+    public synchronized void setGains(double Kp, double Ki, double Kd, double Kf) {
+        double scale = m_periodSeconds / PERIOD_SECONDS;
+        m_pid.setPID(Kp, Ki * scale, Kd / scale, Kf);
+    }
+
+    public synchronized void start(double degrees) {
+        m_pid.reset();
+        m_pid.setSetpoint(degrees);
+        m_enabled = true;
+        m_stepped = false;
+    }
+
+    /** Disables the controller; the caller should stop the motors. */
+    public synchronized void stop() {
+        m_enabled = false;
+    }
+
+    public double getPeriodSeconds() {
+        return m_periodSeconds;
+    }
+
+    public synchronized boolean isEnabled() {
+        return m_enabled;
+    }
+
+    /**
+     * Runs one PID step.
+     *
+     * @param heading current normalized heading, degrees
+     * @return turn output in [-1, 1], or 0 when disabled
+     */
+    public synchronized double step(double heading) {
+        if (!m_enabled) {
+            return 0;
+        }
+        m_stepped = true;
+        return m_pid.calculate(heading);
+    }
+
+    public synchronized boolean isOnTarget() {
+        return m_stepped && m_pid.onTarget();
+    }
+
+    public synchronized double getSetpoint() {
+        return m_pid.getSetpoint();
+    }
+
+    public synchronized double getError() {
+        return m_pid.getError();
+    }
+
+    public synchronized double getOutput() {
+        return m_pid.get();
+    }
+
+    /**
+     * One cycle of vision-driven turning: start turning toward the target
+     * if we aren't already, and stop once we're there.
+     *
+     * @param targetHeading where vision says to point, used only when a
+     *        turn is started
+     * @return true when the turn has finished, i.e. drive is locked on
+     */
+    public synchronized boolean trackVision(double targetHeading) {
+        if (!m_enabled) {
+            start(targetHeading);
+            return false;
+        }
+        if (isOnTarget()) {
+            stop();
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,100 @@
+package org.usfirst.frc.team4915.stronghold.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.usfirst.frc.team4915.stronghold.subsystems.DriveTrain;
+
+/**
+ * TurnGains is one set of auto-turn PID gains, in TurnController's terms:
+ * Ki and Kd per step at TurnController.PERIOD_SECONDS.
+ *
+ * DriveTrain loads them from FILE when it is constructed, falling back to
+ * its hand-tuned constants, and AutoTuneTurn saves new ones there. The
+ * replay harness and simulators load the same file, so they run the gains
+ * the robot would. The file
+ * is a plain properties file, so it can be read or edited on the roboRIO.
+ */
+public class TurnGains {
+
+    public static final String FILE = "/home/lvuser/turn_gains.properties";
+
+    public final double Kp;
+    public final double Ki;
+    public final double Kd;
+    public final double Kf;
+
+    public TurnGains(double Kp, double Ki, double Kd, double Kf) {
+        this.Kp = Kp;
+        this.Ki = Ki;
+        this.Kd = Kd;
+        this.Kf = Kf;
+    }
+
+    /**
+     * @return the gains in FILE, or DriveTrain's hand-tuned ones
+     */
+    public static TurnGains loadSaved() {
+        return load(FILE, new TurnGains(DriveTrain.turnKp, DriveTrain.turnKi,
+                DriveTrain.turnKd, DriveTrain.turnKf));
+    }
+
+    /**
+     * @return the gains in path, or defaults if there is no file or it
+     *         can't be read
+     */
+    public static TurnGains load(String path, TurnGains defaults) {
+        File f = new File(path);
+        if (!f.exists()) {
+            return defaults;
+        }
+        Properties p = new Properties();
+        try (InputStream in = new FileInputStream(f)) {
+            p.load(in);
+            TurnGains gains = new TurnGains(
+                    Double.parseDouble(p.getProperty("Kp")),
+                    Double.parseDouble(p.getProperty("Ki")),
+                    Double.parseDouble(p.getProperty("Kd")),
+                    Double.parseDouble(p.getProperty("Kf")));
+            System.out.println("TurnGains loaded from " + path + ": " + gains);
+            return gains;
+        } catch (IOException | RuntimeException e) {
+            // RuntimeException: a missing or malformed value
+            System.out.println("TurnGains ignoring " + path + ": " + e);
+            return defaults;
+        }
+    }
+
+    /**
+     * Writes the gains to path.
+     *
+     * @param comment written at the top of the file, e.g. how the gains
+     *        were found
+     * @return true on success
+     */
+    public boolean save(String path, String comment) {
+        Properties p = new Properties();
+        p.setProperty("Kp", Double.toString(Kp));
+        p.setProperty("Ki", Double.toString(Ki));
+        p.setProperty("Kd", Double.toString(Kd));
+        p.setProperty("Kf", Double.toString(Kf));
+        try (OutputStream out = new FileOutputStream(path)) {
+            p.store(out, comment);
+            System.out.println("TurnGains saved to " + path + ": " + this);
+            return true;
+        } catch (IOException e) {
+            System.out.println("TurnGains save failed: " + e);
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Kp %.4f Ki %.4f Kd %.4f Kf %.4f", Kp, Ki, Kd, Kf);
+    }
+}
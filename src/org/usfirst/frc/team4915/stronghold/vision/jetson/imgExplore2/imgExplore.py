@@ -515,7 +515,7 @@ class App:
                     frame = cv2.LUT(gray, self.LUT)
 
                 keypoints = detector.detect(frame) # we'll draw them
-                keypoints = self.robotCnx.NewKeypoints(keypoints)
+                keypoints = self.robotCnx.NewKeypoints(keypoints, t0)
             elif cmode == "houghlines":
                 cv = self.getCmodeValues('canny')
                 bwf = cv2.cvtColor(frame, cv2.COLOR_BGR2GRAY)
@@ -574,7 +574,7 @@ class App:
                     x = 6.0 if (wav < 0.) else -6.0
                     y = 35.0 if (wav < 0.) else 5.0
                 kp = cv2.KeyPoint(x, y, 10)
-            	keypoints = self.robotCnx.NewTarget(kp)
+            	keypoints = self.robotCnx.NewTarget(kp, t0)
             elif cmode == 'dance2':
             	t = common.clock()*2*math.pi/15
             	x = 22 * math.sin(t)
@@ -582,7 +582,7 @@ class App:
             	y = 60 * (1+math.sin(t))
             	# math.sin(t)*values[0]/27*320 + 240 #[0, 480]s/
             	kp = cv2.KeyPoint(0, y, 10)
-            	keypoints = self.robotCnx.NewKeypoints([kp])
+            	keypoints = self.robotCnx.NewKeypoints([kp], t0)
             elif cmode == 'gamma':
                 # Since our inputs are normalized to [0, 1]
                 # we want a power > 1 to reduce darker shades.
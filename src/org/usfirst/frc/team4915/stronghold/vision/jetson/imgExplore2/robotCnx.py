@@ -55,12 +55,12 @@ class RobotCnx:
         self.visTable.removeTableListener(self.visValueChanged)
         self.visTable.removeConnectionListener(self.connectionListener)
 
-    def NewKeypoints(self, kplist):
-        return self.targetState.NewKeypoints(kplist)
+    def NewKeypoints(self, kplist, t0=None):
+        return self.targetState.NewKeypoints(kplist, t0)
         
     # NewTarget: we require that kp is in absolute, not screen-relative coords
-    def NewTarget(self, kp):
-        return self.targetState.NewTarget(kp)
+    def NewTarget(self, kp, t0=None):
+        return self.targetState.NewTarget(kp, t0)
 
     def NewLines(self, llist):
         return self.targetState.NewLines(llist)
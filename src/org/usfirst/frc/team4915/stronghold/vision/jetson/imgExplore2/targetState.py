@@ -15,6 +15,7 @@
 #       67.5  = 1.25 * 54
 
 import sys
+import common
 
 class TargetState:
     def __init__(self, visTab):
@@ -101,11 +102,12 @@ class TargetState:
     	return self.m_kp
 
     # NewTarget: we assume that kp is in absolute (not screen-rel) coords
-    def NewTarget(self, kp):
-        self.updateVisionTable(kp)
+    # t0 is the common.clock() time the frame was captured, if known
+    def NewTarget(self, kp, t0=None):
+        self.updateVisionTable(kp, t0)
         return [kp]
 
-    def NewKeypoints(self, kplist):
+    def NewKeypoints(self, kplist, t0=None):
         if len(kplist) > 0:
             if 0:
                 # always sort biggest to front
@@ -167,7 +169,7 @@ class TargetState:
                 sys.stdout.write("\n")
         else:
             self.m_kp = None
-        self.updateVisionTable(self.m_kp)
+        self.updateVisionTable(self.m_kp, t0)
         return kplist
 
     def pixelToAngle(self, pt):
@@ -175,11 +177,16 @@ class TargetState:
         y = self.m_fov[1] * (pt[1] - self.m_center[1]) / self.m_res[1];
         return (x,y)
 
-    def updateVisionTable(self, kp):
+    def updateVisionTable(self, kp, t0=None):
         if not kp:
             self.m_visTab.putInt("TargetAcquired", 0)
         else:
             theta = self.pixelToAngle(kp.pt)
             self.m_visTab.putInt("TargetAcquired", 1)
+            if t0 is not None:
+                # seconds from capture to now; the robot subtracts it from
+                # TargetX's arrival to know which heading the angle is
+                # relative to. Put it first so it arrives with TargetX.
+                self.m_visTab.putNumber("TargetAge", common.clock() - t0)
             self.m_visTab.putNumber("TargetX", theta[0])
             self.m_visTab.putNumber("TargetY", theta[1])
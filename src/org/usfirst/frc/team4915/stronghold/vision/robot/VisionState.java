@@ -2,8 +2,10 @@ package org.usfirst.frc.team4915.stronghold.vision.robot;
 
 import org.usfirst.frc.team4915.stronghold.ModuleManager;
 import org.usfirst.frc.team4915.stronghold.RobotMap;
+import org.usfirst.frc.team4915.stronghold.subsystems.LauncherAimLogic;
 
 import edu.wpi.first.wpilibj.NamedSendable;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.tables.ITable;
 import edu.wpi.first.wpilibj.tables.ITableListener;
 
@@ -12,7 +14,7 @@ import edu.wpi.first.wpilibj.tables.ITableListener;
  * driver station to the values produced by the vision system.
  */
 
-public class VisionState implements NamedSendable {
+public class VisionState implements NamedSendable, LauncherAimLogic.Vision {
 
     private static VisionState s_instance;
 
@@ -36,6 +38,16 @@ public class VisionState implements NamedSendable {
     private double TargetX = 0;
     private double TargetY = 0;
 
+    // FPGA time at which the frame behind TargetX was captured: its arrival
+    // less the TargetAge the jetson publishes with it (capture to publish)
+    // less the time in transit. NetworkTables sends queued values every
+    // 100ms, so on average a value waits half that. The clocks aren't
+    // shared, hence an age rather than a time. NaN until a TargetX with an
+    // age has arrived; the target is ignored until then.
+    public static final double NETWORK_LATENCY_SECONDS = 0.05;
+    private volatile double TargetAge = Double.NaN;
+    private volatile double TargetTimestamp = Double.NaN;
+
     private ITable m_table = null;
     private final ITableListener m_listener = new ITableListener() {
 
@@ -65,8 +77,12 @@ public class VisionState implements NamedSendable {
                     s_instance.FPS = ival;
                 else if (key.equals("TargetAcquired"))
                     s_instance.TargetAcquired = ival;
+                else if (key.equals("TargetAge"))
+                    s_instance.TargetAge = num;
                 else if (key.equals("TargetX")) {
                 	s_instance.TargetX = num;
+                	s_instance.TargetTimestamp = Timer.getFPGATimestamp() - s_instance.TargetAge
+                	        - NETWORK_LATENCY_SECONDS;
                 }
                 else if (key.equals("TargetY"))
                     s_instance.TargetY = num;
@@ -130,10 +146,38 @@ public class VisionState implements NamedSendable {
         return this.TargetX + currentHeading;
     }
 
+    /**
+     * @return estimated FPGA time at which the current TargetX was
+     *         observed; NaN if the jetson hasn't sent a TargetAge
+     */
+    public double getTargetTimestamp() {
+        return this.TargetTimestamp;
+    }
+
+    public boolean hasTargetTimestamp() {
+        return !Double.isNaN(this.TargetTimestamp);
+    }
+
     public double getTargetElevation(double currentElevation) {
         return this.TargetY + currentElevation;
     }
 
+    public double getTargetX() {
+        return this.TargetX;
+    }
+
+    public double getTargetY() {
+        return this.TargetY;
+    }
+
+    public boolean isLauncherLocked() {
+        return LauncherLockedOnTarget;
+    }
+
+    public void setLauncherLocked() {
+        LauncherLockedOnTarget = true;
+    }
+
     public boolean wantsControl() {
         return AutoAimEnabled;
     }